@@ -1,12 +1,21 @@
 package com.example.ecommerce;
 
+import com.example.ecommerce.bll.utils.PasswordHashCalibrator;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EcommerceApplication {
 
 	public static void main(String[] args) {
+		// --calibrate-password-hash[=250ms] : mesure le coût de hachage sur cette machine, sans démarrer l'application
+		var calibrationTarget = PasswordHashCalibrator.target(args);
+		if (calibrationTarget != null) {
+			PasswordHashCalibrator.run(calibrationTarget, System.out);
+			return;
+		}
 		SpringApplication.run(EcommerceApplication.class, args);
 	}
 
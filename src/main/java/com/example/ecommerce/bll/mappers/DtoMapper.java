@@ -4,7 +4,6 @@ import com.example.ecommerce.dl.entities.CartLine;
 import com.example.ecommerce.dl.entities.Product;
 import com.example.ecommerce.il.dto.*;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 /*Pourquoi un util statique ? Simple, sans dépendances
@@ -18,18 +17,25 @@ public final class DtoMapper {
     }
 
     // --- Product (list item) ---
-    public static ProductListItemDto toProductListItem(Product p) {
+    // availableStock = stock DB moins les réservations en cours (InventoryLedger)
+    // imageSrcset = déclinaisons de l'image (ImageRenditions.srcset)
+    // imagePlaceholder / imageColor = aperçu calculé à l'upload (ImagePlaceholders)
+    public static ProductListItemDto toProductListItem(Product p, int availableStock, String imageSrcset) {
         return new ProductListItemDto(
                 p.getId(),
                 p.getName(),
                 p.getPrice(),
                 p.getCategory() != null ? p.getCategory().getName() : null,
-                p.getImageUrl()
+                p.getImageUrl(),
+                imageSrcset,
+                p.getImagePlaceholder(),
+                p.getImageColor(),
+                availableStock
         );
     }
 
     // --- Product (detail) ---
-    public static ProductDetailDto toProductDetail(Product p) {
+    public static ProductDetailDto toProductDetail(Product p, int availableStock, String imageSrcset) {
         return new ProductDetailDto(
                 p.getId(),
                 p.getName(),
@@ -37,14 +43,18 @@ public final class DtoMapper {
                 p.getPrice(),
                 p.getStock(),
                 p.getCategory() != null ? p.getCategory().getName() : null,
-                p.getImageUrl()
+                p.getImageUrl(),
+                imageSrcset,
+                availableStock,
+                p.getStockShards()
         );
     }
 
     // --- Cart ---
+    // Prix DB (BigDecimal) converti une seule fois en Money ; ensuite arithmétique sur long
     public static CartLineDto toCartLineDto(CartLine l) {
-        var unit = l.getProduct().getPrice();
-        var total = unit.multiply(BigDecimal.valueOf(l.getQuantity()));
+        var unit = Money.eur(l.getProduct().getPrice());
+        var total = unit.times(l.getQuantity());
         return new CartLineDto(
                 l.getProduct().getId(),
                 l.getProduct().getName(),
@@ -56,8 +66,10 @@ public final class DtoMapper {
 
     public static CartDto toCartDto(List<CartLineDto> lines) {
         int totalItems = lines.stream().mapToInt(CartLineDto::quantity).sum();
-        BigDecimal totalAmount = lines.stream().map(CartLineDto::lineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return new CartDto(lines, totalItems, totalAmount);
+        long totalMinor = 0;
+        for (CartLineDto l : lines) {
+            totalMinor = Math.addExact(totalMinor, l.lineTotal().minor());
+        }
+        return new CartDto(lines, totalItems, Money.ofMinor(totalMinor, Money.EUR));
     }
 }
@@ -0,0 +1,267 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.CartLineRepository;
+import com.example.ecommerce.dal.repositories.CartRepository;
+import com.example.ecommerce.dal.repositories.ErasureJobRepository;
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dal.repositories.OutboxRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.ErasureJob;
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.enums.ErasureStatus;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.il.interfaces.OrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Effacement de compte en arrière-plan
+ * ------------------------------------
+ * 1) Demande (requête de l'utilisateur, transaction courte) : le compte est marqué (erasure_requested_at),
+ *    le login est refusé dès le commit, un job erasure_jobs est créé. L'utilisateur est déconnecté aussitôt.
+ * 2) Job (@Scheduled, SKIP LOCKED + bail comme l'outbox). D'abord les commandes ouvertes sont soldées :
+ *    PENDING -> session Stripe expirée puis CANCELLED (hold libéré), REFUND_REQUIRED -> remboursée (REFUNDED).
+ *    Tant qu'il en reste une (Stripe indisponible, session payée entre-temps), le job échoue et repart avec backoff :
+ *    aucune commande à rembourser n'est effacée. Ensuite suppressions ensemblistes par lots de chunk-size,
+ *    une transaction par lot :
+ *      DELETE FROM cart_lines WHERE cart_id IN (...) ; DELETE FROM carts WHERE id IN (...)
+ *      DELETE FROM order_lines WHERE order_id IN (...) ; DELETE FROM orders WHERE id IN (...)
+ *      DELETE FROM outbox_events WHERE type LIKE 'order.%' AND aggregate_id IN (...) (sauf order.refund_required)
+ *    puis, en dernier : lignes / paniers restants par user_id, événements panier du compte
+ *    (agrégat user:<id>, ou user:<email> pour les plus anciens) et la ligne users.
+ * 3) Rejouable : tout est supprimé par user_id, un job repris après un crash ou un échec repart simplement.
+ * Progression : compteurs du job (mis à jour dans la transaction de chaque lot), métriques
+ * account.erasure.jobs (status), account.erasure.rows (table), account.erasure.duration.
+ */
+@Service
+public class AccountErasure {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountErasure.class);
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+
+    private static final List<OrderStatus> OPEN = List.of(OrderStatus.PENDING, OrderStatus.REFUND_REQUIRED);
+
+    private final UserRepository users;
+    private final CartRepository carts;
+    private final CartLineRepository cartLines;
+    private final OrderRepository orders;
+    private final ErasureJobRepository jobs;
+    private final OutboxRepository outbox;
+    private final UserDetailsCache userCache;
+    private final OrderService orderService;
+    private final OrderRefunds refunds;
+    private final TransactionTemplate tx;
+    private final Counter cartLinesDeleted;
+    private final Counter cartsDeleted;
+    private final Counter orderLinesDeleted;
+    private final Counter ordersDeleted;
+    private final Counter eventsDeleted;
+    private final Timer duration;
+
+    @Value("${app.erasure.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.erasure.lease:PT5M}")
+    private Duration lease;
+
+    @Value("${app.erasure.retry-backoff:PT30S}")
+    private Duration retryBackoff;
+
+    @Value("${app.erasure.max-attempts:5}")
+    private int maxAttempts;
+
+    public AccountErasure(UserRepository users,
+                          CartRepository carts,
+                          CartLineRepository cartLines,
+                          OrderRepository orders,
+                          ErasureJobRepository jobs,
+                          OutboxRepository outbox,
+                          UserDetailsCache userCache,
+                          OrderService orderService,
+                          OrderRefunds refunds,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meters) {
+        this.users = users;
+        this.carts = carts;
+        this.cartLines = cartLines;
+        this.orders = orders;
+        this.jobs = jobs;
+        this.outbox = outbox;
+        this.userCache = userCache;
+        this.orderService = orderService;
+        this.refunds = refunds;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.cartLinesDeleted = meters.counter("account.erasure.rows", "table", "cart_lines");
+        this.cartsDeleted = meters.counter("account.erasure.rows", "table", "carts");
+        this.orderLinesDeleted = meters.counter("account.erasure.rows", "table", "order_lines");
+        this.ordersDeleted = meters.counter("account.erasure.rows", "table", "orders");
+        this.eventsDeleted = meters.counter("account.erasure.rows", "table", "outbox_events");
+        this.duration = Timer.builder("account.erasure.duration")
+                .description("Demande de suppression -> compte effacé")
+                .register(meters);
+        for (ErasureStatus status : ErasureStatus.values()) {
+            Gauge.builder("account.erasure.jobs", jobs, r -> r.countByStatus(status))
+                    .tag("status", status.name())
+                    .register(meters);
+        }
+    }
+
+    /**
+     * Demande d'effacement du compte : login refusé dès le commit, effacement en arrière-plan.
+     * Idempotent : une seconde demande renvoie le job existant.
+     * @return id du job
+     * @throws IllegalArgumentException si le compte n'existe pas
+     */
+    @Transactional
+    public Long request(String email) {
+        var user = users.findByEmail(UserDetailsCache.normalize(email))
+                .orElseThrow(() -> new IllegalArgumentException("Unknown account"));
+        var existing = jobs.findByUserId(user.getId());
+        if (existing.isPresent()) return existing.get().getId();
+
+        Instant now = Instant.now();
+        user.setErasureRequestedAt(now);
+        var job = jobs.save(ErasureJob.builder()
+                .userId(user.getId())
+                .status(ErasureStatus.PENDING)
+                .attempts(0)
+                .availableAt(now)
+                .cartLinesDeleted(0L).cartsDeleted(0L).orderLinesDeleted(0L).ordersDeleted(0L)
+                .createdAt(now)
+                .build());
+        userCache.evict(user.getEmail());
+        log.info("[ERASURE][REQUEST][JOB:{}] user={} queued", job.getId(), user.getId());
+        return job.getId();
+    }
+
+    /** Traite les jobs dus, un par un (chaque job est découpé en lots). */
+    @Scheduled(fixedDelayString = "${app.erasure.poll:PT5S}")
+    public int runPending() {
+        int done = 0;
+        Long id;
+        while ((id = claim()) != null) {
+            if (run(id)) done++;
+        }
+        return done;
+    }
+
+    // -------- Helpers --------
+
+    private Long claim() {
+        return tx.execute(s -> {
+            var id = jobs.lockDue(Instant.now()).orElse(null);
+            if (id != null) jobs.lease(id, Instant.now().plus(lease));
+            return id;
+        });
+    }
+
+    private boolean run(Long jobId) {
+        var job = jobs.findById(jobId).orElse(null);
+        if (job == null) return false;
+        Long userId = job.getUserId();
+        try {
+            // Paniers par lots : lignes puis paniers
+            while (true) {
+                Boolean more = tx.execute(s -> {
+                    List<Long> ids = carts.findIdsByUserId(userId, chunkSize);
+                    if (ids.isEmpty()) return false;
+                    int lines = cartLines.deleteByCartIds(ids);
+                    int deleted = carts.deleteByIds(ids);
+                    jobs.progress(jobId, lines, deleted, 0, 0, Instant.now().plus(lease));
+                    cartLinesDeleted.increment(lines);
+                    cartsDeleted.increment(deleted);
+                    return ids.size() == chunkSize;
+                });
+                if (!Boolean.TRUE.equals(more)) break;
+            }
+            settleOpenOrders(userId);
+            // Commandes par lots : lignes puis commandes
+            while (true) {
+                Boolean more = tx.execute(s -> {
+                    if (orders.existsByUserIdAndStatusIn(userId, OPEN)) {
+                        throw new IllegalStateException("Open orders left for user " + userId);
+                    }
+                    List<Long> ids = orders.findIdsByUserId(userId, chunkSize);
+                    if (ids.isEmpty()) return false;
+                    eventsDeleted.increment(outbox.deleteOrderEvents(ids.stream().map(String::valueOf).toList()));
+                    int lines = orders.deleteLinesByOrderIds(ids);
+                    int deleted = orders.deleteByIds(ids);
+                    jobs.progress(jobId, 0, 0, lines, deleted, Instant.now().plus(lease));
+                    orderLinesDeleted.increment(lines);
+                    ordersDeleted.increment(deleted);
+                    return ids.size() == chunkSize;
+                });
+                if (!Boolean.TRUE.equals(more)) break;
+            }
+            // Fin : restes éventuels (panier recréé entre-temps) puis le compte lui-même
+            tx.executeWithoutResult(s -> {
+                int lines = cartLines.deleteAllByUserId(userId);
+                int deleted = carts.deleteAllByUserId(userId);
+                jobs.progress(jobId, lines, deleted, 0, 0, Instant.now());
+                var aggregates = new ArrayList<>(List.of("user:" + userId));
+                users.findById(userId).ifPresent(u -> aggregates.add("user:" + u.getEmail()));
+                eventsDeleted.increment(outbox.deleteByAggregateIds(aggregates));
+                users.deleteById(userId);
+                jobs.markDone(jobId, Instant.now());
+            });
+            duration.record(Duration.between(job.getCreatedAt(), Instant.now()));
+            var finished = jobs.findById(jobId).orElse(job);
+            log.info("[ERASURE][DONE][JOB:{}] user={} cart_lines={} carts={} order_lines={} orders={}",
+                    jobId, userId, finished.getCartLinesDeleted(), finished.getCartsDeleted(),
+                    finished.getOrderLinesDeleted(), finished.getOrdersDeleted());
+            return true;
+        } catch (RuntimeException e) {
+            fail(job, e);
+            return false;
+        }
+    }
+
+    /**
+     * PENDING : session expirée puis annulée ; REFUND_REQUIRED : remboursée de suite (sans attendre l'outbox).
+     * @throws IllegalStateException commande encore en attente de paiement, ou remboursement refusé
+     * @throws StripeService.UnavailableException Stripe indisponible
+     */
+    private void settleOpenOrders(Long userId) {
+        for (Order o : orders.findAllByUserIdAndStatus(userId, OrderStatus.PENDING)) {
+            if (!orderService.cancelPending(o.getId())) {
+                throw new IllegalStateException("Order " + o.getId() + " still awaiting payment");
+            }
+        }
+        for (Order o : orders.findAllByUserIdAndStatus(userId, OrderStatus.REFUND_REQUIRED)) {
+            refunds.refund(o.getId());
+        }
+    }
+
+    private void fail(ErasureJob job, RuntimeException e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (error.length() > 255) error = error.substring(0, 255);
+        String lastError = error;
+        int attempts = job.getAttempts(); // déjà incrémenté par le bail
+        if (attempts >= maxAttempts) {
+            tx.executeWithoutResult(s -> jobs.markFailed(job.getId(), ErasureStatus.FAILED, Instant.now(), lastError));
+            log.error("[ERASURE][FAILED][JOB:{}] user={} after {} attempt(s) : {}", job.getId(), job.getUserId(), attempts, lastError);
+            return;
+        }
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 16));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) backoff = MAX_BACKOFF;
+        Instant retryAt = Instant.now().plus(backoff);
+        tx.executeWithoutResult(s -> jobs.markFailed(job.getId(), ErasureStatus.PENDING, retryAt, lastError));
+        log.warn("[ERASURE][RETRY][JOB:{}] user={} attempt={} retry at {} : {}", job.getId(), job.getUserId(), attempts, retryAt, lastError);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.ecommerce.bll.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage des images (originaux et déclinaisons), adressé par une clé relative.
+ * - Originaux : "ab/cd/<sha256>.ext" (deux niveaux de 256 sous-dossiers : jamais de dossier géant),
+ *   déclinaisons à côté : "ab/cd/<sha256>-320w.jpg".
+ * - Implémentations (app.storage.type) : FileSystemBlobStore (défaut, arborescence sous app.upload-dir,
+ *   servie par MediaController) et S3BlobStore (bucket compatible S3, partagé entre plusieurs nœuds).
+ * - Une clé n'a jamais de segment vide ou commençant par "." (ni "..", ni fichiers temporaires).
+ */
+public interface BlobStore {
+
+    Pattern KEY = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*(/[A-Za-z0-9_-][A-Za-z0-9._-]*)*");
+    Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z]+");
+
+    /** Clé d'un original adressé par contenu : "ab/cd/abcd...ef.png". */
+    static String contentKey(String sha256, String extension) {
+        return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + extension;
+    }
+
+    static boolean isValidKey(String key) {
+        return key != null && key.length() <= 512 && KEY.matcher(key).matches();
+    }
+
+    /**
+     * Enregistre le fichier sous la clé (remplace un contenu existant).
+     * Le fichier source peut être déplacé : l'appelant supprime ensuite un éventuel reste.
+     */
+    void put(String key, Path file, String contentType) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    /** @throws java.nio.file.NoSuchFileException si la clé n'existe pas */
+    InputStream open(String key) throws IOException;
+
+    /** Sans effet si la clé n'existe pas. */
+    void delete(String key) throws IOException;
+
+    /** Clés commençant par prefix ("" = tout), triées. */
+    List<String> list(String prefix) throws IOException;
+
+    /** URL à stocker en base et à servir dans les vues. */
+    String publicUrl(String key);
+
+    /** Clé désignée par une URL publique de ce stockage (vide si l'URL vient d'ailleurs ou n'est pas une clé valide). */
+    Optional<String> keyOf(String publicUrl);
+}
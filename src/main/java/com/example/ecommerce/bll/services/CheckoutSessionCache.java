@@ -0,0 +1,159 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.il.dto.CartDto;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * Réutilisation des sessions Stripe Checkout
+ * ------------------------------------------
+ * Double clic sur "Pay" ou rafraîchissement : même utilisateur + même panier => même session Stripe,
+ * sans nouvelle commande ni nouvel appel réseau.
+ * - Clé = email + empreinte du panier (SHA-256 des lignes triées : id produit, quantité, prix unitaire en centimes).
+ * - Valeur = commande, URL de la session et clé d'idempotence Stripe, pour une durée courte (session-reuse).
+ * - Clé d'idempotence Stripe dérivée (SHA-256 de email + empreinte du panier + id de commande), jamais aléatoire :
+ *   tout renvoi de la création pour la même commande et le même panier porte la même clé et Stripe rend la même
+ *   session ; une autre commande (panier racheté plus tard) a sa propre clé.
+ * - Requêtes simultanées : la première crée la session, les autres attendent son résultat (future partagée).
+ * - L'appelant valide l'entrée (commande encore en attente de paiement) avant de la réutiliser.
+ */
+@Service
+public class CheckoutSessionCache {
+
+    /** Session Stripe réutilisable pour un panier donné. */
+    public record CachedSession(Long orderId, String url, String idempotencyKey, Instant expiresAt) {}
+
+    /**
+     * Création effective (commande + session Stripe).
+     * idempotencyKey.apply(orderId) donne la clé Stripe de la commande créée.
+     */
+    @FunctionalInterface
+    public interface SessionFactory {
+        CachedSession create(LongFunction<String> idempotencyKey) throws StripeException;
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<CachedSession>> entries = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CheckoutSessionCache(@Value("${app.checkout.session-reuse:PT10M}") Duration ttl,
+                                @Value("${stripe.timeout:PT5S}") Duration waitTimeout,
+                                MeterRegistry meters) {
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout.plusSeconds(1);
+        this.hits = meters.counter("checkout.session.reuse", "result", "hit");
+        this.misses = meters.counter("checkout.session.reuse", "result", "miss");
+    }
+
+    public Duration ttl() {
+        return ttl;
+    }
+
+    /**
+     * Renvoie la session en cache pour (user, panier) si elle est encore valide, sinon la crée via factory.
+     * Les exceptions de factory (panier vide, rupture, Stripe) sont propagées et rien n'est mis en cache.
+     */
+    public CachedSession getOrCreate(String user, CartDto cart,
+                                     Predicate<CachedSession> stillValid,
+                                     SessionFactory factory) throws StripeException {
+        String fingerprint = fingerprint(cart);
+        String key = user + "|" + fingerprint;
+        LongFunction<String> idempotencyKey = orderId -> idempotencyKey(user, fingerprint, orderId);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            var mine = new CompletableFuture<CachedSession>();
+            var existing = entries.putIfAbsent(key, mine);
+
+            if (existing == null) {
+                misses.increment();
+                try {
+                    var created = factory.create(idempotencyKey);
+                    mine.complete(created);
+                    return created;
+                } catch (StripeException | RuntimeException e) {
+                    entries.remove(key, mine);
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+            }
+
+            CachedSession cached = await(existing);
+            if (cached != null && cached.expiresAt().isAfter(Instant.now()) && stillValid.test(cached)) {
+                hits.increment();
+                return cached;
+            }
+            entries.remove(key, existing); // périmée, invalide ou création échouée : on retente une fois
+        }
+        // Contention persistante sur la même clé : création directe, sans cache
+        misses.increment();
+        return factory.create(idempotencyKey);
+    }
+
+    /** Purge des entrées expirées. */
+    @Scheduled(fixedDelayString = "${app.checkout.reservation-sweep:PT1M}")
+    public void purge() {
+        Instant now = Instant.now();
+        entries.values().removeIf(f -> f.isDone() && (f.isCompletedExceptionally() || f.join().expiresAt().isBefore(now)));
+    }
+
+    /** Clé d'idempotence Stripe d'une commande : stable pour (user, panier, commande), sans donnée personnelle lisible. */
+    public static String idempotencyKey(String user, String fingerprint, long orderId) {
+        return "checkout-" + sha256(user + "|" + fingerprint + "|" + orderId);
+    }
+
+    /**
+     * Empreinte stable du panier : lignes triées par produit, prix en unités mineures + devise.
+     */
+    public static String fingerprint(CartDto cart) {
+        var sb = new StringBuilder();
+        if (cart != null && cart.lines() != null) {
+            cart.lines().stream()
+                    .sorted(Comparator.comparing(l -> l.productId()))
+                    .forEach(l -> sb.append(l.productId()).append(':')
+                            .append(l.quantity()).append(':')
+                            .append(l.unitPrice() == null ? "" : l.unitPrice().minor() + l.unitPrice().currency().getCurrencyCode())
+                            .append(';'));
+        }
+        return sha256(sb.toString());
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CachedSession await(CompletableFuture<CachedSession> future) {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
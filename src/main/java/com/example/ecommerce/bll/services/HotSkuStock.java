@@ -0,0 +1,154 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.StockRepository;
+import com.example.ecommerce.dal.repositories.StockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Décrément du stock en base, avec mode "hot SKU" optionnel
+ * ----------------------------------------------------------
+ * - Produit normal : UPDATE conditionnel sur la ligne products (StockRepository).
+ * - Produit hot (products.stock_shards = N > 0) : le stock est réparti sur N lignes stock_shards.
+ *   Chaque décrément part d'un shard tiré au hasard puis essaie les suivants : les acheteurs
+ *   concurrents verrouillent des lignes différentes au lieu de se sérialiser sur une seule.
+ * - Si aucun shard ne couvre seul la quantité (fin de stock fragmentée), on verrouille tous les
+ *   shards du produit et on prélève sur plusieurs.
+ * - Le total est reporté périodiquement dans products.stock (catalogue, InventoryLedger).
+ * - La liste locale des produits hot n'est qu'une indication (rafraîchie toutes les 2 s) : le mode est
+ *   vérifié par la base dans l'instruction même. Un décrément normal refusé parce que le produit est
+ *   devenu hot repart sur les shards ; un produit sorti du mode hot (aucun shard) repart sur products.
+ * - Passage en mode hot / retour : la ligne products est verrouillée d'abord, les décréments concurrents attendent.
+ * Ordre des verrous : produits normaux (batch trié) puis produits hot par id croissant.
+ */
+@Service
+@Transactional
+public class HotSkuStock {
+
+    private static final Logger log = LoggerFactory.getLogger(HotSkuStock.class);
+
+    private static final int MAX_SHARDS = 64;
+
+    private final StockRepository stock;
+    private final StockShardRepository shards;
+    // productId -> nombre de shards (rechargé à chaque flush : autres nœuds, modifs admin) ; indicatif seulement
+    private final Map<Long, Integer> hot = new ConcurrentHashMap<>();
+
+    public HotSkuStock(StockRepository stock, StockShardRepository shards) {
+        this.stock = stock;
+        this.shards = shards;
+    }
+
+    /**
+     * Décrémente le stock de tous les produits, tout ou rien.
+     * Un produit sans stock suffisant lève {@link OutOfStockException} : la transaction (celle de l'appelant
+     * si elle existe) est marquée rollback-only, les lignes déjà décrémentées du lot reviennent avec elle.
+     * @throws OutOfStockException premier produit (normal puis hot, par id croissant) sans stock suffisant
+     */
+    public void reserveAll(Map<Long, Integer> quantities) {
+        var normal = new TreeMap<Long, Integer>();
+        var sharded = new TreeMap<Long, Integer>();
+        quantities.forEach((pid, qty) -> (hot.containsKey(pid) ? sharded : normal).put(pid, qty));
+
+        if (!normal.isEmpty()) {
+            for (Long pid : stock.reserveAll(normal)) {
+                // Refus : stock insuffisant, ou produit passé en mode hot depuis le dernier rafraîchissement
+                Integer n = shards.shardCount(pid);
+                if (n == null || n == 0) throw new OutOfStockException(pid);
+                hot.put(pid, n);
+                sharded.put(pid, normal.get(pid));
+            }
+        }
+        for (var e : sharded.entrySet()) {
+            if (!take(e.getKey(), e.getValue())) throw new OutOfStockException(e.getKey());
+        }
+    }
+
+    /** Active (shards > 0) ou désactive (0) le mode hot pour un produit. */
+    public void configure(Long productId, int shardCount) {
+        if (shardCount < 0 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shards must be between 0 and " + MAX_SHARDS);
+        }
+        // Verrou sur la ligne products : aucun décrément normal ne se glisse entre la lecture et le découpage
+        if (shards.lockProduct(productId) == null) throw new IllegalArgumentException("Product not found: " + productId);
+
+        shards.drain(productId); // replie les shards existants (posés par ce nœud ou un autre)
+        int total = stock.currentStock(List.of(productId)).get(productId);
+        if (shardCount == 0) {
+            hot.remove(productId);
+        } else {
+            shards.split(productId, total, shardCount);
+            hot.put(productId, shardCount);
+        }
+        log.info("[STOCK][HOT] pid={} shards={} total={}", productId, shardCount, total);
+    }
+
+    /** Stock fixé par l'admin : redistribué sur les shards si le produit est hot. */
+    public void reset(Long productId, int total) {
+        Integer n = shards.shardCount(productId);
+        if (n != null && n > 0) shards.split(productId, total, n);
+    }
+
+    /** Suppression d'un produit : les shards partent avec lui. */
+    public void forget(Long productId) {
+        hot.remove(productId);
+        shards.drain(productId);
+    }
+
+    /** Reporte la somme des shards dans products.stock et recharge la liste des produits hot. */
+    @Scheduled(fixedDelayString = "${app.inventory.hot-sku-flush:PT2S}")
+    public void flush() {
+        refreshHotSet();
+        if (!hot.isEmpty()) shards.flushTotals();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshHotSet() {
+        var fresh = shards.findHot();
+        hot.keySet().retainAll(fresh.keySet());
+        hot.putAll(fresh);
+    }
+
+    // -------- Helpers --------
+
+    private boolean take(Long productId, int qty) {
+        Integer n = hot.get(productId); // nombre de shards connu (peut être périmé : simple point de départ)
+        if (n != null && n > 0) {
+            int start = ThreadLocalRandom.current().nextInt(n);
+            for (int i = 0; i < n; i++) {
+                if (shards.take(productId, (start + i) % n, qty)) return true;
+            }
+        }
+        // Aucun shard ne suffit seul : prélèvement réparti sous verrou, sur les shards réellement présents
+        var available = shards.lockAll(productId);
+        if (available.isEmpty()) {
+            // Produit sorti du mode hot entre-temps : décrément sur products (refusé s'il est de nouveau hot)
+            hot.remove(productId);
+            return stock.reserveAll(Map.of(productId, qty)).isEmpty();
+        }
+        hot.put(productId, available.size());
+        int total = available.values().stream().mapToInt(Integer::intValue).sum();
+        if (total < qty) return false;
+        int remaining = qty;
+        for (var shard : available.entrySet()) {
+            if (remaining == 0) break;
+            int part = Math.min(shard.getValue(), remaining);
+            if (part > 0) {
+                shards.add(productId, shard.getKey(), -part);
+                remaining -= part;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.utils.LongHashSet;
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.StoredImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * GC des images orphelines
+ * ------------------------
+ * Un fichier du dossier d'upload peut ne plus être référencé : suppression best-effort ratée, produit jamais
+ * enregistré après saveImage, migration interrompue, fichiers temporaires d'un arrêt brutal.
+ * Passe planifiée (app.images.gc.interval) :
+ * 1) Références : flux des Product.imageUrl "/uploads/..." (une transaction en lecture seule), réduits à la base
+ *    de la clé ("ab/cd/<sha256>") dans un LongHashSet (~16 octets par URL).
+ * 2) Parcours : un Files.walkFileTree par sous-dossier de premier niveau (shard "ab"), en parallèle
+ *    (app.images.gc.parallelism, 0 = nombre de cœurs) ; les fichiers d'un dossier sont traités par groupe
+ *    original + déclinaisons + variantes WebP / AVIF.
+ * 3) Un groupe non référencé dont tous les fichiers ont plus de app.images.gc.grace est supprimé ; pour un original,
+ *    décision revérifiée sous le verrou de sa ligne stored_images (upload récent du même contenu => gardé ;
+ *    produit qui le référence entre-temps => gardé). Temporaires (.upload-*, .rendition-*, .transcode-*, .migrate-*)
+ *    anciens : supprimés.
+ * Métriques : image.gc.deleted (kind = original / rendition / temp ; une variante compte comme déclinaison), image.gc.reclaimed (octets), image.gc.duration.
+ */
+@Service
+public class ImageGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    private static final String PUBLIC_PREFIX = "/uploads/";
+    private static final Pattern RENDITION = Pattern.compile("(.+)-(\\d+)w\\.(jpg|png)");
+
+    /** Bilan d'une passe. */
+    public record Report(long scanned, long deleted, long reclaimedBytes, int references, Duration took) {}
+
+    // Original, déclinaisons et variantes d'une même base, dans un même dossier
+    private static final class Group {
+        Path original;
+        BasicFileAttributes originalAttrs;
+        final List<Path> renditions = new ArrayList<>();
+        final List<BasicFileAttributes> renditionAttrs = new ArrayList<>();
+    }
+
+    private final ProductRepository products;
+    private final StoredImageRepository images;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnly;
+    private final Path folder;
+    private final Duration grace;
+    private final int parallelism;
+
+    private final Counter originals;
+    private final Counter renditions;
+    private final Counter temps;
+    private final Counter reclaimed;
+    private final Timer duration;
+
+    public ImageGarbageCollector(ProductRepository products,
+                                 StoredImageRepository images,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.upload-dir}") String uploadDir,
+                                 @Value("${app.images.gc.grace:PT24H}") Duration grace,
+                                 @Value("${app.images.gc.parallelism:0}") int parallelism,
+                                 MeterRegistry meters) {
+        if (grace.isNegative()) throw new IllegalArgumentException("app.images.gc.grace must not be negative");
+        this.products = products;
+        this.images = images;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.folder = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.grace = grace;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+
+        this.originals = meters.counter("image.gc.deleted", "kind", "original");
+        this.renditions = meters.counter("image.gc.deleted", "kind", "rendition");
+        this.temps = meters.counter("image.gc.deleted", "kind", "temp");
+        this.reclaimed = Counter.builder("image.gc.reclaimed").baseUnit("bytes")
+                .description("Octets libérés par le GC des images orphelines")
+                .register(meters);
+        this.duration = Timer.builder("image.gc.duration")
+                .description("Passe complète du GC des images orphelines")
+                .register(meters);
+    }
+
+    @Scheduled(fixedDelayString = "${app.images.gc.interval:PT6H}", initialDelayString = "${app.images.gc.initial-delay:PT10M}")
+    public Report collect() {
+        long start = System.nanoTime();
+        Instant cutoff = Instant.now().minus(grace);
+        if (!Files.isDirectory(folder)) return new Report(0, 0, 0, 0, Duration.ZERO);
+
+        // 1) Références : bases des clés sous /uploads/
+        LongHashSet referenced = readOnly.execute(s -> {
+            LongHashSet set = new LongHashSet(1024);
+            try (var urls = products.streamImageUrls()) {
+                urls.filter(u -> u.startsWith(PUBLIC_PREFIX))
+                        .forEach(u -> set.add(baseName(u.substring(PUBLIC_PREFIX.length()))));
+            }
+            return set;
+        });
+
+        // 2) Parcours : dossier racine (ancien dossier plat + temporaires) ici, chaque shard sur son thread
+        LongAdder scanned = new LongAdder();
+        LongAdder deleted = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<?>> walks = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Map<String, Group> rootGroups = new LinkedHashMap<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                    String name = entry.getFileName().toString();
+                    if (attrs.isDirectory()) {
+                        if (name.startsWith(".")) continue;
+                        walks.add(executor.submit(() -> {
+                            permits.acquire();
+                            try {
+                                walk(entry, referenced, cutoff, scanned, deleted, bytes);
+                            } finally {
+                                permits.release();
+                            }
+                            return null;
+                        }));
+                    } else if (attrs.isRegularFile()) {
+                        scanned.increment();
+                        add(rootGroups, entry, attrs, cutoff, deleted, bytes);
+                    }
+                }
+            }
+            sweep(rootGroups, referenced, cutoff, deleted, bytes);
+            for (Future<?> walk : walks) {
+                walk.get();
+            }
+        } catch (IOException e) {
+            log.warn("[IMAGES][GC] cannot scan {} : {}", folder, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("[IMAGES][GC] walk failed : {}", e.getCause().getMessage());
+        }
+
+        Duration took = Duration.ofNanos(System.nanoTime() - start);
+        duration.record(took);
+        var report = new Report(scanned.sum(), deleted.sum(), bytes.sum(), referenced.size(), took);
+        log.info("[IMAGES][GC] scanned={} deleted={} reclaimed={} KiB references={} ({} KiB) in {} ms",
+                report.scanned(), report.deleted(), report.reclaimedBytes() / 1024, report.references(),
+                referenced.memoryBytes() / 1024, took.toMillis());
+        return report;
+    }
+
+    // -------- Helpers --------
+
+    // Un shard : fichiers regroupés par dossier, traités à la sortie de chaque dossier
+    private void walk(Path dir, LongHashSet referenced, Instant cutoff,
+                      LongAdder scanned, LongAdder deleted, LongAdder bytes) throws IOException {
+        Deque<Map<String, Group>> stack = new ArrayDeque<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                if (d.getFileName().toString().startsWith(".")) return FileVisitResult.SKIP_SUBTREE;
+                stack.push(new LinkedHashMap<>());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    scanned.increment();
+                    add(stack.peek(), file, attrs, cutoff, deleted, bytes);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("[IMAGES][GC] cannot read {} : {}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) {
+                sweep(stack.pop(), referenced, cutoff, deleted, bytes);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Temporaire ancien : supprimé tout de suite ; sinon rangé dans le groupe de sa base
+    private void add(Map<String, Group> groups, Path file, BasicFileAttributes attrs, Instant cutoff,
+                     LongAdder deleted, LongAdder bytes) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".")) {
+            if (attrs.lastModifiedTime().toInstant().isBefore(cutoff) && delete(file, attrs.size(), bytes)) {
+                deleted.increment();
+                temps.increment();
+            }
+            return;
+        }
+        Matcher v = ImageTranscoder.VARIANT.matcher(name);
+        String source = v.matches() ? v.group(1) : name;
+        Matcher m = RENDITION.matcher(source);
+        if (m.matches() || v.matches()) {
+            Group group = groups.computeIfAbsent(m.matches() ? m.group(1) : baseName(source), b -> new Group());
+            group.renditions.add(file);
+            group.renditionAttrs.add(attrs);
+        } else {
+            Group group = groups.computeIfAbsent(baseName(name), b -> new Group());
+            group.original = file;
+            group.originalAttrs = attrs;
+        }
+    }
+
+    private void sweep(Map<String, Group> groups, LongHashSet referenced, Instant cutoff,
+                       LongAdder deleted, LongAdder bytes) {
+        for (var entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            Path any = group.original != null ? group.original : group.renditions.get(0);
+            String base = key(any.resolveSibling(entry.getKey()));
+            if (referenced.contains(base) || recent(group, cutoff)) continue;
+
+            if (group.original == null) {
+                deleteRenditions(group, deleted, bytes);
+                continue;
+            }
+            String key = key(group.original);
+            try {
+                tx.executeWithoutResult(s -> {
+                    var row = images.lockByFileName(key);
+                    if (row.isPresent() && row.get().getLastUsedAt() != null && row.get().getLastUsedAt().isAfter(cutoff)) {
+                        return; // même contenu renvoyé récemment : le produit n'est peut-être pas encore enregistré
+                    }
+                    if (products.existsByImageUrl(PUBLIC_PREFIX + key)) return; // référencé depuis le relevé
+                    row.ifPresent(images::delete);
+                    if (delete(group.original, group.originalAttrs.size(), bytes)) {
+                        deleted.increment();
+                        originals.increment();
+                        log.debug("[IMAGES][GC] {} deleted", key);
+                    }
+                    deleteRenditions(group, deleted, bytes);
+                });
+            } catch (RuntimeException e) {
+                log.warn("[IMAGES][GC] {} : {}", key, e.getMessage());
+            }
+        }
+    }
+
+    private static boolean recent(Group group, Instant cutoff) {
+        if (group.originalAttrs != null && !group.originalAttrs.lastModifiedTime().toInstant().isBefore(cutoff)) {
+            return true;
+        }
+        return group.renditionAttrs.stream().anyMatch(a -> !a.lastModifiedTime().toInstant().isBefore(cutoff));
+    }
+
+    private void deleteRenditions(Group group, LongAdder deleted, LongAdder bytes) {
+        for (int i = 0; i < group.renditions.size(); i++) {
+            if (delete(group.renditions.get(i), group.renditionAttrs.get(i).size(), bytes)) {
+                deleted.increment();
+                renditions.increment();
+            }
+        }
+    }
+
+    private boolean delete(Path file, long size, LongAdder bytes) {
+        try {
+            if (!Files.deleteIfExists(file)) return false;
+            bytes.add(size);
+            reclaimed.increment(size);
+            return true;
+        } catch (IOException e) {
+            log.warn("[IMAGES][GC] cannot delete {} : {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    private String key(Path file) {
+        return folder.relativize(file).toString().replace('\\', '/');
+    }
+
+    // "ab/cd/<sha256>.png" -> "ab/cd/<sha256>"
+    private static String baseName(String key) {
+        int dot = key.lastIndexOf('.');
+        return dot > key.lastIndexOf('/') + 1 ? key.substring(0, dot) : key;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Aperçus des images produits (LQIP) et couleur dominante
+ * -------------------------------------------------------
+ * - Calculés à l'upload sur le fichier temporaire (décodage sous-échantillonné : ~64 px lus, jamais l'image pleine),
+ *   recopiés sur Product (imagePlaceholder, imageColor) à l'enregistrement du produit.
+ * - Aperçu = PNG de app.images.placeholder-size px (côté le plus long) en data URI, ~300 octets : inliné dans la
+ *   grille du catalogue comme fond du cadre de l'image, aucune requête de plus, aucun JS.
+ * - Couleur dominante = moyenne de la case la plus peuplée d'un histogramme 4 bits par canal (pas la moyenne de
+ *   l'image, souvent un gris terne).
+ * - Au démarrage, les produits déjà en ligne sans aperçu sont traités (app.images.backfill).
+ * Métrique : image.placeholders (result = computed / skipped).
+ */
+@Service
+public class ImagePlaceholders {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagePlaceholders.class);
+
+    private static final int SAMPLE = 64;        // côté (px) visé par le sous-échantillonnage au décodage
+    private static final int REMEMBERED = 256;   // uploads récents en attente d'enregistrement du produit
+    private static final int BATCH = 100;
+
+    /** Aperçu (data URI) et couleur dominante ("#rrggbb"). */
+    public record Placeholder(String dataUri, String color) {}
+
+    private final BlobStore store;
+    private final ProductRepository products;
+    private final TransactionTemplate tx;
+    private final int size;
+    private final boolean backfill;
+    private final Counter computed;
+    private final Counter skipped;
+
+    // URL publique -> aperçu calculé à l'upload ; LRU, le produit est enregistré dans la foulée
+    private final Map<String, Placeholder> recent = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Placeholder> eldest) {
+                    return size() > REMEMBERED;
+                }
+            });
+
+    public ImagePlaceholders(BlobStore store,
+                             ProductRepository products,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.images.placeholder-size:12}") int size,
+                             @Value("${app.images.backfill:true}") boolean backfill,
+                             MeterRegistry meters) {
+        if (size < 1 || size > SAMPLE) {
+            throw new IllegalArgumentException("app.images.placeholder-size must be in [1, " + SAMPLE + "]");
+        }
+        this.store = store;
+        this.products = products;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.size = size;
+        this.backfill = backfill;
+        this.computed = meters.counter("image.placeholders", "result", "computed");
+        this.skipped = meters.counter("image.placeholders", "result", "skipped");
+    }
+
+    /** Calcule l'aperçu d'un fichier uploadé et le garde pour l'enregistrement du produit (ne lève jamais). */
+    public Optional<Placeholder> computeOnUpload(String publicUrl, Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            Optional<Placeholder> placeholder = compute(in);
+            placeholder.ifPresent(p -> recent.put(publicUrl, p));
+            return placeholder;
+        } catch (IOException | RuntimeException e) {
+            log.warn("[IMAGES][PLACEHOLDER] {} : {}", publicUrl, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Aperçu d'une image du stockage : calculé à l'upload si récent, sinon relu (vide si illisible ou externe). */
+    public Optional<Placeholder> of(String publicUrl) {
+        if (publicUrl == null || publicUrl.isBlank()) return Optional.empty();
+        Placeholder known = recent.get(publicUrl);
+        if (known != null) return Optional.of(known);
+        String key = store.keyOf(publicUrl).orElse(null);
+        if (key == null) return Optional.empty();
+        try (InputStream in = store.open(key)) {
+            return compute(in);
+        } catch (IOException | RuntimeException e) {
+            log.warn("[IMAGES][PLACEHOLDER] {} : {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Produits déjà en ligne sans aperçu (avant ce calcul à l'upload). */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!backfill) return;
+        Thread.ofVirtual().name("image-placeholders-backfill").start(this::backfill);
+    }
+
+    /** @return nombre de produits complétés */
+    public int backfill() {
+        int updated = 0;
+        String after = "";
+        for (List<String> urls; !(urls = products.findImageUrlsWithoutPlaceholderAfter(after, Limit.of(BATCH))).isEmpty(); ) {
+            for (String url : urls) {
+                Placeholder p = of(url).orElse(null);
+                if (p == null) continue;
+                Integer n = tx.execute(s -> products.setImagePlaceholder(url, p.dataUri(), p.color()));
+                updated += n == null ? 0 : n;
+            }
+            after = urls.get(urls.size() - 1);
+        }
+        if (updated > 0) log.info("[IMAGES][PLACEHOLDER] backfilled {} product(s)", updated);
+        return updated;
+    }
+
+    // -------- Helpers --------
+
+    private Optional<Placeholder> compute(InputStream stream) throws IOException {
+        BufferedImage sample = readSample(stream);
+        if (sample == null) {
+            skipped.increment();
+            return Optional.empty();
+        }
+        int w = sample.getWidth();
+        int h = sample.getHeight();
+        int tw = w >= h ? size : Math.max(1, Math.round((float) size * w / h));
+        int th = h > w ? size : Math.max(1, Math.round((float) size * h / w));
+        BufferedImage tiny = ImageRenditions.resize(sample, tw, th, false);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(512);
+        ImageIO.write(tiny, "png", png);
+        computed.increment();
+        return Optional.of(new Placeholder(
+                "data:image/png;base64," + Base64.getEncoder().encodeToString(png.toByteArray()),
+                dominantColor(sample)));
+    }
+
+    // Décodage sous-échantillonné (1 pixel sur n) : mémoire et temps bornés quelle que soit la taille de l'original
+    private static BufferedImage readSample(InputStream stream) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(stream)) {
+            if (in == null) return null;
+            var readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null; // WebP...
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / SAMPLE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return opaque(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Transparence aplatie sur blanc, comme les déclinaisons JPEG
+    private static BufferedImage opaque(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) return image;
+        BufferedImage flat = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        var g = flat.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, flat.getWidth(), flat.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return flat;
+    }
+
+    // Histogramme 16x16x16 ; moyenne des pixels de la case la plus peuplée
+    static String dominantColor(BufferedImage image) {
+        int[] count = new int[4096];
+        long[] r = new long[4096];
+        long[] g = new long[4096];
+        long[] b = new long[4096];
+        int best = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                int red = (rgb >> 16) & 0xFF, green = (rgb >> 8) & 0xFF, blue = rgb & 0xFF;
+                int bin = (red >> 4) << 8 | (green >> 4) << 4 | (blue >> 4);
+                count[bin]++;
+                r[bin] += red;
+                g[bin] += green;
+                b[bin] += blue;
+                if (count[bin] > count[best]) best = bin;
+            }
+        }
+        int n = Math.max(1, count[best]);
+        return String.format("#%02x%02x%02x", r[best] / n, g[best] / n, b[best] / n);
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.ecommerce.bll.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Déclinaisons redimensionnées des images produits (srcset)
+ * ---------------------------------------------------------
+ * - À l'upload, l'original est écrit tel quel puis les déclinaisons (app.images.widths, ex. 160/320/640/1280 px)
+ *   sont générées hors de la requête, sur des threads virtuels ; le CPU reste borné par un sémaphore
+ *   (app.images.max-concurrent, 0 = nombre de cœurs).
+ * - Rangées à côté de l'original dans le BlobStore : ab/cd/<sha256>-<largeur>w.jpg (.png si l'image a de la transparence).
+ *   Jamais d'agrandissement : une largeur >= à celle de l'original donne une seule déclinaison à sa largeur réelle.
+ * - Écriture dans un fichier temporaire (app.upload-dir) puis BlobStore.put : une déclinaison servie est toujours complète.
+ * - srcset(publicUrl) : déclinaisons présentes dans le stockage, mémorisées ; tant qu'elles ne sont pas prêtes
+ *   (ou format illisible par ImageIO, ex. WebP), srcset vide => la vue sert l'original. Un srcset vide n'est gardé
+ *   que app.images.empty-srcset-ttl : sur un stockage partagé, les déclinaisons d'une autre instance finissent par
+ *   apparaître ici aussi.
+ * - Les déclinaisons prêtes, l'original et elles passent à ImageTranscoder (variantes WebP / AVIF).
+ * - Au démarrage, les originaux sans déclinaison sont traités (app.images.backfill), ainsi que les familles
+ *   sans variante quand un encodeur est disponible.
+ * Métriques : image.renditions (result = generated / skipped / failed), image.renditions.duration.
+ */
+@Service
+public class ImageRenditions {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageRenditions.class);
+
+    private static final Pattern RENDITION = Pattern.compile("(.+)-(\\d+)w\\.(jpg|png)");
+    private static final String TMP_PREFIX = ".rendition-";
+
+    private record Rendition(int width, String key) {}
+
+    /** srcset mémorisé ; expiresAt = System.nanoTime() limite (Long.MAX_VALUE : définitif). */
+    private record Srcset(String value, long expiresAt) {}
+
+    private final Path folder;
+    private final BlobStore store;
+    private final ImageTranscoder transcoder;
+    private final List<Integer> widths;
+    private final float jpegQuality;
+    private final long maxPixels;
+    private final boolean backfill;
+    private final long emptySrcsetTtlNanos;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Srcset> srcsets = new ConcurrentHashMap<>();
+
+    private final Counter generated;
+    private final Counter skipped;
+    private final Counter failed;
+    private final Timer duration;
+
+    public ImageRenditions(@Value("${app.upload-dir}") String uploadDir,
+                           @Value("${app.images.widths:160,320,640,1280}") List<Integer> widths,
+                           @Value("${app.images.jpeg-quality:0.82}") float jpegQuality,
+                           @Value("${app.images.max-pixels:40000000}") long maxPixels,
+                           @Value("${app.images.max-concurrent:0}") int maxConcurrent,
+                           @Value("${app.images.backfill:true}") boolean backfill,
+                           @Value("${app.images.empty-srcset-ttl:PT1M}") Duration emptySrcsetTtl,
+                           BlobStore store,
+                           ImageTranscoder transcoder,
+                           MeterRegistry meters) {
+        if (widths.isEmpty() || widths.stream().anyMatch(w -> w < 1)) {
+            throw new IllegalArgumentException("Invalid app.images.widths " + widths);
+        }
+        if (!(jpegQuality > 0 && jpegQuality <= 1)) {
+            throw new IllegalArgumentException("app.images.jpeg-quality must be in ]0, 1]");
+        }
+        this.folder = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.store = store;
+        this.transcoder = transcoder;
+        this.widths = widths.stream().distinct().sorted(Comparator.reverseOrder()).toList();
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+        this.backfill = backfill;
+        this.emptySrcsetTtlNanos = emptySrcsetTtl.toNanos();
+        this.permits = new Semaphore(maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors());
+
+        this.generated = meters.counter("image.renditions", "result", "generated");
+        this.skipped = meters.counter("image.renditions", "result", "skipped");
+        this.failed = meters.counter("image.renditions", "result", "failed");
+        this.duration = Timer.builder("image.renditions.duration")
+                .description("Décodage + redimensionnement + écriture des déclinaisons d'une image")
+                .register(meters);
+    }
+
+    /**
+     * Lance la génération des déclinaisons de l'original puis de leurs variantes (asynchrone, ne lève jamais).
+     * @return largeurs générées (vide si format non lisible ou échec), une fois les variantes écrites
+     */
+    public CompletableFuture<List<Integer>> generate(String key) {
+        return CompletableFuture.<List<Integer>>supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return List.of();
+            }
+            Timer.Sample sample = Timer.start();
+            try {
+                return render(key);
+            } catch (RuntimeException | IOException e) {
+                failed.increment();
+                log.warn("[IMAGES][RENDITIONS] {} failed : {}", key, e.getMessage());
+                return List.<Integer>of();
+            } finally {
+                sample.stop(duration);
+                permits.release();
+            }
+        }, executor).thenCompose(done -> done.isEmpty()
+                ? CompletableFuture.completedFuture(done)
+                : transcode(key).thenApply(n -> done));
+    }
+
+    /** srcset prêt à l'emploi ("/uploads/ab/cd/x-160w.jpg 160w, ..."), vide si aucune déclinaison. */
+    public String srcset(String publicUrl) {
+        if (publicUrl == null) return "";
+        Srcset cached = srcsets.get(publicUrl);
+        if (cached != null && System.nanoTime() - cached.expiresAt() < 0) return cached.value();
+        String key = store.keyOf(publicUrl).orElse(null);
+        if (key == null) return "";
+        try {
+            String srcset = format(list(key));
+            remember(publicUrl, srcset);
+            return srcset;
+        } catch (IOException e) {
+            log.warn("[IMAGES][RENDITIONS] cannot list {} : {}", key, e.getMessage());
+            return ""; // non mémorisé : nouvel essai à la prochaine vue
+        }
+    }
+
+    /** Supprime les déclinaisons et variantes d'un original (l'original lui-même reste à la charge de l'appelant). */
+    public void delete(String key) {
+        try {
+            for (String derived : derived(key)) {
+                store.delete(derived);
+            }
+        } catch (IOException e) {
+            log.warn("[IMAGES][RENDITIONS] cannot delete renditions of {} : {}", key, e.getMessage());
+        }
+        srcsets.remove(store.publicUrl(key));
+    }
+
+    /** Originaux déjà en ligne sans déclinaison (avant ce pipeline, ou génération interrompue). */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!backfill) return;
+        List<String> pending = new ArrayList<>();
+        List<List<String>> untranscoded = new ArrayList<>();
+        try {
+            if (Files.isDirectory(folder)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, TMP_PREFIX + "*")) {
+                    for (Path file : files) Files.deleteIfExists(file); // reste d'un arrêt pendant l'écriture
+                }
+            }
+            // Une seule énumération du stockage : originaux d'un côté, déclinaisons et variantes par base de l'autre
+            List<String> keys = store.list("");
+            Map<String, List<String>> rendered = new HashMap<>();
+            Set<String> transcoded = new HashSet<>();
+            for (String key : keys) {
+                Matcher v = ImageTranscoder.VARIANT.matcher(key);
+                if (v.matches()) {
+                    Matcher m = RENDITION.matcher(v.group(1));
+                    transcoded.add(m.matches() ? m.group(1) : baseName(v.group(1)));
+                    continue;
+                }
+                Matcher m = RENDITION.matcher(key);
+                if (m.matches()) rendered.computeIfAbsent(m.group(1), b -> new ArrayList<>()).add(key);
+            }
+            for (String key : keys) {
+                if (RENDITION.matcher(key).matches() || ImageTranscoder.VARIANT.matcher(key).matches()) continue;
+                String base = baseName(key);
+                List<String> family = rendered.get(base);
+                if (family == null) {
+                    pending.add(key);
+                } else if (transcoder.enabled() && !transcoded.contains(base)) {
+                    family.add(0, key);
+                    untranscoded.add(family);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[IMAGES][BACKFILL] cannot scan the image store : {}", e.getMessage());
+            return;
+        }
+        if (pending.isEmpty() && untranscoded.isEmpty()) return;
+        log.info("[IMAGES][BACKFILL] {} original(s) without renditions, {} without variants",
+                pending.size(), untranscoded.size());
+        // Une image à la fois : le rattrapage ne prend jamais plus d'un cœur aux requêtes et aux uploads
+        executor.execute(() -> {
+            pending.forEach(key -> generate(key).join());
+            untranscoded.forEach(family -> transcoder.transcode(family).join());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // -------- Helpers --------
+
+    private List<Integer> render(String key) throws IOException {
+        BufferedImage source = read(key);
+        if (source == null) {
+            skipped.increment();
+            return List.of();
+        }
+        boolean alpha = source.getColorModel().hasAlpha();
+        String ext = alpha ? "png" : "jpg";
+        String base = baseName(key);
+
+        // Du plus large au plus étroit : chaque déclinaison sert de source à la suivante (moins de pixels à lire)
+        List<Integer> done = new ArrayList<>();
+        BufferedImage current = source;
+        boolean capped = false;
+        for (int width : widths) {
+            if (width >= source.getWidth()) {
+                if (capped) continue;
+                capped = true; // une seule déclinaison à la largeur de l'original
+                width = source.getWidth();
+            }
+            int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+            current = resize(current, width, height, alpha);
+            write(current, base + "-" + width + "w." + ext, ext);
+            done.add(width);
+        }
+        remember(store.publicUrl(key), format(list(key)));
+        generated.increment();
+        log.debug("[IMAGES][RENDITIONS] {} -> {}", key, done);
+        return done;
+    }
+
+    // Déclinaisons pas encore prêtes (ou générées par une autre instance) : srcset vide gardé peu de temps
+    private void remember(String publicUrl, String srcset) {
+        long expiresAt = srcset.isEmpty() ? System.nanoTime() + emptySrcsetTtlNanos : Long.MAX_VALUE;
+        srcsets.put(publicUrl, new Srcset(srcset, expiresAt));
+    }
+
+    // null si aucun lecteur ImageIO (WebP...) ; refuse les images démesurées avant de les décoder
+    private BufferedImage read(String key) throws IOException {
+        try (InputStream stream = store.open(key);
+             ImageInputStream in = ImageIO.createImageInputStream(stream)) {
+            if (in == null) return null;
+            var readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("image too large (" + pixels + " px)");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Réduction par moitiés successives en bilinéaire : qualité proche du bicubique, bien plus rapide
+    static BufferedImage resize(BufferedImage source, int width, int height, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private void write(BufferedImage image, String key, String ext) throws IOException {
+        Files.createDirectories(folder);
+        Path tmp = Files.createTempFile(folder, TMP_PREFIX, "." + ext);
+        try {
+            if ("jpg".equals(ext)) {
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+                try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(jpegQuality);
+                    writer.setOutput(out);
+                    writer.write(null, new IIOImage(image, null, null), param);
+                } finally {
+                    writer.dispose();
+                }
+            } else if (!ImageIO.write(image, ext, tmp.toFile())) {
+                throw new IOException("no ImageIO writer for " + ext);
+            }
+            store.put(key, tmp, "jpg".equals(ext) ? "image/jpeg" : "image/png");
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Original + déclinaisons, vers ImageTranscoder
+    private CompletableFuture<Integer> transcode(String key) {
+        if (!transcoder.enabled()) return CompletableFuture.completedFuture(0);
+        List<String> family = new ArrayList<>();
+        family.add(key);
+        try {
+            list(key).forEach(r -> family.add(r.key()));
+        } catch (IOException e) {
+            log.warn("[IMAGES][TRANSCODE] cannot list {} : {}", key, e.getMessage());
+        }
+        return transcoder.transcode(family);
+    }
+
+    // Déclinaisons de l'original et variantes de l'un comme des autres
+    private List<String> derived(String key) throws IOException {
+        String base = baseName(key);
+        List<String> found = new ArrayList<>();
+        for (String candidate : store.list(base)) {
+            Matcher v = ImageTranscoder.VARIANT.matcher(candidate);
+            String source = v.matches() ? v.group(1) : candidate;
+            Matcher m = RENDITION.matcher(source);
+            boolean ofKey = source.equals(key) ? !candidate.equals(key) : m.matches() && m.group(1).equals(base);
+            if (ofKey) found.add(candidate);
+        }
+        return found;
+    }
+
+    private List<Rendition> list(String key) throws IOException {
+        String base = baseName(key);
+        List<Rendition> found = new ArrayList<>();
+        for (String candidate : store.list(base + "-")) {
+            Matcher m = RENDITION.matcher(candidate);
+            if (m.matches() && m.group(1).equals(base)) {
+                found.add(new Rendition(Integer.parseInt(m.group(2)), candidate));
+            }
+        }
+        found.sort(Comparator.comparingInt(Rendition::width));
+        return found;
+    }
+
+    private String format(List<Rendition> renditions) {
+        return renditions.stream()
+                .map(r -> store.publicUrl(r.key()) + " " + r.width() + "w")
+                .collect(Collectors.joining(", "));
+    }
+
+    // "ab/cd/<sha256>.png" -> "ab/cd/<sha256>"
+    private static String baseName(String key) {
+        int dot = key.lastIndexOf('.');
+        return dot > key.lastIndexOf('/') + 1 ? key.substring(0, dot) : key;
+    }
+}
@@ -6,8 +6,8 @@ import java.io.IOException;
 
 /**
  * Service de stockage d'images.
- * - Enregistre un fichier image sur le disque (dans le dossier uploads/ de l'app).
- * - Retourne un chemin PUBLIC (ex: "/uploads/uuid.png") à stocker en base et utiliser dans les vues.
+ * - Enregistre un fichier image dans le stockage configuré (BlobStore : dossier uploads/ ou bucket S3).
+ * - Retourne une URL PUBLIQUE (ex: "/uploads/ab/cd/<sha256>.png") à stocker en base et utiliser dans les vues.
  * - (Optionnel) Supprime une ancienne image si on en remplace une.
  */
 public interface ImageStorageService {
@@ -16,14 +16,14 @@ public interface ImageStorageService {
      * Sauvegarde l'image fournie et renvoie le chemin public accessible par le navigateur.
      * @param file                 le fichier image uploadé (depuis un formulaire multipart)
      * @param oldPublicPathIfAny   (optionnel) l'ancien chemin public à supprimer si on remplace l'image
-     * @return chemin public commençant par "/uploads/..." (à stocker côté Product.imagePath)
-     * @throws IOException en cas d'erreur d'écriture disque
+     * @return URL publique ("/uploads/..." ou URL du bucket, à stocker côté Product.imageUrl)
+     * @throws IOException en cas d'erreur d'écriture
      */
     String saveImage(MultipartFile file, String oldPublicPathIfAny) throws IOException;
 
     /**
-     * Supprime une image existante si elle appartient à notre dossier /uploads.
-     * @param publicPath chemin public commençant par "/uploads/...".
+     * Supprime une image existante si elle appartient au stockage (URL publique du BlobStore).
+     * @param publicPath URL publique renvoyée par saveImage (les autres sont ignorées).
      */
     void deleteIfOwned(String publicPath);
 }
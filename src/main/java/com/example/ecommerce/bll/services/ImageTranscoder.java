@@ -0,0 +1,244 @@
+package com.example.ecommerce.bll.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Variantes WebP / AVIF des images produits
+ * -----------------------------------------
+ * - Après les déclinaisons, l'original et chaque déclinaison JPEG / PNG sont ré-encodés par un encodeur externe
+ *   (cwebp, avifenc : app.images.transcode.<format>.command, {in} {out} {quality} remplacés) sans métadonnées
+ *   (EXIF, XMP, ICC) : ab/cd/<sha256>-320w.jpg -> ab/cd/<sha256>-320w.jpg.webp.
+ * - Une variante pas plus légère que sa source est abandonnée (PNG déjà optimisés, petites icônes...).
+ * - Pool borné (app.images.transcode.threads / queue-capacity) : file pleine => lot abandonné, repris au prochain
+ *   démarrage par le rattrapage d'ImageRenditions ; un encodeur absent du PATH désactive son format.
+ * - Servies par MediaController selon l'en-tête Accept (avif > webp > original).
+ * Métriques : image.transcode (format, result = encoded / larger / failed ; dropped), image.transcode.saved (octets
+ * gagnés par image), image.transcode.duration (format).
+ */
+@Service
+public class ImageTranscoder {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageTranscoder.class);
+
+    /** Variante : clé de la source (JPEG / PNG) suivie du format cible. */
+    public static final Pattern VARIANT = Pattern.compile("(.+\\.(jpg|png))\\.(webp|avif)");
+    private static final Pattern SOURCE = Pattern.compile(".+\\.(jpg|png)");
+    private static final String TMP_PREFIX = ".transcode-";
+
+    private record Format(String name, String contentType, List<String> command, int quality,
+                          Counter encoded, Counter larger, Counter failed,
+                          DistributionSummary saved, Timer duration) {}
+
+    private final Path folder;
+    private final BlobStore store;
+    private final Duration timeout;
+    private final List<Format> formats = new ArrayList<>();
+    private final ThreadPoolExecutor workers;
+    private final Counter dropped;
+
+    public ImageTranscoder(@Value("${app.upload-dir}") String uploadDir,
+                           @Value("${app.images.transcode.webp.enabled:true}") boolean webp,
+                           @Value("${app.images.transcode.webp.command:cwebp -quiet -metadata none -q {quality} {in} -o {out}}") String webpCommand,
+                           @Value("${app.images.transcode.webp.quality:80}") int webpQuality,
+                           @Value("${app.images.transcode.avif.enabled:false}") boolean avif,
+                           @Value("${app.images.transcode.avif.command:avifenc --ignore-exif --ignore-xmp --ignore-icc -q {quality} {in} {out}}") String avifCommand,
+                           @Value("${app.images.transcode.avif.quality:60}") int avifQuality,
+                           @Value("${app.images.transcode.threads:1}") int threads,
+                           @Value("${app.images.transcode.queue-capacity:100}") int queueCapacity,
+                           @Value("${app.images.transcode.timeout:PT30S}") Duration timeout,
+                           BlobStore store,
+                           MeterRegistry meters) {
+        if (threads < 1) throw new IllegalArgumentException("app.images.transcode.threads must be >= 1");
+        this.folder = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.store = store;
+        this.timeout = timeout;
+        if (avif) add("avif", "image/avif", avifCommand, avifQuality, meters);
+        if (webp) add("webp", "image/webp", webpCommand, webpQuality, meters);
+
+        AtomicInteger n = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "image-transcode-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY); // encodage = CPU pur : les requêtes passent d'abord
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.dropped = meters.counter("image.transcode", "format", "all", "result", "dropped");
+    }
+
+    /** Au moins un format actif (encodeur trouvé). */
+    public boolean enabled() {
+        return !formats.isEmpty();
+    }
+
+    /** Formats actifs, du préféré au moins préféré ("avif", "webp"). */
+    public List<String> formats() {
+        return formats.stream().map(Format::name).toList();
+    }
+
+    /**
+     * Encode les sources JPEG / PNG dans chaque format actif (asynchrone, ne lève jamais).
+     * @return nombre de variantes écrites (0 si pool saturé ou rien à faire)
+     */
+    public CompletableFuture<Integer> transcode(List<String> keys) {
+        List<String> sources = keys.stream().filter(k -> SOURCE.matcher(k).matches()).toList();
+        if (formats.isEmpty() || sources.isEmpty()) return CompletableFuture.completedFuture(0);
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                int written = 0;
+                for (String key : sources) written += encode(key);
+                return written;
+            }, workers);
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            log.warn("[IMAGES][TRANSCODE] queue full, {} dropped (retried at next startup)", sources.get(0));
+            return CompletableFuture.completedFuture(0);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // -------- Helpers --------
+
+    private void add(String name, String contentType, String command, int quality, MeterRegistry meters) {
+        List<String> argv = List.of(command.trim().split("\\s+"));
+        if (argv.get(0).isEmpty() || !onPath(argv.get(0))) {
+            log.info("[IMAGES][TRANSCODE] {} disabled : '{}' not found", name, argv.get(0));
+            return;
+        }
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("app.images.transcode." + name + ".quality must be in [0, 100]");
+        }
+        formats.add(new Format(name, contentType, argv, quality,
+                meters.counter("image.transcode", "format", name, "result", "encoded"),
+                meters.counter("image.transcode", "format", name, "result", "larger"),
+                meters.counter("image.transcode", "format", name, "result", "failed"),
+                DistributionSummary.builder("image.transcode.saved").baseUnit("bytes").tag("format", name)
+                        .description("Octets gagnés par la variante par rapport à sa source")
+                        .register(meters),
+                Timer.builder("image.transcode.duration").tag("format", name)
+                        .description("Encodage d'une image (processus externe)")
+                        .register(meters)));
+    }
+
+    // Une source, tous les formats : copiée une fois en local (le BlobStore peut être distant)
+    private int encode(String key) {
+        Path in = null;
+        int written = 0;
+        try {
+            Files.createDirectories(folder);
+            in = Files.createTempFile(folder, TMP_PREFIX, key.substring(key.lastIndexOf('.')));
+            try (InputStream source = store.open(key)) {
+                Files.copy(source, in, StandardCopyOption.REPLACE_EXISTING);
+            }
+            long sourceSize = Files.size(in);
+            for (Format format : formats) {
+                if (encode(key, in, sourceSize, format)) written++;
+            }
+        } catch (IOException e) {
+            log.warn("[IMAGES][TRANSCODE] {} : {}", key, e.getMessage());
+        } finally {
+            deleteQuietly(in);
+        }
+        return written;
+    }
+
+    private boolean encode(String key, Path in, long sourceSize, Format format) {
+        Path out = null;
+        Timer.Sample sample = Timer.start();
+        try {
+            out = Files.createTempFile(folder, TMP_PREFIX, "." + format.name());
+            run(format, in, out);
+            long size = Files.size(out);
+            if (size == 0 || size >= sourceSize) {
+                format.larger().increment();
+                log.debug("[IMAGES][TRANSCODE] {} {} not smaller ({} >= {})", key, format.name(), size, sourceSize);
+                return false;
+            }
+            store.put(key + "." + format.name(), out, format.contentType());
+            format.encoded().increment();
+            format.saved().record(sourceSize - size);
+            log.debug("[IMAGES][TRANSCODE] {} {} {} -> {} bytes", key, format.name(), sourceSize, size);
+            return true;
+        } catch (IOException e) {
+            format.failed().increment();
+            log.warn("[IMAGES][TRANSCODE] {} {} failed : {}", key, format.name(), e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            sample.stop(format.duration());
+            deleteQuietly(out);
+        }
+    }
+
+    private void run(Format format, Path in, Path out) throws IOException, InterruptedException {
+        List<String> argv = format.command().stream()
+                .map(a -> a.replace("{in}", in.toString())
+                        .replace("{out}", out.toString())
+                        .replace("{quality}", Integer.toString(format.quality())))
+                .toList();
+
+        Process process = new ProcessBuilder(argv)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("timed out after " + timeout.toSeconds() + " s");
+        }
+        if (process.exitValue() != 0) throw new IOException("exit code " + process.exitValue());
+    }
+
+    // Exécutable : chemin explicite ou recherché dans le PATH
+    private static boolean onPath(String executable) {
+        if (executable.contains(File.separator)) return Files.isExecutable(Paths.get(executable));
+        String path = System.getenv("PATH");
+        if (path == null) return false;
+        for (String dir : path.split(File.pathSeparator)) {
+            if (!dir.isEmpty() && Files.isExecutable(Paths.get(dir, executable))) return true;
+        }
+        return false;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // temporaire : repris par le GC des images
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.utils.TimerWheel;
+import com.example.ecommerce.dal.repositories.StockRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registre de réservations de stock (en mémoire)
+ * ----------------------------------------------
+ * - Le checkout pose un "hold" temporaire par commande : disponible = stock DB - holds actifs.
+ *   Aucune écriture ni verrou en base pendant que le client est sur la page Stripe.
+ * - Chaque produit suivi garde un instantané du stock DB (onHand) et le total réservé (held),
+ *   mis à jour par CAS : pas de verrou, pas de survente entre holds concurrents.
+ * - Les échéances sont gérées par une TimerWheel ; à expiration, un {@link HoldExpired} est publié
+ *   (l'OrderService passe alors la commande en EXPIRED).
+ * - Réconciliation périodique : onHand est relu en base (modifs admin, autres nœuds).
+ *   La base reste l'arbitre final : la confirmation décrémente le stock par UPDATE conditionnel.
+ * - confirm : le hold est consommé, le stock DB a été décrémenté par l'appelant.
+ */
+@Service
+public class InventoryLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLedger.class);
+
+    /** Événement publié quand un hold arrive à échéance sans confirmation. */
+    public record HoldExpired(Long orderId) {}
+
+    private record Hold(Long orderId, Map<Long, Integer> quantities, Instant expiresAt) {}
+
+    /** État d'un produit : instantané DB + quantité réservée. */
+    private static final class ProductStock {
+        final AtomicInteger onHand;
+        final AtomicInteger held = new AtomicInteger();
+        ProductStock(int onHand) { this.onHand = new AtomicInteger(onHand); }
+    }
+
+    private final StockRepository stock;
+    private final ApplicationEventPublisher events;
+    private final ConcurrentHashMap<Long, ProductStock> products = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final TimerWheel<Long> wheel;
+
+    public InventoryLedger(StockRepository stock,
+                           ApplicationEventPublisher events,
+                           @Value("${app.inventory.wheel-tick:PT1S}") Duration wheelTick) {
+        this.stock = stock;
+        this.events = events;
+        this.wheel = new TimerWheel<>("inventory-holds", wheelTick, 512, this::onDeadline);
+    }
+
+    /**
+     * Pose un hold (tout ou rien) pour la commande.
+     * @return l'id du premier produit indisponible, ou null si tout est réservé
+     */
+    public Long hold(Long orderId, Map<Long, Integer> quantities, Duration ttl) {
+        track(quantities.keySet());
+        var sorted = new TreeMap<>(quantities);
+        var taken = new ArrayList<Map.Entry<Long, Integer>>();
+        for (var e : sorted.entrySet()) {
+            if (!tryTake(products.get(e.getKey()), e.getValue())) {
+                taken.forEach(t -> products.get(t.getKey()).held.addAndGet(-t.getValue()));
+                return e.getKey();
+            }
+            taken.add(e);
+        }
+        holds.put(orderId, new Hold(orderId, Map.copyOf(quantities), Instant.now().plus(ttl)));
+        wheel.schedule(orderId, ttl);
+        return null;
+    }
+
+    /** Recrée un hold existant (redémarrage) sans contrôle de disponibilité ; sans effet s'il est déjà présent. */
+    public void restore(Long orderId, Map<Long, Integer> quantities, Instant expiresAt) {
+        if (holds.containsKey(orderId)) return;
+        track(quantities.keySet());
+        quantities.forEach((pid, qty) -> products.get(pid).held.addAndGet(qty));
+        holds.put(orderId, new Hold(orderId, Map.copyOf(quantities), expiresAt));
+        wheel.schedule(orderId, Duration.between(Instant.now(), expiresAt));
+    }
+
+    /** Paiement confirmé : le hold est consommé (le stock DB a déjà été décrémenté). */
+    public void confirm(Long orderId) {
+        Hold h = holds.remove(orderId);
+        if (h == null) return;
+        h.quantities().forEach((pid, qty) -> {
+            var ps = products.get(pid);
+            if (ps == null) return;
+            ps.held.addAndGet(-qty);
+            ps.onHand.addAndGet(-qty); // en attendant la prochaine réconciliation
+        });
+    }
+
+    /** Annulation / expiration : les quantités redeviennent disponibles. */
+    public void release(Long orderId) {
+        Hold h = holds.remove(orderId);
+        if (h == null) return;
+        h.quantities().forEach((pid, qty) -> {
+            var ps = products.get(pid);
+            if (ps != null) ps.held.addAndGet(-qty);
+        });
+    }
+
+    /** Stock affichable : stock DB fourni par l'appelant moins les holds actifs. */
+    public int available(Long productId, int dbStock) {
+        var ps = products.get(productId);
+        int held = (ps == null) ? 0 : ps.held.get();
+        return Math.max(0, dbStock - held);
+    }
+
+    /** Met à jour l'instantané d'un produit (ex: stock modifié par l'admin). */
+    public void refresh(Long productId, int dbStock) {
+        var ps = products.get(productId);
+        if (ps != null) ps.onHand.set(dbStock);
+    }
+
+    /**
+     * Relit périodiquement le stock des produits suivis.
+     * Les entrées ne sont jamais retirées (sauf produit supprimé) : un hold concurrent
+     * pourrait sinon s'appliquer à une entrée orpheline.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.reconcile:PT30S}")
+    public void reconcile() {
+        if (products.isEmpty()) return;
+        var fresh = stock.currentStock(new ArrayList<>(products.keySet()));
+        products.forEach((pid, ps) -> {
+            Integer db = fresh.get(pid);
+            if (db == null) {
+                products.remove(pid, ps); // produit supprimé
+                return;
+            }
+            ps.onHand.set(db);
+            int held = ps.held.get();
+            if (held > db) {
+                log.warn("[INVENTORY][RECONCILE] pid={} held={} > stock={} (stock réduit en base ?)", pid, held, db);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        wheel.close();
+    }
+
+    // -------- Helpers --------
+
+    private void track(Set<Long> productIds) {
+        var missing = productIds.stream().filter(id -> !products.containsKey(id)).toList();
+        if (missing.isEmpty()) return;
+        stock.currentStock(missing).forEach((pid, db) -> products.putIfAbsent(pid, new ProductStock(db)));
+        for (Long pid : missing) {
+            if (!products.containsKey(pid)) throw new IllegalArgumentException("Product not found: " + pid);
+        }
+    }
+
+    private static boolean tryTake(ProductStock ps, int qty) {
+        while (true) {
+            int held = ps.held.get();
+            if (ps.onHand.get() - held < qty) return false;
+            if (ps.held.compareAndSet(held, held + qty)) return true;
+        }
+    }
+
+    private void onDeadline(Long orderId) {
+        Hold h = holds.get(orderId);
+        if (h == null) return; // déjà confirmé ou libéré
+        if (h.expiresAt().isAfter(Instant.now())) {
+            wheel.schedule(orderId, Duration.between(Instant.now(), h.expiresAt()));
+            return;
+        }
+        log.info("[INVENTORY][EXPIRE] order={} hold expired", orderId);
+        events.publishEvent(new HoldExpired(orderId));
+    }
+}
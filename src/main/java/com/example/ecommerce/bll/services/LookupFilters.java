@@ -0,0 +1,202 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.utils.BloomFilter;
+import com.example.ecommerce.bll.utils.IdBitmap;
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Filtres de rejet rapide (emails inscrits, produits existants)
+ * -------------------------------------------------------------
+ * But : une recherche négative (email libre à l'inscription, productId inventé par un bot) ne touche pas la base.
+ * - Emails : filtre de Bloom (taille et taux de faux positifs configurables) ; "absent" est sûr,
+ *   "peut-être présent" => vérification en base comme avant.
+ * - Produits : bitmap exact des ids (IDENTITY séquentiels) jusqu'au plus grand id vu à la reconstruction ;
+ *   au-dessus (produit créé depuis, ici ou sur une autre instance) => base, sauf id hors de la marge
+ *   (2 x max + 1024) : certainement inventé.
+ * - Tenus à jour à l'insertion / suppression par les services, reconstruits au démarrage puis périodiquement
+ *   (suppressions de comptes, écritures d'une autre instance). Pendant une reconstruction, les ajouts
+ *   vont dans l'ancien et le nouveau filtre.
+ * - Avant la première construction : aucun rejet (tout est "peut-être présent").
+ * Sécurité : l'unicité de l'email reste garantie par la contrainte uk_users_email.
+ * Métriques : lookup.filter.rejected / false_positive (filter = email / product), lookup.filter.memory (octets),
+ * lookup.filter.fpp (taux attendu du filtre emails).
+ */
+@Service
+public class LookupFilters {
+
+    private static final Logger log = LoggerFactory.getLogger(LookupFilters.class);
+
+    private static final long PRODUCT_ID_HEADROOM = 1024;
+
+    /** Bitmap exact pour les ids <= snapshotMax ; au-delà, seuls les ids créés ici y sont posés. */
+    private record ProductIds(IdBitmap ids, long snapshotMax) {}
+
+    private final UserRepository users;
+    private final ProductRepository products;
+    private final TransactionTemplate readTx;
+    private final long expectedEmails;
+    private final double emailFpp;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile BloomFilter emails;
+    private volatile BloomFilter rebuildingEmails;
+    private volatile ProductIds productIds;
+    private volatile IdBitmap rebuildingProductIds;
+
+    private final Counter emailRejected;
+    private final Counter emailFalsePositive;
+    private final Counter productRejected;
+    private final Counter productFalsePositive;
+
+    public LookupFilters(UserRepository users,
+                         ProductRepository products,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.lookup-filters.email.expected-insertions:100000}") long expectedEmails,
+                         @Value("${app.lookup-filters.email.fpp:0.01}") double emailFpp,
+                         MeterRegistry meters) {
+        this.users = users;
+        this.products = products;
+        this.readTx = new TransactionTemplate(transactionManager);
+        this.readTx.setReadOnly(true);
+        this.expectedEmails = expectedEmails;
+        this.emailFpp = emailFpp;
+        if (expectedEmails < 1 || !(emailFpp > 0 && emailFpp < 1)) {
+            throw new IllegalArgumentException("Invalid app.lookup-filters.email configuration");
+        }
+
+        this.emailRejected = meters.counter("lookup.filter.rejected", "filter", "email");
+        this.emailFalsePositive = meters.counter("lookup.filter.false_positive", "filter", "email");
+        this.productRejected = meters.counter("lookup.filter.rejected", "filter", "product");
+        this.productFalsePositive = meters.counter("lookup.filter.false_positive", "filter", "product");
+        Gauge.builder("lookup.filter.memory", this, f -> f.emails == null ? 0 : f.emails.memoryBytes())
+                .tag("filter", "email").baseUnit("bytes").register(meters);
+        Gauge.builder("lookup.filter.memory", this, f -> f.productIds == null ? 0 : f.productIds.ids().memoryBytes())
+                .tag("filter", "product").baseUnit("bytes").register(meters);
+        Gauge.builder("lookup.filter.fpp", this, f -> f.emails == null ? 0 : f.emails.expectedFpp())
+                .tag("filter", "email").register(meters);
+    }
+
+    // -------- Emails --------
+
+    /** false => email certainement pas inscrit (clé normalisée : trim + minuscules). */
+    public boolean mayBeRegistered(String email) {
+        BloomFilter filter = emails;
+        if (filter == null || filter.mightContain(UserDetailsCache.normalize(email))) return true;
+        emailRejected.increment();
+        return false;
+    }
+
+    public void emailRegistered(String email) {
+        String key = UserDetailsCache.normalize(email);
+        BloomFilter next = rebuildingEmails; // lu avant "emails" : aucun ajout perdu pendant la bascule
+        BloomFilter filter = emails;
+        if (filter != null) filter.put(key);
+        if (next != null) next.put(key);
+    }
+
+    /** Le filtre a répondu "peut-être" mais la base "non" (mesure du taux réel de faux positifs). */
+    public void emailFalsePositive() {
+        emailFalsePositive.increment();
+    }
+
+    // -------- Produits --------
+
+    /** false => produit certainement inexistant. */
+    public boolean mayExist(Long productId) {
+        if (productId == null || productId <= 0) {
+            productRejected.increment();
+            return false;
+        }
+        ProductIds known = productIds;
+        if (known == null) return true;
+        boolean mayExist = switch (known.ids().contains(productId)) {
+            case PRESENT -> true;
+            case ABSENT -> productId > known.snapshotMax(); // créé depuis la reconstruction ? => base
+            case UNKNOWN -> false;                          // bien au-delà de tout id attribué
+        };
+        if (!mayExist) productRejected.increment();
+        return mayExist;
+    }
+
+    public void productCreated(Long productId) {
+        IdBitmap next = rebuildingProductIds; // lu avant "productIds" (cf. emailRegistered)
+        ProductIds known = productIds;
+        if (known != null) known.ids().add(productId);
+        if (next != null) next.add(productId);
+    }
+
+    public void productDeleted(Long productId) {
+        IdBitmap next = rebuildingProductIds;
+        ProductIds known = productIds;
+        if (known != null) known.ids().remove(productId);
+        if (next != null) next.remove(productId);
+    }
+
+    public void productFalsePositive() {
+        productFalsePositive.increment();
+    }
+
+    // -------- Reconstruction --------
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.lookup-filters.rebuild:PT1H}",
+            initialDelayString = "${app.lookup-filters.rebuild:PT1H}")
+    public void rebuild() {
+        // Verrou explicite plutôt que synchronized : la reconstruction lit la base (I/O) et, sur un thread virtuel
+        // (profil "virtual", JDK < 24), un synchronized épinglerait le thread porteur pendant tout le parcours
+        rebuildLock.lock();
+        long started = System.nanoTime();
+        try {
+            long count = users.count();
+            var nextEmails = new BloomFilter(Math.max(expectedEmails, count * 2), emailFpp);
+            rebuildingEmails = nextEmails;
+            readTx.executeWithoutResult(s -> {
+                try (var stream = users.streamAllEmails()) {
+                    stream.forEach(e -> nextEmails.put(UserDetailsCache.normalize(e)));
+                }
+            });
+
+            long maxId = products.findMaxId().orElse(0L);
+            var nextIds = new IdBitmap(maxId * 2 + PRODUCT_ID_HEADROOM);
+            rebuildingProductIds = nextIds;
+            readTx.executeWithoutResult(s -> {
+                try (var stream = products.streamAllIds()) {
+                    stream.forEach(nextIds::add);
+                }
+            });
+
+            emails = nextEmails;
+            productIds = new ProductIds(nextIds, maxId);
+            log.info("[LOOKUP][REBUILD] emails={} ({} KiB, fpp={}) products={} ({} KiB) in {} ms",
+                    nextEmails.insertions(), nextEmails.memoryBytes() / 1024,
+                    String.format("%.4f", nextEmails.expectedFpp()),
+                    nextIds.cardinality(), nextIds.memoryBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            // On garde les filtres précédents (ou aucun filtre) : jamais de rejet sur des données douteuses
+            log.warn("[LOOKUP][REBUILD] failed : {}", e.getMessage());
+        } finally {
+            rebuildingEmails = null;
+            rebuildingProductIds = null;
+            rebuildLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.il.dto.OutboxMessage;
+import com.stripe.exception.StripeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+
+/**
+ * Remboursements (consommateur de l'outbox)
+ * -----------------------------------------
+ * - order.refund_required (paiement sans stock, ou payé après annulation / expiration) : rembourse le paiement
+ *   de la session Stripe puis passe la commande REFUND_REQUIRED -> REFUNDED.
+ * - Exécuté par l'{@link OutboxRelay}, hors requête : Stripe indisponible => exception => nouvel essai avec backoff.
+ * - Livraison "au moins une fois" : commande déjà REFUNDED ignorée, clé d'idempotence "refund-<id>" côté Stripe.
+ * - Aussi appelé directement par l'effacement de compte, avant de supprimer les commandes.
+ */
+@Service
+public class OrderRefunds {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderRefunds.class);
+
+    private static final String REFUND_REQUIRED = "order.refund_required";
+
+    private final OrderRepository orders;
+    private final StripeService stripe;
+    private final TransactionTemplate tx;
+
+    public OrderRefunds(OrderRepository orders, StripeService stripe, PlatformTransactionManager txManager) {
+        this.orders = orders;
+        this.stripe = stripe;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    @EventListener
+    public void onOutboxMessage(OutboxMessage message) {
+        if (!REFUND_REQUIRED.equals(message.type())) return;
+        refund(Long.valueOf(message.aggregateId()));
+    }
+
+    /**
+     * Rembourse une commande REFUND_REQUIRED puis la passe en REFUNDED ; sans effet dans tout autre statut.
+     * @throws IllegalStateException        refus de Stripe
+     * @throws StripeService.UnavailableException Stripe indisponible
+     */
+    public void refund(Long orderId) {
+        var order = orders.findById(orderId).orElse(null);
+        if (order == null || order.getStatus() != OrderStatus.REFUND_REQUIRED) return; // relivraison, compte effacé
+
+        try {
+            stripe.refund(order.getStripeSessionId(), "refund-" + orderId);
+        } catch (StripeException e) {
+            throw new IllegalStateException("Stripe refund failed for order " + orderId + ": " + e.getMessage(), e);
+        }
+        tx.executeWithoutResult(s -> orders.transition(orderId, OrderStatus.REFUND_REQUIRED, OrderStatus.REFUNDED, Instant.now()));
+        log.info("[ORDER][REFUND] order={} refunded", orderId);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.ecommerce.bll.services;
+
+/**
+ * Stock insuffisant pour un produit : hold refusé au checkout ou décrément impossible en base.
+ * Levée dans la transaction appelante : elle la fait rollback, aucun décrément partiel n'est commité.
+ */
+public class OutOfStockException extends IllegalStateException {
+
+    private final Long productId;
+
+    public OutOfStockException(Long productId) {
+        super("Insufficient stock for product " + productId);
+        this.productId = productId;
+    }
+
+    public Long productId() {
+        return productId;
+    }
+}
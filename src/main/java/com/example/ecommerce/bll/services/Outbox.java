@@ -0,0 +1,54 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.OutboxRepository;
+import com.example.ecommerce.dl.entities.OutboxEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Outbox transactionnelle (écriture)
+ * ----------------------------------
+ * - append : insère l'événement dans la transaction de l'appelant (MANDATORY) ; il n'existe que si
+ *   la modification (panier, commande) est commitée, et il est relayé même si l'application s'arrête juste après.
+ * - Aucun listener n'est appelé ici : l'{@link OutboxRelay} les déclenche hors de la requête utilisateur.
+ */
+@Service
+public class Outbox {
+
+    private final OutboxRepository repository;
+    private final ObjectMapper json;
+
+    public Outbox(OutboxRepository repository, ObjectMapper json) {
+        this.repository = repository;
+        this.json = json;
+    }
+
+    /**
+     * @param type        type d'événement ("order.placed", "cart.item_added"...)
+     * @param aggregateId identifiant de l'agrégat concerné
+     * @param payload     objet sérialisé en JSON (Map, record...)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String type, String aggregateId, Object payload) {
+        String body;
+        try {
+            body = json.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable outbox payload for " + type, e);
+        }
+        Instant now = Instant.now();
+        repository.save(OutboxEvent.builder()
+                .type(type)
+                .aggregateId(aggregateId)
+                .payload(body)
+                .attempts(0)
+                .availableAt(now)
+                .createdAt(now)
+                .build());
+    }
+}
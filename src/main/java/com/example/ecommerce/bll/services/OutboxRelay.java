@@ -0,0 +1,148 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.OutboxRepository;
+import com.example.ecommerce.dl.entities.OutboxEvent;
+import com.example.ecommerce.il.dto.OutboxMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Relais de l'outbox
+ * ------------------
+ * 1) Réclamation (transaction courte) : SELECT ... FOR UPDATE SKIP LOCKED des lignes dues, par lots,
+ *    puis "bail" (available_at repoussé) : plusieurs nœuds peuvent relayer sans se bloquer ni se doubler.
+ * 2) Diffusion hors transaction : chaque ligne est publiée comme {@link OutboxMessage} (événement Spring,
+ *    listeners synchrones via @EventListener).
+ * 3) Succès : la ligne est supprimée. Échec : nouvel essai avec backoff exponentiel, puis dead_at.
+ *    Crash entre 2) et 3) : le bail expire et la ligne est rediffusée => livraison "au moins une fois".
+ * Métriques : outbox.delivered / outbox.failed / outbox.dead (par type), outbox.lag (création -> livraison).
+ */
+@Service
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+    private static final int MAX_BATCHES_PER_POLL = 20;
+
+    private final OutboxRepository repository;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meters;
+    private final Timer lag;
+    private final Counter polls;
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.outbox.lease:PT5M}")
+    private Duration lease;
+
+    @Value("${app.outbox.retry-backoff:PT5S}")
+    private Duration retryBackoff;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    public OutboxRelay(OutboxRepository repository,
+                       ApplicationEventPublisher events,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meters) {
+        this.repository = repository;
+        this.events = events;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.meters = meters;
+        this.lag = Timer.builder("outbox.lag")
+                .description("Délai entre l'écriture d'un événement et sa livraison")
+                .publishPercentileHistogram()
+                .register(meters);
+        this.polls = meters.counter("outbox.polls");
+    }
+
+    /** Vide l'outbox par lots (borné par passage pour ne pas monopoliser le scheduler). */
+    @Scheduled(fixedDelayString = "${app.outbox.poll:PT1S}")
+    public int relay() {
+        polls.increment();
+        int delivered = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_POLL; i++) {
+            var batch = claim();
+            if (batch.isEmpty()) break;
+            delivered += dispatch(batch);
+            if (batch.size() < batchSize) break;
+        }
+        return delivered;
+    }
+
+    // -------- Helpers --------
+
+    /** Verrouille les lignes dues (SKIP LOCKED) et pose le bail, le tout dans une transaction courte. */
+    private List<OutboxEvent> claim() {
+        List<OutboxEvent> claimed = tx.execute(status -> {
+            Instant now = Instant.now();
+            List<Long> ids = repository.lockDue(now, batchSize);
+            if (ids.isEmpty()) return List.of();
+            repository.lease(ids, now.plus(lease));
+            return repository.findAllById(ids);
+        });
+        if (claimed == null || claimed.isEmpty()) return List.of();
+        var ordered = new ArrayList<>(claimed);
+        ordered.sort(Comparator.comparing(OutboxEvent::getId));
+        return ordered;
+    }
+
+    private int dispatch(List<OutboxEvent> batch) {
+        List<Long> done = new ArrayList<>(batch.size());
+        for (OutboxEvent e : batch) {
+            try {
+                events.publishEvent(new OutboxMessage(e.getId(), e.getType(), e.getAggregateId(),
+                        e.getPayload(), e.getCreatedAt(), e.getAttempts()));
+                done.add(e.getId());
+                lag.record(Duration.between(e.getCreatedAt(), Instant.now()));
+                meters.counter("outbox.delivered", "type", e.getType()).increment();
+            } catch (RuntimeException ex) {
+                fail(e, ex);
+            }
+        }
+        if (!done.isEmpty()) {
+            repository.deleteAllByIdInBatch(done);
+        }
+        return done.size();
+    }
+
+    private void fail(OutboxEvent e, RuntimeException ex) {
+        String error = ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        if (error.length() > 255) error = error.substring(0, 255);
+        String lastError = error;
+        if (e.getAttempts() >= maxAttempts) {
+            tx.executeWithoutResult(s -> repository.markDead(e.getId(), Instant.now(), lastError));
+            meters.counter("outbox.dead", "type", e.getType()).increment();
+            log.error("[OUTBOX][DEAD] id={} type={} after {} attempt(s) : {}", e.getId(), e.getType(), e.getAttempts(), lastError);
+            return;
+        }
+        Instant retryAt = Instant.now().plus(backoff(e.getAttempts()));
+        tx.executeWithoutResult(s -> repository.reschedule(e.getId(), retryAt, lastError));
+        meters.counter("outbox.failed", "type", e.getType()).increment();
+        log.warn("[OUTBOX][RETRY] id={} type={} attempt={} retry at {} : {}", e.getId(), e.getType(), e.getAttempts(), retryAt, lastError);
+    }
+
+    /** retryBackoff * 2^(tentative - 1), plafonné. */
+    private Duration backoff(int attempts) {
+        Duration d = retryBackoff.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 16));
+        return d.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : d;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Re-hash transparent des mots de passe
+ * -------------------------------------
+ * Après un login réussi avec un hash "périmé" (hash historique sans préfixe, coût bcrypt ou paramètres
+ * Argon2 inférieurs à la configuration), le mot de passe saisi est re-haché en arrière-plan :
+ * - le login n'attend pas ce second hachage ;
+ * - un seul re-hash en vol par compte, file bornée (au-delà : ignoré, réessayé au prochain login) ;
+ * - écriture conditionnelle (UPDATE ... WHERE password = ancien hash) : un changement de mot de passe
+ *   concurrent n'est jamais écrasé ; le cache des comptes est ensuite invalidé.
+ * Métrique : password.rehash (result = upgraded / stale / skipped / failed).
+ */
+@Service
+public class PasswordRehasher {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordRehasher.class);
+
+    private static final int QUEUE_CAPACITY = 256;
+
+    private final PasswordEncoder encoder;
+    private final UserRepository users;
+    private final UserDetailsCache userCache;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meters;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                var t = new Thread(r, "pwd-rehash");
+                t.setDaemon(true);
+                return t;
+            });
+
+    public PasswordRehasher(PasswordEncoder encoder,
+                            UserRepository users,
+                            UserDetailsCache userCache,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meters) {
+        this.encoder = encoder;
+        this.users = users;
+        this.userCache = userCache;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.meters = meters;
+    }
+
+    /** true si le hash stocké doit être refait avec l'algorithme / le coût configuré. */
+    public boolean needsRehash(String storedHash) {
+        return storedHash != null && encoder.upgradeEncoding(storedHash);
+    }
+
+    /**
+     * Programme le re-hash (après un login réussi : rawPassword vient d'être vérifié contre storedHash).
+     * Sans effet si un re-hash est déjà en cours pour ce compte ou si la file est pleine.
+     */
+    public void schedule(String email, String storedHash, String rawPassword) {
+        String key = UserDetailsCache.normalize(email);
+        if (!inFlight.add(key)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    rehash(key, storedHash, rawPassword);
+                } finally {
+                    inFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            meters.counter("password.rehash", "result", "skipped").increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // -------- Helpers --------
+
+    private void rehash(String email, String storedHash, String rawPassword) {
+        try {
+            String newHash = encoder.encode(rawPassword);
+            Integer updated = tx.execute(s -> users.replacePassword(email, storedHash, newHash));
+            if (updated != null && updated == 1) {
+                userCache.evict(email);
+                meters.counter("password.rehash", "result", "upgraded").increment();
+                log.info("[AUTH][REHASH][USER:{}] password hash upgraded", email);
+            } else {
+                meters.counter("password.rehash", "result", "stale").increment();
+            }
+        } catch (AuthenticationServiceException e) {
+            // Pool de hachage saturé : le login passe avant, on réessaiera au prochain login
+            meters.counter("password.rehash", "result", "skipped").increment();
+        } catch (RuntimeException e) {
+            meters.counter("password.rehash", "result", "failed").increment();
+            log.warn("[AUTH][REHASH][USER:{}] failed : {}", email, e.getMessage());
+        }
+    }
+}
@@ -1,53 +1,161 @@
 package com.example.ecommerce.bll.services;
 
+import com.example.ecommerce.bll.utils.CircuitBreaker;
 import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.RateLimitException;
 import com.stripe.exception.StripeException;
+import com.stripe.model.Refund;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.RefundCreateParams;
 import com.stripe.param.checkout.SessionCreateParams;
-import io.github.cdimascio.dotenv.Dotenv;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.*;
 
 /**
  * Service Stripe (Checkout Sessions)
- * - Initialise la clé secrète au démarrage
- * - Crée des sessions de paiement hébergées par Stripe
+ * - Initialise la clé secrète au démarrage (et l'URL de l'API si stripe.api-base est fourni : stub local, tests)
+ * - Crée des sessions de paiement hébergées par Stripe, les expire (annulation) et rembourse leur paiement
  * - Fabrique des LineItems à partir de tes produits (prix en centimes)
+ *
+ * Isolation des appels réseau :
+ * - Chaque appel part sur un executor de threads virtuels dédié ; l'appelant attend au plus stripe.timeout.
+ * - Bulkhead : au plus stripe.max-concurrent appels simultanés, les suivants sont refusés immédiatement.
+ * - Disjoncteur : après N échecs consécutifs (timeout, réseau, 5xx, 429), on échoue vite pendant open-duration.
+ *   Chaque sortie signale un verdict (onSuccess / onFailure) ou libère l'essai (release) : jamais bloqué en HALF_OPEN.
+ * - Refus / timeout / disjoncteur ouvert => {@link UnavailableException} (le checkout redirige vers ?error).
+ * - Latences publiées dans l'histogramme "stripe.calls" (tags op, outcome), refus dans "stripe.rejected".
  */
 @Service
 public class StripeService {
 
-    // Correspond à 'stripe.secret-key' dans application.yml
-    @Value("${stripe.secret-key}")
-    private String secretKey;
+    private static final Logger log = LoggerFactory.getLogger(StripeService.class);
 
-    @PostConstruct
-    public void init() {
+    /** Stripe injoignable, trop lent ou disjoncteur ouvert : l'appel n'a pas abouti. */
+    public static class UnavailableException extends IllegalStateException {
+        public UnavailableException(String message) { super(message); }
+    }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("stripe-", 0).factory());
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+    private final Duration timeout;
+    private final MeterRegistry meters;
+
+    public StripeService(@Value("${stripe.secret-key}") String secretKey,
+                         @Value("${stripe.api-base:}") String apiBase,
+                         @Value("${stripe.timeout:PT5S}") Duration timeout,
+                         @Value("${stripe.max-concurrent:32}") int maxConcurrent,
+                         @Value("${stripe.breaker.failure-threshold:5}") int failureThreshold,
+                         @Value("${stripe.breaker.open-duration:PT30S}") Duration openDuration,
+                         MeterRegistry meters) {
         if (secretKey == null || secretKey.isBlank()) {
             throw new IllegalStateException("Stripe secret key manquante (STRIPE_SECRET_KEY).");
         }
-        com.stripe.Stripe.apiKey = secretKey;
+        Stripe.apiKey = secretKey;
+        Stripe.overrideApiBase(apiBase == null || apiBase.isBlank() ? Stripe.LIVE_API_BASE : apiBase);
+        // Le SDK abandonne aussi de son côté : le thread virtuel ne reste pas bloqué après notre timeout
+        Stripe.setConnectTimeout((int) Math.min(timeout.toMillis(), Integer.MAX_VALUE));
+        Stripe.setReadTimeout((int) Math.min(timeout.toMillis(), Integer.MAX_VALUE));
+        Stripe.setMaxNetworkRetries(0);
+
+        this.timeout = timeout;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.breaker = new CircuitBreaker("stripe", failureThreshold, openDuration);
+        this.meters = meters;
+        Gauge.builder("stripe.breaker.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 si le disjoncteur Stripe est ouvert ou en essai")
+                .register(meters);
+        Gauge.builder("stripe.inflight", bulkhead, s -> maxConcurrent - s.availablePermits())
+                .register(meters);
     }
 
     /**
      * Crée une session Checkout hébergée par Stripe et renvoie l'objet Session.
      * Tu redirigeras ensuite l'utilisateur vers session.getUrl()
+     * @param clientReferenceId identifiant de notre commande (retrouvé dans le webhook)
+     * @param expiresAt         fin de validité de la session (alignée sur la réservation de stock)
+     * @param idempotencyKey    clé d'idempotence Stripe : un renvoi avec la même clé renvoie la même session
+     * @throws UnavailableException Stripe indisponible (timeout, bulkhead plein, disjoncteur ouvert)
      */
     public Session createCheckoutSession(List<SessionCreateParams.LineItem> lineItems,
                                          String successUrl,
-                                         String cancelUrl) throws StripeException {
+                                         String cancelUrl,
+                                         String clientReferenceId,
+                                         Instant expiresAt,
+                                         String idempotencyKey) throws StripeException {
 
         SessionCreateParams params = SessionCreateParams.builder()
                 .setMode(SessionCreateParams.Mode.PAYMENT)
                 .setSuccessUrl(successUrl)
                 .setCancelUrl(cancelUrl)
+                .setClientReferenceId(clientReferenceId)
+                .setExpiresAt(expiresAt.getEpochSecond())
                 .addAllLineItem(lineItems)
                 .build();
 
-        return Session.create(params);
+        RequestOptions options = RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+        return call("session.create", () -> Session.create(params, options));
+    }
+
+    /**
+     * Vérifie auprès de Stripe que la session Checkout a bien été payée
+     * (ne jamais se fier à la seule redirection vers success_url).
+     * @throws UnavailableException Stripe indisponible (timeout, bulkhead plein, disjoncteur ouvert)
+     */
+    public boolean isPaid(String sessionId) throws StripeException {
+        return "paid".equals(call("session.retrieve", () -> Session.retrieve(sessionId)).getPaymentStatus());
+    }
+
+    /**
+     * Expire une session Checkout encore ouverte : le client ne peut plus payer sur la page Stripe.
+     * @return true si la session est (désormais) expirée, false si elle est déjà payée
+     * @throws StripeException      session payée entre la lecture et l'expiration, ou refusée par Stripe
+     * @throws UnavailableException Stripe indisponible (timeout, bulkhead plein, disjoncteur ouvert)
+     */
+    public boolean expire(String sessionId) throws StripeException {
+        Session session = call("session.retrieve", () -> Session.retrieve(sessionId));
+        if (!"open".equals(session.getStatus())) {
+            return "expired".equals(session.getStatus());
+        }
+        return "expired".equals(call("session.expire", session::expire).getStatus());
+    }
+
+    /**
+     * Rembourse intégralement le paiement d'une session Checkout.
+     * @param idempotencyKey clé d'idempotence Stripe : un renvoi (livraison "au moins une fois") ne rembourse pas deux fois
+     * @throws StripeException      refus de Stripe (un paiement déjà remboursé n'est pas une erreur)
+     * @throws UnavailableException Stripe indisponible (timeout, bulkhead plein, disjoncteur ouvert)
+     */
+    public void refund(String sessionId, String idempotencyKey) throws StripeException {
+        Session session = call("session.retrieve", () -> Session.retrieve(sessionId));
+        if (session.getPaymentIntent() == null) {
+            throw new IllegalStateException("No payment to refund for session " + sessionId);
+        }
+        RefundCreateParams params = RefundCreateParams.builder()
+                .setPaymentIntent(session.getPaymentIntent())
+                .build();
+        RequestOptions options = RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+        try {
+            call("refund.create", () -> Refund.create(params, options));
+        } catch (InvalidRequestException e) {
+            // Clé d'idempotence expirée (24 h) et remboursement déjà fait : rien à refaire
+            if (!"charge_already_refunded".equals(e.getCode())) throw e;
+        }
     }
 
     /**
@@ -71,4 +179,94 @@ public class StripeService {
                 .setQuantity(quantity)
                 .build();
     }
+
+    public CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // -------- Isolation --------
+
+    @FunctionalInterface
+    private interface StripeCall<T> {
+        T run() throws StripeException;
+    }
+
+    private <T> T call(String op, StripeCall<T> body) throws StripeException {
+        if (!breaker.tryAcquire()) {
+            rejected(op, "breaker");
+            throw new UnavailableException("Stripe circuit open");
+        }
+        if (!bulkhead.tryAcquire()) {
+            // Pas un échec de Stripe : ne pas ouvrir le disjoncteur, mais relâcher un éventuel essai HALF_OPEN
+            breaker.release();
+            rejected(op, "bulkhead");
+            throw new UnavailableException("Too many concurrent Stripe calls");
+        }
+
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(body::run);
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            breaker.release();
+            throw new UnavailableException("Stripe executor shut down");
+        }
+        try {
+            T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            breaker.onSuccess();
+            record(op, "success", start);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            breaker.onFailure();
+            record(op, "timeout", start);
+            log.warn("[STRIPE][{}] timed out after {} ms", op, timeout.toMillis());
+            throw new UnavailableException("Stripe call timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            breaker.release(); // pas de verdict sur Stripe
+            Thread.currentThread().interrupt();
+            throw new UnavailableException("Interrupted while waiting for Stripe");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof StripeException se) {
+                if (isOutage(se)) breaker.onFailure(); else breaker.onSuccess(); // 4xx : Stripe répond bien
+                record(op, "error", start);
+                throw se;
+            }
+            breaker.onFailure();
+            record(op, "error", start);
+            throw new UnavailableException("Stripe call failed: " + cause);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /** Erreurs qui signalent un Stripe malade (et pas une requête invalide de notre part). */
+    private static boolean isOutage(StripeException e) {
+        Integer status = e.getStatusCode();
+        return e instanceof ApiConnectionException
+                || e instanceof RateLimitException
+                || (status != null && status >= 500);
+    }
+
+    private void record(String op, String outcome, long startNanos) {
+        Timer.builder("stripe.calls")
+                .description("Latence des appels à l'API Stripe")
+                .tag("op", op)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meters)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void rejected(String op, String reason) {
+        meters.counter("stripe.rejected", "op", op, "reason", reason).increment();
+    }
 }
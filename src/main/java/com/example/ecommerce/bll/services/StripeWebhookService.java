@@ -0,0 +1,246 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.StripeEventRepository;
+import com.example.ecommerce.dl.entities.StripeEvent;
+import com.example.ecommerce.dl.enums.StripeEventStatus;
+import com.example.ecommerce.il.interfaces.OrderService;
+import com.stripe.exception.EventDataObjectDeserializationException;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.model.StripeObject;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import com.stripe.net.Webhook;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingestion des webhooks Stripe
+ * -----------------------------
+ * 1) Réception (thread Tomcat) : vérification de signature puis INSERT conditionnel
+ *    dans stripe_events (clé = id d'événement Stripe). Rien d'autre : la réponse 2xx part aussitôt.
+ * 2) Traitement (pool borné) : claim RECEIVED -> PROCESSING (un seul worker par événement, avec un bail),
+ *    puis commande marquée payée / expirée via l'OrderService, dans une transaction.
+ *    Stock manquant au paiement : la commande passe en REFUND_REQUIRED et l'événement est traité (pas de rejeu).
+ * 3) File pleine ou échec : l'événement reste (ou revient) en RECEIVED et un balayage planifié le resoumet,
+ *    avec un backoff exponentiel sur le nombre de tentatives, jusqu'à max-attempts.
+ *    Worker ou nœud mort en cours de traitement : le claim est repris une fois son bail expiré, par n'importe
+ *    quel nœud ; un événement en cours sur un nœud vivant n'est jamais repris.
+ *    Les relivraisons Stripe sont absorbées par la clé primaire.
+ */
+@Service
+public class StripeWebhookService {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookService.class);
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(10);
+
+    private final StripeEventRepository events;
+    private final OrderService orderService;
+    private final TransactionTemplate tx;
+    private final ThreadPoolExecutor workers;
+    private final String webhookSecret;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration retryBackoff;
+    private final Duration lease;
+
+    public StripeWebhookService(StripeEventRepository events,
+                                OrderService orderService,
+                                PlatformTransactionManager txManager,
+                                @Value("${stripe.webhook-secret:}") String webhookSecret,
+                                @Value("${stripe.webhook.workers:4}") int workerCount,
+                                @Value("${stripe.webhook.queue-capacity:256}") int queueCapacity,
+                                @Value("${stripe.webhook.max-attempts:5}") int maxAttempts,
+                                @Value("${stripe.webhook.retry-sweep:PT30S}") Duration retryDelay,
+                                @Value("${stripe.webhook.retry-backoff:PT30S}") Duration retryBackoff,
+                                @Value("${stripe.webhook.lease:PT5M}") Duration lease) {
+        this.events = events;
+        this.orderService = orderService;
+        this.tx = new TransactionTemplate(txManager);
+        this.webhookSecret = webhookSecret;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.retryBackoff = retryBackoff;
+        this.lease = lease;
+
+        AtomicInteger n = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "stripe-webhook-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                // File pleine : l'événement est déjà en base, le balayage le reprendra
+                (r, pool) -> log.warn("[STRIPE][WEBHOOK] queue full, event deferred to retry sweep"));
+    }
+
+    /**
+     * Vérifie et enregistre un événement. Appelé sur le thread HTTP : aucun traitement métier ici.
+     * @return true si l'événement est nouveau, false s'il s'agit d'une relivraison
+     * @throws SignatureVerificationException signature absente, invalide ou trop ancienne
+     */
+    public boolean receive(String payload, String signatureHeader) throws SignatureVerificationException {
+        if (webhookSecret == null || webhookSecret.isBlank()) {
+            throw new IllegalStateException("Stripe webhook secret manquant (STRIPE_WEBHOOK_SECRET).");
+        }
+        Event event = Webhook.constructEvent(payload, signatureHeader, webhookSecret);
+
+        Boolean inserted;
+        try {
+            inserted = tx.execute(s -> {
+                Instant now = Instant.now();
+                // Repris par le balayage seulement s'il n'a pas été traité entre-temps (file pleine)
+                boolean fresh = events.insertIfAbsent(event.getId(), event.getType(), payload, now, now.plus(retryDelay)) == 1;
+                if (fresh) afterCommit(() -> submit(event.getId()));
+                return fresh;
+            });
+        } catch (DataIntegrityViolationException e) {
+            inserted = false; // livraison concurrente du même événement : l'autre a gagné
+        }
+        log.info("[STRIPE][WEBHOOK] event={} type={} {}", event.getId(), event.getType(),
+                Boolean.TRUE.equals(inserted) ? "stored" : "duplicate");
+        return Boolean.TRUE.equals(inserted);
+    }
+
+    /** Resoumet les événements RECEIVED arrivés à échéance (file pleine, échec précédent après backoff). */
+    @Scheduled(fixedDelayString = "${stripe.webhook.retry-sweep:PT30S}")
+    public void retryPending() {
+        requeueInFlight();
+        events.findDue(Instant.now(), Limit.of(100)).forEach(e -> submit(e.getId()));
+    }
+
+    /**
+     * Au démarrage puis à chaque balayage : les claims dont le bail a expiré (worker mort, nœud arrêté)
+     * repartent en file. Ceux d'un nœud vivant sont encore sous bail et restent PROCESSING.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void requeueInFlight() {
+        Integer requeued = tx.execute(s -> events.requeueExpired(Instant.now()));
+        if (requeued != null && requeued > 0) {
+            log.info("[STRIPE][WEBHOOK] {} in-flight event(s) requeued after lease expiry", requeued);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    // -------- Traitement (workers) --------
+
+    private void submit(String eventId) {
+        workers.execute(() -> process(eventId));
+    }
+
+    void process(String eventId) {
+        // 1) Claim dans sa propre transaction : la tentative est comptée même si le traitement échoue
+        StripeEvent claimed = tx.execute(s -> events.claim(eventId, Instant.now().plus(lease)) == 1
+                ? events.findById(eventId).orElse(null) : null);
+        if (claimed == null) return; // déjà traité ou pris par un autre worker
+
+        try {
+            tx.executeWithoutResult(s -> {
+                apply(ApiResource.GSON.fromJson(claimed.getPayload(), Event.class));
+                events.finish(eventId, StripeEventStatus.PROCESSED, null, Instant.now());
+            });
+        } catch (OutOfStockException ex) {
+            // Rien à rejouer : la commande est passée en REFUND_REQUIRED après le rollback
+            tx.executeWithoutResult(s -> events.finish(eventId, StripeEventStatus.PROCESSED,
+                    truncate(ex.getMessage()), Instant.now()));
+        } catch (RuntimeException ex) {
+            boolean giveUp = claimed.getAttempts() >= maxAttempts;
+            log.warn("[STRIPE][WEBHOOK] event={} attempt {} failed{} : {}", eventId, claimed.getAttempts(),
+                    giveUp ? " (giving up)" : "", ex.getMessage());
+            if (giveUp) {
+                tx.executeWithoutResult(s -> events.finish(eventId, StripeEventStatus.FAILED,
+                        truncate(ex.getMessage()), Instant.now()));
+            } else {
+                Instant retryAt = Instant.now().plus(backoff(claimed.getAttempts()));
+                tx.executeWithoutResult(s -> events.reschedule(eventId, truncate(ex.getMessage()), retryAt));
+            }
+        }
+    }
+
+    /** retryBackoff * 2^(tentative - 1), plafonné. */
+    private Duration backoff(int attempts) {
+        Duration d = retryBackoff.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 16));
+        return d.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : d;
+    }
+
+    private void apply(Event event) {
+        switch (event.getType()) {
+            case "checkout.session.completed", "checkout.session.async_payment_succeeded" -> {
+                Session session = sessionOf(event);
+                if ("paid".equals(session.getPaymentStatus())) {
+                    orderService.markPaid(orderIdOf(session), session.getId());
+                }
+            }
+            case "checkout.session.expired", "checkout.session.async_payment_failed" -> {
+                Session session = sessionOf(event);
+                orderService.markExpired(orderIdOf(session), session.getId());
+            }
+            default -> log.debug("[STRIPE][WEBHOOK] event={} type={} ignored", event.getId(), event.getType());
+        }
+    }
+
+    private static Session sessionOf(Event event) {
+        var deserializer = event.getDataObjectDeserializer();
+        StripeObject object = deserializer.getObject().orElse(null);
+        if (object == null) {
+            // Version d'API de l'événement différente de celle du SDK : désérialisation "best effort"
+            try {
+                object = deserializer.deserializeUnsafe();
+            } catch (EventDataObjectDeserializationException e) {
+                throw new IllegalStateException("Unreadable event data: " + e.getMessage(), e);
+            }
+        }
+        if (!(object instanceof Session session)) {
+            throw new IllegalStateException("Unexpected event object: " + object.getClass().getSimpleName());
+        }
+        return session;
+    }
+
+    private static Long orderIdOf(Session session) {
+        try {
+            return Long.valueOf(session.getClientReferenceId());
+        } catch (NumberFormatException e) {
+            return null; // session créée hors de notre checkout
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() <= 255 ? message : message.substring(0, 255);
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
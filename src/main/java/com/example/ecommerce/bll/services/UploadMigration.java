@@ -0,0 +1,184 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.utils.ImageUploadWriter;
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.StoredImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Migration des uploads vers le BlobStore courant
+ * -----------------------------------------------
+ * Déplace les images encore servies depuis l'ancien dossier plat (/uploads/<uuid>.png, /uploads/<sha256>.png),
+ * ou depuis le dossier local quand le stockage est passé sur S3, vers la clé "ab/cd/<sha256>.ext".
+ * Lancement : java -jar app.jar --migrate-uploads (l'application démarre et sert normalement pendant la migration).
+ * Par URL, en lots de app.storage.migration.batch-size URL (pagination par clé sur products.image_url) :
+ *   1) copie (empreinte + signature en une passe) puis BlobStore.put — l'ancien fichier reste servi ;
+ *   2) une transaction : UPDATE products SET image_url = nouvelle WHERE image_url = ancienne,
+ *      compteur stored_images de la nouvelle clé += produits repointés, ligne de l'ancienne clé supprimée ;
+ *   3) ancien fichier et ses déclinaisons supprimés ; déclinaisons de la nouvelle clé générées avant l'URL suivante
+ *      (une image à la fois, comme le rattrapage : la migration ne prend jamais plus d'un cœur).
+ * Rejouable : une URL déjà au bon format est ignorée, un arrêt en cours de lot reprend simplement au lancement suivant.
+ * Un fichier manquant ou illisible est journalisé et laissé tel quel.
+ * Métrique : image.migration (result = migrated / missing / failed).
+ */
+@Service
+public class UploadMigration implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadMigration.class);
+
+    public static final String OPTION = "migrate-uploads";
+    private static final String LOCAL_PREFIX = "/uploads/";
+
+    /** Bilan d'une exécution. */
+    public record Report(int migrated, int missing, int failed, long products) {}
+
+    private final BlobStore store;
+    private final ImageRenditions renditions;
+    private final ProductRepository products;
+    private final StoredImageRepository images;
+    private final TransactionTemplate tx;
+    private final Path folder;
+    private final int batchSize;
+    private final Counter migrated;
+    private final Counter missing;
+    private final Counter failed;
+
+    public UploadMigration(BlobStore store,
+                           ImageRenditions renditions,
+                           ProductRepository products,
+                           StoredImageRepository images,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.upload-dir}") String uploadDir,
+                           @Value("${app.storage.migration.batch-size:100}") int batchSize,
+                           MeterRegistry meters) {
+        if (batchSize < 1) throw new IllegalArgumentException("app.storage.migration.batch-size must be >= 1");
+        this.store = store;
+        this.renditions = renditions;
+        this.products = products;
+        this.images = images;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.folder = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.batchSize = batchSize;
+        this.migrated = meters.counter("image.migration", "result", "migrated");
+        this.missing = meters.counter("image.migration", "result", "missing");
+        this.failed = meters.counter("image.migration", "result", "failed");
+    }
+
+    /** --migrate-uploads : migration sur un thread à part, le démarrage n'attend pas. */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) return;
+        Thread.ofVirtual().name("upload-migration").start(this::migrate);
+    }
+
+    public Report migrate() {
+        log.info("[IMAGES][MIGRATION] start (batch size {})", batchSize);
+        int ok = 0, absent = 0, errors = 0;
+        long repointed = 0;
+        String after = "";
+        while (true) {
+            List<String> batch = products.findUploadUrlsAfter(after, Limit.of(batchSize));
+            if (batch.isEmpty()) break;
+            for (String url : batch) {
+                String relative = url.substring(LOCAL_PREFIX.length());
+                if (!BlobStore.isValidKey(relative)) continue;
+                if (BlobStore.CONTENT_KEY.matcher(relative).matches() && store.publicUrl(relative).equals(url)) {
+                    continue; // déjà à sa place
+                }
+                Path source = folder.resolve(relative);
+                if (!Files.isRegularFile(source)) {
+                    absent++;
+                    missing.increment();
+                    log.warn("[IMAGES][MIGRATION] {} : file not found, left as is", url);
+                    continue;
+                }
+                try {
+                    repointed += migrate(url, relative, source);
+                    ok++;
+                    migrated.increment();
+                } catch (IOException | RuntimeException e) {
+                    errors++;
+                    failed.increment();
+                    log.warn("[IMAGES][MIGRATION] {} failed : {}", url, e.getMessage());
+                }
+            }
+            after = batch.get(batch.size() - 1);
+            log.info("[IMAGES][MIGRATION] progress : {} migrated, {} missing, {} failed (up to {})", ok, absent, errors, after);
+        }
+        var report = new Report(ok, absent, errors, repointed);
+        log.info("[IMAGES][MIGRATION] done : {}", report);
+        return report;
+    }
+
+    // -------- Helpers --------
+
+    private long migrate(String url, String oldKey, Path source) throws IOException {
+        // 1) Copie : empreinte et type réel en une passe, puis dépôt sous la clé adressée par contenu
+        Path tmp = Files.createTempFile(folder, ".migrate-", ".tmp");
+        boolean created = false;
+        try {
+            ImageUploadWriter.Written written;
+            try (InputStream in = Files.newInputStream(source)) {
+                written = ImageUploadWriter.write(in, tmp, Long.MAX_VALUE);
+            }
+            String key = BlobStore.contentKey(written.sha256(), written.type().extension());
+            if (!store.exists(key)) {
+                store.put(key, tmp, written.type().mimeType());
+                created = true;
+            }
+
+            // 2) Produits repointés et compteurs, dans la même transaction
+            String newUrl = store.publicUrl(key);
+            long size = written.size();
+            Integer count = tx.execute(s -> {
+                int n = products.replaceImageUrl(url, newUrl);
+                if (oldKey.equals(key)) return n; // même clé (dossier local -> S3) : références déjà comptées
+                Instant now = Instant.now();
+                if (n > 0 && images.retain(key, n, now) == 0) images.insertIfAbsent(key, n, size, now);
+                images.deleteById(oldKey);
+                return n;
+            });
+            log.debug("[IMAGES][MIGRATION] {} -> {} ({} product(s))", url, newUrl, count);
+
+            // 3) Ancien fichier et ses déclinaisons (plus référencés), nouvelles déclinaisons
+            deleteLocal(source);
+            if (created) renditions.generate(key).join();
+            return count == null ? 0 : count;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void deleteLocal(Path original) throws IOException {
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        // Déclinaisons (et leurs variantes), puis variantes de l'original
+        try (DirectoryStream<Path> renditions = Files.newDirectoryStream(original.getParent(), base + "-*w.{jpg,png}*")) {
+            for (Path file : renditions) Files.deleteIfExists(file);
+        }
+        try (DirectoryStream<Path> variants = Files.newDirectoryStream(original.getParent(), name + ".{webp,avif}")) {
+            for (Path file : variants) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(original);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.ecommerce.bll.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache des comptes pour l'authentification
+ * -----------------------------------------
+ * - Clé = email normalisé (trim + minuscules) ; valeur = instantané (email, hash, rôle), jamais l'objet
+ *   UserDetails lui-même (Spring Security efface le mot de passe de l'instance renvoyée après login).
+ * - TTL court ; les emails inconnus sont aussi mémorisés (TTL plus court) pour absorber les rafales.
+ * - Lectures simultanées d'un même email : un seul accès base, les autres attendent le résultat.
+ * - Borné : au-delà de max-size, les entrées expirées sont purgées, sinon on lit la base sans mettre en cache.
+ * - evict : à appeler sur suppression de compte, changement de rôle ou de mot de passe
+ *   (immédiatement, puis à nouveau après commit pour écarter une relecture concurrente de l'ancienne valeur).
+ * Métriques : security.user.cache (result = hit / miss), security.user.cache.size.
+ */
+@Service
+public class UserDetailsCache {
+
+    /** Données nécessaires pour reconstruire un UserDetails. */
+    public record CachedUser(String email, String passwordHash, String role) {}
+
+    private record Entry(CompletableFuture<Optional<CachedUser>> value, Instant createdAt) {}
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public UserDetailsCache(@Value("${app.security.user-cache.ttl:PT1M}") Duration ttl,
+                            @Value("${app.security.user-cache.negative-ttl:PT10S}") Duration negativeTtl,
+                            @Value("${app.security.user-cache.max-size:10000}") int maxSize,
+                            MeterRegistry meters) {
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxSize = maxSize;
+        this.hits = meters.counter("security.user.cache", "result", "hit");
+        this.misses = meters.counter("security.user.cache", "result", "miss");
+        this.evictions = meters.counter("security.user.cache.evictions");
+        meters.gaugeMapSize("security.user.cache.size", Tags.empty(), entries);
+    }
+
+    public static String normalize(String email) {
+        return (email == null) ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Renvoie le compte en cache ou le charge via loader (appelé avec l'email normalisé).
+     * Une exception du loader est propagée et rien n'est mis en cache.
+     */
+    public Optional<CachedUser> get(String email, Function<String, Optional<CachedUser>> loader) {
+        String key = normalize(email);
+        Instant now = Instant.now();
+
+        Entry existing = entries.get(key);
+        if (existing != null && isFresh(existing, now)) {
+            hits.increment();
+            return join(existing.value());
+        }
+        misses.increment();
+        if (existing != null) entries.remove(key, existing);
+
+        if (entries.size() >= maxSize) {
+            purge();
+            if (entries.size() >= maxSize) return loader.apply(key); // plein : pas de mise en cache
+        }
+
+        var mine = new Entry(new CompletableFuture<>(), now);
+        Entry raced = entries.putIfAbsent(key, mine);
+        if (raced != null) {
+            return join(raced.value()); // chargement déjà en cours pour cet email
+        }
+        try {
+            var loaded = loader.apply(key);
+            mine.value().complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            entries.remove(key, mine);
+            mine.value().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Invalide l'entrée maintenant et, dans une transaction, une seconde fois après commit. */
+    public void evict(String email) {
+        String key = normalize(email);
+        if (entries.remove(key) != null) evictions.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entries.remove(key);
+                }
+            });
+        }
+    }
+
+    /** Purge des entrées expirées (aussi déclenchée quand le cache est plein). */
+    @Scheduled(fixedDelayString = "${app.security.user-cache.ttl:PT1M}")
+    public void purge() {
+        Instant now = Instant.now();
+        entries.values().removeIf(e -> !isFresh(e, now));
+    }
+
+    private boolean isFresh(Entry e, Instant now) {
+        var f = e.value();
+        if (!f.isDone()) return true; // chargement en cours
+        if (f.isCompletedExceptionally()) return false;
+        Duration life = f.join().isPresent() ? ttl : negativeTtl;
+        return e.createdAt().plus(life).isAfter(now);
+    }
+
+    private static Optional<CachedUser> join(CompletableFuture<Optional<CachedUser>> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+}
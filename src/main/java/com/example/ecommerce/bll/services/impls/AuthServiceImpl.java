@@ -1,9 +1,12 @@
 package com.example.ecommerce.bll.services.impls;
 
+import com.example.ecommerce.bll.services.LookupFilters;
+import com.example.ecommerce.bll.services.UserDetailsCache;
 import com.example.ecommerce.dal.repositories.UserRepository;
 import com.example.ecommerce.dl.entities.User;
 import com.example.ecommerce.dl.enums.Role;
 import com.example.ecommerce.il.interfaces.AuthService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,10 +19,15 @@ public class AuthServiceImpl implements AuthService {
 
     private final UserRepository users;
     private final PasswordEncoder encoder;
+    private final UserDetailsCache userCache;
+    private final LookupFilters lookupFilters;
 
-    public AuthServiceImpl(UserRepository users, PasswordEncoder encoder) {
+    public AuthServiceImpl(UserRepository users, PasswordEncoder encoder, UserDetailsCache userCache,
+                           LookupFilters lookupFilters) {
         this.users = users;
         this.encoder = encoder;
+        this.userCache = userCache;
+        this.lookupFilters = lookupFilters;
     }
 
     @Override
@@ -32,21 +40,37 @@ public class AuthServiceImpl implements AuthService {
         createUser(email, rawPassword, Role.ADMIN);
     }
 
+    private void validatePassword(String rawPassword) {
+        if (rawPassword == null || rawPassword.length() < 8) {
+            throw new IllegalArgumentException("Password must be at least 8 characters");
+        }
+    }
+
     private void createUser(String email, String rawPassword, Role role) {
         if (email == null || email.isBlank()) {
             throw new IllegalArgumentException("Email is required");
         }
-        if (rawPassword == null || rawPassword.length() < 8) {
-            throw new IllegalArgumentException("Password must be at least 8 characters");
-        }
-        if (users.existsByEmail(email)) {
-            throw new IllegalArgumentException("Email already registered");
+        validatePassword(rawPassword);
+        String normalized = UserDetailsCache.normalize(email);
+        // Filtre "certainement pas inscrit" => pas de SELECT ; sinon vérification en base comme avant
+        if (lookupFilters.mayBeRegistered(normalized)) {
+            if (users.existsByEmail(normalized)) {
+                throw new IllegalArgumentException("Email already registered");
+            }
+            lookupFilters.emailFalsePositive();
         }
         var u = User.builder()
-                .email(email.trim().toLowerCase())
+                .email(normalized)
                 .password(encoder.encode(rawPassword))
                 .role(role)
                 .build();
-        users.save(u);
+        try {
+            users.saveAndFlush(u);
+        } catch (DataIntegrityViolationException e) {
+            // Inscription concurrente, ou compte créé par une autre instance depuis la dernière reconstruction du filtre
+            throw new IllegalArgumentException("Email already registered");
+        }
+        lookupFilters.emailRegistered(normalized);
+        userCache.evict(u.getEmail()); // email inconnu peut-être mémorisé (tentative de login avant inscription)
     }
 }
\ No newline at end of file
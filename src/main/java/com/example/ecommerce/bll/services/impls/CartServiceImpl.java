@@ -2,10 +2,13 @@
 package com.example.ecommerce.bll.services.impls;
 
 import com.example.ecommerce.bll.mappers.DtoMapper;
+import com.example.ecommerce.bll.services.LookupFilters;
+import com.example.ecommerce.bll.services.Outbox;
 import com.example.ecommerce.dal.repositories.*;
 import com.example.ecommerce.dl.entities.*;
 import com.example.ecommerce.dl.enums.CartStatus;
 import com.example.ecommerce.il.dto.CartDto;
+import com.example.ecommerce.il.dto.Money;
 import com.example.ecommerce.il.interfaces.CartService;
 import jakarta.servlet.http.HttpSession;
 import org.slf4j.Logger;
@@ -25,18 +28,24 @@ public class CartServiceImpl implements CartService {
     private static final Logger log = LoggerFactory.getLogger(CartServiceImpl.class);
 
     private static final String SESSION_CART = "GUEST_CART"; // Map<Long, Integer>
+    private static final String SESSION_CART_ID = "GUEST_CART_ID"; // id opaque du panier invité (outbox)
     private static final int REMOVE_DELTA = Integer.MIN_VALUE;
 
     private final ProductRepository products;
     private final UserRepository users;
     private final CartRepository carts;
     private final CartLineRepository lines;
+    private final Outbox outbox;
+    private final LookupFilters lookupFilters;
 
-    public CartServiceImpl(ProductRepository products, UserRepository users, CartRepository carts, CartLineRepository lines) {
+    public CartServiceImpl(ProductRepository products, UserRepository users, CartRepository carts,
+                           CartLineRepository lines, Outbox outbox, LookupFilters lookupFilters) {
         this.products = products;
         this.users = users;
         this.carts = carts;
         this.lines = lines;
+        this.outbox = outbox;
+        this.lookupFilters = lookupFilters;
     }
 
     // -------- Compteur (header) --------
@@ -61,18 +70,27 @@ public class CartServiceImpl implements CartService {
     @Override
     public void add(Long productId, int quantity, HttpSession session) {
         if (quantity < 1) quantity = 1;
+        // Id inconnu (bot, lien périmé) : rejeté sans requête, y compris pour un invité
+        if (!lookupFilters.mayExist(productId)) {
+            throw new IllegalArgumentException("Product not found");
+        }
         User user = currentUserOrNull();
         if (user == null) {
             addToSession(session, productId, quantity);
+            publish("cart.item_added", null, session, Map.of("productId", productId, "quantity", quantity));
             log.debug("[CART][ADD][GUEST] pid={} +{} (sessionId={})", productId, quantity, session.getId());
             return;
         }
 
+        var product = products.findById(productId).orElse(null);
+        if (product == null) {
+            lookupFilters.productFalsePositive();
+            throw new IllegalArgumentException("Product not found");
+        }
+
         // IMPORTANT: normaliser à un seul panier OPEN (fusion si doublons)
         var cart = getOrCreateSingleOpenCart(user);
 
-        var product = products.findById(productId)
-                .orElseThrow(() -> new IllegalArgumentException("Product not found"));
         var line = lines.findByCartAndProduct(cart, product).orElse(null);
         if (line == null) {
             line = new CartLine();
@@ -85,6 +103,7 @@ public class CartServiceImpl implements CartService {
             line.setQuantity(line.getQuantity() + quantity);
             log.debug("[CART][ADD][USER:{}] pid={} +{} => {}", user.getEmail(), productId, quantity, line.getQuantity());
         }
+        publish("cart.item_added", user, session, Map.of("productId", productId, "quantity", quantity));
     }
 
     // -------- MAJ quantités / Suppression --------
@@ -96,12 +115,14 @@ public class CartServiceImpl implements CartService {
         if (user == null) {
             if (delta == REMOVE_DELTA) {
                 boolean existed = removeFromSession(session, productId);
+                if (existed) publish("cart.item_removed", null, session, Map.of("productId", productId));
                 log.info("[CART][REMOVE][GUEST] pid={} removed={} (sessionId={})", productId, existed, session.getId());
                 return;
             }
             int before = getItemCount(session);
             updateSessionDelta(session, productId, delta);
             int after = getItemCount(session);
+            if (before != after) publish("cart.item_updated", null, session, Map.of("productId", productId, "delta", delta));
             log.info("[CART][UPDATE][GUEST] pid={} delta={} items:{}->{} (sessionId={})",
                     productId, delta, before, after, session.getId());
             return;
@@ -123,6 +144,7 @@ public class CartServiceImpl implements CartService {
             System.out.println(lines);
             log.info(line.getId().toString());
             lines.deleteById(line.getId());
+            publish("cart.item_removed", user, session, Map.of("productId", productId));
             log.info("[CART][REMOVE][USER:{}] pid={} OK", user.getEmail(), productId);
             // Relire les lignes restantes du panier puis les logger
             List<CartLine> remainingLines = this.lines.findAll(); // 'lines' = CartLineRepository
@@ -139,9 +161,11 @@ public class CartServiceImpl implements CartService {
         int q = line.getQuantity() + delta;
         if (q <= 0) {
             lines.delete(line);
+            publish("cart.item_removed", user, session, Map.of("productId", productId));
             log.info("[CART][UPDATE->REMOVE][USER:{}] pid={} q<=0 -> deleted", user.getEmail(), productId);
         } else {
             line.setQuantity(q);
+            publish("cart.item_updated", user, session, Map.of("productId", productId, "delta", delta));
             log.info("[CART][UPDATE][USER:{}] pid={} setQty={}", user.getEmail(), productId, q);
         }
     }
@@ -174,6 +198,8 @@ public class CartServiceImpl implements CartService {
         });
 
         session.removeAttribute(SESSION_CART);
+        publish("cart.merged", user, session, Map.of("guestCartId", guestCartId(session), "lines", Map.copyOf(map)));
+        session.removeAttribute(SESSION_CART_ID);
         log.info("[CART][MERGE] session->db done (user={})", user.getEmail());
     }
 
@@ -184,7 +210,7 @@ public class CartServiceImpl implements CartService {
         User user = currentUserOrNull();
         if (user == null) {
             Map<Long, Integer> map = getOrCreateSessionCart(session);
-            if (map.isEmpty()) return new CartDto(List.of(), 0, java.math.BigDecimal.ZERO);
+            if (map.isEmpty()) return new CartDto(List.of(), 0, Money.zero(Money.EUR));
 
             var lineDtos = map.entrySet().stream().map(e -> {
                 var p = products.findById(e.getKey()).orElse(null);
@@ -199,7 +225,7 @@ public class CartServiceImpl implements CartService {
         // Lire le panier unifié (le plus récent)
         var cart = getSingleOpenCartOrNull(user);
         if (cart == null || cart.getLines().isEmpty()) {
-            return new CartDto(List.of(), 0, java.math.BigDecimal.ZERO);
+            return new CartDto(List.of(), 0, Money.zero(Money.EUR));
         }
         var lineDtos = cart.getLines().stream().map(DtoMapper::toCartLineDto).toList();
         return DtoMapper.toCartDto(lineDtos);
@@ -288,6 +314,27 @@ public class CartServiceImpl implements CartService {
         map.values().removeIf(q -> q == null || q <= 0);
     }
 
+    // -------- Outbox --------
+
+    /**
+     * Événement panier écrit dans la transaction courante (relayé plus tard, hors requête).
+     * Agrégat opaque : id du compte, ou id aléatoire du panier invité (jamais l'email ni le JSESSIONID,
+     * qui permettrait de détourner la session d'un invité à partir de l'outbox).
+     */
+    private void publish(String type, User user, HttpSession session, Map<String, Object> payload) {
+        String aggregate = (user != null) ? "user:" + user.getId() : "guest:" + guestCartId(session);
+        outbox.append(type, aggregate, payload);
+    }
+
+    private static String guestCartId(HttpSession session) {
+        var id = (String) session.getAttribute(SESSION_CART_ID);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            session.setAttribute(SESSION_CART_ID, id);
+        }
+        return id;
+    }
+
     // -------- User courant --------
     private User currentUserOrNull() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -1,5 +1,6 @@
 package com.example.ecommerce.bll.services.impls;
 
+import com.example.ecommerce.bll.services.UserDetailsCache;
 import com.example.ecommerce.dal.repositories.UserRepository;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
@@ -10,7 +11,10 @@ import java.util.Locale;
 
 /**
  * DbUserDetailsService
- * - Charge l'utilisateur par email.
+ * - Charge l'utilisateur par email (normalisé), via UserDetailsCache : une rafale de connexions
+ *   ne se traduit pas par autant de lectures en base.
+ * - Un nouvel objet UserDetails est construit à chaque appel (Spring Security efface son mot de passe).
+ * - Compte en cours d'effacement (AccountErasure) : traité comme inexistant.
  * - Normalise le rôle DB (user / ADMIN / ROLE_ADMIN / enum...) en "USER" / "ADMIN".
  * - PRÉFIXE en mémoire => "ROLE_USER" / "ROLE_ADMIN" (compatible hasRole("ADMIN")).
  */
@@ -18,23 +22,25 @@ import java.util.Locale;
 public class DbUserDetailsService implements UserDetailsService {
 
     private final UserRepository users;
+    private final UserDetailsCache cache;
 
-    public DbUserDetailsService(UserRepository users) {
+    public DbUserDetailsService(UserRepository users, UserDetailsCache cache) {
         this.users = users;
+        this.cache = cache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        String lookup = (email == null) ? null : email.trim();
-        var u = users.findByEmail(lookup)
+        var u = cache.get(email, lookup -> users.findByEmail(lookup)
+                        .filter(found -> found.getErasureRequestedAt() == null)
+                        .map(found -> new UserDetailsCache.CachedUser(
+                                found.getEmail(), found.getPassword(), normalizeRole(found.getRole()))))
                 .orElseThrow(() -> new UsernameNotFoundException("No user " + email));
 
-        String norm = normalizeRole(u.getRole()); // "USER" ou "ADMIN"
+        var authorities = List.of(new SimpleGrantedAuthority("ROLE_" + u.role())); // "USER" ou "ADMIN"
 
-        var authorities = List.of(new SimpleGrantedAuthority("ROLE_" + norm));
-
-        return User.withUsername(u.getEmail())
-                .password(u.getPassword())   // hashé (BCrypt) en DB
+        return User.withUsername(u.email())
+                .password(u.passwordHash())   // hashé (BCrypt) en DB
                 .authorities(authorities)
                 .accountExpired(false)
                 .accountLocked(false)
@@ -0,0 +1,112 @@
+package com.example.ecommerce.bll.services.impls;
+
+import com.example.ecommerce.bll.services.BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stockage local : la clé "ab/cd/<sha256>.ext" devient le fichier app.upload-dir/ab/cd/<sha256>.ext,
+ * servi sous /uploads/ab/cd/<sha256>.ext (MediaController).
+ * - put : déplacement atomique depuis un fichier temporaire du même dossier racine (un fichier servi est toujours complet).
+ * - Les sous-dossiers de shard ne sont pas supprimés une fois vides (65 536 au plus) : pas de course
+ *   entre la suppression d'un dossier et l'écriture concurrente d'une autre image dans ce dossier.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final String PUBLIC_PREFIX = "/uploads/";
+
+    private final Path folder;
+
+    public FileSystemBlobStore(@Value("${app.upload-dir}") String uploadDir) {
+        this.folder = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        // On ne descend que dans les dossiers compatibles avec le préfixe ("ab/cd/<sha256>-" => ab/cd seulement)
+        int slash = prefix.lastIndexOf('/');
+        Path start = slash < 0 ? folder : resolve(prefix.substring(0, slash));
+        if (!Files.isDirectory(start)) return List.of();
+        List<String> keys = new ArrayList<>();
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(start)) return FileVisitResult.CONTINUE;
+                if (dir.getFileName().toString().startsWith(".")) return FileVisitResult.SKIP_SUBTREE;
+                String relative = key(dir) + "/";
+                return relative.startsWith(prefix) || prefix.startsWith(relative)
+                        ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String key = key(file);
+                if (attrs.isRegularFile() && key.startsWith(prefix) && BlobStore.isValidKey(key)) keys.add(key);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        keys.sort(null);
+        return keys;
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return PUBLIC_PREFIX + key;
+    }
+
+    @Override
+    public Optional<String> keyOf(String publicUrl) {
+        if (publicUrl == null || !publicUrl.startsWith(PUBLIC_PREFIX)) return Optional.empty();
+        String key = publicUrl.substring(PUBLIC_PREFIX.length());
+        return BlobStore.isValidKey(key) ? Optional.of(key) : Optional.empty();
+    }
+
+    // -------- Helpers --------
+
+    private String key(Path file) {
+        return folder.relativize(file).toString().replace('\\', '/');
+    }
+
+    private Path resolve(String key) {
+        if (!BlobStore.isValidKey(key)) throw new IllegalArgumentException("Invalid storage key " + key);
+        return folder.resolve(key);
+    }
+}
@@ -1,35 +1,80 @@
 package com.example.ecommerce.bll.services.impls;
 
+import com.example.ecommerce.bll.services.BlobStore;
+import com.example.ecommerce.bll.services.ImagePlaceholders;
+import com.example.ecommerce.bll.services.ImageRenditions;
 import com.example.ecommerce.bll.services.ImageStorageService;
+import com.example.ecommerce.bll.utils.ImageUploadWriter;
+import com.example.ecommerce.dal.repositories.StoredImageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
-import java.util.Set;
-import java.util.UUID;
+import java.time.Instant;
 
 /**
  * Implémentation du service de stockage d'images.
- * - Valide le type MIME (sécurité basique).
- * - Crée le dossier uploads/ s'il n'existe pas.
- * - Génére un nom unique (UUID + extension).
- * - Écrit le fichier sur le disque.
+ * - Valide le format sur les premiers octets (signature), pas sur le Content-Type envoyé par le client.
+ * - Crée le dossier de travail local (app.upload-dir) s'il n'existe pas.
+ * - Une seule passe sur les octets (ImageUploadWriter) : signature, taille, empreinte et écriture.
+ * - Clé = empreinte SHA-256 du contenu + extension du format détecté, rangée en "ab/cd/<sha256>.ext"
+ *   dans le BlobStore configuré (dossier local ou bucket S3, cf. app.storage.type) :
+ *   la même image envoyée deux fois n'est stockée qu'une fois, et une URL ne change jamais de contenu
+ *   (=> cache navigateur / CDN "immutable", cf. MediaController).
+ * - Compteur de références par fichier (table stored_images) : un fichier partagé par plusieurs produits
+ *   n'est supprimé (avec ses déclinaisons) qu'au départ du dernier.
  * - (Optionnel) Supprime l'ancienne image si demandée.
+ * - Lance la génération des déclinaisons (srcset) hors de la requête, cf. ImageRenditions.
+ * - Calcule l'aperçu flou et la couleur dominante sur le fichier temporaire (ImagePlaceholders), repris par
+ *   ProductService à l'enregistrement du produit.
  */
 @Service
 public class ImageStorageServiceImpl implements ImageStorageService {
 
-    // Types MIME autorisés pour éviter d'enregistrer autre chose qu'une image
-    private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of(
-            "image/jpeg", "image/png", "image/webp", "image/gif"
-    );
+    private static final Logger log = LoggerFactory.getLogger(ImageStorageServiceImpl.class);
 
-    // Chemin du dossier d'upload (défini dans application.yml: app.upload-dir: uploads)
+    // Dossier de travail local (défini dans application.yml: app.upload-dir: uploads)
     @Value("${app.upload-dir}")
     private String uploadDir;
 
+    // Plafond vérifié pendant l'écriture (même valeur que la limite multipart par défaut)
+    @Value("${app.images.max-bytes:${spring.servlet.multipart.max-file-size:5MB}}")
+    private DataSize maxBytes;
+
+    private final BlobStore store;
+    private final ImageRenditions renditions;
+    private final ImagePlaceholders placeholders;
+    private final StoredImageRepository images;
+    private final TransactionTemplate tx;
+    private final Counter stored;
+    private final Counter deduplicated;
+
+    public ImageStorageServiceImpl(BlobStore store,
+                                   ImageRenditions renditions,
+                                   ImagePlaceholders placeholders,
+                                   StoredImageRepository images,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meters) {
+        this.store = store;
+        this.renditions = renditions;
+        this.placeholders = placeholders;
+        this.images = images;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.stored = meters.counter("image.uploads", "result", "stored");
+        this.deduplicated = meters.counter("image.uploads", "result", "deduplicated");
+    }
+
     @Override
     public String saveImage(MultipartFile file, String oldPublicPathIfAny) throws IOException {
         // 1) Vérifications de base
@@ -37,79 +82,99 @@ public class ImageStorageServiceImpl implements ImageStorageService {
             throw new IllegalArgumentException("Aucun fichier n’a été fourni.");
         }
 
-        String contentType = file.getContentType();
-        if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType.toLowerCase())) {
-            throw new IllegalArgumentException("Type d'image non supporté : " + contentType);
-        }
-
-        // 2) Déterminer l'extension à partir du nom d'origine ou du type MIME
-        String original = file.getOriginalFilename();
-        String ext = getSafeExtension(original, contentType); // ex: ".png"
-
-        // 3) Préparer le dossier d'upload (absolu, normalisé)
+        // 2) Préparer le dossier de travail local (absolu, normalisé)
         Path folder = Paths.get(uploadDir).toAbsolutePath().normalize();
         Files.createDirectories(folder);
 
-        // 4) Générer un nom unique et construire le chemin cible
-        String filename = UUID.randomUUID().toString().replace("-", "") + ext;
-        Path target = folder.resolve(filename);
-
-        // 5) Écrire le fichier sur le disque
+        // 3) Une seule passe : signature (le Content-Type du client est ignoré), plafond de taille,
+        //    empreinte SHA-256 et écriture dans un fichier temporaire
+        Path tmp = Files.createTempFile(folder, ".upload-", ".tmp");
         try {
-            Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException e) {
-            throw new IOException("Impossible d’enregistrer l’image sur le disque.", e);
-        }
+            ImageUploadWriter.Written written;
+            try (InputStream in = file.getInputStream()) {
+                written = ImageUploadWriter.write(in, tmp, maxBytes.toBytes());
+            } catch (IOException e) {
+                throw new IOException("Impossible d’enregistrer l’image sur le disque.", e);
+            }
+            String key = BlobStore.contentKey(written.sha256(), written.type().extension());
+
+            // Aperçu sur le fichier local, avant qu'il parte dans le stockage (quelques ms : décodage sous-échantillonné)
+            placeholders.computeOnUpload(store.publicUrl(key), tmp);
+
+            // 4) Référence d'abord (verrouille la ligne face à une suppression concurrente), fichier ensuite
+            retain(key, written.size());
+            try {
+                if (store.exists(key)) {
+                    deduplicated.increment();
+                    log.debug("[IMAGES][UPLOAD] {} already stored", key);
+                } else {
+                    store.put(key, tmp, written.type().mimeType());
+                    stored.increment();
+                    // 5) Déclinaisons 160/320/640/1280 px en arrière-plan (la vue sert l'original en attendant)
+                    renditions.generate(key);
+                }
+            } catch (IOException e) {
+                release(key);
+                throw new IOException("Impossible d’enregistrer l’image sur le disque.", e);
+            }
 
-        // 6) Supprimer l'ancienne image si fournie et appartenant à /uploads
-        deleteIfOwned(oldPublicPathIfAny);
+            // 6) Supprimer l'ancienne image si fournie et appartenant au stockage
+            //    (après la nouvelle référence : renvoyer la même image ne la supprime pas)
+            deleteIfOwned(oldPublicPathIfAny);
 
-        // 7) Retourner le chemin public utilisable dans les templates
-        return "/uploads/" + filename;
+            // 7) Retourner le chemin public utilisable dans les templates
+            return store.publicUrl(key);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
     }
 
     @Override
     public void deleteIfOwned(String publicPath) {
-        // On ne supprime que si c'est un chemin sous /uploads/
-        if (publicPath == null || !publicPath.startsWith("/uploads/")) {
-            return;
-        }
-        try {
-            String filename = publicPath.substring("/uploads/".length());
-            Path folder = Paths.get(uploadDir).toAbsolutePath().normalize();
-            Path fileToDelete = folder.resolve(filename);
-            Files.deleteIfExists(fileToDelete);
-        } catch (IOException e) {
-            // On journalise simplement l'erreur, on ne fait pas échouer l'opération d'upload
-            System.err.println("Impossible de supprimer l’ancienne image : " + e.getMessage());
-        }
+        // On ne supprime que les URL du stockage courant (clé valide : ni "..", ni fichier caché)
+        store.keyOf(publicPath).ifPresent(this::release);
     }
 
     // -------- utilitaires privés --------
 
-    /**
-     * Détermine l’extension de manière sûre.
-     * - Si le nom d'origine contient une extension, on la récupère.
-     * - Sinon on se base sur le type MIME.
-     * - Par défaut ".png".
-     */
-    private String getSafeExtension(String originalFilename, String contentType) {
-        String ext = "";
-
-        if (originalFilename != null) {
-            int dot = originalFilename.lastIndexOf('.');
-            if (dot >= 0) {
-                ext = originalFilename.substring(dot).toLowerCase();
+    // +1 sur la ligne existante, sinon création ; une création concurrente => on réessaie l'incrément
+    private void retain(String key, long size) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Instant now = Instant.now();
+                Boolean done = tx.execute(s -> images.retain(key, 1, now) == 1
+                        || images.insertIfAbsent(key, 1, size, now) == 1);
+                if (Boolean.TRUE.equals(done)) return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= 2) throw e;
             }
         }
+    }
 
-        if (ext.isEmpty() && contentType != null) {
-            if (contentType.contains("jpeg")) ext = ".jpg";
-            else if (contentType.contains("png")) ext = ".png";
-            else if (contentType.contains("gif")) ext = ".gif";
-            else if (contentType.contains("webp")) ext = ".webp";
+    /**
+     * -1 ; à 0, la ligne puis le fichier et ses déclinaisons sont supprimés dans la même transaction :
+     * un upload concurrent du même contenu attend le commit puis réécrit le fichier.
+     * Fichier sans compteur (nom aléatoire, avant l'adressage par contenu) : un seul propriétaire, supprimé.
+     */
+    private void release(String key) {
+        try {
+            tx.executeWithoutResult(s -> {
+                boolean counted = images.release(key) == 1;
+                if (counted && images.deleteIfUnused(key) == 0) return; // encore référencé
+                delete(key);
+            });
+        } catch (RuntimeException e) {
+            // On journalise simplement l'erreur, on ne fait pas échouer l'opération d'upload
+            log.warn("[IMAGES][DELETE] {} : {}", key, e.getMessage());
         }
+    }
 
-        return ext.isEmpty() ? ".png" : ext;
+    private void delete(String key) {
+        try {
+            store.delete(key);
+            renditions.delete(key);
+        } catch (IOException e) {
+            log.warn("[IMAGES][DELETE] Impossible de supprimer l’ancienne image {} : {}", key, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,530 @@
+package com.example.ecommerce.bll.services.impls;
+
+import com.example.ecommerce.bll.services.HotSkuStock;
+import com.example.ecommerce.bll.services.InventoryLedger;
+import com.example.ecommerce.bll.services.OutOfStockException;
+import com.example.ecommerce.bll.services.Outbox;
+import com.example.ecommerce.bll.services.StripeService;
+import com.example.ecommerce.dal.repositories.CartLineRepository;
+import com.example.ecommerce.dal.repositories.CartRepository;
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.entities.OrderLine;
+import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.dl.enums.CartStatus;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.il.dto.CartDto;
+import com.example.ecommerce.il.dto.Money;
+import com.example.ecommerce.il.dto.OrderDto;
+import com.example.ecommerce.il.dto.OrderHistoryPage;
+import com.example.ecommerce.il.dto.OrderLineDto;
+import com.example.ecommerce.il.dto.OrderSummaryDto;
+import com.example.ecommerce.il.interfaces.CartService;
+import com.example.ecommerce.il.interfaces.OrderService;
+import com.stripe.exception.StripeException;
+import jakarta.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OrderServiceImpl
+ * ----------------
+ * Pipeline de checkout :
+ * 1) Relit le panier (prix DB) et fige un snapshot (nom, prix unitaire, quantité) dans Order/OrderLine.
+ * 2) Pose un hold temporaire (InventoryLedger, en mémoire) : aucun verrou ni écriture sur products
+ *    pendant que le client est sur Stripe. Hold refusé => exception => rollback de la commande.
+ * 3) Paiement confirmé : transition PENDING -> PAID conditionnelle, puis UPDATE conditionnel
+ *    du stock (batch, tout ou rien ; shards pour les produits hot) et consommation du hold après commit.
+ *    Déclenché par le retour sur /checkout/success (session vérifiée chez Stripe) ou par le webhook :
+ *    le premier qui gagne la transition applique le paiement, l'autre ne fait rien.
+ *    Stock manquant en base : rollback complet puis REFUND_REQUIRED (transaction séparée) ;
+ *    paiement reçu sur une commande annulée/expirée : REFUND_REQUIRED aussi.
+ * 4) Annulation / expiration : transition PENDING -> CANCELLED/EXPIRED conditionnelle,
+ *    le hold n'est libéré que par celui qui a gagné la transition. L'annulation expire d'abord
+ *    la session Stripe : plus aucun paiement ne peut arriver sur une commande annulée.
+ *    Les appels Stripe (vérification du paiement, expiration) se font hors transaction :
+ *    lecture courte, appel distant, puis transition dans sa propre transaction courte.
+ *    Nouveau checkout : les commandes PENDING précédentes de l'utilisateur (autre panier) sont annulées
+ *    de la même façon, pour qu'un client ne cumule pas les holds.
+ * 5) Historique : résumés (id, date, total, nb d'articles, statut) lus par curseur sur
+ *    (user_id, created_at, id) ; le nombre d'articles est figé à la création de la commande.
+ * Chaque transition écrit son événement (order.placed / paid / cancelled / expired / refund_required) dans l'outbox,
+ * dans la même transaction.
+ */
+@Service
+@Transactional
+public class OrderServiceImpl implements OrderService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderServiceImpl.class);
+
+    private final OrderRepository orders;
+    private final HotSkuStock stock;
+    private final UserRepository users;
+    private final CartService cartService;
+    private final InventoryLedger ledger;
+    private final StripeService stripeService;
+    private final CartRepository carts;
+    private final CartLineRepository cartLines;
+    private final Outbox outbox;
+    // Transactions courtes autour des appels Stripe (confirmPayment, cancel)
+    private final TransactionTemplate tx;
+    // Marquage "à rembourser" après le rollback d'un paiement (la transaction d'origine est terminée)
+    private final TransactionTemplate requiresNew;
+
+    // Durée de vie d'une réservation (alignée sur l'expiration de la session Stripe)
+    @Value("${app.checkout.reservation-ttl:PT30M}")
+    private Duration reservationTtl;
+
+    // Marge avant libération : laisse le temps à un paiement "en vol" d'aboutir
+    @Value("${app.checkout.reservation-grace:PT5M}")
+    private Duration reservationGrace;
+
+    public OrderServiceImpl(OrderRepository orders,
+                            HotSkuStock stock,
+                            UserRepository users,
+                            CartService cartService,
+                            InventoryLedger ledger,
+                            StripeService stripeService,
+                            CartRepository carts,
+                            CartLineRepository cartLines,
+                            Outbox outbox,
+                            PlatformTransactionManager txManager) {
+        this.orders = orders;
+        this.stock = stock;
+        this.users = users;
+        this.cartService = cartService;
+        this.ledger = ledger;
+        this.stripeService = stripeService;
+        this.carts = carts;
+        this.cartLines = cartLines;
+        this.outbox = outbox;
+        this.tx = new TransactionTemplate(txManager);
+        this.requiresNew = new TransactionTemplate(txManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public OrderDto placeOrder(HttpSession session) {
+        User user = currentUserOrNull();
+        if (user == null) {
+            throw new IllegalStateException("Authentication required");
+        }
+        // Appels Stripe hors transaction, puis création de la commande dans sa propre transaction
+        cancelSuperseded(user);
+        return tx.execute(s -> createOrder(user, session));
+    }
+
+    private OrderDto createOrder(User user, HttpSession session) {
+        CartDto cart = cartService.getCurrentCart(session);
+        if (cart == null || cart.lines() == null || cart.lines().isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+
+        // 1) Snapshot des lignes (prix relus côté serveur par CartService)
+        var order = Order.builder()
+                .user(user)
+                .status(OrderStatus.PENDING)
+                .totalAmount(BigDecimal.ZERO)
+                .build();
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        Money total = Money.zero(cart.totalAmount().currency());
+        for (var l : cart.lines()) {
+            int qty = l.quantity() == null ? 0 : l.quantity();
+            if (qty <= 0) continue;
+            order.getLines().add(OrderLine.builder()
+                    .order(order)
+                    .productId(l.productId())
+                    .productName(l.productName())
+                    .unitPrice(l.unitPrice().toBigDecimal())
+                    .quantity(qty)
+                    .build());
+            quantities.merge(l.productId(), qty, Integer::sum);
+            total = total.plus(l.lineTotal());
+        }
+        order.setTotalAmount(total.toBigDecimal());
+        order.setItemCount(quantities.values().stream().mapToInt(Integer::intValue).sum());
+        orders.save(order);
+
+        // 2) Hold temporaire (tout ou rien) ; libéré si la transaction ne commit pas
+        Long missing = ledger.hold(order.getId(), quantities, reservationTtl.plus(reservationGrace));
+        if (missing != null) {
+            log.info("[ORDER][HOLD][USER:{}] pid={} out of stock -> rollback", user.getEmail(), missing);
+            throw new OutOfStockException(missing);
+        }
+        Long orderId = order.getId();
+        onRollback(() -> ledger.release(orderId));
+        outbox.append("order.placed", orderId.toString(), Map.of(
+                "orderId", orderId,
+                "userId", user.getId(),
+                "totalMinor", total.minor(),
+                "currency", total.currency().getCurrencyCode(),
+                "lines", quantities));
+
+        log.info("[ORDER][PLACED][USER:{}] order={} lines={} total={}",
+                user.getEmail(), orderId, order.getLines().size(), total);
+        return toDto(order);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isAwaitingPayment(Long orderId) {
+        var order = ownedOrderOrNull(orderId);
+        return order != null && order.getStatus() == OrderStatus.PENDING;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public OrderHistoryPage history(String cursor, int size) {
+        User user = currentUserOrNull();
+        if (user == null) {
+            throw new IllegalStateException("Authentication required");
+        }
+        // Une ligne de plus que demandé : indique s'il existe une page suivante sans COUNT
+        Limit limit = Limit.of(size + 1);
+        List<OrderRepository.Summary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = orders.findSummaries(user.getId(), limit);
+        } else {
+            var after = decodeCursor(cursor);
+            rows = orders.findSummariesBefore(user.getId(), after.createdAt(), after.id(), limit);
+        }
+
+        boolean hasMore = rows.size() > size;
+        var page = hasMore ? rows.subList(0, size) : rows;
+        var summaries = page.stream()
+                .map(r -> new OrderSummaryDto(r.id(), r.createdAt(), Money.eur(r.totalAmount()),
+                        r.itemCount() == null ? 0 : r.itemCount(), r.status().name()))
+                .toList();
+        String next = hasMore ? encodeCursor(page.getLast()) : null;
+        return new OrderHistoryPage(summaries, next);
+    }
+
+    @Override
+    public void attachStripeSession(Long orderId, String stripeSessionId) {
+        orders.findById(orderId).ifPresent(o -> o.setStripeSessionId(stripeSessionId));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean confirmPayment(Long orderId) {
+        // Aucune connexion JDBC tenue pendant l'appel Stripe
+        var order = tx.execute(s -> ownedOrderOrNull(orderId));
+        if (order == null) return false;
+        if (order.getStatus() == OrderStatus.PAID) return true;
+        if (order.getStatus() != OrderStatus.PENDING || order.getStripeSessionId() == null) return false;
+
+        try {
+            if (!stripeService.isPaid(order.getStripeSessionId())) {
+                log.info("[ORDER][CONFIRM] order={} session not paid yet", orderId);
+                return false;
+            }
+        } catch (StripeException | StripeService.UnavailableException e) {
+            // Le webhook confirmera la commande plus tard
+            log.warn("[ORDER][CONFIRM] order={} Stripe lookup failed : {}", orderId, e.getMessage());
+            return false;
+        }
+
+        // Commande relue dans la transaction : l'instance lue plus haut est détachée
+        return Boolean.TRUE.equals(tx.execute(s ->
+                orders.findById(orderId).map(this::applyPayment).orElse(false)));
+    }
+
+    @Override
+    public boolean markPaid(Long orderId, String stripeSessionId) {
+        var order = orderForSessionOrNull(orderId, stripeSessionId);
+        if (order == null) return false;
+        if (order.getStatus() == OrderStatus.PAID) return true;
+        if (order.getStatus() == OrderStatus.CANCELLED || order.getStatus() == OrderStatus.EXPIRED) {
+            // Paiement reçu après expiration/annulation : stock déjà rendu, commande à rembourser
+            log.error("[ORDER][WEBHOOK] order={} paid while {} -> refund", orderId, order.getStatus());
+            flagForRefund(orderId, order.getStatus(), "paid_after_" + order.getStatus().name().toLowerCase());
+            return false;
+        }
+        if (order.getStatus() != OrderStatus.PENDING) return false;
+        return applyPayment(order);
+    }
+
+    @Override
+    public void markExpired(Long orderId, String stripeSessionId) {
+        var order = orderForSessionOrNull(orderId, stripeSessionId);
+        if (order != null && release(order.getId(), OrderStatus.EXPIRED)) {
+            log.info("[ORDER][EXPIRE] order={} Stripe session expired, hold released", orderId);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void cancel(Long orderId) {
+        var order = tx.execute(s -> ownedOrderOrNull(orderId));
+        if (order == null || order.getStatus() != OrderStatus.PENDING) return;
+        if (expireAndCancel(order)) {
+            log.info("[ORDER][CANCEL] order={} hold released", orderId);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean cancelPending(Long orderId) {
+        var order = tx.execute(s -> orders.findById(orderId).orElse(null));
+        if (order == null || order.getStatus() != OrderStatus.PENDING) return true;
+        if (!expireAndCancel(order)) {
+            // Transition perdue (payée ou expirée entre-temps) : on relit le statut
+            return tx.execute(s -> orders.findById(orderId).map(o -> o.getStatus() != OrderStatus.PENDING).orElse(true));
+        }
+        log.info("[ORDER][CANCEL] order={} hold released", orderId);
+        return true;
+    }
+
+    /** Échéance d'un hold (TimerWheel de l'InventoryLedger). */
+    @EventListener
+    public void onHoldExpired(InventoryLedger.HoldExpired event) {
+        if (release(event.orderId(), OrderStatus.EXPIRED)) {
+            log.info("[ORDER][EXPIRE] order={} hold released", event.orderId());
+        } else {
+            // Commande déjà finalisée : on retire simplement le hold orphelin
+            ledger.release(event.orderId());
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.checkout.reservation-sweep:PT1M}")
+    public int expireStaleReservations() {
+        Instant cutoff = Instant.now().minus(reservationTtl).minus(reservationGrace);
+        var stale = orders.findTop100ByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(OrderStatus.PENDING, cutoff);
+        int expired = 0;
+        for (Order o : stale) {
+            if (release(o.getId(), OrderStatus.EXPIRED)) expired++;
+        }
+        if (expired > 0) {
+            log.info("[ORDER][EXPIRE] {} stale reservation(s) released", expired);
+        }
+        return expired;
+    }
+
+    /** Au démarrage : recrée les holds des commandes encore PENDING (le registre est en mémoire). */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void restoreHolds() {
+        var pending = orders.findAllByStatus(OrderStatus.PENDING);
+        for (Order o : pending) {
+            ledger.restore(o.getId(), quantitiesOf(o), o.getCreatedAt().plus(reservationTtl).plus(reservationGrace));
+        }
+        if (!pending.isEmpty()) {
+            log.info("[ORDER][RESTORE] {} hold(s) restored", pending.size());
+        }
+    }
+
+    /** Au démarrage : nombre d'articles des commandes antérieures à la colonne item_count. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillItemCounts() {
+        int n = orders.backfillItemCounts();
+        if (n > 0) {
+            log.info("[ORDER][BACKFILL] item_count computed for {} order(s)", n);
+        }
+    }
+
+    // -------- Helpers --------
+
+    private record Cursor(Instant createdAt, Long id) {}
+
+    /** Curseur opaque : "created_at|id" en base64 url. */
+    private static String encodeCursor(OrderRepository.Summary last) {
+        String raw = last.createdAt() + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) throw new IllegalArgumentException("Invalid cursor");
+            return new Cursor(Instant.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // NumberFormatException est une IllegalArgumentException
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /** PENDING -> PAID, décrément du stock en base, panier vidé ; hold consommé après commit. */
+    private boolean applyPayment(Order order) {
+        Long orderId = order.getId();
+        User user = order.getUser();
+        Map<Long, Integer> quantities = quantitiesOf(order); // avant transition (clear du contexte)
+        Long userId = user.getId();
+        if (orders.transition(orderId, OrderStatus.PENDING, OrderStatus.PAID, Instant.now()) == 0) {
+            return false;
+        }
+        try {
+            stock.reserveAll(quantities);
+        } catch (OutOfStockException e) {
+            // Le hold garantit normalement le stock : ce cas signale une baisse manuelle du stock en base.
+            // Rollback complet (ni PAID ni décrément ni panier vidé), puis commande marquée à rembourser.
+            log.error("[ORDER][CONFIRM] order={} paid but pid={} lacks stock in DB -> refund", orderId, e.productId());
+            onRollback(() -> requiresNew.executeWithoutResult(s ->
+                    flagForRefund(orderId, OrderStatus.PENDING, "out_of_stock")));
+            throw e;
+        }
+        // Retire du panier les produits achetés (l'utilisateur a pu ajouter autre chose depuis)
+        carts.findByUserAndStatus(user, CartStatus.OPEN).ifPresent(cart ->
+                cartLines.deleteAll(cartLines.findByCart(cart).stream()
+                        .filter(l -> quantities.containsKey(l.getProduct().getId()))
+                        .toList()));
+        afterCommit(() -> ledger.confirm(orderId));
+        outbox.append("order.paid", orderId.toString(), Map.of(
+                "orderId", orderId,
+                "userId", userId,
+                "lines", quantities));
+        log.info("[ORDER][PAID] order={}", orderId);
+        return true;
+    }
+
+    /**
+     * expected -> REFUND_REQUIRED : la commande est payée chez Stripe mais ne sera pas livrée.
+     * L'événement order.refund_required porte le remboursement ; le hold éventuel est libéré après commit.
+     */
+    private void flagForRefund(Long orderId, OrderStatus expected, String reason) {
+        if (orders.transition(orderId, expected, OrderStatus.REFUND_REQUIRED, Instant.now()) == 0) return;
+        afterCommit(() -> ledger.release(orderId));
+        outbox.append("order.refund_required", orderId.toString(), Map.of(
+                "orderId", orderId,
+                "reason", reason));
+    }
+
+    /**
+     * Ferme la session Stripe avant de libérer le hold : sinon le client peut encore payer une commande annulée.
+     * Échec (Stripe indisponible, session payée entre-temps) : le hold reste, le webhook tranchera
+     * (checkout.session.completed ou expired, sinon échéance du hold).
+     */
+    private boolean expireStripeSession(Order order) {
+        try {
+            if (stripeService.expire(order.getStripeSessionId())) return true;
+            log.info("[ORDER][CANCEL] order={} session already paid, hold kept", order.getId());
+        } catch (StripeException | StripeService.UnavailableException e) {
+            log.warn("[ORDER][CANCEL] order={} Stripe session not expired, hold kept : {}", order.getId(), e.getMessage());
+        }
+        return false;
+    }
+
+    /** Expire la session Stripe puis PENDING -> CANCELLED (transaction courte) ; false si le hold est gardé. */
+    private boolean expireAndCancel(Order order) {
+        if (order.getStripeSessionId() != null && !expireStripeSession(order)) return false;
+        return Boolean.TRUE.equals(tx.execute(s -> release(order.getId(), OrderStatus.CANCELLED)));
+    }
+
+    /**
+     * Nouveau checkout (la session en cache n'a pas été réutilisée) : les commandes PENDING précédentes
+     * ne gardent pas leur hold jusqu'à échéance. Une commande sans session Stripe est en cours de création
+     * (requête concurrente) : elle est laissée, son échec de création l'annule déjà.
+     */
+    private void cancelSuperseded(User user) {
+        for (Order o : orders.findAllByUserIdAndStatus(user.getId(), OrderStatus.PENDING)) {
+            if (o.getStripeSessionId() != null && expireAndCancel(o)) {
+                log.info("[ORDER][SUPERSEDED][USER:{}] order={} cancelled, hold released", user.getEmail(), o.getId());
+            }
+        }
+    }
+
+    /** Commande désignée par un événement Stripe : la session doit correspondre à celle enregistrée. */
+    private Order orderForSessionOrNull(Long orderId, String stripeSessionId) {
+        var order = (orderId == null) ? null : orders.findById(orderId).orElse(null);
+        if (order == null || !stripeSessionId.equals(order.getStripeSessionId())) {
+            log.warn("[ORDER][WEBHOOK] order={} session={} inconnue ou ne correspond pas", orderId, stripeSessionId);
+            return null;
+        }
+        return order;
+    }
+
+    /** Transition PENDING -> target puis libération du hold (après commit), uniquement si la transition a eu lieu. */
+    private boolean release(Long orderId, OrderStatus target) {
+        if (orders.transition(orderId, OrderStatus.PENDING, target, Instant.now()) == 0) {
+            return false;
+        }
+        afterCommit(() -> ledger.release(orderId));
+        outbox.append("order." + target.name().toLowerCase(), orderId.toString(), Map.of(
+                "orderId", orderId,
+                "status", target.name()));
+        return true;
+    }
+
+    private Order ownedOrderOrNull(Long orderId) {
+        User user = currentUserOrNull();
+        if (user == null || orderId == null) return null;
+        var order = orders.findById(orderId).orElse(null);
+        if (order == null || !order.getUser().getId().equals(user.getId())) {
+            log.warn("[ORDER][USER:{}] order={} introuvable ou non autorisée", user.getEmail(), orderId);
+            return null;
+        }
+        return order;
+    }
+
+    private static Map<Long, Integer> quantitiesOf(Order order) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        order.getLines().forEach(l -> quantities.merge(l.getProductId(), l.getQuantity(), Integer::sum));
+        return quantities;
+    }
+
+    private static OrderDto toDto(Order order) {
+        var lines = order.getLines().stream()
+                .map(l -> new OrderLineDto(l.getProductId(), l.getProductName(),
+                        Money.eur(l.getUnitPrice()), l.getQuantity()))
+                .toList();
+        return new OrderDto(order.getId(), lines, Money.eur(order.getTotalAmount()));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) action.run();
+            }
+        });
+    }
+
+    private User currentUserOrNull() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) return null;
+        return users.findByEmail(auth.getName()).orElse(null);
+    }
+}
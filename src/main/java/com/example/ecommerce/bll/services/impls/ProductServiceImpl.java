@@ -1,6 +1,11 @@
 package com.example.ecommerce.bll.services.impls;
 
 import com.example.ecommerce.bll.mappers.DtoMapper;
+import com.example.ecommerce.bll.services.HotSkuStock;
+import com.example.ecommerce.bll.services.ImagePlaceholders;
+import com.example.ecommerce.bll.services.ImageRenditions;
+import com.example.ecommerce.bll.services.InventoryLedger;
+import com.example.ecommerce.bll.services.LookupFilters;
 import com.example.ecommerce.dal.repositories.CategoryRepository;
 import com.example.ecommerce.dal.repositories.ProductRepository;
 import com.example.ecommerce.dl.entities.Product;
@@ -13,6 +18,8 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -25,6 +32,10 @@ import java.util.Optional;
  * - Catalogue paginé + filtres via Specifications.
  * - Détail avec fetch-join (repository) pour éviter les LazyInitializationException.
  * - Admin CRUD avec @PreAuthorize.
+ * - Stock affiché = stock DB moins les réservations en cours (InventoryLedger).
+ * - srcset des images = déclinaisons générées à l'upload (ImageRenditions).
+ * - Aperçu / couleur dominante de l'image recopiés sur le produit quand l'image change (ImagePlaceholders).
+ * - Filtre des ids produits (LookupFilters) mis à jour après commit de la création / suppression.
  */
 @Service
 @Transactional
@@ -32,10 +43,22 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository products;
     private final CategoryRepository categories;
-
-    public ProductServiceImpl(ProductRepository products, CategoryRepository categories) {
+    private final InventoryLedger ledger;
+    private final HotSkuStock hotStock;
+    private final LookupFilters lookupFilters;
+    private final ImageRenditions renditions;
+    private final ImagePlaceholders placeholders;
+
+    public ProductServiceImpl(ProductRepository products, CategoryRepository categories,
+                              InventoryLedger ledger, HotSkuStock hotStock, LookupFilters lookupFilters,
+                              ImageRenditions renditions, ImagePlaceholders placeholders) {
         this.products = products;
         this.categories = categories;
+        this.ledger = ledger;
+        this.hotStock = hotStock;
+        this.lookupFilters = lookupFilters;
+        this.renditions = renditions;
+        this.placeholders = placeholders;
     }
 
     @Override
@@ -60,7 +83,8 @@ public class ProductServiceImpl implements ProductService {
         Specification<Product> spec = specs.stream().reduce(Specification::and).orElse(null);
 
         Page<Product> page = (spec == null) ? products.findAll(pageable) : products.findAll(spec, pageable);
-        return page.map(DtoMapper::toProductListItem);
+        return page.map(p -> DtoMapper.toProductListItem(p, ledger.available(p.getId(), p.getStock()),
+                renditions.srcset(p.getImageUrl())));
     }
 
     @Override
@@ -68,7 +92,8 @@ public class ProductServiceImpl implements ProductService {
     public Optional<ProductDetailDto> findDetail(Long productId) {
         // On récupère le produit en fetch-join → la catégorie est déjà initialisée si elle existe
         return products.findByIdWithCategory(productId)
-                .map(DtoMapper::toProductDetail);
+                .map(p -> DtoMapper.toProductDetail(p, ledger.available(p.getId(), p.getStock()),
+                        renditions.srcset(p.getImageUrl())));
     }
 
     @Override
@@ -81,14 +106,16 @@ public class ProductServiceImpl implements ProductService {
         p.setDescription(description);
         p.setPrice(price);
         p.setStock(stock != null ? stock : 0);
-        p.setImageUrl(imageUrl);
+        setImage(p, imageUrl);
 
         if (categoryId != null) {
             categories.findById(categoryId).ifPresent(p::setCategory);
         }
 
         products.save(p);
-        return p.getId();
+        Long id = p.getId();
+        afterCommit(() -> lookupFilters.productCreated(id));
+        return id;
     }
 
     @Override
@@ -103,7 +130,7 @@ public class ProductServiceImpl implements ProductService {
         p.setDescription(description);
         p.setPrice(price);
         p.setStock(stock != null ? stock : 0);
-        p.setImageUrl(imageUrl);
+        setImage(p, imageUrl);
 
         if (categoryId != null) {
             p.setCategory(categories.findById(categoryId).orElse(null));
@@ -111,6 +138,14 @@ public class ProductServiceImpl implements ProductService {
             p.setCategory(null);
         }
         // dirty checking JPA => pas de save() nécessaire
+        ledger.refresh(id, p.getStock());
+        hotStock.reset(id, p.getStock());
+    }
+
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    public void setStockShards(Long id, int shards) {
+        hotStock.configure(id, shards);
     }
 
     @Override
@@ -119,7 +154,9 @@ public class ProductServiceImpl implements ProductService {
         if (!products.existsById(id)) {
             throw new IllegalArgumentException("Product not found: " + id);
         }
+        hotStock.forget(id);
         products.deleteById(id);
+        afterCommit(() -> lookupFilters.productDeleted(id));
     }
 
     // ... imports et annotations identiques à ta classe actuelle
@@ -133,6 +170,29 @@ public class ProductServiceImpl implements ProductService {
     }
 
 
+    // Nouvelle image => son aperçu (déjà calculé à l'upload, sinon relu) ; même image => aperçu conservé
+    private void setImage(Product p, String imageUrl) {
+        if (p.getImageUrl() != null && p.getImageUrl().equals(imageUrl)) return;
+        p.setImageUrl(imageUrl);
+        var placeholder = placeholders.of(imageUrl);
+        p.setImagePlaceholder(placeholder.map(ImagePlaceholders.Placeholder::dataUri).orElse(null));
+        p.setImageColor(placeholder.map(ImagePlaceholders.Placeholder::color).orElse(null));
+    }
+
+    // Filtres en mémoire mis à jour seulement si la transaction commit (rollback => filtre inchangé)
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     private static void validateProduct(String name, BigDecimal price, Integer stock) {
         if (name == null || name.isBlank()) throw new IllegalArgumentException("Name is required");
         if (price == null || price.compareTo(BigDecimal.ZERO) < 0) throw new IllegalArgumentException("Price must be >= 0");
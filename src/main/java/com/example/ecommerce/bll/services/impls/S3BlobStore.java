@@ -0,0 +1,225 @@
+package com.example.ecommerce.bll.services.impls;
+
+import com.example.ecommerce.bll.services.BlobStore;
+import com.example.ecommerce.bll.utils.SigV4;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Stockage compatible S3 (AWS S3, MinIO, Ceph RGW, R2...) : un bucket partagé par tous les nœuds.
+ * - API REST minimale (PUT / HEAD / GET / DELETE objet, ListObjectsV2), requêtes signées SigV4, pas de SDK.
+ * - Objets écrits avec leur Content-Type et Cache-Control immutable (une clé ne change jamais de contenu).
+ * - Les vues pointent directement sur app.storage.s3.public-url (bucket public ou CDN devant le bucket) :
+ *   l'application ne relaie pas les octets.
+ * - Adressage "path-style" (endpoint/bucket/clé) par défaut, le seul que proposent la plupart des
+ *   stockages auto-hébergés ; path-style=false => bucket.endpoint/clé.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    private static final String CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+            .getHeaderValue();
+
+    private final URI base;          // endpoint + bucket, sans "/" final
+    private final String publicUrl;  // sans "/" final
+    private final SigV4.Credentials credentials;
+    private final Duration timeout;
+    private final HttpClient http;
+
+    public S3BlobStore(@Value("${app.storage.s3.endpoint}") String endpoint,
+                       @Value("${app.storage.s3.region:us-east-1}") String region,
+                       @Value("${app.storage.s3.bucket}") String bucket,
+                       @Value("${app.storage.s3.access-key}") String accessKey,
+                       @Value("${app.storage.s3.secret-key}") String secretKey,
+                       @Value("${app.storage.s3.path-style:true}") boolean pathStyle,
+                       @Value("${app.storage.s3.public-url:}") String publicUrl,
+                       @Value("${app.storage.s3.timeout:PT10S}") Duration timeout) {
+        if (bucket.isBlank() || accessKey.isBlank() || secretKey.isBlank()) {
+            throw new IllegalArgumentException("app.storage.s3.bucket, access-key and secret-key are required");
+        }
+        URI endpointUri = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.base = pathStyle
+                ? URI.create(endpointUri + "/" + SigV4.encode(bucket, false))
+                : URI.create(endpointUri.getScheme() + "://" + bucket + "." + endpointUri.getRawAuthority());
+        String pub = publicUrl.isBlank() ? base.toString() : publicUrl;
+        this.publicUrl = pub.endsWith("/") ? pub.substring(0, pub.length() - 1) : pub;
+        this.credentials = new SigV4.Credentials(accessKey, secretKey, region, "s3");
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        String payloadHash = sha256Hex(file);
+        var headers = new TreeMap<String, String>();
+        headers.put("content-type", contentType);
+        headers.put("cache-control", CACHE_CONTROL);
+        var response = send("PUT", objectUri(key), headers, payloadHash,
+                HttpRequest.BodyPublishers.ofFile(file), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) throw failure("PUT", key, response.statusCode(), response.body());
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        var response = send("HEAD", objectUri(key), new TreeMap<>(), SigV4.EMPTY_PAYLOAD,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 200) return true;
+        if (response.statusCode() == 404) return false;
+        throw failure("HEAD", key, response.statusCode(), "");
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        var response = send("GET", objectUri(key), new TreeMap<>(), SigV4.EMPTY_PAYLOAD,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 200) return response.body();
+        String body;
+        try (InputStream in = response.body()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (response.statusCode() == 404) throw new NoSuchFileException(key);
+        throw failure("GET", key, response.statusCode(), body);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        var response = send("DELETE", objectUri(key), new TreeMap<>(), SigV4.EMPTY_PAYLOAD,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        if (status != 204 && status != 200 && status != 404) throw failure("DELETE", key, status, response.body());
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String token = null;
+        do {
+            // Paramètres triés et encodés comme dans la requête canonique
+            String query = (token == null ? "" : "continuation-token=" + SigV4.encode(token, false) + "&")
+                    + "list-type=2&prefix=" + SigV4.encode(prefix, false);
+            var response = send("GET", URI.create(base + (base.getRawPath().isEmpty() ? "/?" : "?") + query), new TreeMap<>(), SigV4.EMPTY_PAYLOAD,
+                    HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw failure("LIST", prefix, response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+            }
+            Document page = parse(response.body());
+            NodeList contents = page.getElementsByTagName("Key");
+            for (int i = 0; i < contents.getLength(); i++) {
+                String key = contents.item(i).getTextContent();
+                if (BlobStore.isValidKey(key)) keys.add(key);
+            }
+            boolean truncated = "true".equals(text(page, "IsTruncated"));
+            token = truncated ? text(page, "NextContinuationToken") : null;
+        } while (token != null && !token.isEmpty());
+        keys.sort(null);
+        return keys;
+    }
+
+    @Override
+    public String publicUrl(String key) {
+        return publicUrl + "/" + key;
+    }
+
+    @Override
+    public Optional<String> keyOf(String url) {
+        if (url == null || !url.startsWith(publicUrl + "/")) return Optional.empty();
+        String key = url.substring(publicUrl.length() + 1);
+        return BlobStore.isValidKey(key) ? Optional.of(key) : Optional.empty();
+    }
+
+    // -------- Helpers --------
+
+    private URI objectUri(String key) {
+        if (!BlobStore.isValidKey(key)) throw new IllegalArgumentException("Invalid storage key " + key);
+        return URI.create(base + "/" + SigV4.encode(key, true));
+    }
+
+    private <T> HttpResponse<T> send(String method, URI uri, TreeMap<String, String> headers, String payloadHash,
+                                     HttpRequest.BodyPublisher body, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        headers.put("host", SigV4.host(uri));
+        headers.put("x-amz-date", SigV4.amzDate(Instant.now()));
+        headers.put("x-amz-content-sha256", payloadHash);
+        String authorization = SigV4.authorization(credentials, method, uri, headers, payloadHash);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).method(method, body);
+        headers.forEach((name, value) -> {
+            if (!name.equals("host")) request.header(name, value); // posé par le client HTTP lui-même
+        });
+        request.header("Authorization", authorization);
+        try {
+            return http.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(method + " " + uri.getPath() + " interrupted");
+        }
+    }
+
+    private static IOException failure(String operation, String key, int status, String body) {
+        String code = body == null ? "" : body.replaceAll("(?s).*<Code>([^<]*)</Code>.*", "$1");
+        return new IOException("S3 " + operation + " " + key + " failed : HTTP " + status
+                + (code.isEmpty() || code.length() > 64 ? "" : " " + code));
+    }
+
+    // Empreinte du corps signée (x-amz-content-sha256) : le stockage rejette un objet altéré en route
+    private static String sha256Hex(Path file) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n; (n = in.read(buffer)) > 0; ) sha256.update(buffer, 0, n);
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private static Document parse(byte[] xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid S3 listing : " + e.getMessage(), e);
+        }
+    }
+
+    private static String text(Document document, String tag) {
+        NodeList nodes = document.getElementsByTagName(tag);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent();
+    }
+}
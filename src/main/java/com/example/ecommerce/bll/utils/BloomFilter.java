@@ -0,0 +1,93 @@
+package com.example.ecommerce.bll.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter (clés String)
+ * -------------------------
+ * "Certainement absent" ou "peut-être présent" : un test négatif évite un aller-retour base.
+ * - Taille calculée pour expectedInsertions et le taux de faux positifs visé (fpp) :
+ *   m = -n ln(p) / ln(2)^2 bits, k = m/n ln(2) fonctions de hachage (double hachage sur 64 bits).
+ * - Sans verrou : bits dans un AtomicLongArray, positionnés par CAS ; put et mightContain concurrents.
+ * - Pas de suppression : une clé retirée reste "peut-être présente" jusqu'à la reconstruction du filtre.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions < 1) throw new IllegalArgumentException("expectedInsertions must be >= 1");
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("fpp must be in ]0, 1[");
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitSize = (long) wordCount * 64;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            setBit(Math.floorMod(h1 + i * h2, bitSize));
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Taux de faux positifs attendu avec le nombre de clés insérées jusqu'ici. */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions.get() / bitSize), hashCount);
+    }
+
+    public long memoryBytes() {
+        return bitSize / 8;
+    }
+
+    public long insertions() {
+        return insertions.get();
+    }
+
+    // -------- Helpers --------
+
+    private void setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long word;
+        while (((word = words.get(index)) & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+            // réessai : un autre bit du même mot vient d'être posé
+        }
+    }
+
+    // FNV-1a 64 bits sur les caractères, puis finaliseur de MurmurHash3 (répartit les bits)
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
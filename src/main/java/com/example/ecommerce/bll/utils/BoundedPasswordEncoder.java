@@ -0,0 +1,126 @@
+package com.example.ecommerce.bll.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BoundedPasswordEncoder
+ * ----------------------
+ * Décore un PasswordEncoder coûteux (BCrypt...) : encode / matches s'exécutent sur un pool dédié
+ * de taille fixe (≈ nombre de cœurs), l'appelant (thread Tomcat) attend le résultat sans consommer de CPU.
+ * - Une rafale de logins ne peut donc occuper que ces threads : le reste du site garde du CPU.
+ * - File bornée : au-delà, refus immédiat par {@link BusyException} (réponse 429 côté web).
+ *   À dimensionner sur maxWait : une file plus longue que ce que le pool traite pendant maxWait
+ *   ne produit que des attentes perdues.
+ * - Attente en file bornée (maxWait) : un hachage qui n'a pas démarré à temps est retiré et refusé de même ;
+ *   un hachage déjà démarré est toujours attendu (sinon, en saturation, le pool ne calcule plus que
+ *   des résultats abandonnés).
+ * Métriques : password.hash (op, histogramme), password.hash.queue, password.hash.active, password.hash.rejected.
+ */
+public final class BoundedPasswordEncoder implements PasswordEncoder {
+
+    /** Pool de hachage saturé : réessayer un peu plus tard. */
+    public static class BusyException extends AuthenticationServiceException {
+        public BusyException(String message) { super(message); }
+    }
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final Duration maxWait;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity,
+                                  Duration maxWait, MeterRegistry meters) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be >= 1");
+        this.delegate = delegate;
+        this.maxWait = maxWait;
+        var seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    var t = new Thread(r, "pwd-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = Timer.builder("password.hash").tag("op", "encode")
+                .publishPercentileHistogram().register(meters);
+        this.matchesTimer = Timer.builder("password.hash").tag("op", "matches")
+                .publishPercentileHistogram().register(meters);
+        this.rejected = meters.counter("password.hash.rejected");
+        Gauge.builder("password.hash.queue", pool, p -> p.getQueue().size())
+                .description("Hachages en attente d'un thread")
+                .register(meters);
+        Gauge.builder("password.hash.active", pool, ThreadPoolExecutor::getActiveCount)
+                .register(meters);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTimer.record(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        Boolean ok = submit(() -> matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword)));
+        return Boolean.TRUE.equals(ok);
+    }
+
+    /** Simple lecture de l'en-tête du hash : pas de calcul coûteux, pas de passage par le pool. */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // -------- Helpers --------
+
+    private <T> T submit(Supplier<T> work) {
+        // Le premier qui passe le drapeau gagne : le thread du pool (démarrage) ou l'appelant (abandon)
+        var claimed = new AtomicBoolean();
+        Future<T> future; // FutureTask : c'est aussi l'élément placé dans la file du pool
+        try {
+            future = pool.submit(() -> claimed.compareAndSet(false, true) ? work.get() : null);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusyException("Password hashing queue is full");
+        }
+        try {
+            try {
+                return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (claimed.compareAndSet(false, true)) {
+                    // Jamais démarré : on libère sa place dans la file et on refuse
+                    pool.remove((Runnable) future);
+                    rejected.increment();
+                    throw new BusyException("Password hashing timed out in queue");
+                }
+                // Déjà en cours : le calcul est payé, on attend son résultat
+                return future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            claimed.set(true);
+            Thread.currentThread().interrupt();
+            throw new BusyException("Interrupted while waiting for password hashing");
+        }
+    }
+}
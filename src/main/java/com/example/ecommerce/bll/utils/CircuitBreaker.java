@@ -0,0 +1,81 @@
+package com.example.ecommerce.bll.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CircuitBreaker (disjoncteur)
+ * ----------------------------
+ * Coupe les appels vers une dépendance qui échoue en série, pour échouer vite au lieu d'empiler des attentes.
+ * - CLOSED    : appels autorisés ; N échecs consécutifs => OPEN.
+ * - OPEN      : appels refusés pendant openDuration.
+ * - HALF_OPEN : un seul appel d'essai ; succès => CLOSED, échec => OPEN à nouveau ; essai abandonné sans
+ *   verdict (release) => OPEN déjà échu, l'appel suivant refait l'essai.
+ * Sans verrou : transitions par CAS, compteur atomique.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be >= 1");
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /** @return true si l'appel peut partir (l'appelant doit ensuite signaler onSuccess, onFailure ou release). */
+    public boolean tryAcquire() {
+        return switch (state.get()) {
+            case CLOSED -> true;
+            case HALF_OPEN -> false; // essai déjà en cours
+            case OPEN -> System.nanoTime() - openedAt >= openNanos
+                    && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        };
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            log.info("[BREAKER][{}] closed", name);
+        }
+    }
+
+    public void onFailure() {
+        if (state.get() == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Appel autorisé mais abandonné sans verdict sur la dépendance (refus local, interruption) : libère l'essai
+     * HALF_OPEN, sinon le disjoncteur y resterait bloqué. Sans effet en CLOSED.
+     */
+    public void release() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN); // openedAt inchangé : délai déjà écoulé
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        if (state.getAndSet(State.OPEN) != State.OPEN) {
+            log.warn("[BREAKER][{}] open for {} ms", name, openNanos / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.ecommerce.bll.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * IdBitmap
+ * --------
+ * Ensemble exact d'identifiants numériques (1 bit par id) pour des clés séquentielles (IDENTITY).
+ * - contains : présent / absent pour un id < capacité ; au-delà, "inconnu" (l'appelant interroge la base).
+ * - Sans verrou : AtomicLongArray, bits posés / effacés par CAS.
+ */
+public final class IdBitmap {
+
+    /** Réponse d'un test : absent, présent, ou hors capacité (à vérifier ailleurs). */
+    public enum Membership { ABSENT, PRESENT, UNKNOWN }
+
+    private final AtomicLongArray words;
+    private final long capacity;
+    private final AtomicInteger cardinality = new AtomicInteger();
+
+    public IdBitmap(long capacity) {
+        if (capacity < 1 || capacity > (long) Integer.MAX_VALUE * 64) {
+            throw new IllegalArgumentException("Unsupported capacity " + capacity);
+        }
+        this.words = new AtomicLongArray((int) ((capacity + 63) / 64));
+        this.capacity = capacity;
+    }
+
+    public Membership contains(long id) {
+        if (id < 0 || id >= capacity) return Membership.UNKNOWN;
+        return (words.get((int) (id >>> 6)) & (1L << id)) != 0 ? Membership.PRESENT : Membership.ABSENT;
+    }
+
+    /** @return false si l'id dépasse la capacité (non mémorisé). */
+    public boolean add(long id) {
+        if (id < 0 || id >= capacity) return false;
+        int index = (int) (id >>> 6);
+        long mask = 1L << id;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) != 0) return true;
+            if (words.compareAndSet(index, word, word | mask)) {
+                cardinality.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    public void remove(long id) {
+        if (id < 0 || id >= capacity) return;
+        int index = (int) (id >>> 6);
+        long mask = 1L << id;
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) == 0) return;
+            if (words.compareAndSet(index, word, word & ~mask)) {
+                cardinality.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public int cardinality() {
+        return cardinality.get();
+    }
+
+    public long memoryBytes() {
+        return (long) words.length() * 8;
+    }
+}
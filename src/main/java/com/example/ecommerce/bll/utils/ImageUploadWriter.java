@@ -0,0 +1,131 @@
+package com.example.ecommerce.bll.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ImageUploadWriter
+ * -----------------
+ * Écrit un upload sur disque en une seule passe sur les octets :
+ * - type détecté sur les premiers octets (signature JPEG / PNG / GIF / WebP), jamais sur le Content-Type du client ;
+ * - taille plafonnée pendant la lecture (on s'arrête au premier octet de trop) ;
+ * - empreinte SHA-256 calculée au fil de l'eau ;
+ * - écriture par un tampon direct de 64 Kio dans le FileChannel (pas de copie intermédiaire côté JDK).
+ * En cas de refus (type, taille), le fichier cible est laissé partiellement écrit : à l'appelant de le supprimer.
+ */
+public final class ImageUploadWriter {
+
+    /** Formats acceptés : type MIME canonique et extension du fichier stocké. */
+    public enum ImageType {
+        JPEG("image/jpeg", ".jpg"),
+        PNG("image/png", ".png"),
+        GIF("image/gif", ".gif"),
+        WEBP("image/webp", ".webp");
+
+        private final String mimeType;
+        private final String extension;
+
+        ImageType(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /** Résultat : type réel, empreinte (hex) et taille écrite. */
+    public record Written(ImageType type, String sha256, long size) {}
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ImageUploadWriter() {}
+
+    /**
+     * @throws IllegalArgumentException si le contenu n'est pas une image acceptée ou dépasse maxBytes
+     */
+    public static Written write(InputStream in, Path target, long maxBytes) throws IOException {
+        MessageDigest sha256 = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        ImageType type = null;
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            boolean eof = false;
+            while (!eof) {
+                // Tampon rempli avant chaque écriture (le canal d'un InputStream rend au plus 8 Kio par lecture)
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                if (buffer.position() == 0) break;
+                if (type == null) {
+                    type = sniff(buffer); // premier tampon : plein, ou le fichier entier s'il est plus court
+                    if (type == null) throw new IllegalArgumentException("Unsupported image format");
+                }
+
+                buffer.flip();
+                size += buffer.remaining();
+                if (size > maxBytes) {
+                    throw new IllegalArgumentException("Image exceeds " + maxBytes / (1024 * 1024) + " MB");
+                }
+                sha256.update(buffer.duplicate());
+                while (buffer.hasRemaining()) out.write(buffer);
+                buffer.clear();
+            }
+            if (size == 0) throw new IllegalArgumentException("Empty file");
+        }
+        return new Written(type, HexFormat.of().formatHex(sha256.digest()), size);
+    }
+
+    /** Signature des premiers octets (null si format non accepté). */
+    static ImageType sniff(ByteBuffer buffer) {
+        int n = buffer.position();
+        if (n >= 3 && u(buffer, 0) == 0xFF && u(buffer, 1) == 0xD8 && u(buffer, 2) == 0xFF) return ImageType.JPEG;
+        if (n >= 8 && u(buffer, 0) == 0x89 && ascii(buffer, 1, "PNG")
+                && u(buffer, 4) == 0x0D && u(buffer, 5) == 0x0A && u(buffer, 6) == 0x1A && u(buffer, 7) == 0x0A) {
+            return ImageType.PNG;
+        }
+        if (n >= 6 && (ascii(buffer, 0, "GIF87a") || ascii(buffer, 0, "GIF89a"))) return ImageType.GIF;
+        if (n >= 12 && ascii(buffer, 0, "RIFF") && ascii(buffer, 8, "WEBP")) return ImageType.WEBP;
+        return null;
+    }
+
+    // -------- Helpers --------
+
+    private static int u(ByteBuffer buffer, int index) {
+        return buffer.get(index) & 0xFF;
+    }
+
+    private static boolean ascii(ByteBuffer buffer, int offset, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer.get(offset + i) != expected.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
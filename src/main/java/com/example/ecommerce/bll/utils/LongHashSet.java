@@ -0,0 +1,91 @@
+package com.example.ecommerce.bll.utils;
+
+/**
+ * LongHashSet
+ * -----------
+ * Ensemble de clés String réduites à une empreinte 64 bits, rangées dans un long[] (adressage ouvert, sondage linéaire).
+ * - ~16 octets par clé (facteur de charge <= 0,5) au lieu de ~100+ pour un HashSet<String> : un million d'URL
+ *   tiennent en 16 Mo.
+ * - Collision d'empreintes (~n²/2^65) : contains répond "présent" à tort ; à n'utiliser que là où un faux positif
+ *   est sans danger (ex. : garder un fichier qu'on aurait pu supprimer).
+ * - Remplissage par un seul thread, puis lectures concurrentes une fois publié (pas de verrou).
+ */
+public final class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int size;
+
+    public LongHashSet(int expected) {
+        table = new long[tableSize(Math.max(expected, 16))];
+    }
+
+    /** @return false si la clé (son empreinte) était déjà présente. */
+    public boolean add(String key) {
+        if ((size + 1) * 2L > table.length) grow();
+        if (!insert(table, hash(key))) return false;
+        size++;
+        return true;
+    }
+
+    public boolean contains(String key) {
+        long h = hash(key);
+        int mask = table.length - 1;
+        for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+            if (table[i] == h) return true;
+            if (table[i] == EMPTY) return false;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Mémoire occupée par la table (octets). */
+    public long memoryBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    // -------- Helpers --------
+
+    private static boolean insert(long[] table, long h) {
+        int mask = table.length - 1;
+        for (int i = (int) h & mask; ; i = (i + 1) & mask) {
+            if (table[i] == h) return false;
+            if (table[i] == EMPTY) {
+                table[i] = h;
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] bigger = new long[table.length * 2];
+        for (long h : table) {
+            if (h != EMPTY) insert(bigger, h);
+        }
+        table = bigger;
+    }
+
+    private static int tableSize(int expected) {
+        int n = Integer.highestOneBit(expected * 2 - 1) << 1;
+        if (n <= 0) throw new IllegalArgumentException("Too many keys : " + expected);
+        return n;
+    }
+
+    // FNV-1a 64 bits puis finaliseur de MurmurHash3 (comme BloomFilter) ; 0 est réservé aux cases vides
+    private static long hash(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1L : h;
+    }
+}
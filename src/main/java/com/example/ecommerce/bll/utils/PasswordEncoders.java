@@ -0,0 +1,55 @@
+package com.example.ecommerce.bll.utils;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PasswordEncoders
+ * ----------------
+ * Fabrique l'encoder "délégant" de l'application :
+ * - les nouveaux hash sont préfixés par l'algorithme configuré : {bcrypt}$2a$12$... ou {argon2}$argon2id$...
+ * - les hash historiques sans préfixe ($2a$10$..., BCrypt 10) restent vérifiables ;
+ * - upgradeEncoding est vrai pour tout hash qui n'a pas l'algorithme ou le coût configuré
+ *   (hash historique, bcrypt plus faible, paramètres Argon2 plus faibles) => re-hash au prochain login.
+ */
+public final class PasswordEncoders {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String ARGON2 = "argon2";
+
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+
+    /** Paramètres Argon2id (mémoire en KiB). */
+    public record Argon2Params(int memoryKib, int iterations, int parallelism) {}
+
+    private PasswordEncoders() {}
+
+    public static PasswordEncoder delegating(String algorithm, int bcryptCost, Argon2Params argon2) {
+        String id = (algorithm == null) ? BCRYPT : algorithm.trim().toLowerCase(Locale.ROOT);
+        if (!BCRYPT.equals(id) && !ARGON2.equals(id)) {
+            throw new IllegalArgumentException("Unsupported password algorithm " + algorithm);
+        }
+        Map<String, PasswordEncoder> encoders = Map.of(
+                BCRYPT, bcrypt(bcryptCost),
+                ARGON2, argon2(argon2));
+        var delegating = new DelegatingPasswordEncoder(id, encoders);
+        // Hash historiques sans préfixe : BCrypt (le coût est lu dans le hash)
+        delegating.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return delegating;
+    }
+
+    public static PasswordEncoder bcrypt(int cost) {
+        return new BCryptPasswordEncoder(cost);
+    }
+
+    public static PasswordEncoder argon2(Argon2Params p) {
+        return new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH,
+                p.parallelism(), p.memoryKib(), p.iterations());
+    }
+}
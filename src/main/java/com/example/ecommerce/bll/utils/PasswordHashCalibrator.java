@@ -0,0 +1,119 @@
+package com.example.ecommerce.bll.utils;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * PasswordHashCalibrator
+ * ----------------------
+ * Choisit le coût de hachage qui tient une latence cible sur le CPU de la machine :
+ * - bcrypt : le coût le plus élevé (entre 8 et 16) dont la médiane d'encodage reste sous la cible ;
+ * - argon2 : mémoire et parallélisme fixés, on augmente les itérations tant que la cible est tenue.
+ * Lancé hors contexte Spring : java -jar app.jar --calibrate-password-hash[=250ms]
+ */
+public final class PasswordHashCalibrator {
+
+    public static final String OPTION = "--calibrate-password-hash";
+    public static final Duration DEFAULT_TARGET = Duration.ofMillis(250);
+
+    private static final int MIN_BCRYPT_COST = 8;
+    private static final int MAX_BCRYPT_COST = 16;
+    private static final int MAX_ARGON2_ITERATIONS = 64;
+    private static final int ARGON2_MEMORY_KIB = 19456;
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-Password-1";
+
+    /** Résultat : valeurs à reporter dans app.security.password.* (et les mesures correspondantes). */
+    public record Result(int bcryptCost, Duration bcryptTime, PasswordEncoders.Argon2Params argon2, Duration argon2Time) {}
+
+    private PasswordHashCalibrator() {}
+
+    /** Cible lue dans les arguments (--calibrate-password-hash=300ms), null si l'option est absente. */
+    public static Duration target(String[] args) {
+        for (String arg : args) {
+            if (arg.equals(OPTION)) return DEFAULT_TARGET;
+            if (arg.startsWith(OPTION + "=")) {
+                Duration target = DurationStyle.detectAndParse(arg.substring(OPTION.length() + 1));
+                if (target.isNegative() || target.isZero()) {
+                    throw new IllegalArgumentException("Calibration target must be positive : " + arg);
+                }
+                return target;
+            }
+        }
+        return null;
+    }
+
+    public static Result calibrate(Duration target) {
+        // bcrypt : chaque +1 double le temps, on s'arrête dès que la cible est dépassée
+        int cost = MIN_BCRYPT_COST;
+        Duration costTime = median(PasswordEncoders.bcrypt(cost));
+        while (cost < MAX_BCRYPT_COST) {
+            Duration next = median(PasswordEncoders.bcrypt(cost + 1));
+            if (next.compareTo(target) > 0) break;
+            cost++;
+            costTime = next;
+        }
+
+        // argon2 : temps ~ linéaire en itérations => estimation depuis 1 itération, puis ajustement pas à pas
+        Duration one = median(PasswordEncoders.argon2(argon2Params(1)));
+        int iterations = (int) Math.max(1, Math.min(MAX_ARGON2_ITERATIONS, target.toNanos() / Math.max(1, one.toNanos())));
+        var params = argon2Params(iterations);
+        Duration paramsTime = median(PasswordEncoders.argon2(params));
+        while (params.iterations() > 1 && paramsTime.compareTo(target) > 0) {
+            params = argon2Params(params.iterations() - 1);
+            paramsTime = median(PasswordEncoders.argon2(params));
+        }
+        while (params.iterations() < MAX_ARGON2_ITERATIONS && paramsTime.compareTo(target) <= 0) {
+            var next = argon2Params(params.iterations() + 1);
+            Duration nextTime = median(PasswordEncoders.argon2(next));
+            if (nextTime.compareTo(target) > 0) break;
+            params = next;
+            paramsTime = nextTime;
+        }
+        return new Result(cost, costTime, params, paramsTime);
+    }
+
+    public static void run(Duration target, PrintStream out) {
+        out.printf("Calibrating password hashing for a target of %d ms on %d CPU(s)...%n",
+                target.toMillis(), Runtime.getRuntime().availableProcessors());
+        Result r = calibrate(target);
+        out.printf("bcrypt cost %d : %d ms%n", r.bcryptCost(), r.bcryptTime().toMillis());
+        out.printf("argon2 %d KiB x %d iterations : %d ms%n",
+                r.argon2().memoryKib(), r.argon2().iterations(), r.argon2Time().toMillis());
+        if (r.bcryptTime().compareTo(target) > 0) {
+            out.println("WARNING : even the minimum bcrypt cost exceeds the target on this host");
+        }
+        out.println();
+        out.println("app:");
+        out.println("  security:");
+        out.println("    password:");
+        out.println("      algorithm: bcrypt");
+        out.println("      bcrypt-cost: " + r.bcryptCost());
+        out.println("      argon2:");
+        out.println("        memory-kib: " + r.argon2().memoryKib());
+        out.println("        iterations: " + r.argon2().iterations());
+        out.println("        parallelism: " + r.argon2().parallelism());
+    }
+
+    // -------- Helpers --------
+
+    private static PasswordEncoders.Argon2Params argon2Params(int iterations) {
+        return new PasswordEncoders.Argon2Params(ARGON2_MEMORY_KIB, iterations, 1);
+    }
+
+    private static Duration median(PasswordEncoder encoder) {
+        encoder.encode(SAMPLE_PASSWORD); // warm-up (JIT)
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return Duration.ofNanos(samples[SAMPLES / 2]);
+    }
+}
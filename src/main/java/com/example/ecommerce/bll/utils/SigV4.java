@@ -0,0 +1,136 @@
+package com.example.ecommerce.bll.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+
+/**
+ * SigV4
+ * -----
+ * Signature AWS Signature Version 4 (en-tête Authorization), suffisante pour un stockage compatible S3
+ * (AWS, MinIO, Ceph, R2...) sans embarquer de SDK :
+ * - requête canonique : méthode, chemin (déjà encodé), query triée, en-têtes signés (minuscules, triés), empreinte du corps ;
+ * - chaîne à signer : AWS4-HMAC-SHA256, date, portée (jour/région/service/aws4_request), SHA-256 de la requête canonique ;
+ * - clé dérivée par HMAC successifs : "AWS4" + secret -> jour -> région -> service -> "aws4_request".
+ * Les en-têtes signés doivent contenir host et x-amz-date (format {@link #amzDate(Instant)}).
+ */
+public final class SigV4 {
+
+    public static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+    /** Empreinte du corps vide (GET, HEAD, DELETE). */
+    public static final String EMPTY_PAYLOAD = sha256Hex(new byte[0]);
+
+    private static final DateTimeFormatter AMZ_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    /** Identifiants et portée de la signature. */
+    public record Credentials(String accessKey, String secretKey, String region, String service) {}
+
+    private SigV4() {}
+
+    /**
+     * @param uri           chemin et query déjà encodés (cf. {@link #encode(String, boolean)})
+     * @param signedHeaders en-têtes à signer, noms en minuscules (host et x-amz-date obligatoires)
+     * @param payloadHash   SHA-256 hexadécimal du corps (ou "UNSIGNED-PAYLOAD")
+     * @return valeur de l'en-tête Authorization
+     */
+    public static String authorization(Credentials credentials, String method, URI uri,
+                                       SortedMap<String, String> signedHeaders, String payloadHash) {
+        String amzDate = signedHeaders.get("x-amz-date");
+        if (amzDate == null || !signedHeaders.containsKey("host")) {
+            throw new IllegalArgumentException("host and x-amz-date must be signed");
+        }
+        String day = amzDate.substring(0, 8);
+        String scope = day + "/" + credentials.region() + "/" + credentials.service() + "/aws4_request";
+
+        String headerNames = String.join(";", signedHeaders.keySet());
+        StringBuilder canonicalHeaders = new StringBuilder();
+        signedHeaders.forEach((name, value) ->
+                canonicalHeaders.append(name).append(':').append(value.strip().replaceAll(" +", " ")).append('\n'));
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        String canonicalRequest = method + "\n" + path + "\n" + canonicalQuery(uri.getRawQuery()) + "\n"
+                + canonicalHeaders + "\n" + headerNames + "\n" + payloadHash;
+
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n"
+                + sha256Hex(canonicalRequest.getBytes(StandardCharsets.UTF_8));
+
+        byte[] key = hmac(("AWS4" + credentials.secretKey()).getBytes(StandardCharsets.UTF_8), day);
+        key = hmac(key, credentials.region());
+        key = hmac(key, credentials.service());
+        key = hmac(key, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(key, stringToSign));
+
+        return ALGORITHM + " Credential=" + credentials.accessKey() + "/" + scope
+                + ", SignedHeaders=" + headerNames + ", Signature=" + signature;
+    }
+
+    /** Date au format x-amz-date (20150830T123600Z). */
+    public static String amzDate(Instant instant) {
+        return AMZ_DATE.format(instant);
+    }
+
+    /** Valeur de l'en-tête Host telle que l'envoie le client HTTP (port seulement s'il est explicite). */
+    public static String host(URI uri) {
+        return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    }
+
+    /** Encodage RFC 3986 exigé par SigV4 (tout sauf A-Z a-z 0-9 - _ . ~ ; "/" conservé si keepSlash). */
+    public static String encode(String value, boolean keepSlash) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                out.append(c);
+            } else {
+                out.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+            }
+        }
+        return out.toString();
+    }
+
+    public static String sha256Hex(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // -------- Helpers --------
+
+    // Paramètres triés par nom puis valeur ; "a" sans valeur => "a="
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) return "";
+        List<String[]> params = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            params.add(eq < 0 ? new String[]{pair, ""} : new String[]{pair.substring(0, eq), pair.substring(eq + 1)});
+        }
+        params.sort((a, b) -> a[0].equals(b[0]) ? a[1].compareTo(b[1]) : a[0].compareTo(b[0]));
+        return params.stream().map(p -> p[0] + "=" + p[1]).collect(Collectors.joining("&"));
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
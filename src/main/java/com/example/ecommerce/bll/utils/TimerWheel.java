@@ -0,0 +1,91 @@
+package com.example.ecommerce.bll.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * TimerWheel (hashed wheel timer)
+ * -------------------------------
+ * Planifie des milliers d'échéances pour un coût O(1) à l'insertion, sans une tâche par échéance.
+ * - Le temps est découpé en "ticks" ; chaque slot de la roue contient les éléments échéant sur ce tick
+ *   (modulo la taille de la roue : un élément peut attendre plusieurs tours).
+ * - Un seul thread (daemon) avance la roue et appelle onExpire pour chaque élément échu.
+ * - Pas d'annulation : l'appelant ignore simplement les échéances devenues sans objet.
+ */
+public final class TimerWheel<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private record Entry<T>(T item, long deadlineTick) {}
+
+    private final long tickNanos;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Entry<T>>[] slots;
+    private final Consumer<T> onExpire;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService ticker;
+
+    // Prochain tick à traiter (écrit uniquement par le thread ticker)
+    private volatile long nextTick;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(String name, Duration tick, int wheelSize, Consumer<T> onExpire) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        }
+        this.tickNanos = tick.toNanos();
+        this.mask = wheelSize - 1;
+        this.slots = new ConcurrentLinkedQueue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) slots[i] = new ConcurrentLinkedQueue<>();
+        this.onExpire = onExpire;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Planifie l'expiration de {@code item} dans {@code delay} (précision : un tick). */
+    public void schedule(T item, Duration delay) {
+        long deadline = (System.nanoTime() - startNanos + Math.max(0, delay.toNanos())) / tickNanos;
+        // Échéance déjà dépassée : on la range dans le prochain slot traité
+        deadline = Math.max(deadline, nextTick + 1);
+        slots[(int) (deadline & mask)].add(new Entry<>(item, deadline));
+    }
+
+    private void advance() {
+        long now = (System.nanoTime() - startNanos) / tickNanos;
+        long tick = nextTick;
+        while (tick <= now) {
+            Iterator<Entry<T>> it = slots[(int) (tick & mask)].iterator();
+            while (it.hasNext()) {
+                Entry<T> e = it.next();
+                if (e.deadlineTick() <= tick) {
+                    it.remove();
+                    try {
+                        onExpire.accept(e.item());
+                    } catch (RuntimeException ex) {
+                        // un callback défaillant ne doit pas arrêter la roue
+                        log.warn("[TIMER] expiry callback failed for {} : {}", e.item(), ex.getMessage(), ex);
+                    }
+                }
+            }
+            tick++;
+            nextTick = tick;
+        }
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
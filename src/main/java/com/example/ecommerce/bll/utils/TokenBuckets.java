@@ -0,0 +1,104 @@
+package com.example.ecommerce.bll.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * TokenBuckets
+ * ------------
+ * Un seau à jetons par clé (IP, compte...) : burst jetons au maximum, perMinute jetons rendus par minute.
+ * - Sans verrou : l'état d'un seau tient dans un seul long (instant "théorique" où il sera de nouveau plein,
+ *   forme GCRA du token bucket), mis à jour par CAS.
+ * - Borné : au plus maxKeys seaux ; un seau plein est équivalent à une clé absente, donc purge() les supprime
+ *   sans rien perdre. Si la map est pleine de seaux entamés, une clé inconnue est refusée (comptée dans
+ *   overflows()) : la laisser passer rendrait la limite contournable en remplissant la map de clés jetables.
+ */
+public final class TokenBuckets {
+
+    private static final long INLINE_PURGE_NANOS = 1_000_000_000L;
+
+    private final long intervalNanos;   // temps pour regagner un jeton
+    private final long toleranceNanos;  // burst * interval
+    private final int maxKeys;
+    private final LongSupplier clock;
+    private final long origin;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong lastInlinePurge = new AtomicLong(-INLINE_PURGE_NANOS);
+
+    public TokenBuckets(int burst, int perMinute, int maxKeys) {
+        this(burst, perMinute, maxKeys, System::nanoTime);
+    }
+
+    TokenBuckets(int burst, int perMinute, int maxKeys, LongSupplier clock) {
+        if (burst < 1 || perMinute < 1) throw new IllegalArgumentException("burst and perMinute must be >= 1");
+        if (maxKeys < 1) throw new IllegalArgumentException("maxKeys must be >= 1");
+        this.intervalNanos = 60_000_000_000L / perMinute;
+        this.toleranceNanos = intervalNanos * burst;
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+    }
+
+    /**
+     * Consomme un jeton pour key.
+     * @return 0 si la requête passe, sinon le délai (ns) avant qu'un jeton soit disponible
+     *         (map pleine : délai d'un jeton, le temps qu'un seau se remplisse et libère sa place).
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong() - origin;
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                purgeIfDue(now);
+                if (buckets.size() >= maxKeys) {
+                    overflows.incrementAndGet();
+                    return intervalNanos;
+                }
+            }
+            AtomicLong created = new AtomicLong();
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) bucket = created;
+        }
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + intervalNanos;
+            long excess = next - now - toleranceNanos;
+            if (excess > 0) return excess;
+            if (bucket.compareAndSet(full, next)) return 0;
+        }
+    }
+
+    /**
+     * Supprime les seaux redevenus pleins.
+     * Une requête qui a lu le seau juste avant sa suppression le met à jour "dans le vide" :
+     * au pire un jeton offert, jamais un refus à tort.
+     */
+    public int purge() {
+        long now = clock.getAsLong() - origin;
+        int removed = 0;
+        for (var it = buckets.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getValue().get() <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // Map pleine : purge depuis la requête, mais une seule fois par seconde (balayage O(maxKeys))
+    private void purgeIfDue(long now) {
+        long last = lastInlinePurge.get();
+        if (now - last >= INLINE_PURGE_NANOS && lastInlinePurge.compareAndSet(last, now)) purge();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    /** Requêtes refusées faute de place pour un nouveau seau. */
+    public long overflows() {
+        return overflows.get();
+    }
+}
@@ -4,17 +4,31 @@ import com.example.ecommerce.dl.entities.Cart;
 import com.example.ecommerce.dl.entities.CartLine;
 import com.example.ecommerce.dl.entities.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * DAL: CartLine repository.
  * Used for upsert pattern (findByCartAndProduct) and displaying cart lines.
+ * Bulk deletes serve account erasure: one statement per batch of carts instead of one per line.
  */
 public interface CartLineRepository extends JpaRepository<CartLine, Long> {
 
     Optional<CartLine> findByCartAndProduct(Cart cart, Product product);
 
     List<CartLine> findByCart(Cart cart);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query(value = "delete from cart_lines where cart_id in (:cartIds)", nativeQuery = true)
+    int deleteByCartIds(@Param("cartIds") Collection<Long> cartIds);
+
+    @Modifying
+    @Query(value = "delete from cart_lines where cart_id in (select id from carts where user_id = :userId)",
+           nativeQuery = true)
+    int deleteAllByUserId(@Param("userId") Long userId);
+}
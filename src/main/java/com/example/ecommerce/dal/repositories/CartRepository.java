@@ -5,7 +5,11 @@ import com.example.ecommerce.dl.entities.Cart;
 import com.example.ecommerce.dl.entities.User;
 import com.example.ecommerce.dl.enums.CartStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +17,17 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserAndStatus(User user, CartStatus status);
     List<Cart> findAllByUserAndStatusOrderByUpdatedAtDesc(User user, CartStatus status);
 
-    // nécessaire pour supprimer tous les paniers du user
-    List<Cart> findAllByUser(User user);
+    // -------- Suppression de compte (ensembliste, par lots côté appelant) --------
+
+    @Query(value = "select id from carts where user_id = :userId order by id limit :limit", nativeQuery = true)
+    List<Long> findIdsByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from carts where id in (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /** Filet final : paniers créés pendant l'effacement (lignes à supprimer avant). */
+    @Modifying
+    @Query(value = "delete from carts where user_id = :userId", nativeQuery = true)
+    int deleteAllByUserId(@Param("userId") Long userId);
 }
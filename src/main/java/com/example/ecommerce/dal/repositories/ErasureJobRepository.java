@@ -0,0 +1,53 @@
+package com.example.ecommerce.dal.repositories;
+
+import com.example.ecommerce.dl.entities.ErasureJob;
+import com.example.ecommerce.dl.enums.ErasureStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * DAL: account erasure jobs.
+ * - lockDue: next due job (pending, or running with an expired lease), locked with SKIP LOCKED so that
+ *   several nodes never work on the same account.
+ * - progress: counters bumped in the transaction that deleted the rows, lease renewed at the same time.
+ */
+public interface ErasureJobRepository extends JpaRepository<ErasureJob, Long> {
+
+    Optional<ErasureJob> findByUserId(Long userId);
+
+    long countByStatus(ErasureStatus status);
+
+    @Query(value = "select id from erasure_jobs " +
+                   "where status in ('PENDING', 'RUNNING') and available_at <= :now " +
+                   "order by id limit 1 for update skip locked",
+           nativeQuery = true)
+    Optional<Long> lockDue(@Param("now") Instant now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ErasureJob j set j.status = com.example.ecommerce.dl.enums.ErasureStatus.RUNNING, j.attempts = j.attempts + 1, " +
+           "j.availableAt = :leaseUntil where j.id = :id")
+    int lease(@Param("id") Long id, @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying
+    @Query("update ErasureJob j set j.cartLinesDeleted = j.cartLinesDeleted + :cartLines, " +
+           "j.cartsDeleted = j.cartsDeleted + :carts, j.orderLinesDeleted = j.orderLinesDeleted + :orderLines, " +
+           "j.ordersDeleted = j.ordersDeleted + :orders, j.availableAt = :leaseUntil where j.id = :id")
+    int progress(@Param("id") Long id,
+                 @Param("cartLines") long cartLines, @Param("carts") long carts,
+                 @Param("orderLines") long orderLines, @Param("orders") long orders,
+                 @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying
+    @Query("update ErasureJob j set j.status = com.example.ecommerce.dl.enums.ErasureStatus.DONE, j.finishedAt = :now, j.lastError = null where j.id = :id")
+    int markDone(@Param("id") Long id, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update ErasureJob j set j.status = :status, j.availableAt = :retryAt, j.lastError = :error where j.id = :id")
+    int markFailed(@Param("id") Long id, @Param("status") ErasureStatus status,
+                   @Param("retryAt") Instant retryAt, @Param("error") String error);
+}
@@ -0,0 +1,88 @@
+package com.example.ecommerce.dal.repositories;
+
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * DAL: Order repository.
+ * - Conditional status transition (compare-and-set) so that a reservation is released only once,
+ *   even if cancel and expiry race each other.
+ * - Order history: summary rows only (no lines), keyset pagination on (user_id, created_at, id)
+ *   served by ix_orders_user_created, so every page costs the same whatever its depth.
+ *   The row-value comparison lets Postgres start the index scan right at the cursor.
+ * - Account erasure: plain DELETE statements by id batches (no entity loading, no per-row cascade),
+ *   once no order is left PENDING or REFUND_REQUIRED.
+ */
+public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    List<Order> findTop100ByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(OrderStatus status, Instant before);
+
+    List<Order> findAllByStatus(OrderStatus status);
+
+    /** Pending orders of a user, superseded by a new checkout (or settled before an account erasure). */
+    List<Order> findAllByUserIdAndStatus(Long userId, OrderStatus status);
+
+    boolean existsByUserIdAndStatusIn(Long userId, Collection<OrderStatus> statuses);
+
+    /** Summary projection of an order (no join on lines). */
+    record Summary(Long id, Instant createdAt, BigDecimal totalAmount, Integer itemCount, OrderStatus status) {}
+
+    @Query("select new com.example.ecommerce.dal.repositories.OrderRepository$Summary(" +
+           "o.id, o.createdAt, o.totalAmount, o.itemCount, o.status) " +
+           "from Order o where o.user.id = :userId " +
+           "order by o.createdAt desc, o.id desc")
+    List<Summary> findSummaries(@Param("userId") Long userId, Limit limit);
+
+    @Query("select new com.example.ecommerce.dal.repositories.OrderRepository$Summary(" +
+           "o.id, o.createdAt, o.totalAmount, o.itemCount, o.status) " +
+           "from Order o where o.user.id = :userId " +
+           "and (o.createdAt, o.id) < (:createdAt, :id) " +
+           "order by o.createdAt desc, o.id desc")
+    List<Summary> findSummariesBefore(@Param("userId") Long userId,
+                                      @Param("createdAt") Instant createdAt,
+                                      @Param("id") Long id,
+                                      Limit limit);
+
+    /** One-off backfill of item_count for orders placed before the column existed. */
+    @Modifying
+    @Query(value = "update orders set item_count = " +
+                   "(select coalesce(sum(l.quantity), 0) from order_lines l where l.order_id = orders.id) " +
+                   "where item_count is null",
+           nativeQuery = true)
+    int backfillItemCounts();
+
+    // -------- Account erasure (set-based, chunked by the caller) --------
+
+    @Query(value = "select id from orders where user_id = :userId order by id limit :limit", nativeQuery = true)
+    List<Long> findIdsByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from order_lines where order_id in (:ids)", nativeQuery = true)
+    int deleteLinesByOrderIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from orders where id in (:ids)", nativeQuery = true)
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Moves the order from {@code expected} to {@code target}.
+     * @return 1 if the transition happened, 0 if the order was no longer in {@code expected}.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Order o set o.status = :target, o.updatedAt = :now " +
+           "where o.id = :id and o.status = :expected")
+    int transition(@Param("id") Long id,
+                   @Param("expected") OrderStatus expected,
+                   @Param("target") OrderStatus target,
+                   @Param("now") Instant now);
+}
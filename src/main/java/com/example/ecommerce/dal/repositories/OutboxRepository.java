@@ -0,0 +1,51 @@
+package com.example.ecommerce.dal.repositories;
+
+import com.example.ecommerce.dl.entities.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * DAL: outbox events.
+ * - lockDue: due rows, oldest first, locked with SKIP LOCKED so concurrent relays (other nodes) never
+ *   wait on each other nor pick the same row.
+ * - lease: pushes available_at past the dispatch window, so the rows stay invisible once the lock is released.
+ * - deleteByAggregateIds / deleteOrderEvents: account erasure, so undelivered or dead events never outlive the account.
+ *   order.refund_required is kept: it carries no personal data and a lost one would be a refund never paid.
+ */
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query(value = "select id from outbox_events " +
+                   "where dead_at is null and available_at <= :now " +
+                   "order by id limit :limit for update skip locked",
+           nativeQuery = true)
+    List<Long> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update OutboxEvent e set e.availableAt = :leaseUntil, e.attempts = e.attempts + 1 where e.id in :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.availableAt = :retryAt, e.lastError = :error where e.id = :id")
+    int reschedule(@Param("id") Long id, @Param("retryAt") Instant retryAt, @Param("error") String error);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.deadAt = :now, e.lastError = :error where e.id = :id")
+    int markDead(@Param("id") Long id, @Param("now") Instant now, @Param("error") String error);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.aggregateId in :aggregateIds")
+    int deleteByAggregateIds(@Param("aggregateIds") Collection<String> aggregateIds);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.type like 'order.%' and e.type <> 'order.refund_required'"
+            + " and e.aggregateId in :orderIds")
+    int deleteOrderEvents(@Param("orderIds") Collection<String> orderIds);
+
+    long countByDeadAtIsNull();
+}
@@ -2,14 +2,18 @@
 package com.example.ecommerce.dal.repositories;
 
 import com.example.ecommerce.dl.entities.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * ProductRepository
@@ -17,6 +21,9 @@ import java.util.Optional;
  * - Specifications pour filtres dynamiques (q/min/max/category).
  * - fetch-join pour le détail afin d'éviter les LazyInitializationException.
  * - Compteur d'usage d'une catégorie (pour sécuriser la suppression côté admin).
+ * - Ids seuls (max + flux) pour reconstruire le bitmap des produits existants (LookupFilters).
+ * - URL d'images locales par lots + réécriture ensembliste (migration du stockage des uploads).
+ * - URL d'images en flux (GC des images orphelines).
  */
 public interface ProductRepository
         extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
@@ -40,4 +47,48 @@ public interface ProductRepository
      * Utilisé pour interdire la suppression d'une catégorie encore utilisée.
      */
     long countByCategoryId(Long categoryId);
+
+    @Query("select max(p.id) from Product p")
+    Optional<Long> findMaxId();
+
+    /** À consommer dans une transaction (lecture seule) puis fermer. */
+    @Query("select p.id from Product p")
+    Stream<Long> streamAllIds();
+
+    /** À consommer dans une transaction (lecture seule) puis fermer. */
+    @Query("select p.imageUrl from Product p where p.imageUrl is not null")
+    Stream<String> streamImageUrls();
+
+    boolean existsByImageUrl(String imageUrl);
+
+    /** URL distinctes sous /uploads/, strictement après after (pagination par clé : lots stables pendant la réécriture). */
+    @Query("""
+           select distinct p.imageUrl
+           from Product p
+           where p.imageUrl like '/uploads/%' and p.imageUrl > :after
+           order by p.imageUrl
+           """)
+    List<String> findUploadUrlsAfter(@Param("after") String after, Limit limit);
+
+    /** URL distinctes d'images sans aperçu, strictement après after (pagination par clé). */
+    @Query("""
+           select distinct p.imageUrl from Product p
+           where p.imageUrl is not null and p.imagePlaceholder is null and p.imageUrl > :after
+           order by p.imageUrl
+           """)
+    List<String> findImageUrlsWithoutPlaceholderAfter(@Param("after") String after, Limit limit);
+
+    /** @return nombre de produits complétés (ceux qui ont déjà un aperçu ne sont pas touchés) */
+    @Modifying
+    @Query("""
+           update Product p set p.imagePlaceholder = :placeholder, p.imageColor = :color
+           where p.imageUrl = :url and p.imagePlaceholder is null
+           """)
+    int setImagePlaceholder(@Param("url") String url, @Param("placeholder") String placeholder,
+                            @Param("color") String color);
+
+    /** @return nombre de produits repointés */
+    @Modifying
+    @Query("update Product p set p.imageUrl = :to where p.imageUrl = :from")
+    int replaceImageUrl(@Param("from") String from, @Param("to") String to);
 }
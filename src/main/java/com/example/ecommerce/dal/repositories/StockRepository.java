@@ -0,0 +1,72 @@
+package com.example.ecommerce.dal.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * StockRepository
+ * ---------------
+ * Atomic stock reservation on the products table, without SELECT ... FOR UPDATE.
+ * - One conditional UPDATE per product: "stock = stock - ? WHERE id = ? AND stock >= ?".
+ *   The row lock only lives for the duration of the statement, and the predicate makes overselling impossible.
+ * - All lines are sent as a single JDBC batch, inside the caller's transaction.
+ * - Products are updated in ascending id order so concurrent multi-line orders cannot deadlock.
+ * - Hot products (stock_shards > 0) are never touched: their stock lives in stock_shards, and the check
+ *   sits in the same statement, so a product switched to hot mode by another node is refused, not decremented.
+ */
+@Repository
+public class StockRepository {
+
+    private static final String RESERVE_SQL =
+            "update products set stock = stock - ? where id = ? and stock >= ? and stock_shards = 0";
+
+    private final JdbcTemplate jdbc;
+
+    public StockRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Decrements the stock of every product, all-or-nothing.
+     * Must run inside a transaction: if one product lacks stock the caller's transaction has to roll back.
+     * @param quantities productId -> quantity (> 0)
+     * @return ids of the products that were not decremented (not enough stock, or hot), empty if every line was reserved
+     */
+    public List<Long> reserveAll(Map<Long, Integer> quantities) {
+        var sorted = new TreeMap<>(quantities);
+        var ids = sorted.keySet().toArray(Long[]::new);
+        int[][] counts = jdbc.batchUpdate(RESERVE_SQL, sorted.entrySet(), sorted.size(), (ps, e) -> {
+            ps.setInt(1, e.getValue());
+            ps.setLong(2, e.getKey());
+            ps.setInt(3, e.getValue());
+        });
+        var refused = new ArrayList<Long>();
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int updated : chunk) {
+                if (updated == 0) refused.add(ids[i]);
+                i++;
+            }
+        }
+        return refused;
+    }
+
+    /** Current stock of the given products (missing ids are simply absent from the result). */
+    public Map<Long, Integer> currentStock(Collection<Long> productIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (productIds.isEmpty()) return result;
+        String in = String.join(",", Collections.nCopies(productIds.size(), "?"));
+        jdbc.query("select id, stock from products where id in (" + in + ")",
+                rs -> { result.put(rs.getLong(1), rs.getInt(2)); },
+                productIds.toArray());
+        return result;
+    }
+}
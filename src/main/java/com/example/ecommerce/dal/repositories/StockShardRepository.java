@@ -0,0 +1,105 @@
+package com.example.ecommerce.dal.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * StockShardRepository
+ * --------------------
+ * Stock sub-counters of hot products (see StockShard).
+ * - take: same conditional UPDATE as StockRepository, but on a single shard row.
+ * - lockAll: fallback when no shard holds the full quantity alone (SELECT ... FOR UPDATE, shard order).
+ * - split / drain: (re)distribute products.stock into N shards, or fold them back.
+ *   Callers lock the product row first (lockProduct), so concurrent decrements wait for the switch.
+ * - shardCount reads the current mode from the database: the caller's cache may be stale (other nodes).
+ * All methods run inside the caller's transaction.
+ */
+@Repository
+public class StockShardRepository {
+
+    private static final String TAKE_SQL =
+            "update stock_shards set quantity = quantity - ? where product_id = ? and shard = ? and quantity >= ?";
+
+    private final JdbcTemplate jdbc;
+
+    public StockShardRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Decrements one shard if it holds at least qty units. */
+    public boolean take(Long productId, int shard, int qty) {
+        return jdbc.update(TAKE_SQL, qty, productId, shard, qty) == 1;
+    }
+
+    /** Locks every shard of the product and returns their quantities (shard -> quantity); empty if not hot. */
+    public SortedMap<Integer, Integer> lockAll(Long productId) {
+        SortedMap<Integer, Integer> quantities = new TreeMap<>();
+        jdbc.query("select shard, quantity from stock_shards where product_id = ? order by shard for update",
+                rs -> { quantities.put(rs.getInt(1), rs.getInt(2)); },
+                productId);
+        return quantities;
+    }
+
+    /** Locks the product row and returns its stock, or null if the product does not exist. */
+    public Integer lockProduct(Long productId) {
+        var stock = jdbc.queryForList("select stock from products where id = ? for update", Integer.class, productId);
+        return stock.isEmpty() ? null : stock.getFirst();
+    }
+
+    /** Current shard count of the product (0 = normal mode), or null if the product does not exist. */
+    public Integer shardCount(Long productId) {
+        var count = jdbc.queryForList("select stock_shards from products where id = ?", Integer.class, productId);
+        return count.isEmpty() ? null : count.getFirst();
+    }
+
+    public void add(Long productId, int shard, int delta) {
+        jdbc.update("update stock_shards set quantity = quantity + ? where product_id = ? and shard = ?",
+                delta, productId, shard);
+    }
+
+    /**
+     * Splits total into N shards (remainder spread over the first ones) and flags the product as hot.
+     * Existing shards are replaced.
+     */
+    public void split(Long productId, int total, int shards) {
+        jdbc.update("delete from stock_shards where product_id = ?", productId);
+        int base = total / shards, extra = total % shards;
+        var rows = new ArrayList<Object[]>(shards);
+        for (int i = 0; i < shards; i++) {
+            rows.add(new Object[]{productId, i, base + (i < extra ? 1 : 0)});
+        }
+        jdbc.batchUpdate("insert into stock_shards (product_id, shard, quantity) values (?, ?, ?)", rows);
+        jdbc.update("update products set stock = ?, stock_shards = ? where id = ?", total, shards, productId);
+    }
+
+    /** Folds the shards back into products.stock and turns hot-SKU mode off (shards locked first). */
+    public void drain(Long productId) {
+        lockAll(productId);
+        jdbc.update("""
+                update products set stock = coalesce((select sum(s.quantity) from stock_shards s where s.product_id = ?), stock),
+                                    stock_shards = 0
+                where id = ?""", productId, productId);
+        jdbc.update("delete from stock_shards where product_id = ?", productId);
+    }
+
+    /** Reports each hot product's total back into products.stock. */
+    public int flushTotals() {
+        return jdbc.update("""
+                update products set stock = (select coalesce(sum(s.quantity), 0) from stock_shards s where s.product_id = products.id)
+                where stock_shards > 0""");
+    }
+
+    /** Hot products: productId -> shard count. */
+    public Map<Long, Integer> findHot() {
+        Map<Long, Integer> result = new HashMap<>();
+        jdbc.query("select id, stock_shards from products where stock_shards > 0",
+                rs -> { result.put(rs.getLong(1), rs.getInt(2)); });
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.ecommerce.dal.repositories;
+
+import com.example.ecommerce.dl.entities.StoredImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * DAL: reference counts of content-addressed uploads.
+ * - Single-statement increments / decrements: concurrent uploads of the same picture never lose a reference.
+ * - deleteIfUnused: the row is removed (and locked until commit) only once no product points at the file.
+ * - count > 1: the upload migration moves every product sharing a legacy file in one statement.
+ * - lockByFileName: the orphan GC re-checks a candidate under the row lock before deleting it.
+ */
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    /** @return 1 if the image was already known (count more references), 0 otherwise. */
+    @Modifying
+    @Query("update StoredImage i set i.refCount = i.refCount + :count, i.lastUsedAt = :now where i.fileName = :name")
+    int retain(@Param("name") String fileName, @Param("count") int count, @Param("now") Instant now);
+
+    /** @return 1 if the row was created with count references, 0 if another upload created it first. */
+    @Modifying
+    @Query(value = "insert into stored_images (file_name, ref_count, size_bytes, created_at, last_used_at) " +
+                   "select :name, :count, :size, :now, :now " +
+                   "where not exists (select 1 from stored_images where file_name = :name)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("name") String fileName, @Param("count") int count,
+                       @Param("size") long sizeBytes, @Param("now") Instant now);
+
+    /** @return 0 if the file is not reference-counted (uploaded before content addressing). */
+    @Modifying
+    @Query("update StoredImage i set i.refCount = i.refCount - 1 where i.fileName = :name and i.refCount > 0")
+    int release(@Param("name") String fileName);
+
+    @Modifying
+    @Query("delete from StoredImage i where i.fileName = :name and i.refCount <= 0")
+    int deleteIfUnused(@Param("name") String fileName);
+
+    /** Row locked until commit: a concurrent upload of the same picture waits for the GC decision. */
+    @Query(value = "select * from stored_images where file_name = :name for update", nativeQuery = true)
+    Optional<StoredImage> lockByFileName(@Param("name") String fileName);
+}
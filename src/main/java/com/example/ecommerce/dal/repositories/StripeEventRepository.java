@@ -0,0 +1,71 @@
+package com.example.ecommerce.dal.repositories;
+
+import com.example.ecommerce.dl.entities.StripeEvent;
+import com.example.ecommerce.dl.enums.StripeEventStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * DAL: Stripe webhook events (idempotency table).
+ * - insertIfAbsent: single statement; two deliveries racing on the same id end with one insert
+ *   and one unique-key violation (to be treated as a duplicate by the caller).
+ * - claim: compare-and-set RECEIVED -> PROCESSING, so one event is applied by one worker only;
+ *   the claim is leased (available_at) so that another node can take it back if the worker dies.
+ * - finish: PROCESSED / FAILED; reschedule: back to RECEIVED, not before the given time (backoff).
+ * - requeueExpired only touches claims whose lease has run out: rows being processed by a live node stay put.
+ */
+public interface StripeEventRepository extends JpaRepository<StripeEvent, String> {
+
+    /** @return 1 if the event was stored, 0 if it had already been received. */
+    @Modifying
+    @Query(value = "insert into stripe_events (id, type, payload, status, attempts, received_at, available_at) " +
+                   "select :id, :type, :payload, 'RECEIVED', 0, :now, :availableAt " +
+                   "where not exists (select 1 from stripe_events where id = :id)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("type") String type,
+                       @Param("payload") String payload,
+                       @Param("now") Instant now,
+                       @Param("availableAt") Instant availableAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update StripeEvent e set e.status = com.example.ecommerce.dl.enums.StripeEventStatus.PROCESSING, " +
+           "e.attempts = e.attempts + 1, e.availableAt = :leaseUntil " +
+           "where e.id = :id and e.status = com.example.ecommerce.dl.enums.StripeEventStatus.RECEIVED")
+    int claim(@Param("id") String id, @Param("leaseUntil") Instant leaseUntil);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update StripeEvent e set e.status = :status, e.lastError = :error, e.processedAt = :now where e.id = :id")
+    int finish(@Param("id") String id,
+               @Param("status") StripeEventStatus status,
+               @Param("error") String error,
+               @Param("now") Instant now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update StripeEvent e set e.status = com.example.ecommerce.dl.enums.StripeEventStatus.RECEIVED, " +
+           "e.lastError = :error, e.availableAt = :retryAt where e.id = :id")
+    int reschedule(@Param("id") String id,
+                   @Param("error") String error,
+                   @Param("retryAt") Instant retryAt);
+
+    /** Claims whose lease ran out (worker or node died mid-processing) go back to the queue, due immediately. */
+    @Modifying
+    @Query("update StripeEvent e set e.status = com.example.ecommerce.dl.enums.StripeEventStatus.RECEIVED, " +
+           "e.availableAt = :now " +
+           "where e.status = com.example.ecommerce.dl.enums.StripeEventStatus.PROCESSING " +
+           "and (e.availableAt is null or e.availableAt < :now)")
+    int requeueExpired(@Param("now") Instant now);
+
+    /** RECEIVED events due for an attempt (submission rejected by a full queue, retries after backoff). */
+    @Query("select e from StripeEvent e " +
+           "where e.status = com.example.ecommerce.dl.enums.StripeEventStatus.RECEIVED " +
+           "and (e.availableAt is null or e.availableAt <= :now) " +
+           "order by e.receivedAt")
+    List<StripeEvent> findDue(@Param("now") Instant now, Limit limit);
+}
@@ -2,16 +2,35 @@ package com.example.ecommerce.dal.repositories;
 
 import com.example.ecommerce.dl.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * DAL: User repository.
  * No business logic here; just persistence access patterns needed by BLL.
+ * - replacePassword: compare-and-set on the stored hash, so a background re-hash never
+ *   overwrites a password changed in the meantime.
+ * - streamAllEmails: feeds the in-memory email filter rebuild (caller holds a read-only transaction).
  */
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * @return 1 if the hash was replaced, 0 if it no longer equals {@code expectedHash}.
+     */
+    @Modifying
+    @Query("update User u set u.password = :newHash where u.email = :email and u.password = :expectedHash")
+    int replacePassword(@Param("email") String email,
+                        @Param("expectedHash") String expectedHash,
+                        @Param("newHash") String newHash);
+
+    @Query("select u.email from User u")
+    Stream<String> streamAllEmails();
+}
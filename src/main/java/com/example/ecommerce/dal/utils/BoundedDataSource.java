@@ -0,0 +1,118 @@
+package com.example.ecommerce.dal.utils;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DataSource bounded by a fair semaphore (one permit per pooled connection).
+ * - With virtual threads nothing else limits how many requests reach the pool at once: thousands of them would
+ *   queue inside HikariCP and time out together. Here they wait in FIFO order, parked cheaply, and fail fast
+ *   (SQLTransientConnectionException -> CannotGetJdbcConnectionException) after acquireTimeout.
+ * - The permit is released when the connection is closed (returned to the pool), exactly once.
+ * - permits should equal the pool's maximum size: fewer wastes connections, more lets waiters pile up in the pool.
+ */
+public class BoundedDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final long acquireTimeoutNanos;
+
+    public BoundedDataSource(DataSource target, int permits, Duration acquireTimeout) {
+        super(target);
+        if (permits < 1) throw new IllegalArgumentException("permits must be >= 1");
+        this.permits = new Semaphore(permits, true);
+        this.maxPermits = permits;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return releasing(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return releasing(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int maxPermits() {
+        return maxPermits;
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    /** Threads currently waiting for a permit (estimate). */
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    // -------- Helpers --------
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException("No database permit within "
+                        + Duration.ofNanos(acquireTimeoutNanos).toMillis() + " ms (" + waiting() + " waiting)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+    }
+
+    // Proxy over the pooled connection: close() gives the permit back (once, even if close is called twice)
+    private Connection releasing(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "unwrap" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                        }
+                        case "isWrapperFor" -> {
+                            if (((Class<?>) args[0]).isInstance(proxy)) return true;
+                        }
+                        default -> { }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            permits.release();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.ecommerce.dl.entities;
+
+import com.example.ecommerce.dl.enums.ErasureStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Background erasure of a deleted account.
+ * - Holds the user id only (no FK, no email): the row outlives the user as a record of the erasure.
+ * - Counters are bumped chunk by chunk, in the same transaction as the deletes, so they show real progress.
+ */
+@Entity
+@Table(name = "erasure_jobs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_erasure_jobs_user", columnNames = "user_id"),
+        indexes = @Index(name = "ix_erasure_due", columnList = "status, available_at, id"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ErasureJob {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ErasureStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    /** Next time a worker may pick the job (retry backoff, or end of the current lease). */
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    @Column(nullable = false)
+    private Long cartLinesDeleted;
+
+    @Column(nullable = false)
+    private Long cartsDeleted;
+
+    @Column(nullable = false)
+    private Long orderLinesDeleted;
+
+    @Column(nullable = false)
+    private Long ordersDeleted;
+
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    private Instant finishedAt;
+}
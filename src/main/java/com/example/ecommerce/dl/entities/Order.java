@@ -0,0 +1,71 @@
+package com.example.ecommerce.dl.entities;
+
+import com.example.ecommerce.dl.enums.OrderStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order placed by a user at checkout.
+ * - Lines are price snapshots: later catalog changes never alter a placed order.
+ * - stripeSessionId links the order to its Stripe Checkout Session.
+ * - itemCount is computed once at checkout, so the order history never loads lines.
+ */
+@Entity
+@Table(name = "orders",
+        indexes = {
+                @Index(name = "ix_orders_user_created", columnList = "user_id, created_at, id"),
+                @Index(name = "ix_orders_status_created", columnList = "status, created_at")
+        })
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class Order {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_order_user"))
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderStatus status;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal totalAmount;
+
+    /** Sum of line quantities (null only for orders created before the column existed, see backfill). */
+    @Column(name = "item_count")
+    private Integer itemCount;
+
+    private String stripeSessionId;
+
+    @Builder.Default
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<OrderLine> lines = new ArrayList<>();
+
+    @Version
+    private Long version;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    void prePersist() {
+        this.createdAt = Instant.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    void preUpdate() {
+        this.updatedAt = Instant.now();
+    }
+}
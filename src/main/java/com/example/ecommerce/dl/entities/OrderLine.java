@@ -0,0 +1,41 @@
+package com.example.ecommerce.dl.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Order line = snapshot of a cart line at checkout time (name, unit price, quantity).
+ * The product is referenced by id only, so deleting a product never touches past orders.
+ */
+@Entity
+@Table(name = "order_lines",
+        indexes = {
+                @Index(name = "ix_orderline_order", columnList = "order_id"),
+                @Index(name = "ix_orderline_product", columnList = "product_id")
+        })
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class OrderLine {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "order_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_orderline_order"))
+    private Order order;
+
+    /** Plain id, no foreign key: the line keeps its snapshot when the product is later deleted. */
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private String productName;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal unitPrice;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
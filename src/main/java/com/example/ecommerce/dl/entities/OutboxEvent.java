@@ -0,0 +1,48 @@
+package com.example.ecommerce.dl.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Outbox row: a domain event written in the same transaction as the change it describes.
+ * - The relay picks due rows (available_at <= now) with FOR UPDATE SKIP LOCKED, leases them,
+ *   dispatches them in-process and deletes them once every listener succeeded (at-least-once).
+ * - A failed dispatch pushes available_at back (backoff); after too many attempts dead_at is set.
+ */
+@Entity
+@Table(name = "outbox_events",
+        indexes = @Index(name = "ix_outbox_due", columnList = "dead_at, available_at, id"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class OutboxEvent {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Event type, e.g. "order.placed", "cart.item_added". */
+    @Column(nullable = false, length = 64)
+    private String type;
+
+    /** Id of the aggregate the event is about (order id, user email, session id...). */
+    @Column(nullable = false)
+    private String aggregateId;
+
+    /** JSON payload. */
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "available_at", nullable = false)
+    private Instant availableAt;
+
+    @Column(name = "dead_at")
+    private Instant deadAt;
+
+    private String lastError;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+}
@@ -2,6 +2,7 @@ package com.example.ecommerce.dl.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -10,6 +11,10 @@ import java.time.Instant;
  * Product entity displayed in the public catalog.
  * - BigDecimal for precise monetary price handling.
  * - Optional category to allow unassigned products initially.
+ * - stockShards > 0 enables hot-SKU mode: stock lives in {@link StockShard} rows and
+ *   the stock column is a periodically refreshed total.
+ * - imagePlaceholder / imageColor: tiny inline preview (PNG data URI) and dominant color of the image,
+ *   computed at upload and shown while the image loads.
  */
 @Entity
 @Table(name = "products",
@@ -35,8 +40,19 @@ public class Product {
     @Column(nullable = false)
     private Integer stock;
 
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer stockShards = 0;
+
     private String imageUrl;
 
+    @Column(length = 2048)
+    private String imagePlaceholder;
+
+    @Column(length = 7)
+    private String imageColor;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id",
             foreignKey = @ForeignKey(name = "fk_product_category"))
@@ -0,0 +1,31 @@
+package com.example.ecommerce.dl.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One sub-counter of a hot product's stock (flash-sale mode).
+ * - The product's stock is split across N shards; checkouts decrement a random shard,
+ *   so concurrent buyers lock different rows instead of queuing on the single products row.
+ * - products.stock is refreshed periodically with the sum of the shards.
+ */
+@Entity
+@Table(name = "stock_shards",
+        uniqueConstraints = @UniqueConstraint(name = "ux_stockshard_product_shard", columnNames = {"product_id", "shard"}))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class StockShard {
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "product_id", nullable = false,
+            foreignKey = @ForeignKey(name = "fk_stockshard_product"))
+    private Product product;
+
+    @Column(nullable = false)
+    private Integer shard;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
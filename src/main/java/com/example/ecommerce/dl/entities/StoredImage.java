@@ -0,0 +1,35 @@
+package com.example.ecommerce.dl.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Uploaded image stored under its content hash.
+ * - fileName = storage key: "ab/cd/sha256hex.ext" (sharded layout), or "sha256hex.ext" for rows written before sharding.
+ * - refCount = number of products pointing at the file; the file (and its renditions) is deleted when it drops to 0.
+ * - Files uploaded before content addressing (random names) have no row and keep a single owner.
+ */
+@Entity
+@Table(name = "stored_images")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class StoredImage {
+
+    @Id
+    @Column(name = "file_name", length = 80)
+    private String fileName;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /** Last upload that took a reference (the orphan GC leaves recently used files alone). */
+    @Column(name = "last_used_at")
+    private Instant lastUsedAt;
+}
@@ -0,0 +1,49 @@
+package com.example.ecommerce.dl.entities;
+
+import com.example.ecommerce.dl.enums.StripeEventStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Raw Stripe webhook event, keyed by the Stripe event id.
+ * - The primary key makes ingestion idempotent: a retried delivery is never stored (nor applied) twice.
+ * - The payload is kept verbatim so that processing can be retried after a crash.
+ * - available_at: while PROCESSING, end of the worker's lease (past it, the claim is considered lost);
+ *   while RECEIVED, earliest next attempt (exponential backoff after a failure).
+ */
+@Entity
+@Table(name = "stripe_events",
+        indexes = @Index(name = "ix_stripe_events_status_available", columnList = "status, available_at"))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class StripeEvent {
+
+    @Id
+    @Column(length = 255)
+    private String id;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StripeEventStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false)
+    private Instant receivedAt;
+
+    private Instant processedAt;
+
+    // Null for rows stored before the column existed: treated as due / as an expired lease
+    @Column(name = "available_at")
+    private Instant availableAt;
+}
@@ -32,6 +32,10 @@ public class User {
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
 
+    /** Set when the user asked for account deletion: login is refused until the erasure job removes the row. */
+    @Column(name = "erasure_requested_at")
+    private Instant erasureRequestedAt;
+
     @PrePersist
     void prePersist() {
         this.createdAt = Instant.now();
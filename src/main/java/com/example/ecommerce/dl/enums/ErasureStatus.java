@@ -0,0 +1,15 @@
+package com.example.ecommerce.dl.enums;
+
+/**
+ * Lifecycle of an account erasure job.
+ * - PENDING : queued (or waiting for a retry after a failure).
+ * - RUNNING : leased by a worker; picked up again if the lease expires (node stopped mid-way).
+ * - DONE    : carts, orders and the user row are gone.
+ * - FAILED  : gave up after too many attempts (see last_error).
+ */
+public enum ErasureStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+}
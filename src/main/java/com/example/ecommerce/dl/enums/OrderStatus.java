@@ -0,0 +1,19 @@
+package com.example.ecommerce.dl.enums;
+
+/**
+ * Lifecycle of an order.
+ * - PENDING   : stock reserved, waiting for payment.
+ * - PAID      : payment confirmed, stock definitively consumed.
+ * - CANCELLED : customer cancelled, reservation released.
+ * - EXPIRED   : reservation timed out, stock released.
+ * - REFUND_REQUIRED : paid on Stripe but not fulfillable (stock missing, or paid after cancel/expiry).
+ * - REFUNDED  : payment refunded on Stripe (see OrderRefunds).
+ */
+public enum OrderStatus {
+    PENDING,
+    PAID,
+    CANCELLED,
+    EXPIRED,
+    REFUND_REQUIRED,
+    REFUNDED
+}
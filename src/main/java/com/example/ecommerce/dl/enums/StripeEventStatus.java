@@ -0,0 +1,15 @@
+package com.example.ecommerce.dl.enums;
+
+/**
+ * Processing state of a received Stripe webhook event.
+ * - RECEIVED   : stored, waiting for a worker (or a retry).
+ * - PROCESSING : claimed by a worker.
+ * - PROCESSED  : applied (or deliberately ignored).
+ * - FAILED     : gave up after too many attempts.
+ */
+public enum StripeEventStatus {
+    RECEIVED,
+    PROCESSING,
+    PROCESSED,
+    FAILED
+}
@@ -1,11 +1,9 @@
 package com.example.ecommerce.il.dto;
 
-import java.math.BigDecimal;
-
 public record CartLineDto(
         Long productId,
         String productName,
-        BigDecimal unitPrice,
+        Money unitPrice,
         Integer quantity,
-        BigDecimal lineTotal
+        Money lineTotal
 ) {}
\ No newline at end of file
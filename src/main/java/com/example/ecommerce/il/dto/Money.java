@@ -0,0 +1,85 @@
+package com.example.ecommerce.il.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Montant monétaire en unités mineures (centimes) + devise.
+ * - Arithmétique sur long (pas d'allocation BigDecimal à chaque calcul de panier).
+ * - Dépassement => ArithmeticException (addExact / multiplyExact), devises différentes => IllegalArgumentException.
+ * - Conversion BigDecimal uniquement à la frontière persistance (Product.price, Order.totalAmount...).
+ * - toString() rend le montant sans devise ("12.34"), tel qu'affiché par les vues.
+ */
+public record Money(long minor, Currency currency) implements Comparable<Money> {
+
+    public static final Currency EUR = Currency.getInstance("EUR");
+
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000};
+
+    public Money {
+        if (currency == null) throw new IllegalArgumentException("Currency is required");
+        if (currency.getDefaultFractionDigits() < 0 || currency.getDefaultFractionDigits() >= POW10.length) {
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        }
+    }
+
+    public static Money ofMinor(long minor, Currency currency) {
+        return new Money(minor, currency);
+    }
+
+    public static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    /** Frontière persistance : BigDecimal (grande unité) -> unités mineures, arrondi HALF_UP. */
+    public static Money of(BigDecimal amount, Currency currency) {
+        if (amount == null) return zero(currency);
+        return new Money(amount.setScale(currency.getDefaultFractionDigits(), RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact(), currency);
+    }
+
+    public static Money eur(BigDecimal amount) {
+        return of(amount, EUR);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minor, other.minor), currency);
+    }
+
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(minor, quantity), currency);
+    }
+
+    public boolean isZero() {
+        return minor == 0;
+    }
+
+    /** Frontière persistance : unités mineures -> BigDecimal (grande unité). */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, currency.getDefaultFractionDigits());
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public String toString() {
+        int digits = currency.getDefaultFractionDigits();
+        if (digits == 0) return Long.toString(minor);
+        long unit = POW10[digits];
+        long abs = Math.abs(minor);
+        String fraction = Long.toString(unit + abs % unit).substring(1); // zéros de tête conservés
+        return (minor < 0 ? "-" : "") + (abs / unit) + "." + fraction;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+}
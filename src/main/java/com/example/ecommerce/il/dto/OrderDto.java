@@ -0,0 +1,9 @@
+package com.example.ecommerce.il.dto;
+
+import java.util.List;
+
+public record OrderDto(
+        Long id,
+        List<OrderLineDto> lines,
+        Money totalAmount
+) {}
@@ -0,0 +1,12 @@
+package com.example.ecommerce.il.dto;
+
+import java.util.List;
+
+/**
+ * Page de l'historique des commandes (de la plus récente à la plus ancienne).
+ * @param nextCursor curseur opaque de la page suivante, null sur la dernière page
+ */
+public record OrderHistoryPage(
+        List<OrderSummaryDto> orders,
+        String nextCursor
+) {}
@@ -0,0 +1,8 @@
+package com.example.ecommerce.il.dto;
+
+public record OrderLineDto(
+        Long productId,
+        String productName,
+        Money unitPrice,
+        Integer quantity
+) {}
@@ -0,0 +1,12 @@
+package com.example.ecommerce.il.dto;
+
+import java.time.Instant;
+
+/** Ligne de l'historique des commandes (sans les lignes de commande). */
+public record OrderSummaryDto(
+        Long id,
+        Instant createdAt,
+        Money totalAmount,
+        int itemCount,
+        String status
+) {}
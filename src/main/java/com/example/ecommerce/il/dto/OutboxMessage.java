@@ -0,0 +1,10 @@
+package com.example.ecommerce.il.dto;
+
+import java.time.Instant;
+
+/**
+ * Événement de domaine relayé depuis l'outbox (publié comme événement Spring, hors requête utilisateur).
+ * Livraison "au moins une fois" : un listener peut recevoir deux fois le même id et doit le tolérer.
+ * @param payload JSON
+ */
+public record OutboxMessage(Long id, String type, String aggregateId, String payload, Instant createdAt, int attempt) {}
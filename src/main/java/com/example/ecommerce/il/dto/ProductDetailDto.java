@@ -10,7 +10,10 @@ public record ProductDetailDto(
         String name,
         String description,
         BigDecimal price,
-        Integer stock,
+        Integer stock,          // stock en base (édition admin)
         String categoryName,
-        String imageUrl
+        String imageUrl,
+        String imageSrcset,     // déclinaisons redimensionnées ("" si aucune)
+        Integer availableStock, // stock moins les réservations en cours (affichage catalogue)
+        Integer stockShards     // > 0 : mode hot SKU (stock réparti en sous-compteurs)
 ) {}
\ No newline at end of file
@@ -7,5 +7,9 @@ public record ProductListItemDto(
         String name,
         BigDecimal price,
         String categoryName,
-        String imageUrl
+        String imageUrl,
+        String imageSrcset,     // déclinaisons redimensionnées ("" si aucune)
+        String imagePlaceholder, // aperçu flou en data URI (null si non calculé)
+        String imageColor,      // couleur dominante "#rrggbb" (null si non calculée)
+        Integer availableStock
 ) {}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.ecommerce.il.interfaces;
+
+import com.example.ecommerce.il.dto.OrderDto;
+import com.example.ecommerce.il.dto.OrderHistoryPage;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Contrat des commandes (pipeline de checkout) :
+ * - Création : fige les prix du panier et pose un hold temporaire sur le stock (tout ou rien).
+ * - Paiement confirmé : décrémente le stock en base et consomme le hold.
+ * - Annulation / expiration : libère le hold une seule fois.
+ * - Historique : résumés paginés par curseur (keyset), sans charger les lignes.
+ */
+public interface OrderService {
+
+    /**
+     * Crée une commande PENDING à partir du panier courant et réserve le stock.
+     * Les commandes PENDING précédentes de l'utilisateur sont annulées (session Stripe expirée, hold libéré).
+     * @throws IllegalArgumentException si le panier est vide
+     * @throws IllegalStateException    si l'utilisateur n'est pas connecté
+     * @throws com.example.ecommerce.bll.services.OutOfStockException si un produit manque de stock
+     */
+    OrderDto placeOrder(HttpSession session);
+
+    /** true si la commande appartient à l'utilisateur courant et attend encore son paiement (PENDING). */
+    boolean isAwaitingPayment(Long orderId);
+
+    /** Associe la Checkout Session Stripe créée pour cette commande. */
+    void attachStripeSession(Long orderId, String stripeSessionId);
+
+    /**
+     * Confirme une commande PENDING de l'utilisateur courant si Stripe indique la session payée :
+     * passage en PAID, décrément du stock en base, consommation du hold.
+     * @return true si la commande est (désormais) payée
+     * @throws com.example.ecommerce.bll.services.OutOfStockException stock manquant en base : rien n'est
+     *         appliqué et la commande passe en REFUND_REQUIRED
+     */
+    boolean confirmPayment(Long orderId);
+
+    /**
+     * Webhook Stripe (événement signé, pas d'utilisateur connecté) : la session de la commande est payée.
+     * Idempotent : une commande déjà PAID n'est pas réappliquée.
+     * Commande annulée/expirée entre-temps : passe en REFUND_REQUIRED.
+     * @return true si la commande est (désormais) payée
+     * @throws com.example.ecommerce.bll.services.OutOfStockException comme {@link #confirmPayment(Long)}
+     */
+    boolean markPaid(Long orderId, String stripeSessionId);
+
+    /** Webhook Stripe : la session a expiré, la commande PENDING passe en EXPIRED et son hold est libéré. */
+    void markExpired(Long orderId, String stripeSessionId);
+
+    /**
+     * Annule une commande PENDING de l'utilisateur courant : expire sa session Stripe puis libère son hold.
+     * Sans effet si la commande n'est plus PENDING ou n'appartient pas à l'utilisateur,
+     * ni si la session Stripe n'a pas pu être expirée (le hold reste jusqu'au webhook ou à son échéance).
+     */
+    void cancel(Long orderId);
+
+    /**
+     * Comme {@link #cancel(Long)}, sans contrôle d'appartenance (traitements internes : effacement de compte).
+     * @return true si la commande n'est plus PENDING (annulée, ou déjà finalisée),
+     *         false si elle attend encore un paiement (session payée entre-temps, Stripe indisponible)
+     */
+    boolean cancelPending(Long orderId);
+
+    /**
+     * Historique des commandes de l'utilisateur courant, de la plus récente à la plus ancienne.
+     * @param cursor curseur renvoyé par la page précédente (null = première page)
+     * @param size   nombre de commandes par page
+     * @throws IllegalStateException    si l'utilisateur n'est pas connecté
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    OrderHistoryPage history(String cursor, int size);
+
+    /**
+     * Filet de sécurité : expire les commandes PENDING dont la réservation a dépassé son délai
+     * (holds perdus, nœud arrêté...). Le cas nominal est géré par l'InventoryLedger.
+     * @return nombre de commandes expirées
+     */
+    int expireStaleReservations();
+}
@@ -19,6 +19,9 @@ public interface ProductService {
 
     void update(Long id, String name, String description, BigDecimal price, Integer stock, Long categoryId, String imageUrl);
 
+    /** Mode hot SKU : 0 = désactivé, N = stock réparti sur N sous-compteurs. */
+    void setStockShards(Long id, int shards);
+
     void delete(Long id);
 
     /** ✅ Nouveau : renvoie l'id de catégorie du produit (si présent). */
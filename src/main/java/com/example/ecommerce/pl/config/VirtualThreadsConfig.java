@@ -0,0 +1,136 @@
+package com.example.ecommerce.pl.config;
+
+import com.example.ecommerce.dal.utils.BoundedDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Profil "virtual" (spring.threads.virtual.enabled=true, cf. application-virtual.yml)
+ * -------------------------------------------------------------------------------------
+ * Spring Boot passe alors Tomcat, @Async (applicationTaskExecutor) et @Scheduled sur des threads virtuels. Ce qui
+ * bornait la concurrence (200 threads Tomcat) disparaît ; on la rétablit là où elle compte :
+ *  - Base : DataSource enveloppée dans un BoundedDataSource (sémaphore équitable, autant de permis que de connexions
+ *    HikariCP, app.datasource.acquire-timeout) ; gauges db.permits.available / db.permits.waiting.
+ *  - Épinglage : flux JFR jdk.VirtualThreadPinned (thread virtuel bloqué sur son porteur au-delà de
+ *    app.virtual-threads.pinned-threshold) => WARN avec la pile, une fois par site, et compteur
+ *    jvm.threads.virtual.pinned. Règle du code : pas de synchronized autour d'une I/O (ReentrantLock).
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+    /** Sémaphore devant la DataSource (permis = app.datasource.max-concurrent, sinon taille max du pool Hikari). */
+    @Bean
+    public static BeanPostProcessor boundedDataSourcePostProcessor(Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource ds) || bean instanceof BoundedDataSource) return bean;
+                int permits = env.getProperty("app.datasource.max-concurrent", Integer.class, 0);
+                if (permits <= 0) permits = ds instanceof HikariDataSource h ? h.getMaximumPoolSize() : 10;
+                Duration timeout = env.getProperty("app.datasource.acquire-timeout", Duration.class, Duration.ofSeconds(10));
+                log.info("[VT][DB] '{}' bounded to {} concurrent connection(s), acquire timeout {} ms",
+                        beanName, permits, timeout.toMillis());
+                return new BoundedDataSource(ds, permits, timeout);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder boundedDataSourceMetrics(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof BoundedDataSource bounded)) return;
+            Gauge.builder("db.permits.available", bounded, BoundedDataSource::availablePermits)
+                    .description("Connexions encore disponibles sous le sémaphore")
+                    .register(registry);
+            Gauge.builder("db.permits.waiting", bounded, BoundedDataSource::waiting)
+                    .description("Threads en attente d'une connexion")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public PinningMonitor pinningMonitor(@Value("${app.virtual-threads.pinned-threshold:20ms}") Duration threshold,
+                                         MeterRegistry meters) {
+        return new PinningMonitor(threshold, meters);
+    }
+
+    /** Écoute jdk.VirtualThreadPinned en continu (JFR, surcoût négligeable : événement au-delà du seuil seulement). */
+    public static class PinningMonitor implements DisposableBean {
+
+        private static final int MAX_SITES = 100;
+
+        private final Duration threshold;
+        private final Counter pinned;
+        private final Set<String> reported = ConcurrentHashMap.newKeySet();
+        private RecordingStream stream;
+
+        PinningMonitor(Duration threshold, MeterRegistry meters) {
+            this.threshold = threshold;
+            this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+                    .description("Threads virtuels épinglés sur leur porteur au-delà du seuil")
+                    .register(meters);
+        }
+
+        @EventListener(ApplicationReadyEvent.class)
+        public void start() {
+            try {
+                stream = new RecordingStream();
+                stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+                stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+                stream.startAsync();
+            } catch (RuntimeException e) {
+                log.warn("[VT][PINNED] JFR unavailable, pinning not monitored : {}", e.getMessage());
+            }
+        }
+
+        private void onPinned(RecordedEvent event) {
+            pinned.increment();
+            List<String> frames = event.getStackTrace() == null ? List.of()
+                    : event.getStackTrace().getFrames().stream().map(PinningMonitor::frame).toList();
+            // Site = première frame de l'application (sinon le haut de la pile)
+            String site = frames.stream().filter(f -> f.startsWith("com.example."))
+                    .findFirst().orElse(frames.isEmpty() ? "?" : frames.get(0));
+            if (reported.size() < MAX_SITES && reported.add(site)) {
+                log.warn("[VT][PINNED] {} ms at {}\n  {}", event.getDuration().toMillis(), site,
+                        frames.stream().limit(12).collect(Collectors.joining("\n  ")));
+            }
+        }
+
+        private static String frame(RecordedFrame f) {
+            return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+        }
+
+        @Override
+        public void destroy() {
+            if (stream != null) stream.close();
+        }
+    }
+}
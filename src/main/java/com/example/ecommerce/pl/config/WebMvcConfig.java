@@ -2,28 +2,36 @@
 package com.example.ecommerce.pl.config;
 
 import com.example.ecommerce.pl.interceptors.CartCountInterceptor;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
 
 /**
  * Configuration Web :
  *  - Gère l’intercepteur du badge panier
- *  - Expose le dossier "uploads" pour les images uploadées par l’admin
+ *  - Sert les CSS / SVG statiques avec leurs variantes précompressées (.br / .gz)
+ *  - Empreinte de contenu dans l'URL (/css/theme-<md5>.css, cf. asset() dans macros.ftlh) :
+ *    URL versionnée => cache d'un an immutable ; URL nue => revalidation (Last-Modified / 304)
+ *  - Les images uploadées (/uploads/**) sont servies par MediaController
  */
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
-    private final CartCountInterceptor cartCountInterceptor;
+    // "theme-0123456789abcdef0123456789abcdef.css" (empreinte posée par VersionResourceResolver) ;
+    // pas de quantificateur {32} : les accolades ferment la variable du PathPattern
+    private static final String FINGERPRINTED = ".+-" + "[0-9a-f]".repeat(32) + "\\.[A-Za-z0-9]+";
 
-    // Injection de la propriété définie dans application.yml
-    @Value("${app.upload-dir}")
-    private String uploadDir;
+    private final CartCountInterceptor cartCountInterceptor;
 
     public WebMvcConfig(CartCountInterceptor cartCountInterceptor) {
         this.cartCountInterceptor = cartCountInterceptor;
@@ -41,13 +49,30 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 🔹 Transforme le chemin défini dans application.yml en chemin absolu
-        Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
-        String location = "file:" + uploadPath + "/";
-
-        // 🔹 Expose le dossier local "uploads" à l’URL publique /uploads/**
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations(location)
-                .setCachePeriod(3600); // Cache navigateur 1h
+        // 🔹 CSS / images : variante précompressée (.br / .gz générée au build) si le navigateur l'accepte,
+        //    empreinte MD5 du contenu dans le nom (calculée une fois par fichier, mémorisée par la chaîne)
+        //    (/uploads/** est servi par MediaController : sendfile, Range, ETag)
+        for (String dir : new String[]{"css", "images"}) {
+            // Pattern le plus précis d'abord : "nom-<32 hex>.ext" ne change jamais de contenu
+            chain(registry.addResourceHandler("/" + dir + "/{file:" + FINGERPRINTED + "}"), dir)
+                    .setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable());
+            chain(registry.addResourceHandler("/" + dir + "/**"), dir)
+                    .setCacheControl(CacheControl.noCache());
+        }
+    }
+
+    /** Réécrit les URL passées par response.encodeURL (asset() de macros.ftlh) en URL versionnées. */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
+    }
+
+    private static ResourceHandlerRegistration chain(ResourceHandlerRegistration registration, String dir) {
+        registration.addResourceLocations("classpath:/static/" + dir + "/")
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                .addResolver(new PathResourceResolver());
+        return registration;
     }
 }
@@ -1,9 +1,8 @@
 // src/main/java/com/example/ecommerce/pl/controllers/AccountController.java
 package com.example.ecommerce.pl.controllers;
 
-import com.example.ecommerce.dal.repositories.CartRepository;
-import com.example.ecommerce.dal.repositories.UserRepository;
-import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.bll.services.AccountErasure;
+import com.example.ecommerce.il.interfaces.OrderService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
@@ -12,16 +11,19 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
-
 /**
- * Suppression de compte (self-service) pour l'utilisateur connecté.
- * - Supprime les paniers de l'utilisateur (cascade -> lignes).
- * - Supprime l'utilisateur.
+ * Espace compte de l'utilisateur connecté.
+ * Historique des commandes (GET /account) : résumés paginés par curseur (?after=...).
+ * Suppression de compte (self-service) :
+ * - Met en file un job d'effacement (AccountErasure) : login refusé immédiatement,
+ *   paniers / commandes / compte supprimés en arrière-plan par lots.
  * - Déconnecte et invalide la session.
  */
 @Controller
@@ -29,12 +31,29 @@ import java.util.List;
 @PreAuthorize("isAuthenticated()")
 public class AccountController {
 
-    private final UserRepository users;
-    private final CartRepository carts;
+    private static final int PAGE_SIZE = 20;
+
+    private final OrderService orderService;
+    private final AccountErasure erasure;
+
+    public AccountController(OrderService orderService, AccountErasure erasure) {
+        this.orderService = orderService;
+        this.erasure = erasure;
+    }
 
-    public AccountController(UserRepository users, CartRepository carts) {
-        this.users = users;
-        this.carts = carts;
+    @GetMapping
+    public String history(@RequestParam(name = "after", required = false) String after,
+                          Model model,
+                          RedirectAttributes ra) {
+        try {
+            model.addAttribute("history", orderService.history(after, PAGE_SIZE));
+        } catch (IllegalArgumentException e) {
+            // Curseur altéré : retour à la première page
+            ra.addFlashAttribute("error", "Invalid page link.");
+            return "redirect:/account";
+        }
+        model.addAttribute("firstPage", after == null || after.isBlank());
+        return "account/orders";
     }
 
     @PostMapping("/delete")
@@ -49,31 +68,23 @@ public class AccountController {
             return "redirect:/products";
         }
 
-        String email = auth.getName();
-        User u = users.findByEmail(email).orElse(null);
-        if (u == null) {
+        // 1) Effacement en arrière-plan (le compte ne peut plus se connecter dès maintenant)
+        try {
+            erasure.request(auth.getName());
+        } catch (IllegalArgumentException e) {
             new SecurityContextLogoutHandler().logout(request, response, auth);
             ra.addFlashAttribute("error", "Account not found.");
             return "redirect:/products";
         }
 
-        // 1) Supprimer les paniers liés (lines supprimées via cascade/orphanRemoval sur Cart)
-        List<com.example.ecommerce.dl.entities.Cart> allCarts = carts.findAllByUser(u);
-        if (!allCarts.isEmpty()) {
-            carts.deleteAll(allCarts);
-        }
-
-        // 2) Supprimer l'utilisateur
-        users.delete(u);
-
-        // 3) Logout + invalider session
+        // 2) Logout + invalider session
         new SecurityContextLogoutHandler().logout(request, response, auth);
         if (session != null) {
             try { session.invalidate(); } catch (IllegalStateException ignored) {}
         }
 
-        // 4) Feedback (toast côté UI)
-        ra.addFlashAttribute("toast", "✅ Your account has been deleted.");
+        // 3) Feedback (toast côté UI)
+        ra.addFlashAttribute("toast", "✅ Your account is being deleted.");
         return "redirect:/products";
     }
 }
@@ -143,19 +143,31 @@ public class AdminProductController {
         }
     }
 
+    /** Active / désactive le mode hot SKU (vente flash) : stock réparti sur N sous-compteurs. */
+    @PostMapping("/{id}/shards")
+    public String stockShards(@PathVariable Long id,
+                              @RequestParam(defaultValue = "0") Integer shards,
+                              RedirectAttributes ra) {
+        try {
+            productService.setStockShards(id, shards);
+            ra.addFlashAttribute("toast", shards > 0 ? "🔥 Mode hot SKU activé (" + shards + " shards)" : "Mode hot SKU désactivé");
+        } catch (Exception e) {
+            ra.addFlashAttribute("error", "❌ Erreur : " + e.getMessage());
+        }
+        return "redirect:/admin/products/" + id + "/edit";
+    }
+
     @PostMapping("/{id}/delete")
     public String delete(@PathVariable Long id, RedirectAttributes ra) {
         try {
-            // Supprime physiquement l'image si elle est sous /uploads/
-            var detail = productService.findDetail(id);
-            detail.ifPresent(d -> {
-                String img = d.imageUrl();  // ✅ ton DTO expose imageUrl()
-                if (img != null && !img.isBlank()) {
-                    imageStorageService.deleteIfOwned(img);
-                }
-            });
-
+            String img = productService.findDetail(id).map(d -> d.imageUrl()).orElse(null);
             productService.delete(id);
+
+            // Supprime physiquement l'image (si elle est sous /uploads/) une fois la suppression commitée :
+            // un échec de suppression ne laisse pas un produit sans image
+            if (img != null && !img.isBlank()) {
+                imageStorageService.deleteIfOwned(img);
+            }
             ra.addFlashAttribute("toast", "🗑️ Produit supprimé");
         } catch (Exception e) {
             ra.addFlashAttribute("error", "❌ Erreur lors de la suppression : " + e.getMessage());
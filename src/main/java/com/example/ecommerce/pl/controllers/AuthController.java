@@ -1,8 +1,11 @@
 package com.example.ecommerce.pl.controllers;
 
+import com.example.ecommerce.bll.utils.BoundedPasswordEncoder;
 import com.example.ecommerce.il.interfaces.AuthService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -21,6 +24,9 @@ import org.springframework.web.bind.annotation.*;
  *    .loginProcessingUrl("/auth/login") if your form POSTs to /auth/login.
  *    Otherwise, either change the form action to /login or configure loginProcessingUrl.
  *
+ *  - Password hashing runs on a bounded pool: when it is saturated, login and register
+ *    answer 429 (Retry-After) with a "try again" message instead of queueing indefinitely.
+ *
  *  - The templates should render ${error} and ${message} if present:
  *      - login.ftlh: show ${error} / ${message}
  *      - register.ftlh: show ${error} if registration fails
@@ -29,6 +35,8 @@ import org.springframework.web.bind.annotation.*;
 @RequestMapping("/auth")
 public class AuthController {
 
+    private static final String BUSY_MESSAGE = "We are receiving a lot of sign-ins right now. Please try again in a few seconds.";
+
     private final AuthService authService;
 
     public AuthController(AuthService authService) {
@@ -59,6 +67,17 @@ public class AuthController {
         return "auth/login";
     }
 
+    /**
+     * /auth/login/busy (forward from LoginFailureHandler)
+     * Login rejected because password hashing is saturated: same page, HTTP 429.
+     */
+    @RequestMapping("/login/busy")
+    public String loginBusy(HttpServletResponse response, Model model) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        model.addAttribute("error", BUSY_MESSAGE);
+        return "auth/login";
+    }
+
     /**
      * GET /auth/register
      * Show the registration form.
@@ -78,6 +97,7 @@ public class AuthController {
     public String register(@RequestParam @Email String email,
                            @RequestParam @NotBlank String password,
                            @RequestParam @NotBlank String confirm,
+                           HttpServletResponse response,
                            Model model) {
 
         // Normalize trivial whitespace in email
@@ -97,6 +117,11 @@ public class AuthController {
             authService.registerUser(normalizedEmail, password);
             // Add a flag so the login page can show a friendly message
             return "redirect:/auth/login?registered";
+        } catch (BoundedPasswordEncoder.BusyException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", "2");
+            model.addAttribute("error", BUSY_MESSAGE);
+            return "auth/register";
         } catch (Exception e) {
             // Surface the service error (e.g., duplicate email)
             model.addAttribute("error", e.getMessage());
@@ -1,25 +1,35 @@
 package com.example.ecommerce.pl.controllers;
 
+import com.example.ecommerce.bll.services.CheckoutSessionCache;
+import com.example.ecommerce.bll.services.OutOfStockException;
 import com.example.ecommerce.bll.services.StripeService;
 import com.example.ecommerce.il.dto.CartDto;
+import com.example.ecommerce.il.dto.Money;
+import com.example.ecommerce.il.dto.OrderDto;
 import com.example.ecommerce.il.interfaces.CartService;
+import com.example.ecommerce.il.interfaces.OrderService;
 import com.stripe.exception.StripeException;
 import com.stripe.model.checkout.Session;
 import com.stripe.param.checkout.SessionCreateParams;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.LongFunction;
 
 /**
  * =============================================================================
@@ -33,38 +43,56 @@ import java.util.List;
  *    - Affiche un récapitulatif avec un bouton "Payer avec Stripe".
  *
  * 2) POST /create-checkout-session
- *    - Transforme chaque ligne du panier en LineItem Stripe (nom, quantité,
+ *    - Crée une commande PENDING (OrderService) : prix figés + hold temporaire
+ *      sur le stock (InventoryLedger, tout ou rien, sans verrou en base).
+ *    - Transforme chaque ligne de la commande en LineItem Stripe (nom, quantité,
  *      prix unitaire en CENTIMES).
  *    - Crée une Checkout Session Stripe (page de paiement hébergée) puis
  *      redirige l’utilisateur vers l’URL Stripe.
- *    - Ne modifie PAS la base de données ici : la preuve de paiement viendra
- *      du webhook Stripe (étape 3) pour éviter toute fraude.
+ *    - Le paiement n'est PAS considéré comme acquis ici : la preuve viendra
+ *      du webhook Stripe pour éviter toute fraude.
  *
  * 3) GET /checkout/success
- *    - Affiche simplement une page de succès après le retour de Stripe.
- *    - ⚠ Ne pas vider le panier ici (URL invocable manuellement). Le vidage
- *      se fera côté serveur via le webhook quand Stripe confirme le paiement.
+ *    - Confirme la commande si Stripe indique la session payée (vérifiée côté
+ *      serveur, la redirection seule ne prouve rien) : stock décrémenté, hold consommé,
+ *      produits achetés retirés du panier.
+ *    - Le webhook Stripe (/stripe/webhook, StripeWebhookController) applique la même
+ *      confirmation si l'utilisateur ne revient jamais ; le premier arrivé gagne.
  *
- * 4) GET /checkout/cancel
- *    - Affiche une page d’annulation et propose de réessayer ou revenir au panier.
+ * 4) GET /checkout/cancel (retour "annuler" depuis Stripe)
+ *    - Page d’atterrissage sans effet : la session Stripe reste ouverte, le client peut
+ *      reprendre le paiement ou annuler explicitement.
+ *    - POST /checkout/cancel (CSRF) : expire la session Stripe puis libère le hold.
  *
  * Sécurité & robustesse :
  * - Les prix proviennent uniquement du serveur (pas du front), donc pas de
  *   confiance dans les montants envoyés par l’utilisateur.
  * - Les URLs success/cancel sont absolues (calculées dynamiquement à partir
  *   de la requête), adaptées au dev et à la prod.
- * - Conversion des euros → centimes via RoundingMode.HALF_UP (norme courante).
+ * - Montants manipulés en Money (centimes, long) : Stripe reçoit directement les unités mineures.
  */
 @Controller
 @RequiredArgsConstructor
 public class CheckoutController {
 
+    private static final Logger log = LoggerFactory.getLogger(CheckoutController.class);
+
     /** Accès au panier (lecture des lignes, total, etc.). */
     private final CartService cartService;
 
     /** Service enveloppant le SDK Stripe (clé secrète initialisée au démarrage). */
     private final StripeService stripeService;
 
+    /** Commandes : snapshot des prix + réservation de stock. */
+    private final OrderService orderService;
+
+    /** Réutilisation de la session Stripe pour un même panier (double clic, rafraîchissement). */
+    private final CheckoutSessionCache sessionCache;
+
+    /** Durée de la réservation = durée de validité de la session Stripe (min. 30 min côté Stripe). */
+    @Value("${app.checkout.reservation-ttl:PT30M}")
+    private Duration reservationTtl;
+
     // -------------------------------------------------------------------------
     // ViewModel (interne à la vue) : on expose uniquement ce qui est utile
     // à l’affichage du récapitulatif, sans fuiter les détails du domaine.
@@ -72,32 +100,14 @@ public class CheckoutController {
     public record CheckoutItemVM(
             String name,          // Nom affiché du produit
             long quantity,        // Quantité achetée
-            BigDecimal unitPrice, // Prix unitaire en euros (grande unité)
-            BigDecimal lineTotal  // Total ligne (unitPrice * quantity), en euros
+            Money unitPrice,      // Prix unitaire (centimes + devise)
+            Money lineTotal       // Total ligne (unitPrice * quantity)
     ) {}
 
     // =========================================================================
     // Helpers
     // =========================================================================
 
-    /**
-     * Convertit un montant en euros (grande unité) vers les centimes (petite unité)
-     * exigés par Stripe (entier).
-     *
-     * Exemple :
-     *  - 12,34 €  →  1234 (centimes)
-     *
-     * Pourquoi RoundingMode.HALF_UP ?
-     *  - Comportement attendu pour l’arrondi monétaire (pas de constantes dépréciées).
-     */
-    private long toCents(BigDecimal amount) {
-        // movePointRight(2) ≈ amount * 100 ; setScale(0, RoundingMode.HALF_UP) évite les fractions
-        return amount
-                .movePointRight(2)
-                .setScale(0, RoundingMode.HALF_UP) // ✅ API moderne (int, int) dépréciée évitée
-                .longValueExact();                  // jette ArithmeticException si dépassement (improbable ici)
-    }
-
     /**
      * Construit l’URL de base absolue à partir de la requête (protocole + host [+ port]).
      * Exemples : http://localhost:8080  |  https://shop.example.com
@@ -122,7 +132,9 @@ public class CheckoutController {
      *   on calcule le total et on envoie le tout à la vue FreeMarker.
      */
     @GetMapping("/checkout")
-    public String checkout(Authentication auth, HttpSession session, HttpServletRequest req, Model model) {
+    public String checkout(Authentication auth, HttpSession session, HttpServletRequest req,
+                           @RequestParam(required = false) String outOfStock,
+                           Model model) {
         // Garde : authentification requise (au cas où la config sécurité ne le force pas déjà)
         if (auth == null || !auth.isAuthenticated()) {
             return "redirect:/auth/login?next=/checkout";
@@ -133,7 +145,7 @@ public class CheckoutController {
 
         // Préparation des données pour la vue
         var items = new ArrayList<CheckoutItemVM>();
-        BigDecimal total = BigDecimal.ZERO;
+        Money total = Money.zero(Money.EUR);
 
         if (cart != null && cart.lines() != null) {
             cart.lines().forEach(l -> {
@@ -147,13 +159,16 @@ public class CheckoutController {
                 items.add(vm);
             });
             // Le total global est fourni par le CartDto ; fallback sur 0 si null
-            total = (cart.totalAmount() != null) ? cart.totalAmount() : BigDecimal.ZERO;
+            total = (cart.totalAmount() != null) ? cart.totalAmount() : total;
         }
 
         // Variables exposées à la vue
         model.addAttribute("cartEmpty", items.isEmpty());
         model.addAttribute("items", items);
         model.addAttribute("total", total);
+        if (outOfStock != null) {
+            model.addAttribute("error", "❌ Some items are no longer available in the requested quantity.");
+        }
 
         // Rend la template: templates/checkout/checkout.ftlh
         return "checkout/checkout";
@@ -169,11 +184,17 @@ public class CheckoutController {
      *
      * Sécurité :
      * - On relit le panier côté serveur et on calcule nous-mêmes les montants.
-     * - Aucune écriture en base ici : la confirmation se fera via le webhook Stripe.
+     * - La commande (PENDING) réserve le stock ; le paiement sera confirmé via le webhook Stripe.
+     *
+     * Idempotence :
+     * - Même utilisateur + même panier (empreinte) + commande encore PENDING => redirection directe
+     *   vers la session Stripe déjà créée, sans nouvelle commande ni appel Stripe.
      *
      * Gestion d’erreurs :
      * - Panier vide → redirection vers /checkout?empty
-     * - Exception Stripe → redirection vers /checkout?error
+     * - Stock insuffisant → redirection vers /checkout?outOfStock (rien n'est réservé)
+     * - Exception Stripe, Stripe lent ou indisponible (timeout, disjoncteur) → commande annulée
+     *   (hold libéré) puis redirection vers /checkout?error
      */
     @PostMapping("/create-checkout-session")
     public String createCheckoutSession(Authentication auth, HttpSession session, HttpServletRequest req) {
@@ -189,53 +210,102 @@ public class CheckoutController {
         }
 
         try {
-            // Construction des LineItems Stripe à partir des lignes du panier
+            var stripeSession = sessionCache.getOrCreate(auth.getName(), cart,
+                    cached -> orderService.isAwaitingPayment(cached.orderId()),
+                    idempotencyKeys -> createStripeSession(session, req, idempotencyKeys));
+            return "redirect:" + stripeSession.url();
+        } catch (StripeService.UnavailableException e) {
+            return "redirect:/checkout?error"; // déjà journalisé, commande annulée
+        } catch (OutOfStockException e) {
+            return "redirect:/checkout?outOfStock";
+        } catch (IllegalArgumentException e) {
+            return "redirect:/checkout?empty";
+        } catch (StripeException e) {
+            return "redirect:/checkout?error";
+        }
+    }
+
+    /** Commande + réservation du stock (snapshot des prix) puis création de la session Stripe. */
+    private CheckoutSessionCache.CachedSession createStripeSession(HttpSession session, HttpServletRequest req,
+                                                                   LongFunction<String> idempotencyKeys) throws StripeException {
+        OrderDto order = orderService.placeOrder(session);
+        String idempotencyKey = idempotencyKeys.apply(order.id());
+
+        try {
+            // Construction des LineItems Stripe à partir du snapshot de la commande
             List<SessionCreateParams.LineItem> lineItems = new ArrayList<>();
-            cart.lines().forEach(l -> {
+            order.lines().forEach(l -> {
                 long qty = (l.quantity() == null) ? 0L : l.quantity().longValue();
-                long unitInCents = toCents(l.unitPrice()); // € → centimes
+                long unitInCents = l.unitPrice().minor(); // Money est déjà en centimes
                 var li = stripeService.createLineItem(l.productName(), unitInCents, qty);
                 lineItems.add(li);
             });
 
-            // URLs absolues pour success/cancel
+            // URLs absolues pour success/cancel (l'id de commande permet de libérer la réserve)
             String base = baseUrl(req);
-            String success = base + "/checkout/success";
-            String cancel  = base + "/checkout/cancel";
+            String success = base + "/checkout/success?order=" + order.id();
+            String cancel  = base + "/checkout/cancel?order=" + order.id();
 
-            // Création de la session hébergée Stripe + redirection
-            Session sessionObj = stripeService.createCheckoutSession(lineItems, success, cancel);
-            return "redirect:" + sessionObj.getUrl();
+            // Création de la session hébergée Stripe
+            Session sessionObj = stripeService.createCheckoutSession(lineItems, success, cancel,
+                    String.valueOf(order.id()), Instant.now().plus(reservationTtl), idempotencyKey);
+            orderService.attachStripeSession(order.id(), sessionObj.getId());
+            return new CheckoutSessionCache.CachedSession(order.id(), sessionObj.getUrl(), idempotencyKey,
+                    Instant.now().plus(sessionCache.ttl()));
 
-        } catch (StripeException e) {
-            // Log technique possible ici (logger.warn/err)
-            return "redirect:/checkout?error";
+        } catch (StripeException | StripeService.UnavailableException e) {
+            // Erreur Stripe, timeout, bulkhead plein ou disjoncteur ouvert : on échoue vite
+            log.warn("[CHECKOUT] Stripe session failed for order={} : {}", order.id(), e.getMessage());
+            orderService.cancel(order.id());
+            throw e;
         }
     }
 
     // =========================================================================
-    // 3) GET /checkout/success — Page de retour (ne pas muter le panier ici)
+    // 3) GET /checkout/success — Page de retour (le panier n'est vidé qu'une fois le paiement vérifié)
     // =========================================================================
 
     /**
      * Affiche la page de succès après le retour de Stripe.
-     * ⚠ On ne touche PAS au panier ni aux commandes ici. La mise à jour
-     * (vider le panier, marquer payé) sera effectuée par le webhook Stripe.
+     * La commande n'est confirmée que si Stripe la déclare payée (vérification serveur) ;
+     * la confirmation retire alors du panier les produits achetés.
+     * Le webhook Stripe fait de même si l'utilisateur ne revient pas sur cette page.
+     * Stock manquant malgré le hold : la page annonce un remboursement au lieu de la confirmation.
      */
     @GetMapping("/checkout/success")
-    public String checkoutSuccess() {
+    public String checkoutSuccess(@RequestParam(name = "order", required = false) Long orderId, Model model) {
+        if (orderId != null) {
+            try {
+                orderService.confirmPayment(orderId);
+            } catch (OutOfStockException e) {
+                // Paiement reçu mais stock manquant : commande passée en REFUND_REQUIRED
+                model.addAttribute("refundPending", true);
+            }
+        }
         return "checkout/success";
     }
 
     // =========================================================================
-    // 4) GET /checkout/cancel — Page d’annulation
+    // 4) /checkout/cancel — Page d’annulation
     // =========================================================================
 
     /**
-     * Affiche la page d’annulation du paiement (l’utilisateur peut réessayer).
+     * Retour depuis Stripe sans paiement : simple page (un GET ne modifie rien, préchargement compris).
+     * La commande reste réservée : "réessayer" renvoie vers la même session Stripe.
      */
     @GetMapping("/checkout/cancel")
-    public String checkoutCancel() {
+    public String checkoutCancel(@RequestParam(name = "order", required = false) Long orderId, Model model) {
+        model.addAttribute("orderId", orderId);
         return "checkout/cancel";
     }
+
+    /**
+     * Annulation explicite (formulaire, CSRF) : expire la session Stripe puis libère la réservation
+     * (si la commande appartient à l'utilisateur et est encore PENDING).
+     */
+    @PostMapping("/checkout/cancel")
+    public String cancelOrder(@RequestParam(name = "order") Long orderId) {
+        orderService.cancel(orderId);
+        return "redirect:/cart";
+    }
 }
@@ -0,0 +1,200 @@
+package com.example.ecommerce.pl.controllers;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Images uploadées (/uploads/**), servies sans passer par ResourceHttpRequestHandler :
+ * - Corps envoyé par sendfile (Tomcat, zéro copie : le noyau lit le fichier vers la socket) au-delà de 48 Kio ;
+ *   en dessous, ou hors Tomcat (MockMvc), FileChannel.transferTo vers le flux de la réponse.
+ * - ETag (taille + date) / Last-Modified : If-None-Match et If-Modified-Since => 304.
+ * - Range sur un intervalle (If-Range respecté) => 206 ; plusieurs intervalles => fichier entier ; hors fichier => 416.
+ * - Cache d'un an, immutable : un nom de fichier ne change jamais de contenu.
+ * - JPEG / PNG : variante "<fichier>.avif" puis ".webp" (ImageTranscoder) si l'en-tête Accept la cite
+ *   explicitement (un joker ne suffit pas), sinon l'original ; toujours Vary: Accept.
+ * Métriques : media.responses (mode = sendfile / copy / not_modified), media.variants (format servi).
+ */
+@Controller
+public class MediaController {
+
+    private static final String PREFIX = "/uploads/";
+    private static final Pattern SOURCE = Pattern.compile(".+\\.(jpg|png)");
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+    private static final String CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+            .getHeaderValue();
+
+    // Attributs de requête lus par le connecteur Tomcat (org.apache.coyote.Constants / Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final Path folder;
+    private final Counter sendfile;
+    private final Counter copy;
+    private final Counter notModified;
+    private final Map<String, Counter> variants = new LinkedHashMap<>();
+
+    public MediaController(@Value("${app.upload-dir}") String uploadDir, MeterRegistry meters) {
+        this.folder = Paths.get(uploadDir).toAbsolutePath().normalize();
+        // Ordre de préférence ; indépendant des encodeurs actifs : une variante déjà écrite reste servie
+        for (String format : List.of("avif", "webp")) {
+            variants.put(format, meters.counter("media.variants", "format", format));
+        }
+        this.sendfile = meters.counter("media.responses", "mode", "sendfile");
+        this.copy = meters.counter("media.responses", "mode", "copy");
+        this.notModified = meters.counter("media.responses", "mode", "not_modified");
+    }
+
+    @GetMapping("/uploads/**")
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = resolve(request);
+        BasicFileAttributes attrs = file == null ? null : attributes(file);
+        if (attrs == null || !attrs.isRegularFile()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        if (SOURCE.matcher(file.getFileName().toString()).matches()) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            for (var format : variants.entrySet()) {
+                if (!accepts(request, "image/" + format.getKey())) continue;
+                Path variant = file.resolveSibling(file.getFileName() + "." + format.getKey());
+                BasicFileAttributes variantAttrs = attributes(variant);
+                if (variantAttrs != null && variantAttrs.isRegularFile()) {
+                    file = variant;
+                    attrs = variantAttrs;
+                    format.getValue().increment();
+                    break;
+                }
+            }
+        }
+
+        long length = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            notModified.increment();
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        // Intervalle demandé : [start, end[
+        long start = 0;
+        long end = length;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, etag, lastModified)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length) + 1;
+                    if (start >= length) throw new IllegalArgumentException("Range starts beyond the end of the file");
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) return;
+
+        // Zéro copie : Tomcat envoie lui-même le fichier une fois la réponse rendue
+        if (end - start >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            sendfile.increment();
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) break; // fichier tronqué entre-temps
+                position += sent;
+            }
+        }
+        copy.increment();
+    }
+
+    // -------- Helpers --------
+
+    // Chemin public -> fichier du dossier d'upload (null si hors du dossier ou fichier caché / temporaire)
+    private Path resolve(HttpServletRequest request) {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        if (!uri.startsWith(PREFIX)) return null;
+        String relative = uri.substring(PREFIX.length());
+        if (relative.isEmpty() || relative.startsWith(".") || relative.contains("/.") || relative.contains("\\")) {
+            return null;
+        }
+        Path file = folder.resolve(relative).normalize();
+        return file.startsWith(folder) ? file : null;
+    }
+
+    private static BasicFileAttributes attributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Type cité tel quel dans Accept avec q > 0 (image/* ou */* ne disent rien du décodeur du navigateur)
+    private static boolean accepts(HttpServletRequest request, String type) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || !accept.contains(type)) return false;
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(m -> type.equals(m.getType() + "/" + m.getSubtype()) && m.getQualityValue() > 0);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    // If-Range : la plage ne vaut que si la ressource n'a pas changé (ETag fort ou date exacte)
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) return ifRange.equals(etag);
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
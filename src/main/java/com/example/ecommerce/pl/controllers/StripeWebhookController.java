@@ -0,0 +1,42 @@
+package com.example.ecommerce.pl.controllers;
+
+import com.example.ecommerce.bll.services.StripeWebhookService;
+import com.stripe.exception.SignatureVerificationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Point d'entrée des webhooks Stripe.
+ * - Corps lu brut (la signature porte sur les octets exacts).
+ * - Signature vérifiée puis événement enregistré : 200 immédiat, traitement asynchrone.
+ * - Relivraison d'un événement déjà reçu : 200 aussi (Stripe arrête alors de réessayer).
+ * NB: exclu de la protection CSRF (appel serveur à serveur, authentifié par la signature).
+ */
+@RestController
+public class StripeWebhookController {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookController.class);
+
+    private final StripeWebhookService webhookService;
+
+    public StripeWebhookController(StripeWebhookService webhookService) {
+        this.webhookService = webhookService;
+    }
+
+    @PostMapping("/stripe/webhook")
+    public ResponseEntity<Void> receive(@RequestBody String payload,
+                                        @RequestHeader(name = "Stripe-Signature", required = false) String signature) {
+        try {
+            webhookService.receive(payload, signature);
+            return ResponseEntity.ok().build();
+        } catch (SignatureVerificationException e) {
+            log.warn("[STRIPE][WEBHOOK] invalid signature : {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
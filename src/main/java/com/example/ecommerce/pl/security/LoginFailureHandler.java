@@ -0,0 +1,48 @@
+package com.example.ecommerce.pl.security;
+
+import com.example.ecommerce.bll.utils.BoundedPasswordEncoder;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+
+import java.io.IOException;
+
+/**
+ * Échec de login :
+ *  - pool de hachage saturé (BoundedPasswordEncoder.BusyException) => 429 + Retry-After,
+ *    la page de login est rendue avec un message "réessayez" (forward, pas de redirection) ;
+ *  - sinon comportement standard => redirect /auth/login?error.
+ *
+ * NB : pas d'annotation @Component — ce handler est fourni par un @Bean dans SecurityConfig.
+ */
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginFailureHandler.class);
+
+    static final String RETRY_AFTER_SECONDS = "2";
+
+    public LoginFailureHandler() {
+        super("/auth/login?error");
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        AuthenticationException exception)
+            throws IOException, ServletException {
+        if (exception instanceof BoundedPasswordEncoder.BusyException
+                || exception.getCause() instanceof BoundedPasswordEncoder.BusyException) {
+            log.warn("[AUTH][LOGIN][BUSY] {}", exception.getMessage());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            request.getRequestDispatcher("/auth/login/busy").forward(request, response);
+            return;
+        }
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.ecommerce.pl.security;
+
+import com.example.ecommerce.bll.services.UserDetailsCache;
+import com.example.ecommerce.bll.utils.TokenBuckets;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitFilter
+ * ---------------
+ * Limite les endpoints coûteux (login, inscription, ajout panier, création de session Stripe) :
+ * - un seau à jetons par IP et un par compte, par règle (app.rate-limit.rules) ;
+ * - seau vide => 429 + Retry-After, sans toucher la base ni BCrypt ;
+ * - les autres chemins ne paient qu'une lecture de HashMap.
+ * Placé dans la chaîne Spring Security après le CSRF et la restauration de la session
+ * (le compte connecté est donc connu), avant l'authentification formulaire.
+ * Métriques : http.ratelimit.rejected (rule, key = ip / principal), http.ratelimit.keys,
+ * http.ratelimit.overflow (refus faute de place pour une nouvelle clé).
+ *
+ * NB : pas d'annotation @Component — ce filtre est fourni par un @Bean dans SecurityConfig.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private static final String MESSAGE = "Too many requests. Please try again in %d seconds.";
+
+    private record Limiter(String name, String method, String principalParam,
+                           TokenBuckets byIp, TokenBuckets byPrincipal,
+                           Counter ipRejected, Counter principalRejected) {}
+
+    private final Map<String, List<Limiter>> byPath = new HashMap<>();
+    private final List<TokenBuckets> all = new ArrayList<>();
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meters) {
+        if (properties.enabled()) {
+            for (RateLimitProperties.Rule rule : properties.rules()) {
+                register(rule, properties.maxKeys(), meters);
+            }
+        }
+        Gauge.builder("http.ratelimit.keys", all, l -> l.stream().mapToInt(TokenBuckets::size).sum())
+                .register(meters);
+        FunctionCounter.builder("http.ratelimit.overflow", all,
+                        l -> l.stream().mapToLong(TokenBuckets::overflows).sum())
+                .register(meters);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !byPath.containsKey(path(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        for (Limiter limiter : byPath.get(path(request))) {
+            if (!limiter.method().equalsIgnoreCase(request.getMethod())) continue;
+
+            long waitNanos = 0;
+            if (limiter.byIp() != null) {
+                waitNanos = limiter.byIp().tryAcquire(request.getRemoteAddr());
+                if (waitNanos > 0) limiter.ipRejected().increment();
+            }
+            if (waitNanos == 0 && limiter.byPrincipal() != null) {
+                String principal = principal(request, limiter.principalParam());
+                if (principal != null) {
+                    waitNanos = limiter.byPrincipal().tryAcquire(principal);
+                    if (waitNanos > 0) limiter.principalRejected().increment();
+                }
+            }
+            if (waitNanos > 0) {
+                reject(request, response, limiter.name(), waitNanos);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /** Balayage des seaux redevenus pleins (la map reste bornée même sans pression). */
+    @Scheduled(fixedDelayString = "${app.rate-limit.purge:PT1M}")
+    public void purge() {
+        all.forEach(TokenBuckets::purge);
+    }
+
+    // -------- Helpers --------
+
+    private void register(RateLimitProperties.Rule rule, int maxKeys, MeterRegistry meters) {
+        if (rule.path() == null || rule.path().isBlank()) {
+            throw new IllegalArgumentException("Rate limit rule " + rule.name() + " has no path");
+        }
+        TokenBuckets byIp = buckets(rule.ip(), maxKeys);
+        TokenBuckets byPrincipal = buckets(rule.principal(), maxKeys);
+        var limiter = new Limiter(rule.name(), rule.method(), rule.principalParam(), byIp, byPrincipal,
+                meters.counter("http.ratelimit.rejected", "rule", rule.name(), "key", "ip"),
+                meters.counter("http.ratelimit.rejected", "rule", rule.name(), "key", "principal"));
+        byPath.computeIfAbsent(rule.path(), p -> new ArrayList<>()).add(limiter);
+    }
+
+    private TokenBuckets buckets(RateLimitProperties.Limit limit, int maxKeys) {
+        if (limit == null) return null;
+        var buckets = new TokenBuckets(limit.burst(), limit.perMinute(), maxKeys);
+        all.add(buckets);
+        return buckets;
+    }
+
+    private static String path(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String context = request.getContextPath();
+        return context.isEmpty() ? uri : uri.substring(context.length());
+    }
+
+    // Compte connecté, sinon compte visé par le formulaire (login / inscription : credential stuffing)
+    private static String principal(HttpServletRequest request, String principalParam) {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
+            return UserDetailsCache.normalize(auth.getName());
+        }
+        if (principalParam == null) return null;
+        String value = request.getParameter(principalParam);
+        return (value == null || value.isBlank()) ? null : UserDetailsCache.normalize(value);
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response,
+                               String rule, long waitNanos) throws IOException {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        log.debug("[HTTP][RATE-LIMIT][{}] {} rejected, retry in {}s", rule, request.getRemoteAddr(), retryAfter);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(MESSAGE.formatted(retryAfter));
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.ecommerce.pl.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Configuration du RateLimitFilter (app.rate-limit.*).
+ * Une règle = une méthode + un chemin exact, avec un seau par IP et/ou un seau par compte
+ * (utilisateur connecté, sinon paramètre de formulaire principal-param, ex. "username" au login).
+ */
+@ConfigurationProperties(prefix = "app.rate-limit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("50000") int maxKeys,
+                                  @DefaultValue List<Rule> rules) {
+
+    public record Rule(String name,
+                       @DefaultValue("POST") String method,
+                       String path,
+                       String principalParam,
+                       Limit ip,
+                       Limit principal) {}
+
+    /** burst = jetons au maximum ; perMinute = jetons rendus par minute. */
+    public record Limit(int burst, int perMinute) {}
+}
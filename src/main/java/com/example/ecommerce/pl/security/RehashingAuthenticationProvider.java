@@ -0,0 +1,41 @@
+package com.example.ecommerce.pl.security;
+
+import com.example.ecommerce.bll.services.PasswordRehasher;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Provider du login formulaire (email + mot de passe).
+ * Identique au DaoAuthenticationProvider, sauf la mise à niveau du hash : au lieu de re-hacher
+ * pendant la requête (UserDetailsPasswordService), le re-hash est confié au PasswordRehasher
+ * et s'exécute en arrière-plan.
+ *
+ * NB : ni @Component ni @Bean — ce provider est posé sur la chaîne par SecurityConfig (http.authenticationProvider).
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final PasswordRehasher rehasher;
+
+    public RehashingAuthenticationProvider(UserDetailsService userDetailsService,
+                                           PasswordEncoder passwordEncoder,
+                                           PasswordRehasher rehasher) {
+        super(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+        this.rehasher = rehasher;
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal,
+                                                         Authentication authentication,
+                                                         UserDetails user) {
+        // Le mot de passe saisi vient d'être vérifié ; les credentials ne sont effacés qu'après ce point
+        Object credentials = authentication.getCredentials();
+        if (credentials != null && rehasher.needsRehash(user.getPassword())) {
+            rehasher.schedule(user.getUsername(), user.getPassword(), credentials.toString());
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
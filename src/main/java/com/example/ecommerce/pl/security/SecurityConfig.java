@@ -1,23 +1,58 @@
 // src/main/java/com/example/ecommerce/pl/security/SecurityConfig.java
 package com.example.ecommerce.pl.security;
 
+import com.example.ecommerce.bll.services.PasswordRehasher;
+import com.example.ecommerce.bll.utils.BoundedPasswordEncoder;
+import com.example.ecommerce.bll.utils.PasswordEncoders;
 import com.example.ecommerce.il.interfaces.CartService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import java.time.Duration;
 
 @Configuration
 @EnableMethodSecurity
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfig {
 
-    /** Encoder utilisé par AuthServiceImpl (injection requise). */
+    /**
+     * Encoder utilisé par AuthServiceImpl et le login (injection requise).
+     * - Délégant : nouveaux hash avec l'algorithme / le coût configurés (app.security.password.*),
+     *   hash historiques BCrypt 10 sans préfixe toujours acceptés puis re-hachés au login.
+     * - Hachage sur un pool dédié borné (threads = 0 => nombre de cœurs, queue-capacity = 0 => 4 par thread) :
+     *   une rafale de logins n'affame pas les threads Tomcat du catalogue ; file pleine => 429 "réessayez".
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder(@Value("${app.security.password.algorithm:bcrypt}") String algorithm,
+                                                  @Value("${app.security.password.bcrypt-cost:10}") int bcryptCost,
+                                                  @Value("${app.security.password.argon2.memory-kib:19456}") int argon2Memory,
+                                                  @Value("${app.security.password.argon2.iterations:2}") int argon2Iterations,
+                                                  @Value("${app.security.password.argon2.parallelism:1}") int argon2Parallelism,
+                                                  @Value("${app.security.hashing.threads:0}") int threads,
+                                                  @Value("${app.security.hashing.queue-capacity:0}") int queueCapacity,
+                                                  @Value("${app.security.hashing.max-wait:PT2S}") Duration maxWait,
+                                                  MeterRegistry meters) {
+        var delegate = PasswordEncoders.delegating(algorithm, bcryptCost,
+                new PasswordEncoders.Argon2Params(argon2Memory, argon2Iterations, argon2Parallelism));
+        int n = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        int queue = (queueCapacity > 0) ? queueCapacity : n * 4;
+        return new BoundedPasswordEncoder(delegate, n, queue, maxWait, meters);
+    }
+
+    /** Login refusé faute de capacité de hachage => 429 ; identifiants invalides => /auth/login?error. */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    public LoginFailureHandler loginFailureHandler() {
+        return new LoginFailureHandler();
     }
 
     /** Fournit explicitement le success handler (pas de @Component sur la classe). */
@@ -26,14 +61,43 @@ public class SecurityConfig {
         return new CartMergeOnLoginSuccessHandler(cartService);
     }
 
+    /** Seaux à jetons par IP / compte sur login, inscription, panier et checkout (app.rate-limit.*). */
+    @Bean
+    public RateLimitFilter rateLimitFilter(RateLimitProperties properties, MeterRegistry meters) {
+        return new RateLimitFilter(properties, meters);
+    }
+
+    /** Le filtre est déjà dans la chaîne Spring Security : pas d'enregistrement servlet en double. */
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        var registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(
             HttpSecurity http,
-            CartMergeOnLoginSuccessHandler loginSuccessHandler
+            CartMergeOnLoginSuccessHandler loginSuccessHandler,
+            LoginFailureHandler loginFailureHandler,
+            RateLimitFilter rateLimitFilter,
+            UserDetailsService userDetailsService,
+            BoundedPasswordEncoder passwordEncoder,
+            PasswordRehasher rehasher
     ) throws Exception {
 
+        // Login email / mot de passe, re-hash en arrière-plan des hash périmés : seul provider de la chaîne.
+        // Pas de parent : l'AuthenticationManager global (DaoAuthenticationProvider sur le UserDetailsService)
+        // re-vérifierait chaque mot de passe refusé, soit deux hachages par échec.
+        http.getSharedObject(AuthenticationManagerBuilder.class).parentAuthenticationManager(null);
+
         http
+                .authenticationProvider(new RehashingAuthenticationProvider(userDetailsService, passwordEncoder, rehasher))
+                // 429 avant tout accès base / BCrypt (après CSRF et restauration de la session)
+                .addFilterBefore(rateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 // CSRF laissé activé (formulaires HTML -> OK, tu as déjà les champs CSRF dans tes vues)
+                // sauf pour le webhook Stripe : appel serveur à serveur, authentifié par sa signature
+                .csrf(csrf -> csrf.ignoringRequestMatchers("/stripe/webhook"))
                 .authorizeHttpRequests(auth -> auth
                         // public
                         .requestMatchers(
@@ -41,16 +105,19 @@ public class SecurityConfig {
                                 "/cart", "/cart/**",      // invité: panier en session
                                 "/auth/**",
                                 "/css/**", "/images/**", "/js/**", "/webjars/**",
-                                "/uploads/**"
+                                "/uploads/**",
+                                "/stripe/webhook",
+                                "/actuator/health"
                         ).permitAll()
                         // admin
-                        .requestMatchers("/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/admin/**", "/actuator/**").hasRole("ADMIN")
                         // le reste
                         .anyRequest().authenticated()
                 )
                 .formLogin(form -> form
                         .loginPage("/auth/login")
                         .successHandler(loginSuccessHandler)   // fusion panier invité -> DB
+                        .failureHandler(loginFailureHandler)   // 429 si le pool de hachage est saturé
                         .permitAll()
                 )
                 .logout(log -> log
@@ -0,0 +1,267 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.CartRepository;
+import com.example.ecommerce.dal.repositories.ErasureJobRepository;
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dal.repositories.OutboxRepository;
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.Cart;
+import com.example.ecommerce.dl.entities.CartLine;
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.entities.OrderLine;
+import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.dl.enums.CartStatus;
+import com.example.ecommerce.dl.enums.ErasureStatus;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.dl.enums.Role;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Effacement de compte : login refusé dès la demande, puis suppression par lots jusqu'au compte lui-même,
+ * événements outbox du compte compris.
+ * Stripe est un stand-in HTTP (stripe.api-base) : "cs_open_*" ouvertes puis expirées sur /expire,
+ * les autres payées (payment_intent "pi_<session>") ; un remboursement de "pi_cs_declined_*" est refusé.
+ * Comme Stripe, un remboursement rejoué avec la même clé d'idempotence n'est compté qu'une fois.
+ */
+@SpringBootTest(properties = {
+        "app.erasure.chunk-size=2"
+})
+@ActiveProfiles("test")
+class AccountErasureTest {
+
+    static final List<String> EXPIRED = new CopyOnWriteArrayList<>();
+    static final Map<String, String> REFUNDS = new ConcurrentHashMap<>(); // clé d'idempotence -> payment_intent
+    static final HttpServer STRIPE = startStripeStub();
+
+    @DynamicPropertySource
+    static void stripe(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", () -> "http://127.0.0.1:" + STRIPE.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STRIPE.stop(0);
+    }
+
+    @Autowired AccountErasure erasure;
+    @Autowired UserRepository users;
+    @Autowired CartRepository carts;
+    @Autowired OrderRepository orders;
+    @Autowired ProductRepository products;
+    @Autowired ErasureJobRepository jobs;
+    @Autowired OutboxRepository events;
+    @Autowired Outbox outbox;
+    @Autowired UserDetailsService userDetailsService;
+    @Autowired TransactionTemplate tx;
+    @Autowired EntityManager em;
+
+    @Test
+    void accountIsLockedAtOnceThenErasedInChunks() {
+        var user = users.save(User.builder().email("leaving@test.local").password("x").role(Role.USER).build());
+        var keeper = users.save(User.builder().email("staying@test.local").password("x").role(Role.USER).build());
+        seed(user, 2, 5);
+        seed(keeper, 1, 1);
+        userDetailsService.loadUserByUsername("leaving@test.local"); // mis en cache avant la demande
+        var leavingOrder = orders.findIdsByUserId(user.getId(), 1).getFirst().toString();
+        var stayingOrder = orders.findIdsByUserId(keeper.getId(), 1).getFirst().toString();
+        tx.executeWithoutResult(s -> {
+            outbox.append("cart.item_added", "user:" + user.getId(), Map.of("productId", 1));
+            outbox.append("cart.item_added", "user:leaving@test.local", Map.of("productId", 1)); // format antérieur
+            outbox.append("order.placed", leavingOrder, Map.of("userId", user.getId()));
+            outbox.append("cart.item_added", "user:" + keeper.getId(), Map.of("productId", 1));
+            outbox.append("order.placed", stayingOrder, Map.of("userId", keeper.getId()));
+        });
+
+        Long jobId = erasure.request("Leaving@test.local");
+        assertThat(erasure.request("leaving@test.local")).isEqualTo(jobId);
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("leaving@test.local"))
+                .isInstanceOf(UsernameNotFoundException.class);
+
+        assertThat(erasure.runPending()).isEqualTo(1);
+
+        var job = jobs.findById(jobId).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(ErasureStatus.DONE);
+        assertThat(job.getCartsDeleted()).isEqualTo(2);
+        assertThat(job.getCartLinesDeleted()).isEqualTo(4);
+        assertThat(job.getOrdersDeleted()).isEqualTo(5);
+        assertThat(job.getOrderLinesDeleted()).isEqualTo(5);
+        assertThat(users.findById(user.getId())).isEmpty();
+        assertThat(carts.findIdsByUserId(user.getId(), 10)).isEmpty();
+        assertThat(orders.findIdsByUserId(user.getId(), 10)).isEmpty();
+        assertThat(events.findAll()).extracting(e -> e.getAggregateId())
+                .containsExactlyInAnyOrder("user:" + keeper.getId(), stayingOrder);
+
+        // L'autre compte n'est pas touché
+        assertThat(users.findById(keeper.getId())).isPresent();
+        assertThat(carts.findIdsByUserId(keeper.getId(), 10)).hasSize(1);
+        assertThat(orders.findIdsByUserId(keeper.getId(), 10)).hasSize(1);
+    }
+
+    @Test
+    void openOrdersAreSettledBeforeTheAccountIsErased() {
+        var user = users.save(User.builder().email("refunded@test.local").password("x").role(Role.USER).build());
+        var toRefund = order(user, OrderStatus.REFUND_REQUIRED, "cs_paid_refund");
+        var awaitingPayment = order(user, OrderStatus.PENDING, "cs_open_checkout");
+        refundRequired(toRefund);
+
+        Long jobId = erasure.request("refunded@test.local");
+        assertThat(erasure.runPending()).isEqualTo(1);
+
+        assertThat(REFUNDS).containsExactly(entry("refund-" + toRefund, "pi_cs_paid_refund"));
+        assertThat(EXPIRED).containsExactly("cs_open_checkout");
+        assertThat(jobs.findById(jobId).orElseThrow().getStatus()).isEqualTo(ErasureStatus.DONE);
+        assertThat(orders.findById(toRefund)).isEmpty();
+        assertThat(orders.findById(awaitingPayment)).isEmpty();
+        // L'événement non livré reste : relayé plus tard, il ne trouve plus la commande et ne fait rien
+        var kept = events.findAll().stream().filter(e -> e.getAggregateId().equals(toRefund.toString())).toList();
+        assertThat(kept).extracting(e -> e.getType()).containsExactly("order.refund_required");
+        events.deleteAll(kept);
+    }
+
+    @Test
+    void declinedRefundKeepsTheOrderAndRetriesTheJob() {
+        var user = users.save(User.builder().email("declined@test.local").password("x").role(Role.USER).build());
+        var toRefund = order(user, OrderStatus.REFUND_REQUIRED, "cs_declined_refund");
+        refundRequired(toRefund);
+
+        Long jobId = erasure.request("declined@test.local");
+        assertThat(erasure.runPending()).isZero();
+
+        var job = jobs.findById(jobId).orElseThrow();
+        assertThat(job.getStatus()).isEqualTo(ErasureStatus.PENDING);
+        assertThat(job.getLastError()).contains("refund failed for order " + toRefund);
+        assertThat(orders.findById(toRefund).orElseThrow().getStatus()).isEqualTo(OrderStatus.REFUND_REQUIRED);
+        assertThat(users.findById(user.getId())).isPresent();
+        var kept = events.findAll().stream().filter(e -> e.getAggregateId().equals(toRefund.toString())).toList();
+        assertThat(kept).hasSize(1);
+        events.deleteAll(kept);
+    }
+
+    // Événement non livré, en attente de nouvel essai : aucun relais ne le diffuse pendant le test
+    private void refundRequired(Long orderId) {
+        tx.executeWithoutResult(s -> {
+            outbox.append("order.refund_required", orderId.toString(), Map.of("orderId", orderId));
+            em.createQuery("update OutboxEvent e set e.availableAt = :later where e.aggregateId = :orderId")
+                    .setParameter("later", Instant.now().plus(Duration.ofHours(1)))
+                    .setParameter("orderId", orderId.toString())
+                    .executeUpdate();
+        });
+    }
+
+    private Long order(User user, OrderStatus status, String sessionId) {
+        return orders.save(Order.builder().user(user).status(status).stripeSessionId(sessionId)
+                .totalAmount(BigDecimal.TEN).itemCount(1).build()).getId();
+    }
+
+    // Paniers (un par statut, 2 lignes chacun) et commandes (1 ligne chacune)
+    private void seed(User user, int cartCount, int orderCount) {
+        var productList = products.findAll();
+        tx.executeWithoutResult(s -> {
+            var owner = em.getReference(User.class, user.getId());
+            for (int i = 0; i < cartCount; i++) {
+                var cart = new Cart();
+                cart.setUser(owner);
+                cart.setStatus(CartStatus.values()[i]);
+                em.persist(cart);
+                for (int l = 0; l < 2; l++) {
+                    var line = new CartLine();
+                    line.setCart(cart);
+                    line.setProduct(productList.get(l));
+                    line.setQuantity(1);
+                    em.persist(line);
+                }
+            }
+            for (int i = 0; i < orderCount; i++) {
+                var order = Order.builder().user(owner).status(OrderStatus.PAID)
+                        .totalAmount(BigDecimal.TEN).itemCount(1).build();
+                em.persist(order);
+                var line = new OrderLine();
+                line.setOrder(order);
+                line.setProductId(productList.get(0).getId());
+                line.setProductName(productList.get(0).getName());
+                line.setQuantity(1);
+                line.setUnitPrice(BigDecimal.TEN);
+                em.persist(line);
+            }
+        });
+    }
+
+    // -------- Stub Stripe --------
+
+    private static HttpServer startStripeStub() {
+        try {
+            var stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            stub.createContext("/v1/checkout/sessions", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                String id = path.substring("/v1/checkout/sessions/".length()).replace("/expire", "");
+                String body;
+                if (path.endsWith("/expire")) {
+                    EXPIRED.add(id);
+                    body = """
+                            {"id":"%s","object":"checkout.session","payment_status":"unpaid","status":"expired"}""".formatted(id);
+                } else if (id.startsWith("cs_open_")) {
+                    body = """
+                            {"id":"%s","object":"checkout.session","payment_status":"unpaid","status":"open"}""".formatted(id);
+                } else {
+                    body = """
+                            {"id":"%s","object":"checkout.session","payment_status":"paid","status":"complete",
+                             "payment_intent":"pi_%s"}""".formatted(id, id);
+                }
+                respond(exchange, 200, body);
+            });
+            stub.createContext("/v1/refunds", exchange -> {
+                String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                String paymentIntent = form.replaceAll(".*payment_intent=([^&]*).*", "$1");
+                if (paymentIntent.startsWith("pi_cs_declined_")) {
+                    respond(exchange, 400, """
+                            {"error":{"type":"invalid_request_error","code":"refund_declined","message":"declined"}}""");
+                    return;
+                }
+                REFUNDS.putIfAbsent(exchange.getRequestHeaders().getFirst("Idempotency-Key"), paymentIntent);
+                respond(exchange, 200, """
+                        {"id":"re_%s","object":"refund","status":"succeeded"}""".formatted(paymentIntent));
+            });
+            stub.start();
+            return stub;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.il.dto.CartDto;
+import com.example.ecommerce.il.dto.CartLineDto;
+import com.example.ecommerce.il.dto.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CheckoutSessionCacheTest {
+
+    private final CheckoutSessionCache cache =
+            new CheckoutSessionCache(Duration.ofMinutes(10), Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+    @Test
+    void doubleClickCreatesOneSession() throws Exception {
+        var cart = cart(line(1L, 2, "12.50"), line(7L, 1, "3.00"));
+        var created = new AtomicInteger();
+        var start = new CountDownLatch(1);
+
+        try (var pool = Executors.newFixedThreadPool(8)) {
+            List<Future<CheckoutSessionCache.CachedSession>> clicks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                clicks.add(pool.submit(() -> {
+                    start.await();
+                    return cache.getOrCreate("a@b.c", cart, s -> true, keys -> {
+                        created.incrementAndGet();
+                        LockSupport.parkNanos(100_000_000); // appel Stripe simulé
+                        return new CheckoutSessionCache.CachedSession(42L, "https://stub/pay", keys.apply(42L),
+                                Instant.now().plusSeconds(600));
+                    });
+                }));
+            }
+            start.countDown();
+            for (var click : clicks) {
+                assertThat(click.get().url()).isEqualTo("https://stub/pay");
+            }
+        }
+        assertThat(created.get()).isEqualTo(1);
+    }
+
+    @Test
+    void fingerprintIgnoresLineOrderAndPriceScaleButNotQuantities() {
+        var a = cart(line(1L, 2, "12.5"), line(7L, 1, "3"));
+        var b = cart(line(7L, 1, "3.00"), line(1L, 2, "12.50"));
+        var c = cart(line(1L, 3, "12.50"), line(7L, 1, "3.00"));
+
+        assertThat(CheckoutSessionCache.fingerprint(a)).isEqualTo(CheckoutSessionCache.fingerprint(b));
+        assertThat(CheckoutSessionCache.fingerprint(a)).isNotEqualTo(CheckoutSessionCache.fingerprint(c));
+    }
+
+    @Test
+    void invalidatedEntryIsRecreated() throws Exception {
+        var cart = cart(line(1L, 1, "1.00"));
+        var created = new AtomicInteger();
+        CheckoutSessionCache.SessionFactory factory = keys -> {
+            long orderId = created.incrementAndGet();
+            return new CheckoutSessionCache.CachedSession(orderId, "https://stub/" + orderId, keys.apply(orderId),
+                    Instant.now().plusSeconds(600));
+        };
+
+        var first = cache.getOrCreate("a@b.c", cart, s -> true, factory);
+        var second = cache.getOrCreate("a@b.c", cart, s -> false, factory); // commande annulée entre-temps
+
+        assertThat(second.orderId()).isNotEqualTo(first.orderId());
+        assertThat(second.idempotencyKey()).isNotEqualTo(first.idempotencyKey());
+    }
+
+    @Test
+    void idempotencyKeyIsDerivedFromUserCartAndOrder() throws Exception {
+        var cart = cart(line(1L, 2, "12.50"));
+        String fingerprint = CheckoutSessionCache.fingerprint(cart);
+
+        var session = cache.getOrCreate("a@b.c", cart, s -> true, keys -> new CheckoutSessionCache.CachedSession(
+                42L, "https://stub/pay", keys.apply(42L), Instant.now().plusSeconds(600)));
+
+        // Même user + panier + commande => même clé (un renvoi vers Stripe rend la même session)
+        assertThat(session.idempotencyKey())
+                .isEqualTo(CheckoutSessionCache.idempotencyKey("a@b.c", fingerprint, 42L))
+                .doesNotContain("a@b.c");
+        assertThat(CheckoutSessionCache.idempotencyKey("a@b.c", fingerprint, 43L)).isNotEqualTo(session.idempotencyKey());
+        assertThat(CheckoutSessionCache.idempotencyKey("x@b.c", fingerprint, 42L)).isNotEqualTo(session.idempotencyKey());
+    }
+
+    private static CartDto cart(CartLineDto... lines) {
+        return new CartDto(List.of(lines), lines.length, Money.zero(Money.EUR));
+    }
+
+    private static CartLineDto line(Long productId, int qty, String unitPrice) {
+        var price = Money.eur(new BigDecimal(unitPrice));
+        return new CartLineDto(productId, "p" + productId, price, qty, price.times(qty));
+    }
+}
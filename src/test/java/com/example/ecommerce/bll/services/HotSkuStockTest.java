@@ -0,0 +1,150 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.StockRepository;
+import com.example.ecommerce.dal.repositories.StockShardRepository;
+import com.example.ecommerce.dl.entities.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Hot-SKU mode: buyers spread over shards, the fallback drains fragmented shards,
+ * the flushed total matches what was sold, a short product rolls the whole batch back,
+ * and a node with a stale hot set never decrements the wrong counter.
+ */
+@DataJpaTest
+@Import({StockRepository.class, StockShardRepository.class, HotSkuStock.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HotSkuStockTest {
+
+    @Autowired HotSkuStock hotStock;
+    @Autowired StockRepository stockRepository;
+    @Autowired StockShardRepository shardRepository;
+    @Autowired ProductRepository products;
+    @Autowired PlatformTransactionManager txManager;
+
+    @Test
+    void shardedProductNeverOversells() throws Exception {
+        var hot = products.save(Product.builder().name("Flash sale")
+                .price(new BigDecimal("19.99")).stock(50).build());
+        hotStock.configure(hot.getId(), 8);
+
+        int buyers = 200;
+        var tx = new TransactionTemplate(txManager);
+        var start = new CountDownLatch(1);
+        var succeeded = new AtomicInteger();
+        try (var pool = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < buyers; i++) {
+                int qty = 1 + (i % 3); // quantités variées : force le prélèvement sur plusieurs shards en fin de stock
+                pool.submit(() -> {
+                    start.await();
+                    try {
+                        tx.executeWithoutResult(status -> hotStock.reserveAll(Map.of(hot.getId(), qty)));
+                        succeeded.addAndGet(qty);
+                    } catch (OutOfStockException ignored) {
+                        // rollback attendu
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        hotStock.flush();
+        int left = products.findById(hot.getId()).orElseThrow().getStock();
+        assertThat(left).isGreaterThanOrEqualTo(0);
+        assertThat(succeeded.get() + left).isEqualTo(50);
+        assertThat(left).isLessThan(3); // plus aucune commande servable ne reste bloquée dans un shard
+
+        hotStock.configure(hot.getId(), 0);
+        var back = products.findById(hot.getId()).orElseThrow();
+        assertThat(back.getStockShards()).isZero();
+        assertThat(back.getStock()).isEqualTo(left);
+    }
+
+    @Test
+    void shortProductRollsBackTheWholeBatch() {
+        var normal = products.save(Product.builder().name("Normal")
+                .price(new BigDecimal("5.00")).stock(10).build());
+        var hotA = products.save(Product.builder().name("Hot A")
+                .price(new BigDecimal("5.00")).stock(10).build());
+        var hotB = products.save(Product.builder().name("Hot B")
+                .price(new BigDecimal("5.00")).stock(1).build());
+        hotStock.configure(hotA.getId(), 4);
+        hotStock.configure(hotB.getId(), 4);
+
+        var tx = new TransactionTemplate(txManager);
+        // normal et hot A décrémentés avant que hot B ne manque : tout doit revenir
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> hotStock.reserveAll(
+                Map.of(normal.getId(), 2, hotA.getId(), 3, hotB.getId(), 2))))
+                .isInstanceOfSatisfying(OutOfStockException.class,
+                        e -> assertThat(e.productId()).isEqualTo(hotB.getId()));
+
+        hotStock.flush();
+        assertThat(products.findById(normal.getId()).orElseThrow().getStock()).isEqualTo(10);
+        assertThat(products.findById(hotA.getId()).orElseThrow().getStock()).isEqualTo(10);
+        assertThat(products.findById(hotB.getId()).orElseThrow().getStock()).isEqualTo(1);
+    }
+
+    @Test
+    void reshardingOnAnotherNodeNeverLosesADecrement() throws Exception {
+        var product = products.save(Product.builder().name("Reshuffled")
+                .price(new BigDecimal("3.00")).stock(100).build());
+        // Autre nœud : mêmes tables, sa propre liste hot ; celle de hotStock n'est rafraîchie qu'à la main
+        var otherNode = new HotSkuStock(stockRepository, shardRepository);
+
+        int buyers = 150;
+        var tx = new TransactionTemplate(txManager);
+        var start = new CountDownLatch(1);
+        var sold = new AtomicInteger();
+        try (var pool = Executors.newFixedThreadPool(16)) {
+            pool.submit(() -> {
+                start.await();
+                for (int shardCount : new int[]{8, 0, 4, 0, 6}) {
+                    tx.executeWithoutResult(status -> otherNode.configure(product.getId(), shardCount));
+                    if (shardCount == 4) hotStock.refreshHotSet(); // ce nœud se croit hot, puis l'autre repasse en normal
+                    Thread.sleep(5);
+                }
+                return null;
+            });
+            for (int i = 0; i < buyers; i++) {
+                pool.submit(() -> {
+                    start.await();
+                    try {
+                        tx.executeWithoutResult(status -> hotStock.reserveAll(Map.of(product.getId(), 1)));
+                        sold.incrementAndGet();
+                    } catch (OutOfStockException ignored) {
+                        // rupture réelle ou refus pendant un redécoupage : rien n'a été décrémenté
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        hotStock.flush();
+        int left = products.findById(product.getId()).orElseThrow().getStock();
+        assertThat(left).isGreaterThanOrEqualTo(0);
+        assertThat(sold.get() + left).isEqualTo(100);
+    }
+}
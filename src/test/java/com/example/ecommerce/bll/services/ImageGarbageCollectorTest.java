@@ -0,0 +1,100 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.StoredImageRepository;
+import com.example.ecommerce.dl.entities.Product;
+import com.example.ecommerce.dl.entities.StoredImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** GC : seuls les fichiers non référencés, plus vieux que la période de grâce, partent (avec leurs déclinaisons). */
+@SpringBootTest(properties = {
+        "app.images.gc.grace=PT1H"
+})
+@ActiveProfiles("test")
+class ImageGarbageCollectorTest {
+
+    private static final String KEPT = "aa/bb/" + "a".repeat(64);
+    private static final String ORPHAN = "cc/dd/" + "c".repeat(64);
+    private static final String RECENT = "ee/ff/" + "e".repeat(64);
+    private static final String REUSED = "ee/ff/" + "f".repeat(64);
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", uploads::toString);
+    }
+
+    @Autowired ImageGarbageCollector gc;
+    @Autowired ProductRepository products;
+    @Autowired StoredImageRepository images;
+
+    @Test
+    void unreferencedFilesOlderThanTheGracePeriodAreReclaimed() throws Exception {
+        Instant old = Instant.now().minus(Duration.ofDays(2));
+        file(KEPT + ".png", 100, old);
+        file(KEPT + "-160w.jpg", 10, old);
+        file(KEPT + "-160w.jpg.webp", 5, old);
+        file(ORPHAN + ".png", 1000, old);
+        file(ORPHAN + "-160w.jpg", 100, old);
+        file(ORPHAN + "-320w.jpg", 200, old);
+        file(ORPHAN + ".png.webp", 400, old);
+        file(RECENT + ".png", 1000, Instant.now());
+        file(REUSED + ".png", 1000, old);
+        file("0123456789abcdef.jpg", 50, old);        // ancien nom aléatoire, plus référencé
+        file("fedcba9876543210-160w.jpg", 5, old);    // déclinaison dont l'original a disparu
+        file(".upload-123.tmp", 7, old);              // reste d'un upload interrompu
+        file(".upload-456.tmp", 7, Instant.now());    // upload en cours
+
+        products.save(Product.builder().name("Gardé").price(BigDecimal.ONE).stock(1)
+                .imageUrl("/uploads/" + KEPT + ".png").build());
+        images.save(row(ORPHAN + ".png", old));                 // produit jamais enregistré après l'upload
+        images.save(row(REUSED + ".png", Instant.now()));       // même contenu renvoyé à l'instant
+
+        var report = gc.collect();
+
+        assertThat(report.deleted()).isEqualTo(7);
+        assertThat(report.reclaimedBytes()).isEqualTo(1000 + 100 + 200 + 400 + 50 + 5 + 7);
+        assertThat(Files.exists(uploads.resolve(KEPT + ".png"))).isTrue();
+        assertThat(Files.exists(uploads.resolve(KEPT + "-160w.jpg"))).isTrue();
+        assertThat(Files.exists(uploads.resolve(KEPT + "-160w.jpg.webp"))).isTrue();
+        assertThat(Files.exists(uploads.resolve(ORPHAN + ".png"))).isFalse();
+        assertThat(Files.exists(uploads.resolve(ORPHAN + "-320w.jpg"))).isFalse();
+        assertThat(Files.exists(uploads.resolve(ORPHAN + ".png.webp"))).isFalse();
+        assertThat(images.findById(ORPHAN + ".png")).isEmpty();
+        assertThat(Files.exists(uploads.resolve(RECENT + ".png"))).isTrue();
+        assertThat(Files.exists(uploads.resolve(REUSED + ".png"))).isTrue();
+        assertThat(Files.exists(uploads.resolve(".upload-456.tmp"))).isTrue();
+        try (var root = Files.list(uploads)) {
+            assertThat(root.filter(Files::isRegularFile).map(p -> p.getFileName().toString()))
+                    .containsExactly(".upload-456.tmp");
+        }
+    }
+
+    private static void file(String key, int size, Instant modified) throws Exception {
+        Path file = uploads.resolve(key);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+    }
+
+    private static StoredImage row(String key, Instant lastUsed) {
+        return StoredImage.builder().fileName(key).refCount(1).sizeBytes(1000L)
+                .createdAt(lastUsed).lastUsedAt(lastUsed).build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dl.entities.Product;
+import com.example.ecommerce.il.interfaces.ProductService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+
+/** Aperçu flou + couleur dominante : calculés à l'upload, recopiés sur le produit, inlinés dans le catalogue. */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class ImagePlaceholdersTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", uploads::toString);
+    }
+
+    @Autowired ImageStorageService storage;
+    @Autowired ImagePlaceholders placeholders;
+    @Autowired ProductService productService;
+    @Autowired ProductRepository products;
+    @Autowired MockMvc mvc;
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void uploadedImagePlaceholderEndsUpInlinedInTheCatalog() throws Exception {
+        // 3/4 rouge, 1/4 bleu : la dominante est le rouge, pas la moyenne violette
+        String url = storage.saveImage(new MockMultipartFile("imageFile", "a.png", "image/png", png(800, 600)), null);
+        Long id = productService.create("Lampe", "", BigDecimal.TEN, 3, null, url);
+
+        Product saved = products.findById(id).orElseThrow();
+        assertThat(saved.getImageColor()).isEqualTo("#dc1e1e");
+        assertThat(saved.getImagePlaceholder()).startsWith("data:image/png;base64,").hasSizeLessThan(600);
+        BufferedImage tiny = ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(
+                saved.getImagePlaceholder().substring("data:image/png;base64,".length()))));
+        assertThat(tiny.getWidth()).isEqualTo(12);
+        assertThat(tiny.getHeight()).isEqualTo(9);
+
+        mvc.perform(get("/products"))
+                .andExpect(content().string(containsString(
+                        "style=\"background:url('" + saved.getImagePlaceholder() + "') center/cover no-repeat #dc1e1e\"")));
+    }
+
+    @Test
+    void productsFromBeforeUploadTimePlaceholdersAreBackfilled() throws Exception {
+        Files.createDirectories(uploads.resolve("aa/bb"));
+        Files.write(uploads.resolve("aa/bb/old.png"), png(40, 30));
+        Product old = products.save(Product.builder().name("Ancien").price(BigDecimal.ONE).stock(1)
+                .imageUrl("/uploads/aa/bb/old.png").build());
+        Product external = products.save(Product.builder().name("Externe").price(BigDecimal.ONE).stock(1)
+                .imageUrl("https://example.com/x.png").build());
+
+        assertThat(placeholders.backfill()).isEqualTo(1);
+        assertThat(products.findById(old.getId()).orElseThrow().getImageColor()).isEqualTo("#dc1e1e");
+        assertThat(products.findById(external.getId()).orElseThrow().getImagePlaceholder()).isNull();
+        assertThat(placeholders.backfill()).isZero();
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        var img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) img.setRGB(x, y, x < width * 3 / 4 ? 0xDC1E1E : 0x1E1EDC);
+        }
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.services.impls.FileSystemBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageRenditionsTest {
+
+    @TempDir Path dir;
+
+    final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    ImageRenditions renditions;
+    FileSystemBlobStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new FileSystemBlobStore(dir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (renditions != null) renditions.shutdown();
+    }
+
+    @Test
+    void opaqueImageGetsJpegRenditionsNeverWiderThanTheOriginal() throws Exception {
+        renditions = new ImageRenditions(dir.toString(), List.of(160, 320, 640, 1280), 0.8f, 40_000_000, 2, false,
+                Duration.ofMinutes(1), store, noTranscoding(), meters);
+        Path original = image("ab/cd/a.png", 900, 600, false);
+
+        assertThat(renditions.generate("ab/cd/a.png").get()).containsExactly(900, 640, 320, 160);
+
+        assertThat(renditions.srcset("/uploads/ab/cd/a.png")).isEqualTo(
+                "/uploads/ab/cd/a-160w.jpg 160w, /uploads/ab/cd/a-320w.jpg 320w, "
+                        + "/uploads/ab/cd/a-640w.jpg 640w, /uploads/ab/cd/a-900w.jpg 900w");
+        BufferedImage small = ImageIO.read(dir.resolve("ab/cd/a-160w.jpg").toFile());
+        assertThat(small.getWidth()).isEqualTo(160);
+        assertThat(small.getHeight()).isEqualTo(107);
+        assertThat(Files.size(dir.resolve("ab/cd/a-160w.jpg"))).isLessThan(Files.size(original));
+        assertThat(meters.counter("image.renditions", "result", "generated").count()).isEqualTo(1);
+
+        renditions.delete("ab/cd/a.png");
+        assertThat(renditions.srcset("/uploads/ab/cd/a.png")).isEmpty();
+        try (var files = Files.list(dir.resolve("ab/cd"))) {
+            assertThat(files.map(p -> p.getFileName().toString())).containsExactly("a.png");
+        }
+    }
+
+    @Test
+    void transparentImagesStayPngAndUnreadableFormatsAreSkipped() throws Exception {
+        renditions = new ImageRenditions(dir.toString(), List.of(160, 320), 0.8f, 40_000_000, 2, false,
+                Duration.ofMinutes(1), store, noTranscoding(), meters);
+        image("logo.png", 400, 200, true);
+        Files.write(dir.resolve("b.webp"), new byte[]{'R', 'I', 'F', 'F', 0, 0, 0, 0});
+
+        assertThat(renditions.generate("logo.png").get()).containsExactly(320, 160);
+        assertThat(ImageIO.read(dir.resolve("logo-320w.png").toFile()).getColorModel().hasAlpha()).isTrue();
+        assertThat(renditions.generate("b.webp").get()).isEmpty();
+        assertThat(renditions.srcset("/uploads/b.webp")).isEmpty();
+        assertThat(renditions.srcset("/uploads/../logo.png")).isEmpty();
+        assertThat(meters.counter("image.renditions", "result", "skipped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void emptySrcsetIsOnlyRememberedBriefly() throws Exception {
+        // Deux instances sur le même stockage : la seconde génère les déclinaisons d'une image vue par la première
+        renditions = new ImageRenditions(dir.toString(), List.of(160), 0.8f, 40_000_000, 1, false,
+                Duration.ZERO, store, noTranscoding(), meters);
+        var other = new ImageRenditions(dir.toString(), List.of(160), 0.8f, 40_000_000, 1, false,
+                Duration.ofMinutes(1), store, noTranscoding(), meters);
+        try {
+            image("ab/cd/c.png", 400, 200, false);
+            assertThat(renditions.srcset("/uploads/ab/cd/c.png")).isEmpty();
+
+            assertThat(other.generate("ab/cd/c.png").get()).containsExactly(160);
+
+            assertThat(renditions.srcset("/uploads/ab/cd/c.png")).isEqualTo("/uploads/ab/cd/c-160w.jpg 160w");
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    private ImageTranscoder noTranscoding() {
+        return new ImageTranscoder(dir.toString(), false, "", 80, false, "", 60, 1, 10, Duration.ofSeconds(5), store, meters);
+    }
+
+    private Path image(String name, int width, int height, boolean alpha) throws Exception {
+        var img = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, alpha ? ((x % 256) << 24) | (y % 256) : (x * 31 + y * 17) * 0x010203);
+            }
+        }
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(img, "png", file.toFile());
+        return file;
+    }
+}
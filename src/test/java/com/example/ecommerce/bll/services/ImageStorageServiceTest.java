@@ -0,0 +1,90 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.StoredImageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** Stockage adressé par contenu : une image envoyée deux fois = un fichier, supprimé avec sa dernière référence. */
+@SpringBootTest(properties = {
+        "app.images.widths=32"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class ImageStorageServiceTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", uploads::toString);
+    }
+
+    @Autowired ImageStorageService storage;
+    @Autowired StoredImageRepository images;
+    @Autowired MockMvc mvc;
+
+    @Test
+    void duplicatesShareOneFileUntilTheLastReferenceGoes() throws Exception {
+        byte[] png = png();
+        String first = storage.saveImage(new MockMultipartFile("imageFile", "a.png", "image/png", png), null);
+        String second = storage.saveImage(new MockMultipartFile("imageFile", "copy.PNG", "image/png", png), null);
+
+        assertThat(first).isEqualTo(second).matches("/uploads/[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.png");
+        String name = first.substring("/uploads/".length());
+        assertThat(images.findById(name)).hasValueSatisfying(i -> assertThat(i.getRefCount()).isEqualTo(2));
+        assertThat(originals()).isEqualTo(1);
+
+        mvc.perform(get(first))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+
+        storage.deleteIfOwned(first);
+        assertThat(Files.exists(uploads.resolve(name))).isTrue();
+        storage.deleteIfOwned(second);
+        assertThat(Files.exists(uploads.resolve(name))).isFalse();
+        assertThat(images.findById(name)).isEmpty();
+    }
+
+    @Test
+    void filesFromBeforeContentAddressingKeepASingleOwner() throws Exception {
+        Files.write(uploads.resolve("0123456789abcdef0123456789abcdef.png"), png());
+
+        storage.deleteIfOwned("/uploads/0123456789abcdef0123456789abcdef.png");
+        storage.deleteIfOwned("/uploads/../outside.png");
+
+        assertThat(Files.exists(uploads.resolve("0123456789abcdef0123456789abcdef.png"))).isFalse();
+    }
+
+    private static long originals() throws Exception {
+        try (var files = Files.walk(uploads)) {
+            return files.map(p -> p.getFileName().toString()).filter(n -> n.matches("[0-9a-f]{64}\\.png")).count();
+        }
+    }
+
+    private static byte[] png() throws Exception {
+        var img = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(10, 10, 0xFF0000);
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.services.impls.FileSystemBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Variantes après les déclinaisons, avec des encodeurs factices (scripts shell) : "webp" divise la taille par deux,
+ * "avif" la double (variante abandonnée).
+ */
+class ImageTranscoderTest {
+
+    @TempDir Path dir;
+    @TempDir Path bin;
+
+    final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    FileSystemBlobStore store;
+    ImageTranscoder transcoder;
+    ImageRenditions renditions;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new FileSystemBlobStore(dir.toString());
+        Path half = script("half", "head -c $(( $(wc -c < \"$1\") / 2 )) \"$1\" > \"$2\"");
+        Path twice = script("twice", "cat \"$1\" \"$1\" > \"$2\"");
+        transcoder = new ImageTranscoder(dir.toString(), true, half + " {in} {out}", 80, true, twice + " {in} {out}", 60,
+                1, 10, Duration.ofSeconds(5), store, meters);
+        renditions = new ImageRenditions(dir.toString(), List.of(160, 320), 0.8f, 40_000_000, 1, false,
+                Duration.ofMinutes(1), store, transcoder, meters);
+    }
+
+    @AfterEach
+    void tearDown() {
+        renditions.shutdown();
+        transcoder.shutdown();
+    }
+
+    @Test
+    void originalAndRenditionsGetSmallerVariantsOnly() throws Exception {
+        image("ab/cd/a.png", 400, 300);
+
+        assertThat(renditions.generate("ab/cd/a.png").get()).containsExactly(320, 160);
+
+        assertThat(transcoder.formats()).containsExactly("avif", "webp");
+        for (String source : List.of("ab/cd/a.png", "ab/cd/a-320w.jpg", "ab/cd/a-160w.jpg")) {
+            assertThat(Files.size(dir.resolve(source + ".webp"))).isEqualTo(Files.size(dir.resolve(source)) / 2);
+            assertThat(dir.resolve(source + ".avif")).doesNotExist();
+        }
+        assertThat(meters.counter("image.transcode", "format", "webp", "result", "encoded").count()).isEqualTo(3);
+        assertThat(meters.counter("image.transcode", "format", "avif", "result", "larger").count()).isEqualTo(3);
+        assertThat(meters.get("image.transcode.saved").tag("format", "webp").summary().totalAmount())
+                .isEqualTo((Files.size(dir.resolve("ab/cd/a.png")) + Files.size(dir.resolve("ab/cd/a-320w.jpg"))
+                        + Files.size(dir.resolve("ab/cd/a-160w.jpg"))) - sizeOfVariants());
+        assertThat(meters.get("image.transcode.duration").tag("format", "webp").timer().count()).isEqualTo(3);
+
+        // Les déclinaisons n'ont pas vu de variante : srcset inchangé ; suppression de toute la famille
+        assertThat(renditions.srcset("/uploads/ab/cd/a.png"))
+                .isEqualTo("/uploads/ab/cd/a-160w.jpg 160w, /uploads/ab/cd/a-320w.jpg 320w");
+        renditions.delete("ab/cd/a.png");
+        try (var files = Files.list(dir.resolve("ab/cd"))) {
+            assertThat(files.map(p -> p.getFileName().toString())).containsExactly("a.png");
+        }
+        try (var root = Files.list(dir)) {
+            assertThat(root.filter(Files::isRegularFile)).isEmpty(); // aucun temporaire laissé
+        }
+    }
+
+    @Test
+    void missingEncoderDisablesItsFormat() {
+        var none = new ImageTranscoder(dir.toString(), true, "no-such-encoder {in} {out}", 80, false, "", 60,
+                1, 10, Duration.ofSeconds(5), store, meters);
+        try {
+            assertThat(none.enabled()).isFalse();
+            assertThat(none.transcode(List.of("ab/cd/a.png")).join()).isZero();
+        } finally {
+            none.shutdown();
+        }
+    }
+
+    private long sizeOfVariants() throws Exception {
+        long total = 0;
+        for (String source : List.of("ab/cd/a.png", "ab/cd/a-320w.jpg", "ab/cd/a-160w.jpg")) {
+            total += Files.size(dir.resolve(source + ".webp"));
+        }
+        return total;
+    }
+
+    private Path script(String name, String body) throws Exception {
+        Path file = bin.resolve(name);
+        Files.writeString(file, "#!/bin/sh\n" + body + "\n");
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rwxr-xr-x"));
+        return file;
+    }
+
+    private void image(String name, int width, int height) throws Exception {
+        var img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) img.setRGB(x, y, (x * 31 + y * 17) * 0x010203);
+        }
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(img, "png", file.toFile());
+    }
+}
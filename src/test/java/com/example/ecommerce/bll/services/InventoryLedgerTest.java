@@ -0,0 +1,119 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.StockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Registre de holds en mémoire, sans base : le stock "DB" est une map lue par un StockRepository de test,
+ * les événements publiés sont collectés dans une liste.
+ */
+class InventoryLedgerTest {
+
+    static final long A = 1L, B = 2L;
+
+    final Map<Long, Integer> dbStock = new ConcurrentHashMap<>(Map.of(A, 10, B, 100));
+    final List<Object> published = new CopyOnWriteArrayList<>();
+    final InventoryLedger ledger = new InventoryLedger(new StockRepository(null) {
+        @Override
+        public Map<Long, Integer> currentStock(Collection<Long> productIds) {
+            Map<Long, Integer> result = new HashMap<>();
+            productIds.forEach(id -> { if (dbStock.containsKey(id)) result.put(id, dbStock.get(id)); });
+            return result;
+        }
+    }, published::add, Duration.ofMillis(10));
+
+    @AfterEach
+    void stopWheel() {
+        ledger.shutdown();
+    }
+
+    @Test
+    void concurrentHoldsNeverHoldMoreThanTheStock() throws Exception {
+        int buyers = 64;
+        var start = new CountDownLatch(1);
+        var succeeded = new AtomicInteger();
+        try (var pool = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < buyers; i++) {
+                long orderId = i;
+                pool.submit(() -> {
+                    start.await();
+                    if (ledger.hold(orderId, Map.of(B, 1, A, 1), Duration.ofMinutes(30)) == null) {
+                        succeeded.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(succeeded.get()).isEqualTo(10);
+        assertThat(ledger.available(A, 10)).isZero();
+        // les holds refusés n'ont rien gardé sur l'autre produit (tout ou rien)
+        assertThat(ledger.available(B, 100)).isEqualTo(90);
+    }
+
+    @Test
+    void releaseAndConfirmApplyOnlyOnce() {
+        assertThat(ledger.hold(1L, Map.of(A, 4), Duration.ofMinutes(30))).isNull();
+        ledger.release(1L);
+        ledger.release(1L);
+        assertThat(ledger.available(A, 10)).isEqualTo(10);
+
+        assertThat(ledger.hold(2L, Map.of(A, 4), Duration.ofMinutes(30))).isNull();
+        ledger.confirm(2L);
+        ledger.confirm(2L);
+        ledger.release(2L);
+        // stock suivi : 10 - 4 consommés une seule fois
+        assertThat(ledger.hold(3L, Map.of(A, 7), Duration.ofMinutes(30))).isEqualTo(A);
+        assertThat(ledger.hold(4L, Map.of(A, 6), Duration.ofMinutes(30))).isNull();
+    }
+
+    @Test
+    void expiredHoldIsPublishedUnlessConfirmed() throws Exception {
+        assertThat(ledger.hold(1L, Map.of(A, 2), Duration.ofMillis(50))).isNull();
+        assertThat(ledger.hold(2L, Map.of(A, 2), Duration.ofMillis(50))).isNull();
+        ledger.confirm(2L);
+
+        await(() -> published.contains(new InventoryLedger.HoldExpired(1L)));
+        Thread.sleep(100); // quelques ticks de plus : rien d'autre n'échoit
+        assertThat(published).containsExactly(new InventoryLedger.HoldExpired(1L));
+    }
+
+    @Test
+    void restoreRecreatesAHoldOnce() {
+        var expiresAt = Instant.now().plus(Duration.ofMinutes(30));
+        ledger.restore(1L, Map.of(A, 3), expiresAt);
+        ledger.restore(1L, Map.of(A, 3), expiresAt);
+
+        assertThat(ledger.available(A, 10)).isEqualTo(7);
+        ledger.release(1L);
+        assertThat(ledger.available(A, 10)).isEqualTo(10);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timeout").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dl.entities.Product;
+import com.example.ecommerce.il.interfaces.AuthService;
+import com.example.ecommerce.il.interfaces.CartService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Rejet rapide : emails libres et productId inconnus ne vont pas en base ; le filtre suit les écritures. */
+@SpringBootTest
+@ActiveProfiles("test")
+class LookupFiltersTest {
+
+    @Autowired LookupFilters filters;
+    @Autowired AuthService auth;
+    @Autowired CartService cart;
+    @Autowired ProductRepository products;
+    @Autowired MeterRegistry meters;
+
+    @Test
+    void registrationUsesTheEmailFilterAndStillRejectsDuplicates() {
+        filters.rebuild();
+        assertThat(filters.mayBeRegistered("fresh@test.local")).isFalse();
+
+        auth.registerUser("Fresh@Test.local", "password123");
+        assertThat(filters.mayBeRegistered("fresh@test.local")).isTrue();
+        assertThatThrownBy(() -> auth.registerUser("fresh@test.local", "password123"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("already registered");
+
+        filters.rebuild(); // reconstruit depuis la base : l'email y est toujours
+        assertThat(filters.mayBeRegistered("FRESH@test.local")).isTrue();
+    }
+
+    @Test
+    void unknownProductIdsAreRejectedWithoutQuery() {
+        filters.rebuild();
+        long known = products.findMaxId().orElseThrow();
+        double rejectedBefore = meters.counter("lookup.filter.rejected", "filter", "product").count();
+
+        assertThat(filters.mayExist(known)).isTrue();
+        assertThat(filters.mayExist(-1L)).isFalse();
+        assertThatThrownBy(() -> cart.add(known + 1_000_000, 1, new MockHttpSession()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // Produit créé après la reconstruction (id plus grand) : accepté, vérifié en base
+        var created = products.save(Product.builder().name("Nouveau").price(BigDecimal.ONE).stock(1).build());
+        assertThat(filters.mayExist(created.getId())).isTrue();
+
+        assertThat(meters.counter("lookup.filter.rejected", "filter", "product").count())
+                .isEqualTo(rejectedBefore + 2);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.OutboxRepository;
+import com.example.ecommerce.il.dto.OutboxMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Outbox + relais sur H2 : écriture transactionnelle, diffusion hors transaction, reprise après échec.
+ * Le relais planifié est neutralisé (poll très long), les tests appellent relay() directement.
+ */
+@SpringBootTest(properties = {
+        "app.outbox.retry-backoff=PT1H"
+})
+@ActiveProfiles("test")
+class OutboxRelayTest {
+
+    @Autowired Outbox outbox;
+    @Autowired OutboxRelay relay;
+    @Autowired OutboxRepository repository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired Recorder recorder;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        repository.deleteAll();
+        recorder.received.clear();
+        recorder.failuresLeft.set(0);
+    }
+
+    @Test
+    void committedEventIsDeliveredThenDeleted() {
+        tx.executeWithoutResult(s -> outbox.append("test.ping", "42", Map.of("n", 1)));
+
+        assertThat(relay.relay()).isEqualTo(1);
+
+        assertThat(recorder.received).singleElement().satisfies(m -> {
+            assertThat(m.type()).isEqualTo("test.ping");
+            assertThat(m.aggregateId()).isEqualTo("42");
+            assertThat(m.payload()).isEqualTo("{\"n\":1}");
+            assertThat(m.attempt()).isEqualTo(1);
+        });
+        assertThat(repository.count()).isZero();
+    }
+
+    @Test
+    void rolledBackEventIsNeverDelivered() {
+        tx.executeWithoutResult(s -> {
+            outbox.append("test.ping", "1", Map.of());
+            s.setRollbackOnly();
+        });
+
+        assertThat(relay.relay()).isZero();
+        assertThat(recorder.received).isEmpty();
+    }
+
+    @Test
+    void appendOutsideTransactionIsRejected() {
+        assertThatThrownBy(() -> outbox.append("test.ping", "1", Map.of()))
+                .isInstanceOf(org.springframework.transaction.IllegalTransactionStateException.class);
+    }
+
+    @Test
+    void failedListenerIsRetriedLaterAtLeastOnce() {
+        recorder.failuresLeft.set(1);
+        tx.executeWithoutResult(s -> outbox.append("test.ping", "7", Map.of()));
+
+        assertThat(relay.relay()).isZero();
+        var pending = repository.findAll();
+        assertThat(pending).singleElement().satisfies(e -> {
+            assertThat(e.getAttempts()).isEqualTo(1);
+            assertThat(e.getAvailableAt()).isAfter(Instant.now());
+            assertThat(e.getLastError()).contains("boom");
+        });
+
+        // Pas encore dû (backoff) : rien n'est rediffusé
+        assertThat(relay.relay()).isZero();
+
+        // Échéance atteinte : deuxième livraison, cette fois acquittée
+        tx.executeWithoutResult(s -> repository.reschedule(pending.getFirst().getId(), Instant.now().minusSeconds(1), null));
+        assertThat(relay.relay()).isEqualTo(1);
+        assertThat(recorder.received).hasSize(2);
+        assertThat(recorder.received.get(1).attempt()).isEqualTo(2);
+        assertThat(repository.count()).isZero();
+    }
+
+    @TestConfiguration
+    static class Listeners {
+        @Bean
+        Recorder recorder() {
+            return new Recorder();
+        }
+    }
+
+    static class Recorder {
+        final List<OutboxMessage> received = new CopyOnWriteArrayList<>();
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @EventListener(condition = "#message.type().startsWith('test.')")
+        public void on(OutboxMessage message) {
+            received.add(message);
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("boom");
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.dl.enums.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.unauthenticated;
+
+/** Hash historique BCrypt 10 sans préfixe : login accepté, puis re-hash en arrière-plan vers l'algorithme configuré. */
+@SpringBootTest(properties = {
+        "app.security.password.algorithm=argon2",
+        "app.security.password.argon2.memory-kib=1024",
+        "app.security.password.argon2.iterations=1"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class PasswordRehasherTest {
+
+    static final String PASSWORD = "Secret-pass-1";
+
+    @Autowired MockMvc mvc;
+    @Autowired UserRepository users;
+    @Autowired PasswordEncoder encoder;
+    @Autowired PasswordRehasher rehasher;
+    @Autowired MeterRegistry meters;
+
+    @Test
+    void legacyHashIsUpgradedAfterSuccessfulLogin() throws Exception {
+        String legacy = new BCryptPasswordEncoder(10).encode(PASSWORD);
+        users.save(User.builder().email("legacy@test.local").password(legacy).role(Role.USER).build());
+        assertThat(rehasher.needsRehash(legacy)).isTrue();
+
+        mvc.perform(formLogin("/auth/login").user("legacy@test.local").password(PASSWORD))
+                .andExpect(authenticated());
+
+        String upgraded = awaitHashChange("legacy@test.local", legacy);
+        assertThat(upgraded).startsWith("{argon2}");
+        assertThat(encoder.matches(PASSWORD, upgraded)).isTrue();
+        assertThat(rehasher.needsRehash(upgraded)).isFalse();
+
+        // Le cache des comptes a été invalidé : le login suivant lit le nouveau hash
+        mvc.perform(formLogin("/auth/login").user("legacy@test.local").password(PASSWORD))
+                .andExpect(authenticated());
+    }
+
+    @Test
+    void concurrentPasswordChangeIsNeverOverwritten() throws Exception {
+        String legacy = new BCryptPasswordEncoder(10).encode(PASSWORD);
+        String changed = encoder.encode("Another-pass-2");
+        users.save(User.builder().email("changed@test.local").password(changed).role(Role.USER).build());
+
+        // Re-hash programmé avec l'ancien hash (login juste avant un changement de mot de passe) : écriture ignorée
+        rehasher.schedule("changed@test.local", legacy, PASSWORD);
+        Thread.sleep(500);
+
+        assertThat(users.findByEmail("changed@test.local").orElseThrow().getPassword()).isEqualTo(changed);
+    }
+
+    @Test
+    void failedLoginHashesOnce() throws Exception {
+        users.save(User.builder().email("once@test.local").password(encoder.encode(PASSWORD)).role(Role.USER).build());
+        long before = meters.timer("password.hash", "op", "matches").count();
+
+        mvc.perform(formLogin("/auth/login").user("once@test.local").password("wrong-pass"))
+                .andExpect(unauthenticated());
+
+        // Un seul provider : pas de second essai par un DaoAuthenticationProvider global
+        assertThat(meters.timer("password.hash", "op", "matches").count() - before).isEqualTo(1);
+    }
+
+    private String awaitHashChange(String email, String previous) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            String current = users.findByEmail(email).orElseThrow().getPassword();
+            if (!current.equals(previous)) return current;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("password hash was not upgraded");
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.bll.utils.CircuitBreaker;
+import com.stripe.model.checkout.Session;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * StripeService contre un stand-in HTTP local (stripe.api-base) : timeout, disjoncteur, métriques.
+ * Le stub ne répond jamais tant qu'il est bloqué (pas de délai calibré sur l'horloge) : un appel qui l'atteint
+ * expire forcément, quelle que soit la lenteur du premier appel du SDK.
+ */
+class StripeServiceTest {
+
+    private HttpServer stub;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final List<String> refunds = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blocking;
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private StripeService stripe;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/v1/checkout/sessions", exchange -> {
+            hits.incrementAndGet();
+            if (blocking) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String status = exchange.getRequestURI().getPath().endsWith("/expire") ? "expired" : "open";
+            byte[] body = """
+                    {"id":"cs_test_stub","object":"checkout.session","url":"https://stub.local/pay",\
+                    "payment_status":"unpaid","status":"%s","payment_intent":"pi_stub"}""".formatted(status)
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.createContext("/v1/refunds", exchange -> {
+            refunds.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] body = """
+                    {"id":"re_stub","object":"refund","status":"succeeded"}""".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        release.countDown();
+        if (stripe != null) stripe.shutdown();
+        stub.stop(0);
+    }
+
+    @Test
+    void createsSessionThroughStub() throws Exception {
+        stripe = stripe(Duration.ofSeconds(10));
+
+        var session = createSession();
+
+        assertThat(session.getId()).isEqualTo("cs_test_stub");
+        assertThat(session.getUrl()).isEqualTo("https://stub.local/pay");
+        assertThat(meters.get("stripe.calls").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void expiresAnOpenSession() throws Exception {
+        stripe = stripe(Duration.ofSeconds(10));
+
+        assertThat(stripe.expire("cs_test_stub")).isTrue();
+        assertThat(meters.get("stripe.calls").tag("op", "session.expire").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void refundsThePaymentOfASession() throws Exception {
+        stripe = stripe(Duration.ofSeconds(10));
+
+        stripe.refund("cs_test_stub", "refund-42");
+
+        assertThat(refunds).singleElement().asString().contains("payment_intent=pi_stub");
+    }
+
+    @Test
+    void slowStripeTimesOutThenBreakerFailsFast() {
+        stripe = stripe(Duration.ofMillis(300));
+        blocking = true;
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(this::createSession)
+                    .isInstanceOf(StripeService.UnavailableException.class)
+                    .hasMessageContaining("timed out");
+        }
+        assertThat(meters.get("stripe.calls").tag("outcome", "timeout").timer().count()).isEqualTo(2);
+        assertThat(stripe.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        int before = hits.get();
+        assertThatThrownBy(this::createSession)
+                .isInstanceOf(StripeService.UnavailableException.class)
+                .hasMessageContaining("circuit open");
+        assertThat(hits.get()).isEqualTo(before); // aucun appel réseau quand le disjoncteur est ouvert
+        assertThat(meters.get("stripe.rejected").tag("reason", "breaker").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void abandonedHalfOpenProbeDoesNotWedgeTheBreaker() throws Exception {
+        stripe = stripe(Duration.ofSeconds(1), Duration.ZERO); // ouvert => essai HALF_OPEN dès l'appel suivant
+        openBreaker();
+
+        // Essai dont l'appelant est interrompu : aucun verdict sur Stripe, l'essai est libéré
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(this::createSession).hasMessageContaining("Interrupted");
+        } finally {
+            Thread.interrupted();
+        }
+        assertThat(stripe.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(createSession().getId()).isEqualTo("cs_test_stub"); // nouvel essai, réussi
+        assertThat(stripe.breakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // Essai refusé localement (executor arrêté) : libéré de même
+        openBreaker();
+        stripe.shutdown();
+        assertThatThrownBy(this::createSession).hasMessageContaining("shut down");
+        assertThat(stripe.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void openBreaker() {
+        blocking = true;
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(this::createSession).isInstanceOf(StripeService.UnavailableException.class);
+        }
+        blocking = false;
+        assertThat(stripe.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private StripeService stripe(Duration timeout) {
+        return stripe(timeout, Duration.ofMinutes(1));
+    }
+
+    private StripeService stripe(Duration timeout, Duration openDuration) {
+        return new StripeService("sk_test_stub", "http://127.0.0.1:" + stub.getAddress().getPort(),
+                timeout, 4, 2, openDuration, meters);
+    }
+
+    private Session createSession() throws Exception {
+        return stripe.createCheckoutSession(
+                List.of(stripe.createLineItem("Mug", 1200L, 1L)),
+                "http://localhost/success", "http://localhost/cancel", "1", Instant.now().plusSeconds(1800), "idem-test");
+    }
+}
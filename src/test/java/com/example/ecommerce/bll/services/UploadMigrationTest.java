@@ -0,0 +1,96 @@
+package com.example.ecommerce.bll.services;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.StoredImageRepository;
+import com.example.ecommerce.dl.entities.Product;
+import com.example.ecommerce.dl.entities.StoredImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Migration du dossier plat vers "ab/cd/<sha256>.ext" : fichiers déplacés, produits repointés, compteurs repris. */
+@SpringBootTest(properties = {
+        "app.storage.migration.batch-size=2"
+})
+@ActiveProfiles("test")
+class UploadMigrationTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", uploads::toString);
+    }
+
+    @Autowired UploadMigration migration;
+    @Autowired ProductRepository products;
+    @Autowired StoredImageRepository images;
+
+    @Test
+    void flatUploadsMoveToShardedKeysAndProductsFollow() throws Exception {
+        // Nom aléatoire partagé par deux produits, nom adressé par contenu (compté), fichier disparu
+        Files.write(uploads.resolve("0123456789abcdef0123456789abcdef.png"), png(0xFF0000));
+        Files.write(uploads.resolve("0123456789abcdef0123456789abcdef-320w.jpg"), new byte[]{1});
+        byte[] blue = png(0x0000FF);
+        String blueHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(blue));
+        Files.write(uploads.resolve(blueHash + ".png"), blue);
+        images.save(StoredImage.builder().fileName(blueHash + ".png").refCount(1).sizeBytes((long) blue.length)
+                .createdAt(Instant.now()).build());
+
+        var a = product("/uploads/0123456789abcdef0123456789abcdef.png");
+        var b = product("/uploads/0123456789abcdef0123456789abcdef.png");
+        var c = product("/uploads/" + blueHash + ".png");
+        var d = product("/uploads/gone.png");
+
+        var report = migration.migrate();
+
+        assertThat(report).isEqualTo(new UploadMigration.Report(2, 1, 0, 3));
+        String red = products.findById(a.getId()).orElseThrow().getImageUrl();
+        assertThat(red).matches("/uploads/[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.png");
+        assertThat(products.findById(b.getId()).orElseThrow().getImageUrl()).isEqualTo(red);
+        String redKey = red.substring("/uploads/".length());
+        assertThat(images.findById(redKey)).hasValueSatisfying(i -> assertThat(i.getRefCount()).isEqualTo(2));
+        assertThat(Files.exists(uploads.resolve(redKey))).isTrue();
+
+        String blueKey = blueHash.substring(0, 2) + "/" + blueHash.substring(2, 4) + "/" + blueHash + ".png";
+        assertThat(products.findById(c.getId()).orElseThrow().getImageUrl()).isEqualTo("/uploads/" + blueKey);
+        assertThat(images.findById(blueKey)).hasValueSatisfying(i -> assertThat(i.getRefCount()).isEqualTo(1));
+        assertThat(images.findById(blueHash + ".png")).isEmpty();
+
+        assertThat(products.findById(d.getId()).orElseThrow().getImageUrl()).isEqualTo("/uploads/gone.png");
+        try (var flat = Files.list(uploads)) {
+            assertThat(flat.filter(f -> Files.isRegularFile(f) && !f.getFileName().toString().startsWith("."))).isEmpty();
+        }
+
+        // Rejouable : rien de plus à faire
+        assertThat(migration.migrate()).isEqualTo(new UploadMigration.Report(0, 1, 0, 0));
+    }
+
+    private Product product(String imageUrl) {
+        return products.save(Product.builder().name("Migré").price(BigDecimal.ONE).stock(1).imageUrl(imageUrl).build());
+    }
+
+    private static byte[] png(int rgb) throws Exception {
+        var img = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(5, 5, rgb);
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.ecommerce.bll.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDetailsCacheTest {
+
+    final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    final UserDetailsCache cache = new UserDetailsCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 100, meters);
+    final AtomicInteger loads = new AtomicInteger();
+
+    final Function<String, Optional<UserDetailsCache.CachedUser>> db = email -> {
+        loads.incrementAndGet();
+        return email.equals("alice@test.local")
+                ? Optional.of(new UserDetailsCache.CachedUser(email, "{bcrypt}hash", "USER"))
+                : Optional.empty();
+    };
+
+    @Test
+    void normalizedEmailIsLoadedOnceThenServedFromCache() {
+        assertThat(cache.get("alice@test.local", db)).isPresent();
+        assertThat(cache.get("  ALICE@test.local ", db)).isPresent();
+        assertThat(cache.get("ghost@test.local", db)).isEmpty();
+        assertThat(cache.get("ghost@test.local", db)).isEmpty();
+
+        assertThat(loads).hasValue(2);
+        assertThat(meters.counter("security.user.cache", "result", "hit").count()).isEqualTo(2);
+        assertThat(meters.counter("security.user.cache", "result", "miss").count()).isEqualTo(2);
+    }
+
+    @Test
+    void evictForcesReload() {
+        cache.get("alice@test.local", db);
+        cache.evict("Alice@Test.local");
+        cache.get("alice@test.local", db);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void concurrentLoginsShareOneLoad() throws Exception {
+        var release = new CountDownLatch(1);
+        Function<String, Optional<UserDetailsCache.CachedUser>> slowDb = email -> {
+            try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+            return db.apply(email);
+        };
+        try (var pool = Executors.newFixedThreadPool(8)) {
+            var results = new java.util.ArrayList<Future<Optional<UserDetailsCache.CachedUser>>>();
+            for (int i = 0; i < 8; i++) results.add(pool.submit(() -> cache.get("alice@test.local", slowDb)));
+            Thread.sleep(100);
+            release.countDown();
+            for (var r : results) assertThat(r.get()).isPresent();
+        }
+        assertThat(loads).hasValue(1);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.ecommerce.bll.services.impls;
+
+import com.example.ecommerce.bll.services.InventoryLedger;
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.entities.OrderLine;
+import com.example.ecommerce.dl.entities.Product;
+import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.dl.enums.Role;
+import com.example.ecommerce.il.interfaces.CartService;
+import com.example.ecommerce.il.interfaces.OrderService;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checkout contre un stand-in HTTP de Stripe (stripe.api-base) : sessions ouvertes à la lecture,
+ * expirées sur /expire ; les expirations demandées sont enregistrées.
+ * Roue des holds à 20 ms : une échéance courte est atteinte en quelques ticks.
+ */
+@SpringBootTest(properties = "app.inventory.wheel-tick=20ms")
+@ActiveProfiles("test")
+class OrderServiceImplTest {
+
+    static final List<String> EXPIRED = new CopyOnWriteArrayList<>();
+    static final HttpServer STRIPE = startStripeStub();
+
+    @DynamicPropertySource
+    static void stripe(DynamicPropertyRegistry registry) {
+        registry.add("stripe.api-base", () -> "http://127.0.0.1:" + STRIPE.getAddress().getPort());
+    }
+
+    @Autowired OrderService orderService;
+    @Autowired OrderServiceImpl orderServiceImpl;
+    @Autowired CartService cartService;
+    @Autowired InventoryLedger ledger;
+    @Autowired UserRepository users;
+    @Autowired ProductRepository products;
+    @Autowired OrderRepository orders;
+
+    @AfterEach
+    void signOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STRIPE.stop(0);
+    }
+
+    @Test
+    void newCheckoutCancelsThePreviousPendingOrder() {
+        var user = users.save(User.builder().email("twice@test.local").password("x").role(Role.USER).build());
+        var product = products.save(Product.builder().name("Lamp").price(new BigDecimal("30.00")).stock(5).build());
+        var previous = Order.builder().user(user).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("60.00")).stripeSessionId("cs_previous").build();
+        previous.getLines().add(OrderLine.builder().order(previous).productId(product.getId())
+                .productName("Lamp").unitPrice(new BigDecimal("30.00")).quantity(2).build());
+        orders.save(previous);
+        assertThat(ledger.hold(previous.getId(), Map.of(product.getId(), 2), Duration.ofMinutes(35))).isNull();
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("twice@test.local", null, List.of()));
+        var session = new MockHttpSession();
+        cartService.add(product.getId(), 1, session);
+        var placed = orderService.placeOrder(session);
+
+        assertThat(EXPIRED).containsExactly("cs_previous");
+        assertThat(orders.findById(previous.getId()).orElseThrow().getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(orders.findById(placed.id()).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(ledger.available(product.getId(), 5)).isEqualTo(4); // seul le hold de la nouvelle commande reste
+    }
+
+    @Test
+    void expiredHoldMovesTheOrderToExpired() throws Exception {
+        var product = products.save(Product.builder().name("Vase").price(new BigDecimal("15.00")).stock(3).build());
+        var order = pendingOrder("expiring@test.local", product, 2);
+        assertThat(ledger.hold(order.getId(), Map.of(product.getId(), 2), Duration.ofMillis(50))).isNull();
+
+        await(() -> orders.findById(order.getId()).orElseThrow().getStatus() == OrderStatus.EXPIRED);
+        await(() -> ledger.available(product.getId(), 3) == 3);
+    }
+
+    @Test
+    void restoreHoldsRebuildsTheHoldsOfPendingOrders() {
+        var product = products.save(Product.builder().name("Rug").price(new BigDecimal("80.00")).stock(5).build());
+        pendingOrder("restart@test.local", product, 2); // commande d'avant le redémarrage : aucun hold en mémoire
+        assertThat(ledger.available(product.getId(), 5)).isEqualTo(5);
+
+        orderServiceImpl.restoreHolds();
+        orderServiceImpl.restoreHolds();
+
+        assertThat(ledger.available(product.getId(), 5)).isEqualTo(3);
+    }
+
+    private Order pendingOrder(String email, Product product, int quantity) {
+        var user = users.save(User.builder().email(email).password("x").role(Role.USER).build());
+        var order = Order.builder().user(user).status(OrderStatus.PENDING)
+                .totalAmount(product.getPrice().multiply(BigDecimal.valueOf(quantity))).build();
+        order.getLines().add(OrderLine.builder().order(order).productId(product.getId())
+                .productName(product.getName()).unitPrice(product.getPrice()).quantity(quantity).build());
+        return orders.save(order);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timeout").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    // -------- Stub Stripe --------
+
+    private static HttpServer startStripeStub() {
+        try {
+            var stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            stub.createContext("/v1/checkout/sessions", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                String id = path.substring("/v1/checkout/sessions/".length()).replace("/expire", "");
+                boolean expire = path.endsWith("/expire");
+                if (expire) EXPIRED.add(id);
+                byte[] body = """
+                        {"id":"%s","object":"checkout.session","payment_status":"unpaid","status":"%s"}"""
+                        .formatted(id, expire ? "expired" : "open").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            });
+            stub.start();
+            return stub;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.ecommerce.bll.services.impls;
+
+import com.example.ecommerce.bll.utils.SigV4;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * S3BlobStore contre un stand-in S3 local : chaque requête est re-signée côté serveur (SigV4) et refusée si
+ * la signature diffère ; listing paginé par 2 clés pour passer par les jetons de continuation.
+ */
+class S3BlobStoreTest {
+
+    private static final Pattern AUTHORIZATION = Pattern.compile(
+            "AWS4-HMAC-SHA256 Credential=([^/]+)/(\\d{8})/([^/]+)/s3/aws4_request, SignedHeaders=([^,]+), Signature=([0-9a-f]{64})");
+
+    @TempDir Path dir;
+
+    private HttpServer stub;
+    private final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private S3BlobStore store;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/images", this::handle);
+        stub.start();
+        store = new S3BlobStore("http://127.0.0.1:" + stub.getAddress().getPort(), "eu-west-3", "images",
+                "AKIDTEST", "secret/key+1", true, "https://cdn.example.com/", Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+    }
+
+    @Test
+    void signatureMatchesTheAwsReferenceVector() {
+        // "get-vanilla" de la suite de tests SigV4 publiée par AWS
+        var headers = new TreeMap<String, String>();
+        headers.put("host", "example.amazonaws.com");
+        headers.put("x-amz-date", "20150830T123600Z");
+        String authorization = SigV4.authorization(
+                new SigV4.Credentials("AKIDEXAMPLE", "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY", "us-east-1", "service"),
+                "GET", URI.create("https://example.amazonaws.com/"), headers, SigV4.EMPTY_PAYLOAD);
+
+        assertThat(authorization).isEqualTo("AWS4-HMAC-SHA256 "
+                + "Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, SignedHeaders=host;x-amz-date, "
+                + "Signature=5fa00fa31553b73ebf1942676e86291e8372ff2a2260956d9b8aae1d763fbf31");
+    }
+
+    @Test
+    void objectsRoundTripThroughSignedRequests() throws Exception {
+        for (String key : new String[]{"ab/cd/abcd.png", "ab/cd/abcd-160w.jpg", "ab/cd/abcd-320w.jpg", "ab/ef/other.png"}) {
+            store.put(key, Files.writeString(dir.resolve("f"), key), key.endsWith(".png") ? "image/png" : "image/jpeg");
+        }
+
+        assertThat(rejected).hasValue(0);
+        assertThat(contentTypes).containsEntry("ab/cd/abcd.png", "image/png");
+        assertThat(store.exists("ab/cd/abcd.png")).isTrue();
+        assertThat(store.exists("ab/cd/missing.png")).isFalse();
+        try (InputStream in = store.open("ab/cd/abcd-160w.jpg")) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("ab/cd/abcd-160w.jpg");
+        }
+        assertThatThrownBy(() -> store.open("ab/cd/missing.png")).isInstanceOf(NoSuchFileException.class);
+
+        assertThat(store.list("ab/cd/abcd-")).containsExactly("ab/cd/abcd-160w.jpg", "ab/cd/abcd-320w.jpg");
+        assertThat(store.list("")).hasSize(4);
+
+        store.delete("ab/cd/abcd-160w.jpg");
+        store.delete("ab/cd/abcd-160w.jpg");
+        assertThat(objects).doesNotContainKey("ab/cd/abcd-160w.jpg");
+
+        assertThat(store.publicUrl("ab/cd/abcd.png")).isEqualTo("https://cdn.example.com/ab/cd/abcd.png");
+        assertThat(store.keyOf("https://cdn.example.com/ab/cd/abcd.png")).hasValue("ab/cd/abcd.png");
+        assertThat(store.keyOf("https://cdn.example.com/../x.png")).isEmpty();
+        assertThat(store.keyOf("/uploads/ab/cd/abcd.png")).isEmpty();
+        assertThat(rejected).hasValue(0);
+    }
+
+    // -------- Stand-in S3 (path-style : /images/<clé>) --------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (!signatureValid(exchange, body)) {
+                rejected.incrementAndGet();
+                send(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                return;
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            String key = URLDecoder.decode(path.substring(Math.min(path.length(), "/images/".length())), StandardCharsets.UTF_8);
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> {
+                    objects.put(key, body);
+                    contentTypes.put(key, exchange.getRequestHeaders().getFirst("Content-Type"));
+                    send(exchange, 200, "");
+                }
+                case "HEAD" -> exchange.sendResponseHeaders(objects.containsKey(key) ? 200 : 404, -1);
+                case "DELETE" -> {
+                    objects.remove(key);
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                case "GET" -> {
+                    if (key.isEmpty()) {
+                        send(exchange, 200, list(exchange.getRequestURI().getRawQuery()));
+                    } else if (objects.containsKey(key)) {
+                        exchange.sendResponseHeaders(200, objects.get(key).length);
+                        exchange.getResponseBody().write(objects.get(key));
+                    } else {
+                        send(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                    }
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        }
+    }
+
+    // Deux clés par page, jeton = dernière clé renvoyée
+    private String list(String rawQuery) {
+        Map<String, String> params = new TreeMap<>();
+        for (String pair : rawQuery.split("&")) {
+            String[] kv = pair.split("=", 2);
+            params.put(kv[0], URLDecoder.decode(kv.length > 1 ? kv[1] : "", StandardCharsets.UTF_8));
+        }
+        String prefix = params.getOrDefault("prefix", "");
+        String after = params.getOrDefault("continuation-token", "");
+        var page = objects.keySet().stream().filter(k -> k.startsWith(prefix) && k.compareTo(after) > 0).limit(3).toList();
+        boolean truncated = page.size() > 2;
+        var keys = truncated ? page.subList(0, 2) : page;
+        StringBuilder xml = new StringBuilder("<ListBucketResult>");
+        keys.forEach(k -> xml.append("<Contents><Key>").append(k).append("</Key></Contents>"));
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) xml.append("<NextContinuationToken>").append(keys.get(1)).append("</NextContinuationToken>");
+        return xml.append("</ListBucketResult>").toString();
+    }
+
+    private boolean signatureValid(HttpExchange exchange, byte[] body) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        Matcher m = authorization == null ? null : AUTHORIZATION.matcher(authorization);
+        if (m == null || !m.matches() || !m.group(1).equals("AKIDTEST") || !m.group(3).equals("eu-west-3")) return false;
+        String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (!SigV4.sha256Hex(body).equals(payloadHash)) return false;
+        var signed = new TreeMap<String, String>();
+        for (String name : m.group(4).split(";")) {
+            String value = exchange.getRequestHeaders().getFirst(name);
+            if (value == null) return false;
+            signed.put(name, value);
+        }
+        URI uri = URI.create("http://" + signed.get("host") + exchange.getRequestURI());
+        String expected = SigV4.authorization(new SigV4.Credentials("AKIDTEST", "secret/key+1", "eu-west-3", "s3"),
+                exchange.getRequestMethod(), uri, signed, payloadHash);
+        return expected.equals(authorization);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) exchange.getResponseBody().write(bytes);
+    }
+}
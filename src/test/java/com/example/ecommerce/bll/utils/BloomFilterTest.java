@@ -0,0 +1,51 @@
+package com.example.ecommerce.bll.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegativesAndFalsePositiveRateNearTarget() {
+        var filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("user" + i + "@test.local");
+
+        for (int i = 0; i < 10_000; i++) assertThat(filter.mightContain("user" + i + "@test.local")).isTrue();
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@test.local")) falsePositives++;
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.expectedFpp()).isBetween(0.005, 0.015);
+        assertThat(filter.memoryBytes()).isBetween(11_000L, 13_000L); // ~9.6 bits par clé
+    }
+
+    @Test
+    void idBitmapIsExactBelowCapacityAndUnknownBeyond() {
+        var ids = new IdBitmap(101);
+        ids.add(1);
+        ids.add(64);
+        ids.add(100);
+        ids.remove(64);
+
+        assertThat(ids.contains(1)).isEqualTo(IdBitmap.Membership.PRESENT);
+        assertThat(ids.contains(64)).isEqualTo(IdBitmap.Membership.ABSENT);
+        assertThat(ids.contains(99)).isEqualTo(IdBitmap.Membership.ABSENT);
+        assertThat(ids.contains(101)).isEqualTo(IdBitmap.Membership.UNKNOWN);
+        assertThat(ids.add(500)).isFalse();
+        assertThat(ids.cardinality()).isEqualTo(2);
+    }
+
+    @Test
+    void longHashSetGrowsAndKeepsEveryKey() {
+        var set = new LongHashSet(16);
+        for (int i = 0; i < 100_000; i++) assertThat(set.add("ab/cd/" + i)).isTrue();
+        assertThat(set.add("ab/cd/42")).isFalse();
+
+        for (int i = 0; i < 100_000; i++) assertThat(set.contains("ab/cd/" + i)).isTrue();
+        assertThat(set.contains("ab/cd/-1")).isFalse();
+        assertThat(set.size()).isEqualTo(100_000);
+        assertThat(set.memoryBytes()).isEqualTo(262_144L * Long.BYTES); // facteur de charge <= 0,5
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ecommerce.bll.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+
+    final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    final CountDownLatch release = new CountDownLatch(1);
+    BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (encoder != null) encoder.shutdown();
+    }
+
+    @Test
+    void hashesOnThePoolAndRecordsDuration() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, Duration.ofSeconds(5), meters);
+
+        String hash = encoder.encode("secret123");
+
+        assertThat(encoder.matches("secret123", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(meters.timer("password.hash", "op", "encode").count()).isEqualTo(1);
+        assertThat(meters.timer("password.hash", "op", "matches").count()).isEqualTo(2);
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() throws Exception {
+        var started = new CountDownLatch(1);
+        encoder = new BoundedPasswordEncoder(blockingEncoder(started), 1, 1, Duration.ofSeconds(5), meters);
+
+        var running = CompletableFuture.runAsync(() -> encoder.encode("a"));   // occupe le seul thread
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        var queued = CompletableFuture.runAsync(() -> encoder.encode("b"));    // remplit la file
+        waitForQueue(1);
+
+        long t0 = System.nanoTime();
+        assertThatThrownBy(() -> encoder.matches("c", "x"))
+                .isInstanceOf(BoundedPasswordEncoder.BusyException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - t0)).isLessThan(Duration.ofMillis(200));
+        assertThat(meters.counter("password.hash.rejected").count()).isEqualTo(1);
+
+        release.countDown();
+        running.get(2, TimeUnit.SECONDS);
+        queued.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void waitBeyondMaxWaitIsRejected() throws Exception {
+        var started = new CountDownLatch(1);
+        encoder = new BoundedPasswordEncoder(blockingEncoder(started), 1, 4, Duration.ofMillis(100), meters);
+
+        CompletableFuture.runAsync(() -> { try { encoder.encode("a"); } catch (RuntimeException ignored) {} });
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> encoder.encode("b"))
+                .isInstanceOf(BoundedPasswordEncoder.BusyException.class);
+    }
+
+    private PasswordEncoder blockingEncoder(CountDownLatch started) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence raw) {
+                started.countDown();
+                try { release.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                return "hash:" + raw;
+            }
+
+            @Override
+            public boolean matches(CharSequence raw, String encoded) {
+                return encode(raw).equals(encoded);
+            }
+        };
+    }
+
+    private void waitForQueue(int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && meters.get("password.hash.queue").gauge().value() < expected; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
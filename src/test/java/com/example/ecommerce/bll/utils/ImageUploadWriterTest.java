@@ -0,0 +1,68 @@
+package com.example.ecommerce.bll.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageUploadWriterTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void detectsTheRealFormatAndHashesWhatItWrites() throws Exception {
+        byte[] jpeg = new byte[300_000];
+        new Random(42).nextBytes(jpeg);
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[2] = (byte) 0xFF;
+        Path target = dir.resolve("a.tmp");
+
+        // Flux qui rend les octets au compte-gouttes : la signature arrive en plusieurs lectures
+        var written = ImageUploadWriter.write(trickle(jpeg), target, 1_000_000);
+
+        assertThat(written.type()).isEqualTo(ImageUploadWriter.ImageType.JPEG);
+        assertThat(written.size()).isEqualTo(jpeg.length);
+        assertThat(written.sha256()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(jpeg)));
+        assertThat(Files.readAllBytes(target)).isEqualTo(jpeg);
+
+        byte[] webp = "RIFF\0\0\0\0WEBPVP8 ".getBytes();
+        assertThat(ImageUploadWriter.write(new ByteArrayInputStream(webp), target, 1_000).type())
+                .isEqualTo(ImageUploadWriter.ImageType.WEBP);
+    }
+
+    @Test
+    void rejectsNonImagesOversizedAndEmptyUploads() {
+        Path target = dir.resolve("b.tmp");
+        byte[] html = "<html><script>alert(1)</script></html>".getBytes();
+        byte[] png = new byte[5_000];
+        System.arraycopy(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}, 0, png, 0, 8);
+
+        assertThatThrownBy(() -> ImageUploadWriter.write(new ByteArrayInputStream(html), target, 1_000))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unsupported");
+        assertThatThrownBy(() -> ImageUploadWriter.write(new ByteArrayInputStream(png), target, 4_096))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("exceeds");
+        assertThatThrownBy(() -> ImageUploadWriter.write(new ByteArrayInputStream(new byte[0]), target, 1_000))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Empty");
+        assertThatThrownBy(() -> ImageUploadWriter.write(new ByteArrayInputStream(new byte[]{(byte) 0xFF}), target, 1_000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static InputStream trickle(byte[] data) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 5));
+            }
+        };
+    }
+}
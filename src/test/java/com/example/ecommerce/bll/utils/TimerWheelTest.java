@@ -0,0 +1,73 @@
+package com.example.ecommerce.bll.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimerWheelTest {
+
+    @Test
+    void itemsExpireOnceInDeadlineOrderEvenAfterSeveralTurns() throws Exception {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        Map<String, Long> firedAt = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        // 8 slots de 10 ms : "late" fait plus de deux tours de roue avant d'échoir
+        try (var wheel = new TimerWheel<String>("test-wheel", Duration.ofMillis(10), 8, item -> {
+            fired.add(item);
+            firedAt.put(item, System.nanoTime() - start);
+        })) {
+            wheel.schedule("late", Duration.ofMillis(200));
+            wheel.schedule("soon", Duration.ofMillis(20));
+
+            await(() -> fired.size() == 2);
+            Thread.sleep(50);
+        }
+
+        assertThat(fired).containsExactly("soon", "late");
+        assertThat(firedAt.get("late")).isGreaterThanOrEqualTo(Duration.ofMillis(190).toNanos());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() throws Exception {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        try (var wheel = new TimerWheel<String>("test-wheel", Duration.ofMillis(10), 8, fired::add)) {
+            wheel.schedule("overdue", Duration.ofMillis(-500));
+            await(() -> fired.contains("overdue"));
+        }
+    }
+
+    @Test
+    void failingCallbackDoesNotStopTheWheel() throws Exception {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        try (var wheel = new TimerWheel<String>("test-wheel", Duration.ofMillis(10), 8, item -> {
+            if (item.equals("boom")) throw new IllegalStateException("boom");
+            fired.add(item);
+        })) {
+            wheel.schedule("boom", Duration.ofMillis(10));
+            wheel.schedule("after", Duration.ofMillis(40));
+            await(() -> fired.contains("after"));
+        }
+    }
+
+    @Test
+    void wheelSizeMustBeAPowerOfTwo() {
+        assertThatThrownBy(() -> new TimerWheel<String>("test-wheel", Duration.ofMillis(10), 6, item -> {}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timeout").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
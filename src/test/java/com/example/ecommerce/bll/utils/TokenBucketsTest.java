@@ -0,0 +1,86 @@
+package com.example.ecommerce.bll.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketsTest {
+
+    final AtomicLong clock = new AtomicLong(1_000);
+
+    @Test
+    void burstThenRefillAtConfiguredRate() {
+        var buckets = new TokenBuckets(3, 60, 100, clock::get); // 1 jeton / seconde
+
+        for (int i = 0; i < 3; i++) assertThat(buckets.tryAcquire("1.2.3.4")).isZero();
+        long wait = buckets.tryAcquire("1.2.3.4");
+        assertThat(wait).isBetween(1L, TimeUnit.SECONDS.toNanos(1));
+        assertThat(buckets.tryAcquire("5.6.7.8")).isZero(); // autre clé, autre seau
+
+        clock.addAndGet(wait);
+        assertThat(buckets.tryAcquire("1.2.3.4")).isZero();
+        assertThat(buckets.tryAcquire("1.2.3.4")).isPositive();
+    }
+
+    @Test
+    void fullBucketsArePurgedAndMapStaysBounded() {
+        var buckets = new TokenBuckets(1, 60, 2, clock::get);
+        assertThat(buckets.tryAcquire("a")).isZero();
+        assertThat(buckets.tryAcquire("b")).isZero();
+
+        // Map pleine de seaux entamés : la requête est refusée sans créer de seau
+        assertThat(buckets.tryAcquire("c")).isPositive();
+        assertThat(buckets.size()).isEqualTo(2);
+        assertThat(buckets.overflows()).isEqualTo(1);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(buckets.purge()).isEqualTo(2);
+        assertThat(buckets.tryAcquire("a")).isZero(); // seau neuf, toujours plein
+    }
+
+    @Test
+    void fullMapThrottlesNewKeysUntilABucketRefills() {
+        var buckets = new TokenBuckets(5, 60, 2, clock::get); // 1 jeton / seconde
+        assertThat(buckets.tryAcquire("a")).isZero();
+        assertThat(buckets.tryAcquire("a")).isZero();
+        assertThat(buckets.tryAcquire("b")).isZero();
+
+        // Map remplie par d'autres clés : la clé visée n'échappe pas à la limite
+        for (int i = 0; i < 10; i++) {
+            assertThat(buckets.tryAcquire("victim")).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        }
+        assertThat(buckets.overflows()).isEqualTo(10);
+        assertThat(buckets.tryAcquire("a")).isZero(); // les clés connues restent servies
+
+        // Seaux redevenus pleins : la purge à la volée libère la place
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        assertThat(buckets.tryAcquire("victim")).isZero();
+        assertThat(buckets.size()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws Exception {
+        var buckets = new TokenBuckets(50, 1, 10, clock::get);
+        var granted = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        try (var pool = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (buckets.tryAcquire("shared") == 0) granted.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        assertThat(granted).hasValue(50);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ecommerce.dal.repositories;
+
+import com.example.ecommerce.dl.entities.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many buyers race for the last units: exactly "stock" reservations succeed, never more.
+ * Transactions are real (committed) so that concurrent threads see each other's updates.
+ */
+@DataJpaTest
+@Import(StockRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockRepositoryTest {
+
+    @Autowired StockRepository stock;
+    @Autowired ProductRepository products;
+    @Autowired PlatformTransactionManager txManager;
+
+    @Test
+    void concurrentBuyersNeverOversell() throws Exception {
+        var lastUnits = products.save(Product.builder().name("Last units")
+                .price(new BigDecimal("9.99")).stock(10).build());
+        var other = products.save(Product.builder().name("Plenty")
+                .price(new BigDecimal("1.00")).stock(1_000).build());
+
+        int buyers = 64;
+        var tx = new TransactionTemplate(txManager);
+        var start = new CountDownLatch(1);
+        var succeeded = new AtomicInteger();
+        try (var pool = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < buyers; i++) {
+                pool.submit(() -> {
+                    start.await();
+                    try {
+                        tx.executeWithoutResult(status -> {
+                            var missing = stock.reserveAll(Map.of(other.getId(), 1, lastUnits.getId(), 1));
+                            if (!missing.isEmpty()) throw new IllegalStateException("out of stock " + missing);
+                        });
+                        succeeded.incrementAndGet();
+                    } catch (IllegalStateException ignored) {
+                        // rollback attendu : aucune réservation partielle
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(succeeded.get()).isEqualTo(10);
+        assertThat(products.findById(lastUnits.getId()).orElseThrow().getStock()).isZero();
+        // les paniers refusés n'ont rien consommé sur l'autre produit (rollback du batch)
+        assertThat(products.findById(other.getId()).orElseThrow().getStock()).isEqualTo(990);
+    }
+}
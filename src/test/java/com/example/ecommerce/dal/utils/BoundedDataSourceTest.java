@@ -0,0 +1,85 @@
+package com.example.ecommerce.dal.utils;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedDataSourceTest {
+
+    final JdbcDataSource h2 = h2();
+
+    @Test
+    void connectionsBeyondPermitsTimeOut() throws Exception {
+        var ds = new BoundedDataSource(h2, 2, Duration.ofMillis(100));
+
+        try (Connection a = ds.getConnection(); Connection b = ds.getConnection()) {
+            assertThat(ds.availablePermits()).isZero();
+            long t0 = System.nanoTime();
+            assertThatThrownBy(ds::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - t0)).isBetween(Duration.ofMillis(90), Duration.ofSeconds(2));
+        }
+        assertThat(ds.availablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void waiterGetsThePermitWhenAConnectionIsClosed() throws Exception {
+        var ds = new BoundedDataSource(h2, 1, Duration.ofSeconds(5));
+        Connection held = ds.getConnection();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var waiter = executor.submit(() -> {
+                try (Connection c = ds.getConnection()) {
+                    return c.createStatement().executeQuery("select 1").next();
+                }
+            });
+            while (ds.waiting() == 0) Thread.sleep(5);
+            held.close();
+            assertThat(waiter.get(2, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(ds.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void closingTwiceReleasesOnce() throws Exception {
+        var ds = new BoundedDataSource(h2, 2, Duration.ofMillis(100));
+
+        Connection c = ds.getConnection();
+        c.close();
+        c.close();
+
+        assertThat(ds.availablePermits()).isEqualTo(2);
+        assertThat(c.isClosed()).isTrue();
+        assertThat(c.unwrap(Connection.class)).isSameAs(c);
+    }
+
+    @Test
+    void failedConnectionGivesThePermitBack() {
+        var broken = new DelegatingDataSource(h2) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("database down");
+            }
+        };
+        var ds = new BoundedDataSource(broken, 1, Duration.ofMillis(100));
+
+        assertThatThrownBy(ds::getConnection).hasMessage("database down");
+        assertThat(ds.availablePermits()).isEqualTo(1);
+    }
+
+    private static JdbcDataSource h2() {
+        var ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:bounded;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        return ds;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.ecommerce.il.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    @Test
+    void convertsAtTheBoundaryWithHalfUpRounding() {
+        assertThat(Money.eur(new BigDecimal("12.345")).minor()).isEqualTo(1235);
+        assertThat(Money.eur(new BigDecimal("12.3")).minor()).isEqualTo(1230);
+        assertThat(Money.ofMinor(1230, Money.EUR).toBigDecimal()).isEqualByComparingTo("12.30");
+    }
+
+    @Test
+    void arithmeticStaysInMinorUnits() {
+        var line = Money.eur(new BigDecimal("0.10")).times(3);
+        assertThat(line.plus(Money.ofMinor(5, Money.EUR))).isEqualTo(Money.ofMinor(35, Money.EUR));
+    }
+
+    @Test
+    void rendersWithoutCurrencySymbol() {
+        assertThat(Money.ofMinor(1205, Money.EUR)).hasToString("12.05");
+        assertThat(Money.ofMinor(-7, Money.EUR)).hasToString("-0.07");
+        assertThat(Money.ofMinor(500, Currency.getInstance("JPY"))).hasToString("500");
+    }
+
+    @Test
+    void rejectsMixedCurrenciesAndOverflow() {
+        assertThatThrownBy(() -> Money.zero(Money.EUR).plus(Money.zero(Currency.getInstance("USD"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE, Money.EUR).times(2))
+                .isInstanceOf(ArithmeticException.class);
+    }
+}
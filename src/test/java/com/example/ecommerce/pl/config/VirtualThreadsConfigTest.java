@@ -0,0 +1,50 @@
+package com.example.ecommerce.pl.config;
+
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.utils.BoundedDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Profil "virtual" : DataSource bornée par le sémaphore, métriques exposées, surveillance de l'épinglage. */
+@SpringBootTest
+@ActiveProfiles({"test", "virtual"})
+class VirtualThreadsConfigTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", uploads::toString);
+    }
+
+    @Autowired DataSource dataSource;
+    @Autowired ProductRepository products;
+    @Autowired MeterRegistry meters;
+    @Autowired VirtualThreadsConfig.PinningMonitor pinningMonitor;
+
+    @Test
+    void dataSourceIsBoundedToThePoolSize() throws Exception {
+        assertThat(dataSource).isInstanceOf(BoundedDataSource.class);
+        var bounded = (BoundedDataSource) dataSource;
+        assertThat(bounded.maxPermits()).isEqualTo(dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize());
+
+        products.count();
+
+        assertThat(bounded.availablePermits()).isEqualTo(bounded.maxPermits());
+        assertThat(meters.get("db.permits.available").gauge().value()).isEqualTo(bounded.maxPermits());
+        assertThat(meters.get("db.permits.waiting").gauge().value()).isZero();
+        assertThat(meters.get("jvm.threads.virtual.pinned").counter()).isNotNull();
+    }
+}
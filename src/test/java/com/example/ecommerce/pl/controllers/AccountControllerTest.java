@@ -0,0 +1,105 @@
+package com.example.ecommerce.pl.controllers;
+
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.dl.enums.Role;
+import com.example.ecommerce.il.dto.OrderSummaryDto;
+import com.example.ecommerce.il.interfaces.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrlPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** Historique des commandes : pagination par curseur (ordre stable, sans doublon) et rendu de /account. */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class AccountControllerTest {
+
+    static final String EMAIL = "history@test.local";
+
+    @Autowired MockMvc mvc;
+    @Autowired UserRepository users;
+    @Autowired OrderRepository orders;
+    @Autowired OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        if (users.findByEmail(EMAIL).isPresent()) return;
+        var user = users.save(User.builder().email(EMAIL).password("x").role(Role.USER).build());
+        var other = users.save(User.builder().email("other@test.local").password("x").role(Role.USER).build());
+        for (int i = 0; i < 45; i++) {
+            orders.save(Order.builder().user(user).status(OrderStatus.PAID)
+                    .totalAmount(new BigDecimal(i + ".50")).itemCount(i % 3 + 1).build());
+        }
+        orders.save(Order.builder().user(other).status(OrderStatus.PAID)
+                .totalAmount(BigDecimal.TEN).itemCount(1).build());
+    }
+
+    @Test
+    @WithMockUser(username = EMAIL)
+    void cursorWalksEveryOrderOnceNewestFirst() {
+        List<OrderSummaryDto> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var page = orderService.history(cursor, 20);
+            seen.addAll(page.orders());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(45);
+        assertThat(seen).extracting(OrderSummaryDto::id).doesNotHaveDuplicates();
+        assertThat(seen).isSortedAccordingTo(Comparator.comparing(OrderSummaryDto::createdAt)
+                .thenComparing(OrderSummaryDto::id).reversed());
+        assertThat(seen.getFirst().itemCount()).isBetween(1, 3);
+    }
+
+    @Test
+    @WithMockUser(username = EMAIL)
+    void accountPageRendersSummariesAndRejectsForgedCursor() throws Exception {
+        mvc.perform(get("/account"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("Older orders")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("44.50 €")));
+
+        mvc.perform(get("/account").param("after", "not-a-cursor"))
+                .andExpect(redirectedUrlPattern("/account?*"));
+    }
+
+    @Test
+    @WithMockUser(username = "refunds@test.local")
+    void accountPageLabelsRefundStatuses() throws Exception {
+        var user = users.save(User.builder().email("refunds@test.local").password("x").role(Role.USER).build());
+        orders.save(Order.builder().user(user).status(OrderStatus.REFUND_REQUIRED)
+                .totalAmount(BigDecimal.ONE).itemCount(1).build());
+        orders.save(Order.builder().user(user).status(OrderStatus.REFUNDED)
+                .totalAmount(BigDecimal.ONE).itemCount(1).build());
+
+        mvc.perform(get("/account"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("Refund pending")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("Refunded")))
+                .andExpect(content().string(org.hamcrest.Matchers.not(org.hamcrest.Matchers.containsString("Expired"))));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.ecommerce.pl.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/** /uploads/** : Range, validation conditionnelle, chemins refusés ; CSS / SVG précompressés et versionnés. */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class MediaControllerTest {
+
+    @TempDir static Path uploads;
+
+    @DynamicPropertySource
+    static void uploadDir(DynamicPropertyRegistry registry) {
+        registry.add("app.upload-dir", uploads::toString);
+    }
+
+    @Autowired MockMvc mvc;
+
+    @Test
+    void servesRangesAndConditionalRequests() throws Exception {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+        Files.write(uploads.resolve("photo.jpg"), data);
+        Files.write(uploads.resolve(".upload-123.tmp"), data);
+
+        var full = mvc.perform(get("/uploads/photo.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("Content-Length", "100000"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+                .andReturn().getResponse();
+        assertThat(full.getContentAsByteArray()).isEqualTo(data);
+        String etag = full.getHeader("ETag");
+
+        mvc.perform(get("/uploads/photo.jpg").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        var part = mvc.perform(get("/uploads/photo.jpg").header("Range", "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-19/100000"))
+                .andExpect(header().string("Content-Length", "10"))
+                .andReturn().getResponse();
+        assertThat(part.getContentAsByteArray()).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+
+        mvc.perform(get("/uploads/photo.jpg").header("Range", "bytes=-5"))
+                .andExpect(header().string("Content-Range", "bytes 99995-99999/100000"));
+        mvc.perform(get("/uploads/photo.jpg").header("Range", "bytes=0-9").header("If-Range", "\"stale\""))
+                .andExpect(status().isOk());
+        mvc.perform(get("/uploads/photo.jpg").header("Range", "bytes=200000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */100000"));
+
+        mvc.perform(get("/uploads/.upload-123.tmp")).andExpect(status().isNotFound());
+        mvc.perform(get("/uploads/missing.jpg")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void negotiatesModernFormatsOnTheAcceptHeader() throws Exception {
+        Files.write(uploads.resolve("shot.png"), new byte[1000]);
+        Files.write(uploads.resolve("shot.png.webp"), new byte[300]);
+
+        mvc.perform(get("/uploads/shot.png").header("Accept", "image/avif,image/webp,image/apng,*/*;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/webp"))
+                .andExpect(header().string("Content-Length", "300"))
+                .andExpect(header().string("Vary", "Accept"));
+        mvc.perform(get("/uploads/shot.png").header("Accept", "image/webp;q=0, */*"))
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(header().string("Content-Length", "1000"));
+        mvc.perform(get("/uploads/shot.png").header("Accept", "*/*"))
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(header().string("Vary", "Accept"));
+        mvc.perform(get("/uploads/shot.png.webp")).andExpect(status().isOk());
+    }
+
+    @Test
+    void pagesLinkFingerprintedAssetsCachedForAYear() throws Exception {
+        String html = mvc.perform(get("/products")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Matcher css = Pattern.compile("href=\"(/css/theme-[0-9a-f]{32}\\.css)\"").matcher(html);
+        assertThat(css.find()).as("fingerprinted theme.css in %s", html).isTrue();
+        assertThat(html).containsPattern("/images/og-default-[0-9a-f]{32}\\.png");
+
+        mvc.perform(get(css.group(1)).header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+        mvc.perform(get("/css/theme.css"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"));
+        mvc.perform(get("/css/theme-0123456789abcdef0123456789abcdef.css")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void servesPrecompressedStylesheetsToClientsThatAcceptThem() throws Exception {
+        byte[] plain = mvc.perform(get("/css/theme.css"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        mvc.perform(get("/css/theme.css").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(content().contentTypeCompatibleWith("text/css"))
+                .andExpect(r -> assertThat(r.getResponse().getContentAsByteArray().length).isLessThan(plain.length / 2));
+    }
+}
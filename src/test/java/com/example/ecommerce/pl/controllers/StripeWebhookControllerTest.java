@@ -0,0 +1,170 @@
+package com.example.ecommerce.pl.controllers;
+
+import com.example.ecommerce.bll.services.StripeWebhookService;
+import com.example.ecommerce.dal.repositories.OrderRepository;
+import com.example.ecommerce.dal.repositories.OutboxRepository;
+import com.example.ecommerce.dal.repositories.ProductRepository;
+import com.example.ecommerce.dal.repositories.StripeEventRepository;
+import com.example.ecommerce.dal.repositories.UserRepository;
+import com.example.ecommerce.dl.entities.Order;
+import com.example.ecommerce.dl.entities.OrderLine;
+import com.example.ecommerce.dl.entities.Product;
+import com.example.ecommerce.dl.entities.StripeEvent;
+import com.example.ecommerce.dl.entities.User;
+import com.example.ecommerce.dl.enums.OrderStatus;
+import com.example.ecommerce.dl.enums.Role;
+import com.example.ecommerce.dl.enums.StripeEventStatus;
+import com.stripe.Stripe;
+import com.stripe.net.Webhook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Webhook Stripe de bout en bout, sans appel à Stripe : les événements sont signés localement
+ * avec le secret de test (même schéma HMAC que Stripe), la base est une H2 en mémoire.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class StripeWebhookControllerTest {
+
+    static final String SECRET = "whsec_test_stub"; // stripe.webhook-secret du profil test
+
+    @Autowired MockMvc mvc;
+    @Autowired UserRepository users;
+    @Autowired ProductRepository products;
+    @Autowired OrderRepository orders;
+    @Autowired StripeEventRepository events;
+    @Autowired OutboxRepository outbox;
+    @Autowired StripeWebhookService webhooks;
+
+    @Test
+    void paidSessionMarksOrderPaidOnceEvenWhenRedelivered() throws Exception {
+        var user = users.save(User.builder().email("webhook@test.local").password("x").role(Role.USER).build());
+        var product = products.save(Product.builder().name("Mug").price(new BigDecimal("12.00")).stock(5).build());
+        var order = Order.builder().user(user).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("24.00")).stripeSessionId("cs_test_paid").build();
+        order.getLines().add(OrderLine.builder().order(order).productId(product.getId())
+                .productName("Mug").unitPrice(new BigDecimal("12.00")).quantity(2).build());
+        orders.save(order);
+
+        String payload = event("evt_paid_1", "checkout.session.completed", "cs_test_paid", order.getId(), "paid");
+        for (int i = 0; i < 3; i++) { // relivraisons Stripe
+            mvc.perform(post("/stripe/webhook").contentType(MediaType.APPLICATION_JSON)
+                            .header("Stripe-Signature", sign(payload)).content(payload))
+                    .andExpect(status().isOk());
+        }
+
+        await(() -> events.findById("evt_paid_1").map(e -> e.getStatus() == StripeEventStatus.PROCESSED).orElse(false));
+        assertThat(orders.findById(order.getId()).orElseThrow().getStatus()).isEqualTo(OrderStatus.PAID);
+        assertThat(products.findById(product.getId()).orElseThrow().getStock()).isEqualTo(3);
+        assertThat(events.findById("evt_paid_1").orElseThrow().getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void paidSessionWithoutStockRollsBackAndFlagsRefund() throws Exception {
+        var user = users.save(User.builder().email("refund@test.local").password("x").role(Role.USER).build());
+        var plenty = products.save(Product.builder().name("Plate").price(new BigDecimal("8.00")).stock(10).build());
+        var scarce = products.save(Product.builder().name("Bowl").price(new BigDecimal("6.00")).stock(1).build());
+        var order = Order.builder().user(user).status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal("28.00")).stripeSessionId("cs_test_short").build();
+        order.getLines().add(OrderLine.builder().order(order).productId(plenty.getId())
+                .productName("Plate").unitPrice(new BigDecimal("8.00")).quantity(2).build());
+        order.getLines().add(OrderLine.builder().order(order).productId(scarce.getId())
+                .productName("Bowl").unitPrice(new BigDecimal("6.00")).quantity(2).build());
+        orders.save(order);
+
+        String payload = event("evt_scarce1", "checkout.session.completed", "cs_test_short", order.getId(), "paid");
+        mvc.perform(post("/stripe/webhook").contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", sign(payload)).content(payload))
+                .andExpect(status().isOk());
+
+        await(() -> events.findById("evt_scarce1").map(e -> e.getStatus() == StripeEventStatus.PROCESSED).orElse(false));
+        assertThat(orders.findById(order.getId()).orElseThrow().getStatus()).isEqualTo(OrderStatus.REFUND_REQUIRED);
+        assertThat(products.findById(plenty.getId()).orElseThrow().getStock()).isEqualTo(10);
+        assertThat(products.findById(scarce.getId()).orElseThrow().getStock()).isEqualTo(1);
+        assertThat(outbox.findAll()).anyMatch(e -> e.getType().equals("order.refund_required")
+                && e.getAggregateId().equals(order.getId().toString()));
+    }
+
+    @Test
+    void invalidSignatureIsRejectedAndNotStored() throws Exception {
+        String payload = event("evt_forged", "checkout.session.completed", "cs_x", 1L, "paid");
+        mvc.perform(post("/stripe/webhook").contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", "t=" + now() + ",v1=deadbeef").content(payload))
+                .andExpect(status().isBadRequest());
+        assertThat(events.existsById("evt_forged")).isFalse();
+    }
+
+    @Test
+    void failedEventIsRetriedAfterABackoff() throws Exception {
+        String payload = """
+                {"id":"evt_unreadable","object":"event","api_version":"%s","type":"checkout.session.completed",
+                 "data":{"object":{"id":"cus_1","object":"customer"}}}""".formatted(Stripe.API_VERSION);
+        mvc.perform(post("/stripe/webhook").contentType(MediaType.APPLICATION_JSON)
+                        .header("Stripe-Signature", sign(payload)).content(payload))
+                .andExpect(status().isOk());
+
+        await(() -> events.findById("evt_unreadable")
+                .map(e -> e.getStatus() == StripeEventStatus.RECEIVED && e.getAttempts() == 1).orElse(false));
+        var failed = events.findById("evt_unreadable").orElseThrow();
+        assertThat(failed.getLastError()).contains("Unexpected event object");
+        assertThat(failed.getAvailableAt()).isAfter(Instant.now().plusSeconds(20)); // 1re relance : retry-backoff (30 s)
+    }
+
+    @Test
+    void startupRequeuesOnlyClaimsWhoseLeaseExpired() {
+        var now = Instant.now();
+        events.save(StripeEvent.builder().id("evt_live_node").type("customer.created").payload("{}")
+                .status(StripeEventStatus.PROCESSING).attempts(1).receivedAt(now)
+                .availableAt(now.plusSeconds(300)).build());
+        events.save(StripeEvent.builder().id("evt_dead_node").type("customer.created").payload("{}")
+                .status(StripeEventStatus.PROCESSING).attempts(1).receivedAt(now.minusSeconds(600))
+                .availableAt(now.minusSeconds(60)).build());
+
+        webhooks.requeueInFlight();
+
+        assertThat(events.findById("evt_live_node").orElseThrow().getStatus()).isEqualTo(StripeEventStatus.PROCESSING);
+        assertThat(events.findById("evt_dead_node").orElseThrow().getStatus()).isNotEqualTo(StripeEventStatus.PROCESSING);
+    }
+
+    // -------- Stub Stripe --------
+
+    private static String event(String id, String type, String sessionId, Long orderId, String paymentStatus) {
+        return """
+                {"id":"%s","object":"event","api_version":"%s","type":"%s",
+                 "data":{"object":{"id":"%s","object":"checkout.session",
+                                   "client_reference_id":"%d","payment_status":"%s"}}}"""
+                .formatted(id, Stripe.API_VERSION, type, sessionId, orderId, paymentStatus);
+    }
+
+    private static String sign(String payload) throws Exception {
+        long t = now();
+        return "t=" + t + ",v1=" + Webhook.Util.computeHmacSha256(SECRET, t + "." + payload);
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timeout").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}